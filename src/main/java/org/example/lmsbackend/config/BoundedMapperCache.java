@@ -0,0 +1,226 @@
+package org.example.lmsbackend.config;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache cấp 2 (theo namespace) cho mapper MyBatis: LRU có giới hạn số phần tử + TTL, kèm thống kê hit/miss.
+ * Gắn vào mapper bằng @CacheNamespace(implementation = BoundedMapperCache.class, properties = ...).
+ * <p>
+ * MyBatis không bọc cache tự viết bằng SerializedCache/SynchronizedCache, nên lớp này tự đảm nhận:
+ * giá trị lưu dạng byte đã serialize (mỗi lần đọc trả về bản sao, code gọi sửa object không làm hỏng cache)
+ * và mọi truy cập map đều qua lock.
+ * <p>
+ * Câu INSERT/UPDATE/DELETE trong cùng namespace làm MyBatis gọi clear() khi commit.
+ * Thuộc tính flushAlso liệt kê namespace khác cần xóa theo (ví dụ câu hỏi cache kèm đáp án).
+ */
+public class BoundedMapperCache implements Cache {
+
+    private static final Map<String, BoundedMapperCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final String id;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private volatile int maxEntries = 1000;
+    private volatile long ttlMillis = 10 * 60 * 1000L;
+    private volatile String[] flushAlso = new String[0];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    public BoundedMapperCache(String id) {
+        this.id = id;
+        INSTANCES.put(id, this);
+    }
+
+    // === Thuộc tính cấu hình qua @Property ===
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    public void setFlushAlso(String namespaces) {
+        this.flushAlso = namespaces == null || namespaces.isBlank() ? new String[0] : namespaces.trim().split("\\s*,\\s*");
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        // TransactionalCache ghi null cho các key bị miss → không lưu
+        if (value == null) {
+            removeObject(key);
+            return;
+        }
+        byte[] bytes = serialize(value);
+        lock.lock();
+        try {
+            entries.put(key, new Entry(bytes, System.currentTimeMillis() + ttlMillis));
+        } finally {
+            lock.unlock();
+        }
+        puts.increment();
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return deserialize(entry.value);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        clearLocal();
+        for (String namespace : flushAlso) {
+            BoundedMapperCache other = INSTANCES.get(namespace);
+            if (other != null && other != this) {
+                other.clearLocal();
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Thống kê của mọi namespace đang dùng cache này
+     */
+    public static Map<String, Object> getAllStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        INSTANCES.forEach((namespace, cache) -> stats.put(namespace, cache.getStats()));
+        return stats;
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", lookups == 0 ? 0.0 : Math.round(hitCount * 1000.0 / lookups) / 1000.0);
+        stats.put("puts", puts.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("size", getSize());
+        stats.put("maxEntries", maxEntries);
+        return stats;
+    }
+
+    private void clearLocal() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+        flushes.increment();
+    }
+
+    private static byte[] serialize(Object value) {
+        if (!(value instanceof Serializable)) {
+            throw new CacheException("Cached value is not Serializable: " + value.getClass().getName());
+        }
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new CacheException("Error serializing cached value", e);
+        }
+    }
+
+    private static Object deserialize(byte[] value) {
+        try (ObjectInputStream in = new ClassLoaderAwareObjectInputStream(new ByteArrayInputStream(value))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("Error deserializing cached value", e);
+        }
+    }
+
+    private record Entry(byte[] value, long expiresAt) {
+    }
+
+    // Nạp class qua classloader của MyBatis (giống SerializedCache), đúng cả khi chạy với devtools restart
+    private static class ClassLoaderAwareObjectInputStream extends ObjectInputStream {
+        ClassLoaderAwareObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws ClassNotFoundException {
+            return Resources.classForName(desc.getName());
+        }
+    }
+}
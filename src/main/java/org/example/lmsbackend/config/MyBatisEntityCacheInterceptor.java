@@ -0,0 +1,51 @@
+package org.example.lmsbackend.config;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.example.lmsbackend.service.EntityCacheService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Câu INSERT/UPDATE/DELETE của MyBatis không đi qua Hibernate nên cache L2 không biết dữ liệu đã đổi.
+ * Interceptor này xác định bảng bị ghi (cache theo id của mapped statement) và xóa cache entity tương ứng.
+ */
+@Component
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class MyBatisEntityCacheInterceptor implements Interceptor {
+
+    // Lấy lazy: SqlSessionFactory được tạo trước khi EntityManagerFactory sẵn sàng
+    private final ObjectProvider<EntityCacheService> entityCacheService;
+
+    // mapped statement id → bảng có cache bị ghi (Optional.empty() = không liên quan)
+    private final ConcurrentHashMap<String, Optional<String>> tableByStatement = new ConcurrentHashMap<>();
+
+    public MyBatisEntityCacheInterceptor(ObjectProvider<EntityCacheService> entityCacheService) {
+        this.entityCacheService = entityCacheService;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        Object parameter = invocation.getArgs()[1];
+        Optional<String> table = tableByStatement.computeIfAbsent(statement.getId(), id -> {
+            String written = EntityCacheService.writtenTable(statement.getBoundSql(parameter).getSql());
+            return EntityCacheService.isCachedTable(written) ? Optional.of(written) : Optional.empty();
+        });
+
+        if (table.isPresent()) {
+            entityCacheService.getObject().evictTables(List.of(table.get()));
+        }
+        return result;
+    }
+}
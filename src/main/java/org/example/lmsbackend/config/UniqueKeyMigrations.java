@@ -0,0 +1,157 @@
+package org.example.lmsbackend.config;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Khóa UNIQUE mà code dựa vào để chống dòng trùng (INSERT ... ON DUPLICATE KEY UPDATE / INSERT IGNORE).
+ * <p>
+ * ddl-auto=update chỉ thêm được khóa khi bảng chưa có dòng trùng; nếu đã có (dữ liệu ghi bởi code cũ
+ * kiểu "đếm rồi mới insert" bị race) thì Hibernate chỉ ghi log rồi bỏ qua, và các câu upsert lại âm thầm
+ * tạo thêm dòng trùng. Vì vậy khi khởi động (sau khi Hibernate cập nhật schema), khóa nào còn thiếu thì
+ * dọn dòng trùng rồi ALTER TABLE thêm khóa. Không thêm được → dừng khởi động thay vì chạy với dữ liệu sai.
+ * <p>
+ * Bảng quiz_completions (dấu hoàn thành quiz, ghi bằng INSERT IGNORE) còn trống thì lấy từ các lần làm bài
+ * đã có, không thì lần nộp kế tiếp của quiz đã làm từ trước bị cộng thêm vào bộ đếm.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class UniqueKeyMigrations implements InitializingBean {
+
+    /**
+     * @param cleanup các câu SQL chạy theo thứ tự trước khi thêm khóa (gộp/xóa dòng trùng)
+     */
+    record UniqueKey(String table, String name, String columns, List<String> cleanup) {
+    }
+
+    static final List<UniqueKey> UNIQUE_KEYS = List.of(
+            // Dòng trùng có thể đã bị cộng bộ đếm 2 lần → xóa course_progress của user liên quan,
+            // lần đọc sau tính lại từ dữ liệu gốc (ghi đè cả bộ đếm module)
+            new UniqueKey("content_progress", "uk_content_progress_user_content", "user_id, content_id", List.of(
+                    """
+                    DELETE cp FROM course_progress cp
+                    JOIN (SELECT DISTINCT x.user_id, m.course_id FROM content_progress x
+                          JOIN contents c ON c.content_id = x.content_id
+                          JOIN modules m ON m.module_id = c.module_id
+                          GROUP BY x.user_id, x.content_id, m.course_id HAVING COUNT(*) > 1) d
+                      ON d.user_id = cp.user_id AND d.course_id = cp.course_id
+                    """,
+                    // Giữ dòng đã completed nếu có, không thì dòng cũ nhất
+                    """
+                    DELETE a FROM content_progress a
+                    JOIN content_progress b ON a.user_id = b.user_id AND a.content_id = b.content_id
+                     AND ((b.status = 'completed' AND (a.status IS NULL OR a.status <> 'completed'))
+                          OR ((b.status = 'completed') <=> (a.status = 'completed') AND b.progress_id < a.progress_id))
+                    """)),
+            new UniqueKey("module_progress", "uk_module_progress_user_module", "user_id, module_id", List.of(
+                    """
+                    DELETE cp FROM course_progress cp
+                    JOIN (SELECT DISTINCT x.user_id, m.course_id FROM module_progress x
+                          JOIN modules m ON m.module_id = x.module_id
+                          GROUP BY x.user_id, x.module_id, m.course_id HAVING COUNT(*) > 1) d
+                      ON d.user_id = cp.user_id AND d.course_id = cp.course_id
+                    """,
+                    """
+                    DELETE a FROM module_progress a
+                    JOIN module_progress b ON a.user_id = b.user_id AND a.module_id = b.module_id
+                     AND b.progress_id < a.progress_id
+                    """)),
+            // Giữ dòng đã completed nếu có, rồi dòng xem xa nhất, rồi dòng cũ nhất
+            new UniqueKey("video_progress", "uk_video_progress_user_video", "user_id, video_id", List.of(
+                    """
+                    DELETE cp FROM course_progress cp
+                    JOIN (SELECT DISTINCT x.user_id, v.course_id FROM video_progress x
+                          JOIN videos v ON v.video_id = x.video_id
+                          GROUP BY x.user_id, x.video_id, v.course_id HAVING COUNT(*) > 1) d
+                      ON d.user_id = cp.user_id AND d.course_id = cp.course_id
+                    """,
+                    """
+                    DELETE a FROM video_progress a
+                    JOIN video_progress b ON a.user_id = b.user_id AND a.video_id = b.video_id
+                     AND ((COALESCE(b.completed, FALSE), COALESCE(b.watched_duration, 0), -b.progress_id)
+                          > (COALESCE(a.completed, FALSE), COALESCE(a.watched_duration, 0), -a.progress_id))
+                    """)),
+            // Ghi danh dùng INSERT IGNORE → thiếu khóa thì ghi danh lặp tạo dòng trùng.
+            // Giữ dòng completed nếu có, rồi active, rồi dropped; cùng trạng thái thì giữ lần ghi danh đầu
+            new UniqueKey("enrollments", "uk_enrollments_user_course", "user_id, course_id", List.of(
+                    """
+                    DELETE a FROM enrollments a
+                    JOIN enrollments b ON a.user_id = b.user_id AND a.course_id = b.course_id
+                     AND (FIELD(b.status, 'completed', 'active', 'dropped') < FIELD(a.status, 'completed', 'active', 'dropped')
+                          OR (b.status = a.status AND b.enrollment_id < a.enrollment_id))
+                    """))
+    );
+
+    static final String SEED_QUIZ_COMPLETIONS = """
+            INSERT IGNORE INTO quiz_completions (user_id, quiz_id, completed_at)
+            SELECT user_id, quiz_id, COALESCE(MIN(attempted_at), NOW()) FROM user_quiz_attempts
+            GROUP BY user_id, quiz_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UniqueKeyMigrations(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (UniqueKey key : UNIQUE_KEYS) {
+            apply(key);
+        }
+        seedQuizCompletions();
+    }
+
+    private void seedQuizCompletions() {
+        if (!tableExists("quiz_completions") || !tableExists("user_quiz_attempts")) {
+            return;
+        }
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT 1 FROM quiz_completions LIMIT 1) t", Integer.class);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        int seeded = jdbcTemplate.update(SEED_QUIZ_COMPLETIONS);
+        if (seeded > 0) {
+            System.out.println("🔧 Seeded " + seeded + " quiz_completions rows from user_quiz_attempts");
+        }
+    }
+
+    private void apply(UniqueKey key) {
+        if (!tableExists(key.table()) || indexExists(key.table(), key.name())) {
+            return;
+        }
+        try {
+            int removed = 0;
+            for (String sql : key.cleanup()) {
+                removed += jdbcTemplate.update(sql);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + key.table() + " ADD CONSTRAINT " + key.name()
+                    + " UNIQUE (" + key.columns() + ")");
+            System.out.println("🔧 Added unique key " + key.name() + " on " + key.table()
+                    + " (" + removed + " duplicate/derived rows cleaned up)");
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not add unique key " + key.name() + " on " + key.table()
+                    + "; fix duplicate rows manually before starting: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean indexExists(String table, String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?",
+                Integer.class, table, name);
+        return count != null && count > 0;
+    }
+}
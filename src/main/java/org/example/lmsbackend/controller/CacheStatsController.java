@@ -0,0 +1,31 @@
+package org.example.lmsbackend.controller;
+
+import org.example.lmsbackend.config.BoundedMapperCache;
+import org.example.lmsbackend.service.EntityCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheStatsController {
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    // Thống kê hit/miss của cache L2 Hibernate theo từng region và cache MyBatis theo từng namespace
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hibernate", entityCacheService.getStats());
+        stats.put("mybatis", BoundedMapperCache.getAllStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.lmsbackend.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.lmsbackend.dto.ChunkedUploadInitDTO;
+import org.example.lmsbackend.model.UploadSession;
+import org.example.lmsbackend.security.CustomUserDetails;
+import org.example.lmsbackend.service.ChunkedUploadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Upload theo từng chunk (có thể tiếp tục khi rớt mạng):
+ * 1. POST   /api/uploads/chunked                → tạo phiên, nhận uploadId
+ * 2. PATCH  /api/uploads/chunked/{uploadId}     → gửi chunk (raw body), header Upload-Offset
+ * 3. HEAD   /api/uploads/chunked/{uploadId}     → hỏi offset hiện tại để upload tiếp
+ * 4. Hoàn tất qua API nghiệp vụ: POST /api/videos/upload/chunked/{uploadId}
+ *                               hoặc POST /api/contents/chunked/{uploadId}
+ */
+@RestController
+@RequestMapping("/api/uploads/chunked")
+public class ChunkedUploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    @PreAuthorize("hasAnyRole('instructor', 'admin')")
+    public ResponseEntity<?> createUpload(@RequestBody ChunkedUploadInitDTO request,
+                                          @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            UploadSession session = chunkedUploadService.createSession(
+                    userDetails.getUserId(), request.getFileName(), request.getFileSize(), request.getContentType());
+
+            return ResponseEntity.created(URI.create("/api/uploads/chunked/" + session.getUploadId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .header(UPLOAD_LENGTH, String.valueOf(session.getTotalSize()))
+                    .body(Map.of(
+                            "success", true,
+                            "uploadId", session.getUploadId(),
+                            "offset", 0L,
+                            "fileSize", session.getTotalSize(),
+                            "chunkSize", chunkedUploadService.getChunkSize()
+                    ));
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (Exception e) {
+            System.err.println("❌ Error creating upload session: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Lỗi khi tạo phiên upload: " + e.getMessage()
+            ));
+        }
+    }
+
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.HEAD)
+    @PreAuthorize("hasAnyRole('instructor', 'admin')")
+    public ResponseEntity<Void> getOffset(@PathVariable String uploadId,
+                                          @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            UploadSession session = chunkedUploadService.getSession(uploadId, userDetails.getUserId());
+            long offset = chunkedUploadService.getOffset(uploadId, userDetails.getUserId());
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(offset))
+                    .header(UPLOAD_LENGTH, String.valueOf(session.getTotalSize()))
+                    .header("Cache-Control", "no-store")
+                    .build();
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (IOException e) {
+            System.err.println("❌ Error reading offset for upload " + uploadId + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    @PreAuthorize("hasAnyRole('instructor', 'admin')")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId,
+                                       @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            UploadSession session = chunkedUploadService.getSession(uploadId, userDetails.getUserId());
+            // Cùng offset với HEAD (kích thước file trên đĩa), không dùng uploadedBytes trong DB có thể chậm hơn
+            long offset = chunkedUploadService.getOffset(uploadId, userDetails.getUserId());
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "no-store")
+                    .body(Map.of(
+                            "success", true,
+                            "uploadId", session.getUploadId(),
+                            "fileName", session.getFileName(),
+                            "offset", offset,
+                            "fileSize", session.getTotalSize()
+                    ));
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (IOException e) {
+            System.err.println("❌ Error reading offset for upload " + uploadId + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Lỗi khi đọc offset: " + e.getMessage()
+            ));
+        }
+    }
+
+    @PatchMapping("/{uploadId}")
+    @PreAuthorize("hasAnyRole('instructor', 'admin')")
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId,
+                                         @RequestHeader(UPLOAD_OFFSET) long offset,
+                                         HttpServletRequest request,
+                                         @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            long newOffset = chunkedUploadService.appendChunk(
+                    uploadId, userDetails.getUserId(), offset, request.getInputStream());
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                    .build();
+        } catch (ResponseStatusException e) {
+            if (e.getStatusCode().isSameCodeAs(HttpStatus.CONFLICT)) {
+                // Trả offset thật của server để client upload tiếp từ đó mà không cần HEAD thêm
+                try {
+                    long current = chunkedUploadService.getOffset(uploadId, userDetails.getUserId());
+                    return ResponseEntity.status(HttpStatus.CONFLICT)
+                            .header(UPLOAD_OFFSET, String.valueOf(current))
+                            .body(Map.of(
+                                    "success", false,
+                                    "message", e.getReason() != null ? e.getReason() : e.getMessage(),
+                                    "offset", current
+                            ));
+                } catch (IOException | ResponseStatusException ignored) {
+                    // Không đọc được offset → trả lỗi gốc
+                }
+            }
+            return error(e);
+        } catch (Exception e) {
+            System.err.println("❌ Error writing chunk for upload " + uploadId + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Lỗi khi ghi chunk: " + e.getMessage()
+            ));
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    @PreAuthorize("hasAnyRole('instructor', 'admin')")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId,
+                                         @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            chunkedUploadService.abort(uploadId, userDetails.getUserId());
+            return ResponseEntity.noContent().build();
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Lỗi khi hủy upload: " + e.getMessage()
+            ));
+        }
+    }
+
+    private ResponseEntity<?> error(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(Map.of(
+                "success", false,
+                "message", e.getReason() != null ? e.getReason() : e.getMessage()
+        ));
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 
@@ -74,6 +75,46 @@ public class ContentsRestController {
         }
     }
 
+    // ✅ Tạo content với file đã upload theo từng chunk (xem ChunkedUploadController)
+    @PostMapping("/chunked/{uploadId}")
+    @PreAuthorize("hasAnyRole('instructor', 'admin')")
+    public ResponseEntity<?> createContentFromUpload(@PathVariable String uploadId,
+                                                     @RequestParam("moduleId") int moduleId,
+                                                     @RequestParam("title") String title,
+                                                     @RequestParam("contentType") String contentType,
+                                                     @RequestParam("orderNumber") int orderNumber,
+                                                     @RequestParam("isPublished") boolean isPublished,
+                                                     @RequestParam(value = "description", required = false) String description,
+                                                     @RequestParam(value = "contentUrl", required = false) String contentUrl,
+                                                     @AuthenticationPrincipal CustomUserDetails userDetails) {
+        try {
+            if (!isAdmin(userDetails)) {
+                moduleService.ensureInstructorOwnsModule(moduleId, userDetails.getUsername());
+            }
+            
+            Content content = contentService.createContentFromUpload(
+                moduleId, title, contentType, description, contentUrl, orderNumber, isPublished,
+                uploadId, userDetails.getUserId()
+            );
+            
+            ContentResponseDTO dto = new ContentResponseDTO();
+            dto.setContentId(content.getId());
+            dto.setModuleId(content.getModule().getId());
+            dto.setTitle(content.getTitle());
+            dto.setType(content.getType());
+            dto.setContentUrl(content.getContentUrl());
+            dto.setFileName(content.getFileName());
+            dto.setOrderNumber(content.getOrderNumber());
+            dto.setPublished(content.isPublished());
+            
+            return ResponseEntity.ok(dto);
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body("Error: " + e.getReason());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     // ✅ Upload tài liệu cho module
     @PostMapping("/{moduleId}/documents")
     @PreAuthorize("hasAnyRole('instructor', 'admin')")
@@ -2,9 +2,12 @@ package org.example.lmsbackend.controller;
 
 import org.example.lmsbackend.model.Course;
 import org.example.lmsbackend.dto.CourseDTO;
+import org.example.lmsbackend.service.CourseCatalogService;
 import org.example.lmsbackend.service.CourseService;
 import org.example.lmsbackend.security.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -23,30 +26,38 @@ public class CourseRestController {
     @Autowired
     private org.example.lmsbackend.service.EnrollmentsService enrollmentsService;
 
-    // API mới: trả về tất cả khóa học kèm trạng thái đã đăng ký
+    @Autowired
+    private CourseCatalogService courseCatalogService;
+
+    // API mới: trả về các khóa học đã xuất bản kèm trạng thái đã đăng ký
+    // Không truyền limit → toàn bộ danh mục (dạng cũ); có limit → 1 trang keyset { items, nextCursor }
     @GetMapping("/all-with-status")
     @PreAuthorize("hasRole('student') or hasRole('admin') or hasRole('instructor')")
-    public ResponseEntity<List<Map<String, Object>>> getAllCoursesWithStatus(@RequestParam int userId) {
-        List<Course> allCourses = courseService.getCourses(null, null, null);
-        // Lấy danh sách ID khóa học đã đăng ký
-        List<org.example.lmsbackend.dto.EnrollmentsDTO> enrolled = enrollmentsService.getEnrolledCourses(userId);
-        List<Integer> enrolledCourseIds = new java.util.ArrayList<>();
-        for (org.example.lmsbackend.dto.EnrollmentsDTO dto : enrolled) {
-            enrolledCourseIds.add(dto.getCourseId());
+    public ResponseEntity<?> getAllCoursesWithStatus(
+            @RequestParam int userId,
+            @RequestParam(required = false) Integer afterId,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        CourseCatalogService.CatalogPage page = courseCatalogService.getPage(userId, afterId, limit);
+
+        // Dữ liệu riêng theo user → chỉ cho phép cache ở trình duyệt, luôn hỏi lại bằng ETag
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (ifNoneMatch != null && ifNoneMatch.contains(page.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(page.getEtag())
+                    .cacheControl(cacheControl)
+                    .build();
         }
 
-        List<Map<String, Object>> result = new java.util.ArrayList<>();
-        for (Course course : allCourses) {
-            Map<String, Object> item = new java.util.HashMap<>();
-            item.put("courseId", course.getCourseId());
-            item.put("title", course.getTitle());
-            item.put("description", course.getDescription());
-            item.put("price", course.getPrice());
-            item.put("thumbnailUrl", course.getThumbnailUrl());
-            item.put("enrolled", enrolledCourseIds.contains(course.getCourseId()));
-            result.add(item);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag(page.getEtag()).cacheControl(cacheControl);
+        if (limit == null) {
+            return ok.body(page.getItems());
         }
-        return ResponseEntity.ok(result);
+        Map<String, Object> body = new java.util.LinkedHashMap<>();
+        body.put("items", page.getItems());
+        body.put("nextCursor", page.getNextCursor());
+        body.put("hasMore", page.getNextCursor() != null);
+        return ok.body(body);
     }
 
     @Autowired
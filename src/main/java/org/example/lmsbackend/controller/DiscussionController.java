@@ -1,23 +1,23 @@
 package org.example.lmsbackend.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.example.lmsbackend.dto.DiscussionDTO;
 import org.example.lmsbackend.service.DiscussionService;
 import org.example.lmsbackend.service.CourseService;
 import org.example.lmsbackend.service.EnrollmentsService;
 import org.example.lmsbackend.security.CustomUserDetails;
+import org.example.lmsbackend.service.BlobStoreService;
+import org.example.lmsbackend.service.FileDownloadService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -32,42 +32,64 @@ public class DiscussionController {
     @Autowired
     private EnrollmentsService enrollmentsService;
 
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
 
+    // Không truyền limit → toàn bộ danh sách (dạng cũ); có limit → 1 trang keyset { items, nextCursor, hasMore }
     @GetMapping
     @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
-    public List<DiscussionDTO> getAllDiscussions(@RequestParam Integer courseId, @AuthenticationPrincipal CustomUserDetails userDetails) {
+    public ResponseEntity<?> getAllDiscussions(@RequestParam Integer courseId,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit,
+                                               @AuthenticationPrincipal CustomUserDetails userDetails) {
         // Chỉ trả về thảo luận của khóa học mà user có quyền
         if (userDetails.hasRole("instructor")) {
             if (!courseService.isInstructorOfCourse(userDetails.getUserId(), courseId)) {
-                return List.of();
+                return listingResponse(List.of(), limit);
             }
         }
         if (userDetails.hasRole("student")) {
             if (!enrollmentsService.isStudentEnrolled(userDetails.getUserId(), courseId)) {
-                return List.of();
+                return listingResponse(List.of(), limit);
             }
         }
         // Use new method that filters by user permissions
-        return discussionService.getDiscussionsForUser(courseId, userDetails.getUserId());
+        return listingResponse(discussionService.getDiscussionsForUser(courseId, userDetails.getUserId(), cursor, limit), limit);
     }
 
     @GetMapping("/course/{courseId}")
     @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
-    public List<DiscussionDTO> getDiscussionsByCourse(@PathVariable Integer courseId, @AuthenticationPrincipal CustomUserDetails userDetails) {
+    public ResponseEntity<?> getDiscussionsByCourse(@PathVariable Integer courseId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @AuthenticationPrincipal CustomUserDetails userDetails) {
         if (userDetails.hasRole("instructor")) {
             if (!courseService.isInstructorOfCourse(userDetails.getUserId(), courseId)) {
-                return List.of();
+                return listingResponse(List.of(), limit);
             }
         }
         if (userDetails.hasRole("student")) {
             if (!enrollmentsService.isStudentEnrolled(userDetails.getUserId(), courseId)) {
-                return List.of();
+                return listingResponse(List.of(), limit);
             }
         }
         // Use new method that filters by user permissions  
-        return discussionService.getDiscussionsForUser(courseId, userDetails.getUserId());
+        return listingResponse(discussionService.getDiscussionsForUser(courseId, userDetails.getUserId(), cursor, limit), limit);
+    }
+
+    private ResponseEntity<?> listingResponse(List<DiscussionDTO> discussions, Integer limit) {
+        if (limit == null) {
+            return ResponseEntity.ok(discussions);
+        }
+        String nextCursor = discussionService.nextDiscussionsCursor(discussions, limit);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", discussions);
+        body.put("nextCursor", nextCursor);
+        body.put("hasMore", nextCursor != null);
+        return ResponseEntity.ok(body);
     }
 
     @PostMapping
@@ -166,28 +188,16 @@ public class DiscussionController {
                 ));
             }
 
-            // Create directory structure: uploads/discussions/{courseId}/{userId}
-            String discussionDir = uploadDir + File.separator + "discussions" + File.separator + 
-                                 courseId + File.separator + userDetails.getUserId();
-            
-            Path uploadPath = Paths.get(discussionDir);
-            
-            // Create directories if they don't exist
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-                System.out.println("✅ Created directory: " + uploadPath.toAbsolutePath());
-            }
-
             // Generate unique filename to avoid conflicts
             String originalFilename = file.getOriginalFilename();
             String fileExtension = getFileExtension(originalFilename);
             String uniqueFilename = "discussion_" + UUID.randomUUID().toString() + fileExtension;
             
-            // Save file
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath);
+            // Save file: key discussions/{courseId}/{userId}/{file} trong kho lưu trữ
+            String key = "discussions/" + courseId + "/" + userDetails.getUserId() + "/" + uniqueFilename;
+            blobStoreService.store(file.getInputStream(), key, file.getContentType());
             
-            System.out.println("✅ File saved successfully to: " + filePath.toAbsolutePath());
+            System.out.println("✅ File saved successfully to: " + key);
 
             // Return file information
             String fileUrl = "/api/discussions/download/" + courseId + "/" + userDetails.getUserId() + "/" + uniqueFilename;
@@ -226,7 +236,9 @@ public class DiscussionController {
     public ResponseEntity<?> downloadDiscussionFile(@PathVariable Integer courseId,
                                                    @PathVariable Integer userId,
                                                    @PathVariable String filename,
-                                                   @AuthenticationPrincipal CustomUserDetails userDetails) {
+                                                   @AuthenticationPrincipal CustomUserDetails userDetails,
+                                                   HttpServletRequest request,
+                                                   HttpServletResponse response) {
         try {
             System.out.println("=== Download Discussion File Request ===");
             System.out.println("Course ID: " + courseId);
@@ -249,27 +261,13 @@ public class DiscussionController {
                 ));
             }
 
-            // Build file path
-            String discussionDir = uploadDir + File.separator + "discussions" + File.separator + 
-                                 courseId + File.separator + userId;
-            Path filePath = Paths.get(discussionDir, filename);
+            String key = "discussions/" + courseId + "/" + userId + "/" + filename;
 
-            // Check if file exists
-            if (!Files.exists(filePath)) {
+            // Range, ETag/Last-Modified, bộ nhớ cố định mỗi lượt tải; response được ghi trực tiếp
+            if (!fileDownloadService.download(key, filename, false, request, response)) {
                 return ResponseEntity.notFound().build();
             }
-
-            // Return file as byte array
-            byte[] fileContent = Files.readAllBytes(filePath);
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-
-            return ResponseEntity.ok()
-                    .header("Content-Type", contentType)
-                    .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
-                    .body(fileContent);
+            return null;
 
         } catch (IOException e) {
             System.err.println("❌ Error downloading file: " + e.getMessage());
@@ -1,13 +1,16 @@
 package org.example.lmsbackend.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.example.lmsbackend.dto.DiscussionReplyDTO;
 import org.example.lmsbackend.service.DiscussionReplyService;
 import org.example.lmsbackend.service.EnrollmentsService;
 import org.example.lmsbackend.service.DiscussionService;
 import org.example.lmsbackend.service.CourseService;
 import org.example.lmsbackend.security.CustomUserDetails;
+import org.example.lmsbackend.service.BlobStoreService;
+import org.example.lmsbackend.service.FileDownloadService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,11 +19,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -41,8 +40,11 @@ public class DiscussionReplyController {
     @Autowired
     private CourseService courseService;
 
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
 
     // Tạo reply mới
     @PostMapping
@@ -194,28 +196,19 @@ public class DiscussionReplyController {
                 ));
             }
 
-            // Create directory structure: uploads/discussions/{courseId}/{discussionId}/replies/
-            String dirPath = uploadDir + File.separator + "discussions" + File.separator + 
-                           courseId + File.separator + discussionId + File.separator + "replies";
-            
-            Path uploadPath = Paths.get(dirPath);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
             // Generate unique filename
             String originalFilename = file.getOriginalFilename();
             String fileExtension = getFileExtension(originalFilename);
             String uniqueFilename = "reply_" + UUID.randomUUID().toString() + fileExtension;
             
-            // Save file
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath);
+            // Save file: key discussions/{courseId}/{discussionId}/replies/{file} trong kho lưu trữ
+            String key = "discussions/" + courseId + "/" + discussionId + "/replies/" + uniqueFilename;
+            blobStoreService.store(file.getInputStream(), key, file.getContentType());
 
             // Create file URL
             String fileUrl = "/api/discussion-replies/download/" + courseId + "/" + discussionId + "/" + uniqueFilename;
 
-            System.out.println("File saved to: " + filePath.toString());
+            System.out.println("File saved to: " + key);
             System.out.println("File URL: " + fileUrl);
 
             return ResponseEntity.ok(Map.of(
@@ -250,7 +243,9 @@ public class DiscussionReplyController {
     public ResponseEntity<?> downloadReplyFile(@PathVariable Integer courseId,
                                              @PathVariable Integer discussionId,
                                              @PathVariable String filename,
-                                             @AuthenticationPrincipal CustomUserDetails userDetails) {
+                                             @AuthenticationPrincipal CustomUserDetails userDetails,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) {
         try {
             // Check user permission for the course
             if (userDetails.hasRole("instructor") && !courseService.isInstructorOfCourse(userDetails.getUserId(), courseId)) {
@@ -261,28 +256,13 @@ public class DiscussionReplyController {
                 return ResponseEntity.status(403).body("Bạn không có quyền truy cập file này");
             }
 
-            // Build file path
-            String filePath = uploadDir + File.separator + "discussions" + File.separator + 
-                            courseId + File.separator + discussionId + File.separator + "replies" + File.separator + filename;
-            
-            Path path = Paths.get(filePath);
-            
-            if (!Files.exists(path)) {
-                return ResponseEntity.notFound().build();
-            }
+            String key = "discussions/" + courseId + "/" + discussionId + "/replies/" + filename;
 
-            // Get file content and type
-            byte[] content = Files.readAllBytes(path);
-            String contentType = Files.probeContentType(path);
-            
-            if (contentType == null) {
-                contentType = "application/octet-stream";
+            // Range, ETag/Last-Modified, bộ nhớ cố định mỗi lượt tải; response được ghi trực tiếp
+            if (!fileDownloadService.download(key, filename, true, request, response)) {
+                return ResponseEntity.notFound().build();
             }
-
-            return ResponseEntity.ok()
-                    .header("Content-Type", contentType)
-                    .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                    .body(content);
+            return null;
 
         } catch (IOException e) {
             System.err.println("File download error: " + e.getMessage());
@@ -1,6 +1,7 @@
 package org.example.lmsbackend.controller;
 
 import org.example.lmsbackend.service.CourseService;
+import org.example.lmsbackend.dto.BulkEnrollmentRequest;
 import org.example.lmsbackend.dto.EnrollmentRequest;
 import org.example.lmsbackend.dto.EnrollmentsDTO;
 import org.example.lmsbackend.service.EnrollmentsService;
@@ -8,12 +9,24 @@ import org.example.lmsbackend.dto.UserDTO;
 import org.example.lmsbackend.security.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 @RestController
 @RequestMapping("/api/enrollments")
 public class EnrollmentsRestController {
@@ -115,5 +128,74 @@ public class EnrollmentsRestController {
         }
     }
 
+    // 👥 Ghi danh hàng loạt theo danh sách user id (JSON: {"userIds": [...]})
+    @PostMapping(value = "/course/{courseId}/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('admin', 'instructor')")
+    public ResponseEntity<?> bulkEnroll(@PathVariable int courseId,
+                                        @RequestBody BulkEnrollmentRequest request,
+                                        @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return runBulk(courseId, userDetails, request, null, true);
+    }
+
+    // 👥 Ghi danh hàng loạt từ file CSV (cột đầu là user id)
+    @PostMapping(value = "/course/{courseId}/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('admin', 'instructor')")
+    public ResponseEntity<?> bulkEnrollCsv(@PathVariable int courseId,
+                                           @RequestPart("file") MultipartFile file,
+                                           @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return runBulk(courseId, userDetails, null, file, true);
+    }
+
+    // 👥 Hủy ghi danh hàng loạt (JSON)
+    @PostMapping(value = "/course/{courseId}/bulk-unenroll", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('admin', 'instructor')")
+    public ResponseEntity<?> bulkUnenroll(@PathVariable int courseId,
+                                          @RequestBody BulkEnrollmentRequest request,
+                                          @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return runBulk(courseId, userDetails, request, null, false);
+    }
+
+    // 👥 Hủy ghi danh hàng loạt (CSV)
+    @PostMapping(value = "/course/{courseId}/bulk-unenroll", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('admin', 'instructor')")
+    public ResponseEntity<?> bulkUnenrollCsv(@PathVariable int courseId,
+                                             @RequestPart("file") MultipartFile file,
+                                             @AuthenticationPrincipal CustomUserDetails userDetails) {
+        return runBulk(courseId, userDetails, null, file, false);
+    }
+
+    private ResponseEntity<?> runBulk(int courseId, CustomUserDetails userDetails,
+                                      BulkEnrollmentRequest request, MultipartFile file, boolean enroll) {
+        // Instructor chỉ được thao tác trên khóa học của mình
+        if (userDetails.hasRole("instructor") && !courseService.isInstructorOfCourse(userDetails.getUserId(), courseId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Bạn không có quyền truy cập khóa học này"));
+        }
+        try {
+            List<String> invalidEntries = new ArrayList<>();
+            Collection<Integer> userIds;
+            if (file != null) {
+                if (file.isEmpty()) {
+                    return ResponseEntity.badRequest().body(Map.of("success", false, "message", "CSV file is required"));
+                }
+                try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                    userIds = enrollmentService.readUserIdsFromCsv(reader, invalidEntries);
+                }
+            } else {
+                userIds = request != null && request.getUserIds() != null ? request.getUserIds() : List.of();
+            }
+
+            Map<String, Object> result = enroll
+                    ? enrollmentService.bulkEnroll(courseId, userIds, invalidEntries)
+                    : enrollmentService.bulkUnenroll(courseId, userIds, invalidEntries);
+            return ResponseEntity.ok(result);
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of("success", false, "message", e.getReason()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid CSV: " + e.getMessage()));
+        }
+    }
+
 }
 
@@ -1,18 +1,18 @@
 package org.example.lmsbackend.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.example.lmsbackend.security.CustomUserDetails;
-import org.springframework.beans.factory.annotation.Value;
+import org.example.lmsbackend.service.BlobStoreService;
+import org.example.lmsbackend.service.FileDownloadService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Map;
 import java.util.UUID;
 
@@ -20,8 +20,11 @@ import java.util.UUID;
 @RequestMapping("/api/upload")
 public class FileUploadController {
 
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
 
     /**
      * Upload essay file for student submission
@@ -65,28 +68,16 @@ public class FileUploadController {
                 ));
             }
 
-            // Create directory structure: uploads/test/{courseId}/{userId}
-            String testDir = uploadDir + File.separator + "test" + File.separator + 
-                           courseId + File.separator + userDetails.getUserId();
-            
-            Path uploadPath = Paths.get(testDir);
-            
-            // Create directories if they don't exist
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-                System.out.println("✅ Created directory: " + uploadPath.toAbsolutePath());
-            }
-
             // Generate unique filename to avoid conflicts
             String originalFilename = file.getOriginalFilename();
             String fileExtension = getFileExtension(originalFilename);
             String uniqueFilename = "quiz_" + quizId + "_" + UUID.randomUUID().toString() + fileExtension;
             
-            // Save file
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath);
+            // Save file: key test/{courseId}/{userId}/{file} trong kho lưu trữ (stream, không nạp cả file vào RAM)
+            String key = "test/" + courseId + "/" + userDetails.getUserId() + "/" + uniqueFilename;
+            blobStoreService.store(file.getInputStream(), key, contentType);
             
-            System.out.println("✅ File saved successfully to: " + filePath.toAbsolutePath());
+            System.out.println("✅ File saved successfully to: " + key);
 
             // Return file information
             String fileUrl = "/api/upload/test/" + courseId + "/" + userDetails.getUserId() + "/" + uniqueFilename;
@@ -125,7 +116,9 @@ public class FileUploadController {
     public ResponseEntity<?> downloadEssayFile(@PathVariable Integer courseId,
                                              @PathVariable Integer userId,
                                              @PathVariable String filename,
-                                             @AuthenticationPrincipal CustomUserDetails userDetails) {
+                                             @AuthenticationPrincipal CustomUserDetails userDetails,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) {
         try {
             System.out.println("=== Download Essay File Request ===");
             System.out.println("Course ID: " + courseId);
@@ -144,30 +137,7 @@ public class FileUploadController {
                 ));
             }
 
-            // Build file path
-            String testDir = uploadDir + File.separator + "test" + File.separator + 
-                           courseId + File.separator + userId;
-            Path filePath = Paths.get(testDir, filename);
-
-            // Check if file exists
-            if (!Files.exists(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-
-            // Read file content
-            byte[] fileContent = Files.readAllBytes(filePath);
-            String contentType = Files.probeContentType(filePath);
-            
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-
-            System.out.println("✅ File found and ready for download: " + filePath.toAbsolutePath());
-
-            return ResponseEntity.ok()
-                .header("Content-Type", contentType)
-                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                .body(fileContent);
+            return serveFile("test/" + courseId + "/" + userId + "/" + filename, filename, request, response);
 
         } catch (IOException e) {
             System.err.println("❌ Error downloading file: " + e.getMessage());
@@ -204,35 +174,14 @@ public class FileUploadController {
      * Serve question files for download
      */
     @GetMapping("/questions/{filename}")
-    public ResponseEntity<?> downloadQuestionFile(@PathVariable String filename) {
+    public ResponseEntity<?> downloadQuestionFile(@PathVariable String filename,
+                                                  HttpServletRequest request,
+                                                  HttpServletResponse response) {
         try {
             System.out.println("=== Download Question File Request ===");
             System.out.println("Filename: " + filename);
 
-            // Build file path
-            String questionDir = uploadDir + File.separator + "questions";
-            Path filePath = Paths.get(questionDir, filename);
-
-            // Check if file exists
-            if (!Files.exists(filePath)) {
-                System.err.println("❌ File not found: " + filePath.toAbsolutePath());
-                return ResponseEntity.notFound().build();
-            }
-
-            // Read file content
-            byte[] fileContent = Files.readAllBytes(filePath);
-            String contentType = Files.probeContentType(filePath);
-            
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-
-            System.out.println("✅ Question file found and ready for download: " + filePath.toAbsolutePath());
-
-            return ResponseEntity.ok()
-                .header("Content-Type", contentType)
-                .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                .body(fileContent);
+            return serveFile("questions/" + filename, filename, request, response);
 
         } catch (IOException e) {
             System.err.println("❌ Error downloading question file: " + e.getMessage());
@@ -251,6 +200,18 @@ public class FileUploadController {
         }
     }
 
+    /**
+     * Tải file qua FileDownloadService (Range, ETag/Last-Modified, bộ nhớ cố định); response được ghi trực tiếp
+     */
+    private ResponseEntity<?> serveFile(String key, String filename,
+                                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!fileDownloadService.download(key, filename, true, request, response)) {
+            System.err.println("❌ File not found: " + key);
+            return ResponseEntity.notFound().build();
+        }
+        return null;
+    }
+
     /**
      * Get file extension from filename
      */
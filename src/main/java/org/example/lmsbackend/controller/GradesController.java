@@ -9,7 +9,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +29,8 @@ public class GradesController {
     @PreAuthorize("hasAnyRole('instructor', 'admin')")
     public ResponseEntity<?> getInstructorGrades(@PathVariable Integer courseId,
                                                 @RequestParam(defaultValue = "ALL") String type,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer limit,
                                                 @AuthenticationPrincipal CustomUserDetails userDetails) {
         try {
             System.out.println("=== Instructor Grades Request ===");
@@ -34,13 +38,20 @@ public class GradesController {
             System.out.println("Type: " + type);
             System.out.println("User ID: " + userDetails.getUserId());
 
-            List<GradeDTO> grades = gradesService.getInstructorGrades(courseId, type);
+            List<GradeDTO> grades = gradesService.getInstructorGrades(courseId, type, cursor, limit);
             
-            return ResponseEntity.ok(Map.of(
-                "success", true,
-                "grades", grades
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("grades", grades);
+            // Phân trang keyset: truyền lại nextCursor để lấy trang sau (null = hết)
+            response.put("nextCursor", gradesService.nextGradesCursor(grades, limit));
+            return ResponseEntity.ok(response);
+
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of(
+                "success", false,
+                "message", e.getReason() != null ? e.getReason() : e.getMessage()
             ));
-
         } catch (Exception e) {
             System.out.println("❌ Error getting instructor grades: " + e.getMessage());
             e.printStackTrace();
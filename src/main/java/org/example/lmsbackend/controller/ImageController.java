@@ -0,0 +1,105 @@
+package org.example.lmsbackend.controller;
+
+import org.example.lmsbackend.service.AssetPipelineService;
+import org.example.lmsbackend.service.BlobStoreService;
+import org.example.lmsbackend.service.ImageVariantService;
+import org.example.lmsbackend.storage.StoredObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    // Ảnh avatar/khóa học theo kích thước hiển thị: ?w=40 → bản 64px thay vì ảnh gốc vài MB
+    // folder = avatars | courses, filename = tên file trong avatarUrl/thumbnailUrl
+    @GetMapping("/{folder}/{filename}")
+    public ResponseEntity<Resource> getImage(@PathVariable String folder,
+                                             @PathVariable String filename,
+                                             @RequestParam(value = "w", required = false) Integer width,
+                                             WebRequest webRequest) throws IOException {
+        ImageVariantService.ResolvedImage resolved = imageVariantService.resolve(folder, filename, width);
+        String key = resolved.key();
+        String[] segments = key.split("/");
+        MediaType mediaType = MediaTypeFactory.getMediaType(segments[segments.length - 1])
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        // Đang tạm trả ảnh gốc vì biến thể chưa sinh xong → không cache vĩnh viễn, lần sau còn lấy được biến thể
+        boolean immutable = resolved.stable() && AssetPipelineService.isContentHashed(filename);
+
+        // Backend không có file cục bộ (S3) → chuyển hướng tới URL ký sẵn, ảnh đi thẳng từ kho
+        Optional<Path> file = blobStoreService.localFile(key);
+        if (file.isEmpty()) {
+            Optional<URL> url = blobStoreService.presignGet(key, null, false);
+            if (url.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found");
+            }
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(url.get().toString()))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+
+        if (immutable) {
+            // Ảnh gốc tên theo nội dung → mọi biến thể cũng không đổi; ETag = hash + thư mục biến thể (w64, w256...)
+            String etag = "\"" + filename.substring(0, 32) + "-" + segments[segments.length - 2] + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, AssetPipelineService.IMMUTABLE_CACHE_CONTROL)
+                    .contentType(mediaType)
+                    .body(new FileSystemResource(file.get()));
+        }
+
+        // Ảnh tên cũ có thể bị thay, hoặc ảnh gốc đang thay cho biến thể → trình duyệt hỏi lại bằng Last-Modified
+        Optional<StoredObject> stored = blobStoreService.stat(key);
+        if (stored.isPresent() && webRequest.checkNotModified(stored.get().lastModified().toEpochMilli())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .contentType(mediaType)
+                .body(new FileSystemResource(file.get()));
+    }
+
+    // Sinh biến thể cho ảnh đã upload trước đây (tiếp tục từ checkpoint nếu lần trước dừng giữa chừng)
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> backfill() {
+        if (!imageVariantService.startBackfill()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("success", false, "message", "Backfill already in progress"));
+        }
+        return ResponseEntity.accepted().body(Map.of("success", true, "message", "Backfill started"));
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(imageVariantService.getStats());
+    }
+}
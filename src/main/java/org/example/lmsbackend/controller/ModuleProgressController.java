@@ -1,7 +1,9 @@
 package org.example.lmsbackend.controller;
 
 import org.example.lmsbackend.model.ModuleProgress;
+import org.example.lmsbackend.service.CourseProgressService;
 import org.example.lmsbackend.service.ModuleProgressService;
+import org.example.lmsbackend.service.VideoProgressBufferService;
 import org.example.lmsbackend.security.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +22,12 @@ public class ModuleProgressController {
     @Autowired
     private ModuleProgressService moduleProgressService;
 
+    @Autowired
+    private CourseProgressService courseProgressService;
+
+    @Autowired
+    private VideoProgressBufferService videoProgressBufferService;
+
     @PostMapping("/content/{moduleId}")
     @PreAuthorize("hasAnyRole('student', 'instructor', 'admin')")
     public ResponseEntity<?> updateContentProgress(
@@ -135,6 +143,23 @@ public class ModuleProgressController {
         }
     }
 
+    // Tiến độ toàn khóa học theo từng module, tính bằng số query cố định
+    @GetMapping("/course/{courseId}/summary")
+    @PreAuthorize("hasAnyRole('student', 'instructor', 'admin')")
+    public ResponseEntity<?> getCourseProgressSummary(
+            @PathVariable Integer courseId,
+            @AuthenticationPrincipal CustomUserDetails userDetails) {
+        
+        try {
+            return ResponseEntity.ok(courseProgressService.getCourseProgressSummary(courseId, userDetails.getUserId()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error getting course progress summary: " + e.getMessage()
+            ));
+        }
+    }
+
     @GetMapping("/module/{moduleId}")
     @PreAuthorize("hasAnyRole('student', 'instructor', 'admin')")
     public ResponseEntity<?> getModuleProgress(
@@ -243,4 +268,11 @@ public class ModuleProgressController {
             ));
         }
     }
+
+    // Metrics của bộ đệm heartbeat video (độ sâu bộ đệm, thời gian flush)
+    @GetMapping("/video-progress/buffer-stats")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> getVideoProgressBufferStats() {
+        return ResponseEntity.ok(videoProgressBufferService.getStats());
+    }
 }
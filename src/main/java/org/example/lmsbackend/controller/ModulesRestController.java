@@ -6,16 +6,11 @@ import org.example.lmsbackend.dto.ModuleResponseDTO;
 import org.example.lmsbackend.dto.VideoDTO;
 import org.example.lmsbackend.model.Modules;
 import org.example.lmsbackend.model.Content;
-import org.example.lmsbackend.model.ModuleProgress;
-import org.example.lmsbackend.model.Quizzes;
 import org.example.lmsbackend.service.ContentService;
+import org.example.lmsbackend.service.CourseProgressService;
 import org.example.lmsbackend.service.ModulesService;
-import org.example.lmsbackend.service.ModuleProgressService;
 import org.example.lmsbackend.service.VideoService;
 import org.example.lmsbackend.service.QuizzesService;
-import org.example.lmsbackend.repository.ContentRepository;
-import org.example.lmsbackend.repository.VideoRepository;
-import org.example.lmsbackend.repository.QuizzesRepository;
 import org.example.lmsbackend.security.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -39,9 +34,6 @@ public class ModulesRestController {
     @Autowired
     private ContentService contentService;
 
-    @Autowired
-    private ModuleProgressService moduleProgressService;
-    
     @Autowired
     private VideoService videoService;
     
@@ -49,13 +41,7 @@ public class ModulesRestController {
     private QuizzesService quizzesService;
     
     @Autowired
-    private ContentRepository contentRepository;
-    
-    @Autowired
-    private VideoRepository videoRepository;
-    
-    @Autowired
-    private QuizzesRepository quizzesRepository;
+    private CourseProgressService courseProgressService;
 
     // ✅ Tạo module mới
     @PostMapping
@@ -311,224 +297,15 @@ public class ModulesRestController {
         return ResponseEntity.ok(response);
     }
 
-    // ✅ STUDENT API: Lấy danh sách module đã xuất bản theo courseId
+    // ✅ STUDENT API: Lấy danh sách module đã xuất bản theo courseId (kèm tiến độ nếu đã đăng nhập)
     @GetMapping("/course/{courseId}/published")
     @PreAuthorize("hasRole('student') or hasRole('instructor') or hasRole('admin')")
     public ResponseEntity<List<ModuleResponseDTO>> getPublishedModulesByCourse(@PathVariable int courseId) {
-        List<Modules> modules = moduleService.getPublishedModulesByCourseId(courseId);
-        List<ModuleResponseDTO> dtos = modules.stream().map(module -> {
-            ModuleResponseDTO dto = new ModuleResponseDTO();
-            dto.setModuleId(module.getId());
-            dto.setTitle(module.getTitle());
-            dto.setDescription(module.getDescription());
-            dto.setOrderNumber(module.getOrderNumber());
-            dto.setPublished(module.isPublished());
-            dto.setCourseId(module.getCourse().getCourseId());
-            dto.setCourseTitle(module.getCourse().getTitle());
-            
-            // Add progress information for authenticated users
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication != null && authentication.isAuthenticated() && !authentication.getName().equals("anonymousUser")) {
-                try {
-                    // Get userId from CustomUserDetails
-                    Object principal = authentication.getPrincipal();
-                    if (principal instanceof CustomUserDetails userDetails) {
-                        Integer userId = userDetails.getUserId();
-                        System.out.println("🔍 Getting progress for userId: " + userId + ", moduleId: " + module.getId());
-                        ModuleProgress progress = moduleProgressService.getModuleProgress(userId, module.getId());
-                        if (progress != null) {
-                            System.out.println("✅ Found progress: " + progress.getContentCompleted() + "/" + progress.getVideoCompleted() + "/" + progress.getTestCompleted());
-                            
-                            // Calculate completion percentage based on actual item counts
-                            int totalItems = 0;
-                            int completedItems = 0;
-                            
-                            // Count content items
-                            int totalContentItems = getTotalContentItems(module);
-                            int completedContentItems = getCompletedContentItems(module, userId);
-                            totalItems += totalContentItems;
-                            completedItems += completedContentItems;
-                            
-                            // Count video items  
-                            int totalVideoItems = getTotalVideoItems(module);
-                            int completedVideoItems = getCompletedVideoItems(module, userId);
-                            totalItems += totalVideoItems;
-                            completedItems += completedVideoItems;
-                            
-                            // Count quiz/test items
-                            int totalQuizItems = getTotalQuizItems(module);
-                            int completedQuizItems = getCompletedQuizItems(module, userId);
-                            totalItems += totalQuizItems;
-                            completedItems += completedQuizItems;
-                            
-                            // Set completion flags based on individual item completion
-                            dto.setContentCompleted(totalContentItems > 0 && completedContentItems == totalContentItems);
-                            dto.setVideoCompleted(totalVideoItems > 0 && completedVideoItems == totalVideoItems);
-                            dto.setTestCompleted(totalQuizItems > 0 && completedQuizItems == totalQuizItems);
-                            dto.setModuleCompleted(totalItems > 0 && completedItems == totalItems);
-                            
-                            // Calculate percentage based on actual completion ratio
-                            dto.setCompletionPercentage(totalItems > 0 ? (double) completedItems * 100.0 / totalItems : 0.0);
-                            
-                            System.out.println("📊 Module " + module.getId() + " progress: " + completedItems + "/" + totalItems + 
-                                " (" + String.format("%.1f", dto.getCompletionPercentage()) + "%)");
-                            System.out.println("📝 Details - Content: " + completedContentItems + "/" + totalContentItems + 
-                                ", Video: " + completedVideoItems + "/" + totalVideoItems + 
-                                ", Quiz: " + completedQuizItems + "/" + totalQuizItems);
-                            
-                            dto.setCompletionPercentage(totalItems > 0 ? (double) completedItems * 100.0 / totalItems : 0.0);
-                        } else {
-                            dto.setContentCompleted(false);
-                            dto.setVideoCompleted(false);
-                            dto.setTestCompleted(false);
-                            dto.setModuleCompleted(false);
-                            dto.setCompletionPercentage(0.0);
-                        }
-                    } else {
-                        dto.setContentCompleted(false);
-                        dto.setVideoCompleted(false);
-                        dto.setTestCompleted(false);
-                        dto.setModuleCompleted(false);
-                        dto.setCompletionPercentage(0.0);
-                    }
-                } catch (Exception e) {
-                    // If error getting progress, set defaults
-                    System.out.println("❌ Error getting progress for module " + module.getId() + ": " + e.getMessage());
-                    e.printStackTrace();
-                    dto.setContentCompleted(false);
-                    dto.setVideoCompleted(false);
-                    dto.setTestCompleted(false);
-                    dto.setModuleCompleted(false);
-                    dto.setCompletionPercentage(0.0);
-                }
-            } else {
-                dto.setContentCompleted(false);
-                dto.setVideoCompleted(false);
-                dto.setTestCompleted(false);
-                dto.setModuleCompleted(false);
-                dto.setCompletionPercentage(0.0);
-            }
-            
-            return dto;
-        }).toList();
-        
-        return ResponseEntity.ok(dtos);
-    }
-    
-    // Helper methods to check what content types a module has
-    private boolean hasContentItems(Modules module) {
-        try {
-            List<Content> contents = contentRepository.findByModuleIdAndPublishedTrueOrderByOrderNumber(module.getId());
-            return contents != null && !contents.isEmpty();
-        } catch (Exception e) {
-            return false;
-        }
-    }
-    
-    private boolean hasVideoItems(Modules module) {
-        try {
-            List<org.example.lmsbackend.model.Video> videos = videoRepository.findByModuleIdAndPublished(module.getId());
-            return videos != null && !videos.isEmpty();
-        } catch (Exception e) {
-            return false;
-        }
-    }
-    
-    private boolean hasQuizItems(Modules module) {
-        try {
-            List<Quizzes> quizzes = quizzesRepository.findByModuleIdAndPublishTrue(module.getId());
-            return quizzes != null && !quizzes.isEmpty();
-        } catch (Exception e) {
-            return false;
-        }
-    }
-    
-    // Methods to count total items in module
-    private int getTotalContentItems(Modules module) {
-        try {
-            List<Content> contents = contentRepository.findByModuleIdAndPublishedTrueOrderByOrderNumber(module.getId());
-            return contents != null ? contents.size() : 0;
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-    
-    private int getTotalVideoItems(Modules module) {
-        try {
-            List<org.example.lmsbackend.model.Video> videos = videoRepository.findByModuleIdAndPublished(module.getId());
-            return videos != null ? videos.size() : 0;
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-    
-    private int getTotalQuizItems(Modules module) {
-        try {
-            List<Quizzes> quizzes = quizzesRepository.findByModuleIdAndPublishTrue(module.getId());
-            return quizzes != null ? quizzes.size() : 0;
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-    
-    // Methods to count completed items for a user
-    private int getCompletedContentItems(Modules module, Integer userId) {
-        try {
-            List<Content> allContents = contentRepository.findByModuleIdAndPublishedTrueOrderByOrderNumber(module.getId());
-            if (allContents == null || allContents.isEmpty()) return 0;
-            
-            int completedCount = 0;
-            for (Content content : allContents) {
-                // Check if user has completed this specific content
-                boolean isCompleted = moduleProgressService.hasCompletedSpecificContent(userId, content.getId());
-                if (isCompleted) {
-                    completedCount++;
-                }
-            }
-            return completedCount;
-        } catch (Exception e) {
-            System.err.println("❌ Error counting completed content items: " + e.getMessage());
-            return 0;
-        }
-    }
-    
-    private int getCompletedVideoItems(Modules module, Integer userId) {
-        try {
-            List<org.example.lmsbackend.model.Video> allVideos = videoRepository.findByModuleIdAndPublished(module.getId());
-            if (allVideos == null || allVideos.isEmpty()) return 0;
-            
-            int completedCount = 0;
-            for (org.example.lmsbackend.model.Video video : allVideos) {
-                // Check if user has completed this specific video
-                boolean isCompleted = moduleProgressService.hasCompletedSpecificVideo(userId, video.getVideoId().intValue());
-                if (isCompleted) {
-                    completedCount++;
-                }
-            }
-            return completedCount;
-        } catch (Exception e) {
-            System.err.println("❌ Error counting completed video items: " + e.getMessage());
-            return 0;
-        }
-    }
-    
-    private int getCompletedQuizItems(Modules module, Integer userId) {
-        try {
-            List<Quizzes> allQuizzes = quizzesRepository.findByModuleIdAndPublishTrue(module.getId());
-            if (allQuizzes == null || allQuizzes.isEmpty()) return 0;
-            
-            int completedCount = 0;
-            for (Quizzes quiz : allQuizzes) {
-                // Check if user has completed this specific quiz
-                boolean isCompleted = moduleProgressService.hasCompletedSpecificQuiz(userId, quiz.getQuizId());
-                if (isCompleted) {
-                    completedCount++;
-                }
-            }
-            return completedCount;
-        } catch (Exception e) {
-            System.err.println("❌ Error counting completed quiz items: " + e.getMessage());
-            return 0;
+        Integer userId = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            userId = userDetails.getUserId();
         }
+        return ResponseEntity.ok(courseProgressService.getPublishedModulesWithProgress(courseId, userId));
     }
 }
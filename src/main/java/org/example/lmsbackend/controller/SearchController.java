@@ -0,0 +1,96 @@
+package org.example.lmsbackend.controller;
+
+import org.example.lmsbackend.security.CustomUserDetails;
+import org.example.lmsbackend.service.SearchIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    // Tìm kiếm có xếp hạng: type = course | video | module | content | user (user chỉ dành cho admin)
+    @GetMapping
+    @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(required = false) String type,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size,
+                                    @AuthenticationPrincipal CustomUserDetails userDetails) {
+        SearchIndexService.DocType docType;
+        try {
+            docType = parseType(type);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid type: " + type));
+        }
+
+        boolean isAdmin = userDetails.hasRole("admin");
+        if (docType == SearchIndexService.DocType.USER && !isAdmin) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("success", false, "message", "Access denied"));
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(searchIndexService.search(query, docType,
+                isAdmin || userDetails.hasRole("instructor"), isAdmin, Math.max(0, page), pageSize));
+    }
+
+    // Gợi ý theo tiền tố khi đang gõ
+    @GetMapping("/autocomplete")
+    @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
+    public ResponseEntity<?> autocomplete(@RequestParam("q") String prefix,
+                                          @RequestParam(required = false) String type,
+                                          @RequestParam(defaultValue = "10") int limit,
+                                          @AuthenticationPrincipal CustomUserDetails userDetails) {
+        SearchIndexService.DocType docType;
+        try {
+            docType = parseType(type);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid type: " + type));
+        }
+
+        boolean isAdmin = userDetails.hasRole("admin");
+        if (docType == SearchIndexService.DocType.USER && !isAdmin) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("success", false, "message", "Access denied"));
+        }
+
+        return ResponseEntity.ok(searchIndexService.autocomplete(prefix, docType,
+                isAdmin || userDetails.hasRole("instructor"), isAdmin, Math.max(1, Math.min(limit, MAX_SUGGESTIONS))));
+    }
+
+    // Dựng lại toàn bộ chỉ mục từ DB (chạy background)
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> rebuild() {
+        if (!searchIndexService.requestRebuild()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("success", false, "message", "Rebuild already in progress"));
+        }
+        return ResponseEntity.accepted().body(Map.of("success", true, "message", "Rebuild started"));
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(searchIndexService.getStats());
+    }
+
+    private static SearchIndexService.DocType parseType(String type) {
+        if (type == null || type.isBlank()) {
+            return null;
+        }
+        return SearchIndexService.DocType.valueOf(type.trim().toUpperCase(Locale.ROOT));
+    }
+}
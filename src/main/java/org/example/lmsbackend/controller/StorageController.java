@@ -0,0 +1,24 @@
+package org.example.lmsbackend.controller;
+
+import org.example.lmsbackend.service.BlobStoreService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/storage")
+public class StorageController {
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    // Số blob, số đường dẫn trỏ tới và dung lượng tiết kiệm được nhờ khử trùng lặp
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> getStats() {
+        return ResponseEntity.ok(blobStoreService.getStats());
+    }
+}
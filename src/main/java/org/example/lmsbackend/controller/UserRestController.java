@@ -3,18 +3,25 @@ package org.example.lmsbackend.controller;
 import org.example.lmsbackend.model.User;
 import org.example.lmsbackend.dto.UserDTO;
 import org.example.lmsbackend.service.FileStorageService;
+import org.example.lmsbackend.service.UserImportService;
 import org.example.lmsbackend.service.UserService;
 import org.example.lmsbackend.utils.JwtTokenUtil;
 import org.example.lmsbackend.repository.UserMapper;
+import org.example.lmsbackend.security.LoginRejectedException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,11 +41,14 @@ public class UserRestController {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private UserImportService userImportService;
+
         // ✅ API đăng nhập
         @PostMapping("/login")
-        public ResponseEntity<?> login(@RequestBody UserDTO userDTO) {
+        public ResponseEntity<?> login(@RequestBody UserDTO userDTO, HttpServletRequest request) {
             try {
-                boolean success = userService.login(userDTO);
+                boolean success = userService.login(userDTO, request.getRemoteAddr());
                 if (!success) {
                     return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Tên đăng nhập hoặc mật khẩu không đúng"));
                 }
@@ -50,11 +60,25 @@ public class UserRestController {
                         "message", "Đăng nhập thành công",
                         "token", token
                 ));
+            } catch (LoginRejectedException e) {
+                // 429 (throttle) hoặc 503 (hàng đợi băm quá tải) kèm Retry-After
+                return ResponseEntity.status(e.getStatusCode())
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                        .body(Map.of("message", e.getReason()));
             } catch (RuntimeException e) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", e.getMessage()));
             }
         }
 
+        // Metrics đăng nhập: độ trễ băm BCrypt, thời gian chờ hàng đợi, số lần bị throttle, cache JWT
+        @GetMapping("/auth-stats")
+        @PreAuthorize("hasRole('admin')")
+        public ResponseEntity<?> getAuthStats() {
+            Map<String, Object> stats = new HashMap<>(userService.getLoginStats());
+            stats.put("jwtClaimsCache", jwtTokenUtil.getClaimsCacheStats());
+            return ResponseEntity.ok(stats);
+        }
+
         // ✅ API đăng ký
         @PostMapping(value = "/register", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
         public ResponseEntity<?> register(
@@ -155,6 +179,50 @@ public class UserRestController {
     }
 
 
+    // 📥 Import hàng loạt người dùng từ CSV (chạy nền, trả về jobId để theo dõi tiến độ)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> importUsers(@RequestPart("file") MultipartFile file) {
+        try {
+            UserImportService.ImportJob job = userImportService.startImport(file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toMap());
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of("message", e.getReason()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "Import failed: " + e.getMessage()));
+        }
+    }
+
+    // 📊 Tiến độ import + tối đa 100 lỗi đầu tiên
+    @GetMapping("/import/{jobId}")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> getImportStatus(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(userImportService.getJob(jobId).toMap());
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of("message", e.getReason()));
+        }
+    }
+
+    // 📄 Báo cáo lỗi đầy đủ theo từng dòng (CSV)
+    @GetMapping("/import/{jobId}/errors")
+    @PreAuthorize("hasRole('admin')")
+    public ResponseEntity<?> getImportErrors(@PathVariable String jobId) {
+        try {
+            Path report = userImportService.getErrorReport(jobId);
+            if (report == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Error report not available yet"));
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"import-" + jobId + "-errors.csv\"")
+                    .body(new FileSystemResource(report));
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of("message", e.getReason()));
+        }
+    }
+
     // ✅ API xóa người dùng
         @DeleteMapping("/delete/{id}")
         @PreAuthorize("hasRole('admin')")
@@ -1,19 +1,22 @@
 package org.example.lmsbackend.controller;
 
 import org.example.lmsbackend.dto.VideoDTO;
+import org.example.lmsbackend.service.HlsPackagingService;
 import org.example.lmsbackend.service.VideoService;
 import org.example.lmsbackend.service.CourseService;
 import org.example.lmsbackend.service.EnrollmentsService;
 import org.example.lmsbackend.security.CustomUserDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +31,8 @@ public class VideoController {
     private CourseService courseService;
     @Autowired
     private EnrollmentsService enrollmentsService;
+    @Autowired
+    private HlsPackagingService hlsPackagingService;
 
     // Lấy danh sách video theo khóa học - có phân quyền
     @GetMapping("/course/{courseId}")
@@ -77,11 +82,44 @@ public class VideoController {
         return ResponseEntity.ok(videoDTO);
     }
 
-    // Stream video - có phân quyền xem
+    // Hoàn tất upload video theo từng chunk (xem ChunkedUploadController)
+    @PostMapping("/upload/chunked/{uploadId}")
+    @PreAuthorize("hasRole('instructor')")
+    public ResponseEntity<?> completeChunkedUpload(@PathVariable String uploadId,
+                                                   @RequestParam("title") String title,
+                                                   @RequestParam("description") String description,
+                                                   @RequestParam("courseId") Integer courseId,
+                                                   @RequestParam("moduleId") Integer moduleId,
+                                                   @RequestParam(value = "published", defaultValue = "false") Boolean published,
+                                                   @AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (!courseService.isInstructorOfCourse(userDetails.getUserId(), courseId)) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        try {
+            VideoDTO videoDTO = videoService.uploadVideoFromChunks(uploadId, title, description, courseId, moduleId, published, userDetails.getUserId());
+            return ResponseEntity.ok(videoDTO);
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of(
+                "success", false,
+                "message", e.getReason() != null ? e.getReason() : e.getMessage()
+            ));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Error: " + e.getMessage()
+            ));
+        }
+    }
+
+    // Stream video - có phân quyền xem, hỗ trợ Range (206) để tua video
     @GetMapping("/stream/{videoId}")
     @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
-    public ResponseEntity<Resource> streamVideo(@PathVariable Long videoId,
-                                              @AuthenticationPrincipal CustomUserDetails userDetails) {
+    public void streamVideo(@PathVariable Long videoId,
+                            @AuthenticationPrincipal CustomUserDetails userDetails,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
         System.out.println("🎥 Stream request: videoId=" + videoId + ", userId=" + userDetails.getUserId() + ", role=" + userDetails.getAuthorities());
         
         // Admin có quyền xem tất cả video
@@ -91,21 +129,18 @@ public class VideoController {
         // Kiểm tra quyền xem video cho instructor và student
         else if (userDetails.hasRole("instructor") && !videoService.isInstructorOfVideo(videoId, userDetails.getUserId())) {
             System.out.println("❌ Instructor access denied for video " + videoId);
-            return ResponseEntity.status(403).build();
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
         }
         else if (userDetails.hasRole("student") && !videoService.canStudentAccessVideo(videoId, userDetails.getUserId())) {
             System.out.println("❌ Student access denied for video " + videoId);
-            return ResponseEntity.status(403).build();
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
         }
         
-        Resource videoResource = videoService.getVideoResource(videoId);
-        if (videoResource == null) {
-            return ResponseEntity.notFound().build();
+        if (!videoService.streamVideo(videoId, request, response)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         }
-        
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(videoResource);
     }
 
     // Xem chi tiết video - có phân quyền
@@ -133,6 +168,63 @@ public class VideoController {
         return ResponseEntity.ok(video);
     }
 
+    // HLS master playlist - trỏ tới thư mục đóng gói hiện tại nên không cache lâu
+    @GetMapping("/{videoId}/hls/master.m3u8")
+    @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
+    public void getHlsMasterPlaylist(@PathVariable Long videoId,
+                                     @AuthenticationPrincipal CustomUserDetails userDetails,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        serveHlsFile(videoId, userDetails, request, response, "no-cache", "master.m3u8");
+    }
+
+    // HLS variant playlist + segment - URL chứa token đóng gói nên nội dung không bao giờ đổi
+    @GetMapping("/{videoId}/hls/{token}/{rendition}/{fileName}")
+    @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
+    public void getHlsFile(@PathVariable Long videoId,
+                           @PathVariable String token,
+                           @PathVariable String rendition,
+                           @PathVariable String fileName,
+                           @AuthenticationPrincipal CustomUserDetails userDetails,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        serveHlsFile(videoId, userDetails, request, response, "private, max-age=31536000, immutable",
+                token, rendition, fileName);
+    }
+
+    private void serveHlsFile(Long videoId, CustomUserDetails userDetails,
+                              HttpServletRequest request, HttpServletResponse response,
+                              String cacheControl, String... pathSegments) throws IOException {
+        if (userDetails.hasRole("instructor") && !videoService.isInstructorOfVideo(videoId, userDetails.getUserId())) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        else if (userDetails.hasRole("student") && !videoService.canStudentAccessVideo(videoId, userDetails.getUserId())) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        if (!hlsPackagingService.serve(videoId, cacheControl, request, response, pathSegments)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    // Trạng thái xử lý sau upload (processing / ready / failed) - frontend polling
+    @GetMapping("/{videoId}/status")
+    @PreAuthorize("hasAnyRole('admin', 'instructor', 'student')")
+    public ResponseEntity<Map<String, Object>> getVideoStatus(@PathVariable Long videoId,
+                                                              @AuthenticationPrincipal CustomUserDetails userDetails) {
+        if (userDetails.hasRole("instructor") && !videoService.isInstructorOfVideo(videoId, userDetails.getUserId())) {
+            return ResponseEntity.status(403).build();
+        }
+        else if (userDetails.hasRole("student") && !videoService.canStudentAccessVideo(videoId, userDetails.getUserId())) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        Map<String, Object> status = videoService.getVideoStatus(videoId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
     // Xóa video - chỉ instructor của video
     @DeleteMapping("/{videoId}")
     @PreAuthorize("hasRole('instructor')")
@@ -0,0 +1,17 @@
+package org.example.lmsbackend.dto;
+
+import java.util.List;
+
+public class BulkEnrollmentRequest {
+    private List<Integer> userIds;
+
+    public BulkEnrollmentRequest() {}
+
+    public List<Integer> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<Integer> userIds) {
+        this.userIds = userIds;
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.lmsbackend.dto;
+
+import lombok.Data;
+
+@Data
+public class ChunkedUploadInitDTO {
+    private String fileName;
+    private Long fileSize;
+    private String contentType;
+}
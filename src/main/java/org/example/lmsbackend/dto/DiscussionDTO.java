@@ -1,5 +1,8 @@
 package org.example.lmsbackend.dto;
 
+import org.example.lmsbackend.model.Discussion;
+import org.example.lmsbackend.model.User;
+
 import java.time.Instant;
 import java.util.List;
 
@@ -18,6 +21,35 @@ public class DiscussionDTO {
     private String attachmentUrl; // File attachment URL
     private String attachmentName; // Original file name
     private Instant createdAt;
+    private Long replyCount;
+
+    public DiscussionDTO() {}
+
+    /**
+     * Dùng cho query projection của DiscussionRepository (JPQL "SELECT new ..."),
+     * tên người đăng/người nhận và số reply lấy luôn trong cùng câu lệnh
+     */
+    public DiscussionDTO(Integer id, Integer courseId, Integer userId, String userFullName, String username,
+                         User.Role userRole, String title, String content, Discussion.DiscussionType type,
+                         Integer targetUserId, String targetFullName, String targetUsername,
+                         String attachmentUrl, String attachmentName, Instant createdAt, Long replyCount) {
+        this.id = id;
+        this.courseId = courseId;
+        this.userId = userId;
+        this.userName = userFullName != null ? userFullName : username;
+        this.userRole = userRole != null ? userRole.toString() : null;
+        this.title = title;
+        this.content = content;
+        this.type = type != null ? type.toString() : null;
+        this.targetUserId = targetUserId;
+        if (targetUserId != null) {
+            this.targetUserName = targetFullName != null ? targetFullName : targetUsername;
+        }
+        this.attachmentUrl = attachmentUrl;
+        this.attachmentName = attachmentName;
+        this.createdAt = createdAt;
+        this.replyCount = replyCount;
+    }
 
     // Getters and setters
     public Integer getId() { return id; }
@@ -61,4 +93,7 @@ public class DiscussionDTO {
     
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Long getReplyCount() { return replyCount; }
+    public void setReplyCount(Long replyCount) { this.replyCount = replyCount; }
 }
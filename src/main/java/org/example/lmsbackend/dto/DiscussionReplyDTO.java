@@ -1,5 +1,7 @@
 package org.example.lmsbackend.dto;
 
+import org.example.lmsbackend.model.User;
+
 import java.time.Instant;
 
 public class DiscussionReplyDTO {
@@ -25,6 +27,23 @@ public class DiscussionReplyDTO {
         this.createdAt = Instant.now();
     }
 
+    // Projection của DiscussionReplyRepository.findReplyViews: thông tin người trả lời join sẵn
+    public DiscussionReplyDTO(Integer replyId, Integer discussionId, Integer userId, String userName,
+                              User.Role userRole, String userAvatar, String content, Integer parentReplyId,
+                              String attachmentUrl, String attachmentName, Instant createdAt) {
+        this.replyId = replyId;
+        this.discussionId = discussionId;
+        this.userId = userId;
+        this.userName = userName;
+        this.userRole = userRole != null ? userRole.toString() : null;
+        this.userAvatar = userAvatar;
+        this.content = content;
+        this.parentReplyId = parentReplyId;
+        this.attachmentUrl = attachmentUrl;
+        this.attachmentName = attachmentName;
+        this.createdAt = createdAt;
+    }
+
     // Getters and Setters
     public Integer getReplyId() {
         return replyId;
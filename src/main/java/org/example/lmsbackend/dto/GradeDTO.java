@@ -24,6 +24,8 @@ public class GradeDTO {
     private Boolean isGraded;
     private String feedback;
     private Integer userAnswerId; // For loading essay details
+    private Integer gradedCount;   // Số câu trả lời đã chấm
+    private Integer ungradedCount; // Số câu trả lời chưa chấm
     
     // Constructors
     public GradeDTO() {}
@@ -180,4 +182,20 @@ public class GradeDTO {
     public void setUserAnswerId(Integer userAnswerId) {
         this.userAnswerId = userAnswerId;
     }
+    
+    public Integer getGradedCount() {
+        return gradedCount;
+    }
+    
+    public void setGradedCount(Integer gradedCount) {
+        this.gradedCount = gradedCount;
+    }
+    
+    public Integer getUngradedCount() {
+        return ungradedCount;
+    }
+    
+    public void setUngradedCount(Integer ungradedCount) {
+        this.ungradedCount = ungradedCount;
+    }
 }
@@ -0,0 +1,63 @@
+package org.example.lmsbackend.dto;
+
+/**
+ * 1 dòng dữ liệu dùng để đưa vào chỉ mục tìm kiếm (khóa học, video, module, nội dung, người dùng).
+ */
+public class SearchDocumentDTO {
+    private Integer id;
+    private String title;
+    private String body;
+    private Integer courseId;
+    private Integer moduleId;
+    private Boolean published;
+
+    public SearchDocumentDTO() {}
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Integer getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(Integer courseId) {
+        this.courseId = courseId;
+    }
+
+    public Integer getModuleId() {
+        return moduleId;
+    }
+
+    public void setModuleId(Integer moduleId) {
+        this.moduleId = moduleId;
+    }
+
+    public Boolean getPublished() {
+        return published;
+    }
+
+    public void setPublished(Boolean published) {
+        this.published = published;
+    }
+}
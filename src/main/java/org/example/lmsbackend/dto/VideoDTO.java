@@ -20,6 +20,9 @@ public class VideoDTO {
     private Integer moduleId;
     private Integer orderNumber;
     private Boolean published;
+    private String status;
+    private String thumbnailUrl;
+    private String hlsUrl;
 
     // Constructors
     public VideoDTO() {}
@@ -161,4 +164,28 @@ public class VideoDTO {
     public void setPublished(Boolean published) {
         this.published = published;
     }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public String getHlsUrl() {
+        return hlsUrl;
+    }
+
+    public void setHlsUrl(String hlsUrl) {
+        this.hlsUrl = hlsUrl;
+    }
 }
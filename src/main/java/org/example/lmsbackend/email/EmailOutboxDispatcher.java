@@ -0,0 +1,149 @@
+package org.example.lmsbackend.email;
+
+import org.example.lmsbackend.model.EmailOutbox;
+import org.example.lmsbackend.repository.EmailOutboxMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gửi email trong bảng email_outbox ở background.
+ * Mỗi lô gửi qua 1 kết nối SMTP (JavaMailSender.send(varargs) mở transport 1 lần cho cả lô).
+ * Lỗi → retry với backoff lũy thừa; quá số lần cho phép → DEAD (dead-letter, đã xóa nội dung) để kiểm tra thủ công.
+ * Mỗi lô được nhận bằng lease (claim token + next_attempt_at) nên nhiều node chạy cùng lúc không gửi trùng.
+ */
+@Component
+public class EmailOutboxDispatcher {
+
+    @Autowired
+    private EmailOutboxMapper emailOutboxMapper;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Value("${spring.mail.username}")
+    private String from;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.backoff-base-seconds:30}")
+    private long backoffBaseSeconds;
+
+    @Value("${app.mail.outbox.backoff-max-seconds:3600}")
+    private long backoffMaxSeconds;
+
+    @Value("${app.mail.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${app.mail.outbox.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${app.mail.outbox.dead-retention-days:30}")
+    private int deadRetentionDays;
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:5000}")
+    public void dispatch() {
+        String token = UUID.randomUUID().toString();
+        List<EmailOutbox> batch;
+        try {
+            if (emailOutboxMapper.claimDue(token, batchSize, leaseSeconds) == 0) {
+                return;
+            }
+            batch = emailOutboxMapper.findClaimed(token);
+        } catch (Exception e) {
+            System.err.println("❌ Could not read email outbox: " + e.getMessage());
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<SimpleMailMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        List<SimpleMailMessage> messages = new ArrayList<>(batch.size());
+        for (EmailOutbox email : batch) {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(from);
+            message.setTo(email.getRecipient());
+            message.setSubject(email.getSubject());
+            message.setText(email.getBody());
+            messages.add(message);
+            byMessage.put(message, email);
+        }
+
+        Map<EmailOutbox, String> failures = new IdentityHashMap<>();
+        try {
+            mailSender.send(messages.toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            // Chỉ một số email lỗi; nếu không rõ email nào (lỗi kết nối) thì coi cả lô lỗi
+            if (e.getFailedMessages().isEmpty()) {
+                batch.forEach(email -> failures.put(email, e.getMessage()));
+            } else {
+                e.getFailedMessages().forEach((message, error) -> {
+                    EmailOutbox email = byMessage.get(message);
+                    if (email != null) {
+                        failures.put(email, error.getMessage());
+                    }
+                });
+            }
+        } catch (MailException e) {
+            batch.forEach(email -> failures.put(email, e.getMessage()));
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        for (EmailOutbox email : batch) {
+            if (failures.containsKey(email)) {
+                handleFailure(email, token, failures.get(email));
+            } else {
+                sentIds.add(email.getId());
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            emailOutboxMapper.markSent(sentIds, token);
+        }
+
+        System.out.println("📧 Email outbox: " + sentIds.size() + " sent, " + failures.size() + " failed");
+    }
+
+    // Dọn các email đã gửi / dead letter quá thời gian lưu
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeSent() {
+        int deleted = emailOutboxMapper.deleteSentBefore(LocalDateTime.now().minusDays(retentionDays));
+        emailOutboxMapper.redactDead();
+        int dead = emailOutboxMapper.deleteDeadBefore(LocalDateTime.now().minusDays(deadRetentionDays));
+        if (deleted > 0 || dead > 0) {
+            System.out.println("🧹 Purged " + deleted + " sent and " + dead + " dead emails from outbox");
+        }
+    }
+
+    private void handleFailure(EmailOutbox email, String token, String error) {
+        int attempts = (email.getAttempts() != null ? email.getAttempts() : 0) + 1;
+        String lastError = error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+
+        if (attempts >= maxAttempts) {
+            emailOutboxMapper.markDead(email.getId(), token, attempts, lastError);
+            System.err.println("☠️ Email " + email.getId() + " to " + email.getRecipient()
+                    + " moved to dead letter after " + attempts + " attempts: " + lastError);
+            return;
+        }
+
+        // 30s, 60s, 120s, ... tối đa backoffMaxSeconds
+        long delaySeconds = Math.min(backoffMaxSeconds, backoffBaseSeconds << Math.min(attempts - 1, 20));
+        emailOutboxMapper.scheduleRetry(email.getId(), token, attempts, LocalDateTime.now().plusSeconds(delaySeconds), lastError);
+    }
+}
@@ -1,31 +1,48 @@
 package org.example.lmsbackend.email;
 
+import org.example.lmsbackend.model.EmailOutbox;
+import org.example.lmsbackend.repository.EmailOutboxMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+/**
+ * Không gửi SMTP trực tiếp trên thread của request: email được ghi vào bảng email_outbox
+ * (cùng transaction với nghiệp vụ gọi nó) và EmailOutboxDispatcher gửi theo lô ở background.
+ */
 @Service
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutboxMapper emailOutboxMapper;
 
-    @Value("${spring.mail.username}")
-    private String from;
-
-    public void sendAccountInfo(String toEmail, String username, String rawPassword) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(from);
-        message.setTo(toEmail);
-        message.setSubject("Thông tin tài khoản đăng ký thành công");
-        message.setText("Xin chào " + username + ",\n\n"
+    // Không gửi mật khẩu: nội dung email nằm trong email_outbox (và log SMTP) ở dạng văn bản thường
+    public void sendAccountInfo(String toEmail, String username) {
+        enqueue(toEmail, "Thông tin tài khoản đăng ký thành công",
+                "Xin chào " + username + ",\n\n"
                 + "Bạn đã đăng ký tài khoản thành công.\n"
                 + "Tài khoản: " + toEmail + "\n"
-                + "Mật khẩu: " + rawPassword + "\n\n"
+                + "Mật khẩu: mật khẩu bạn đã đặt khi đăng ký hoặc do quản trị viên cung cấp trực tiếp.\n\n"
                 + "Vui lòng đổi mật khẩu ngay sau lần đăng nhập đầu tiên.\n\n"
                 + "Trân trọng.");
-        mailSender.send(message);
+    }
+
+    public void sendRegistrationConfirmation(String toEmail, String username, String fullName) {
+        enqueue(toEmail, "Đăng ký tài khoản thành công",
+                "Xin chào " + (fullName != null && !fullName.isBlank() ? fullName : username) + ",\n\n"
+                + "Bạn đã đăng ký tài khoản thành công.\n"
+                + "Tên đăng nhập: " + username + "\n\n"
+                + "Trân trọng.");
+    }
+
+    /**
+     * Ghi email vào outbox; nếu transaction của nghiệp vụ rollback thì email cũng không được gửi.
+     * Nội dung được lưu nguyên văn trong DB tới khi gửi xong, không đưa mật khẩu/token bí mật vào đây.
+     */
+    public void enqueue(String toEmail, String subject, String text) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(toEmail);
+        email.setSubject(subject);
+        email.setBody(text);
+        emailOutboxMapper.insert(email);
     }
 }
@@ -0,0 +1,45 @@
+package org.example.lmsbackend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Bảng trung gian: đường dẫn cũ dưới uploads/ (vd "videos/{uuid}_a.mp4") → blob chứa nội dung
+@Entity
+@Table(name = "blob_refs", indexes = @Index(name = "idx_blob_refs_sha256", columnList = "sha256"))
+public class BlobRef {
+
+    @Id
+    @Column(name = "logical_path", length = 512)
+    private String logicalPath;
+
+    @Column(name = "sha256", length = 64, columnDefinition = "CHAR(64)", nullable = false)
+    private String sha256;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public String getLogicalPath() {
+        return logicalPath;
+    }
+
+    public void setLogicalPath(String logicalPath) {
+        this.logicalPath = logicalPath;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -1,8 +1,12 @@
 package org.example.lmsbackend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "lms.category")
 @Table(name = "categories")
 public class Categories {
 
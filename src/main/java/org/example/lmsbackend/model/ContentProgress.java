@@ -7,7 +7,8 @@ import org.hibernate.annotations.OnDeleteAction;
 import java.time.Instant;
 
 @Entity
-@Table(name = "content_progress")
+@Table(name = "content_progress",
+        uniqueConstraints = @UniqueConstraint(name = "uk_content_progress_user_content", columnNames = {"user_id", "content_id"}))
 public class ContentProgress {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
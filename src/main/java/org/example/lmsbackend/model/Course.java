@@ -1,6 +1,8 @@
 package org.example.lmsbackend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -8,6 +10,8 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "lms.course")
 @Table(name = "courses")
 @Getter
 @Setter
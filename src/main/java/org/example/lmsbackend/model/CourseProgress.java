@@ -0,0 +1,102 @@
+package org.example.lmsbackend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm tiến độ theo khóa học của từng user (dữ liệu tổng hợp, cập nhật tăng dần).
+ * Tổng số item không lưu ở đây mà đếm theo item đang xuất bản khi đọc.
+ */
+@Entity
+@Table(name = "course_progress",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "course_id"}))
+public class CourseProgress {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "progress_id")
+    private Long progressId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "course_id", nullable = false)
+    private Course course;
+
+    @Column(name = "completed_contents", columnDefinition = "INT DEFAULT 0")
+    private Integer completedContents = 0;
+
+    @Column(name = "completed_videos", columnDefinition = "INT DEFAULT 0")
+    private Integer completedVideos = 0;
+
+    @Column(name = "completed_quizzes", columnDefinition = "INT DEFAULT 0")
+    private Integer completedQuizzes = 0;
+
+    @Column(name = "last_updated")
+    private LocalDateTime lastUpdated;
+
+    // Getters and Setters
+    public Long getProgressId() {
+        return progressId;
+    }
+
+    public void setProgressId(Long progressId) {
+        this.progressId = progressId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    public void setCourse(Course course) {
+        this.course = course;
+    }
+
+    public Integer getCompletedContents() {
+        return completedContents;
+    }
+
+    public void setCompletedContents(Integer completedContents) {
+        this.completedContents = completedContents;
+    }
+
+    public Integer getCompletedVideos() {
+        return completedVideos;
+    }
+
+    public void setCompletedVideos(Integer completedVideos) {
+        this.completedVideos = completedVideos;
+    }
+
+    public Integer getCompletedQuizzes() {
+        return completedQuizzes;
+    }
+
+    public void setCompletedQuizzes(Integer completedQuizzes) {
+        this.completedQuizzes = completedQuizzes;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public int getCompletedItems() {
+        return (completedContents != null ? completedContents : 0)
+                + (completedVideos != null ? completedVideos : 0)
+                + (completedQuizzes != null ? completedQuizzes : 0);
+    }
+}
@@ -7,7 +7,7 @@ import org.hibernate.annotations.OnDeleteAction;
 import java.time.Instant;
 
 @Entity
-@Table(name = "discussions")
+@Table(name = "discussions", indexes = @Index(name = "idx_discussions_course_created", columnList = "course_id, created_at, discussion_id"))
 public class Discussion {
     public enum DiscussionType {
         PUBLIC, // Visible to all course members
@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "discussion_replies")
+@Table(name = "discussion_replies", indexes = @Index(name = "idx_discussion_replies_discussion_created", columnList = "discussion_id, created_at"))
 public class DiscussionReply {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "module_progress")
+@Table(name = "module_progress",
+        uniqueConstraints = @UniqueConstraint(name = "uk_module_progress_user_module", columnNames = {"user_id", "module_id"}))
 public class ModuleProgress {
     
     @Id
@@ -38,6 +39,16 @@ public class ModuleProgress {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
+    // Bộ đếm số item đã hoàn thành (tăng nguyên tử khi có sự kiện hoàn thành)
+    @Column(name = "completed_contents", columnDefinition = "INT DEFAULT 0")
+    private Integer completedContents = 0;
+
+    @Column(name = "completed_videos", columnDefinition = "INT DEFAULT 0")
+    private Integer completedVideos = 0;
+
+    @Column(name = "completed_quizzes", columnDefinition = "INT DEFAULT 0")
+    private Integer completedQuizzes = 0;
+
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
@@ -129,6 +140,30 @@ public class ModuleProgress {
         this.completedAt = completedAt;
     }
 
+    public Integer getCompletedContents() {
+        return completedContents;
+    }
+
+    public void setCompletedContents(Integer completedContents) {
+        this.completedContents = completedContents;
+    }
+
+    public Integer getCompletedVideos() {
+        return completedVideos;
+    }
+
+    public void setCompletedVideos(Integer completedVideos) {
+        this.completedVideos = completedVideos;
+    }
+
+    public Integer getCompletedQuizzes() {
+        return completedQuizzes;
+    }
+
+    public void setCompletedQuizzes(Integer completedQuizzes) {
+        this.completedQuizzes = completedQuizzes;
+    }
+
     public LocalDateTime getLastUpdated() {
         return lastUpdated;
     }
@@ -1,6 +1,8 @@
 package org.example.lmsbackend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -8,6 +10,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "lms.module")
 @Table(name = "modules")
 public class Modules {
 
@@ -39,6 +43,7 @@ public class Modules {
 
     // ✅ Thêm quan hệ với Content
     @OneToMany(mappedBy = "module", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "lms.module.contents")
     private List<Content> contents = new ArrayList<>();
 
     // === GETTERS ===
@@ -1,11 +1,12 @@
 package org.example.lmsbackend.model;
 
 import jakarta.persistence.*;
+import java.io.Serializable;
 import java.util.List;
 
 @Entity
 @Table(name = "questions")
-public class Questions {
+public class Questions implements Serializable {
 
     public enum Type {
         MULTIPLE_CHOICE,
@@ -0,0 +1,65 @@
+package org.example.lmsbackend.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+// Đánh dấu user đã hoàn thành quiz (1 dòng cho mỗi cặp user-quiz) - ghi bằng INSERT IGNORE,
+// chỉ câu ghi tạo được dòng mới mới cộng bộ đếm quiz đã hoàn thành
+@Entity
+@Table(name = "quiz_completions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_quiz_completions_user_quiz", columnNames = {"user_id", "quiz_id"}))
+public class QuizCompletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "completion_id", nullable = false)
+    private Integer completionId;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "quiz_id", nullable = false)
+    private Quizzes quiz;
+
+    @Column(name = "completed_at", nullable = false)
+    private LocalDateTime completedAt;
+
+    public Integer getCompletionId() {
+        return completionId;
+    }
+
+    public void setCompletionId(Integer completionId) {
+        this.completionId = completionId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public Quizzes getQuiz() {
+        return quiz;
+    }
+
+    public void setQuiz(Quizzes quiz) {
+        this.quiz = quiz;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
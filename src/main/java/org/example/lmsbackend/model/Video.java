@@ -7,6 +7,11 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "videos")
 public class Video {
+    // Trạng thái xử lý sau khi upload (probe metadata, thumbnail)
+    public enum Status {
+        processing, ready, failed
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer videoId;
@@ -47,6 +52,25 @@ public class Video {
     @Column(name = "published", nullable = false)
     private Boolean published = false;
 
+    // null với video cũ (upload trước khi có pipeline) → coi như ready
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private Status status;
+
+    @Column(name = "thumbnail_url")
+    private String thumbnailUrl;
+
+    // Master playlist HLS, null khi chưa đóng gói xong
+    @Column(name = "hls_url")
+    private String hlsUrl;
+
+    // Node đang xử lý video "processing" giữ lease tới thời điểm này, node khác không xử lý lại cùng lúc
+    @Column(name = "ingest_claim_token", length = 36)
+    private String ingestClaimToken;
+
+    @Column(name = "ingest_lease_until")
+    private LocalDateTime ingestLeaseUntil;
+
     @PrePersist
     protected void onCreate() {
         this.uploadedAt = LocalDateTime.now();
@@ -157,4 +181,44 @@ public class Video {
     public void setPublished(Boolean published) {
         this.published = published;
     }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public String getHlsUrl() {
+        return hlsUrl;
+    }
+
+    public void setHlsUrl(String hlsUrl) {
+        this.hlsUrl = hlsUrl;
+    }
+
+    public String getIngestClaimToken() {
+        return ingestClaimToken;
+    }
+
+    public void setIngestClaimToken(String ingestClaimToken) {
+        this.ingestClaimToken = ingestClaimToken;
+    }
+
+    public LocalDateTime getIngestLeaseUntil() {
+        return ingestLeaseUntil;
+    }
+
+    public void setIngestLeaseUntil(LocalDateTime ingestLeaseUntil) {
+        this.ingestLeaseUntil = ingestLeaseUntil;
+    }
 }
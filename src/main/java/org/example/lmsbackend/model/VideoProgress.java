@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "video_progress")
+@Table(name = "video_progress",
+        uniqueConstraints = @UniqueConstraint(name = "uk_video_progress_user_video", columnNames = {"user_id", "video_id"}))
 public class VideoProgress {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,6 +28,11 @@ public class VideoProgress {
     @Column(name = "last_watched_at")
     private LocalDateTime lastWatchedAt;
 
+    // Chỉ được set bằng UPDATE có điều kiện (VideoProgressRepository.markCompleted)
+    // để mỗi video chỉ được đếm hoàn thành 1 lần, save() entity không ghi đè cột này
+    @Column(name = "completed", insertable = false, updatable = false)
+    private Boolean completed;
+
     @PrePersist
     @PreUpdate
     protected void onUpdate() {
@@ -82,6 +88,14 @@ public class VideoProgress {
         this.lastWatchedAt = lastWatchedAt;
     }
 
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
     // Utility method
     public double getProgressPercentage() {
         if (totalDuration == null || totalDuration == 0) return 0.0;
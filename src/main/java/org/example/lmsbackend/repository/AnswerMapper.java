@@ -1,11 +1,18 @@
 package org.example.lmsbackend.repository;
 
 import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.config.BoundedMapperCache;
 import org.example.lmsbackend.model.Answer;
 
 import java.util.List;
 
 @Mapper
+// Đáp án được nhúng trong kết quả của QuestionsMapper → ghi đáp án xóa luôn cache của QuestionsMapper
+@CacheNamespace(implementation = BoundedMapperCache.class, properties = {
+        @Property(name = "maxEntries", value = "20000"),
+        @Property(name = "ttlSeconds", value = "600"),
+        @Property(name = "flushAlso", value = "org.example.lmsbackend.repository.QuestionsMapper")
+})
 public interface AnswerMapper {
 
     // Thêm answer cho câu hỏi trắc nghiệm
@@ -31,6 +38,24 @@ public interface AnswerMapper {
     })
     List<Answer> findByQuestionId(@Param("questionId") Integer questionId);
 
+    // Lấy toàn bộ answers của một quiz trong 1 query (dựng bộ đáp án chấm điểm)
+    @Select("""
+        SELECT a.answer_id, a.question_id, a.answer_text, a.is_correct, a.order_number
+        FROM answers a
+        JOIN questions q ON a.question_id = q.question_id
+        WHERE q.quiz_id = #{quizId}
+        ORDER BY a.question_id ASC, a.order_number ASC, a.answer_id ASC
+    """)
+    @Results({
+            @Result(property = "answerId", column = "answer_id"),
+            @Result(property = "question.questionId", column = "question_id"),
+            @Result(property = "answerText", column = "answer_text"),
+            @Result(property = "isCorrect", column = "is_correct"),
+            @Result(property = "orderNumber", column = "order_number")
+    })
+    @Options(useCache = false) // CompiledQuizService đã cache bộ đáp án đã dựng
+    List<Answer> findByQuizId(@Param("quizId") Integer quizId);
+
     // Cập nhật answer
     @Update("""
         UPDATE answers
@@ -0,0 +1,82 @@
+package org.example.lmsbackend.repository;
+
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface BlobStoreMapper {
+
+    // Tạo dòng blob (ref_count = 0) nếu chưa có, để luôn có dòng cho SELECT ... FOR UPDATE khóa
+    @Insert("""
+        INSERT INTO stored_blobs (sha256, size, ref_count, created_at)
+        VALUES (#{sha256}, #{size}, 0, NOW())
+        ON DUPLICATE KEY UPDATE ref_count = ref_count
+    """)
+    int ensureBlob(@Param("sha256") String sha256, @Param("size") long size);
+
+    // Khóa dòng blob tới hết transaction: tăng/giảm ref_count, tạo/xóa file blob trên các node không chen nhau
+    @Select("SELECT ref_count FROM stored_blobs WHERE sha256 = #{sha256} FOR UPDATE")
+    Integer lockRefCount(@Param("sha256") String sha256);
+
+    @Update("UPDATE stored_blobs SET ref_count = ref_count + 1 WHERE sha256 = #{sha256}")
+    int acquire(@Param("sha256") String sha256);
+
+    @Update("UPDATE stored_blobs SET ref_count = ref_count - 1 WHERE sha256 = #{sha256} AND ref_count > 0")
+    int release(@Param("sha256") String sha256);
+
+    @Delete("DELETE FROM stored_blobs WHERE sha256 = #{sha256} AND ref_count = 0")
+    int deleteUnreferenced(@Param("sha256") String sha256);
+
+    // 0 nếu key đã có ref (không ghi đè)
+    @Insert("INSERT IGNORE INTO blob_refs (logical_path, sha256, created_at) VALUES (#{logicalPath}, #{sha256}, NOW())")
+    int insertRef(@Param("logicalPath") String logicalPath, @Param("sha256") String sha256);
+
+    @Select("SELECT sha256 FROM blob_refs WHERE logical_path = #{logicalPath} FOR UPDATE")
+    String lockShaByPath(@Param("logicalPath") String logicalPath);
+
+    // Chỉ đổi khi key vẫn trỏ tới blob cũ (so sánh-và-đổi)
+    @Update("UPDATE blob_refs SET sha256 = #{sha256} WHERE logical_path = #{logicalPath} AND sha256 = #{previous}")
+    int repointRef(@Param("logicalPath") String logicalPath, @Param("previous") String previous, @Param("sha256") String sha256);
+
+    @Select("SELECT sha256 FROM blob_refs WHERE logical_path = #{logicalPath}")
+    String findShaByPath(@Param("logicalPath") String logicalPath);
+
+    /**
+     * Các key nằm trực tiếp dưới prefix (không tính thư mục con), theo thứ tự key, sau startAfter.
+     * Đi theo khóa chính nên mỗi trang là 1 lần quét range ngắn.
+     */
+    @Select("""
+        SELECT logical_path FROM blob_refs
+        WHERE logical_path LIKE CONCAT(#{prefix}, '%')
+          AND logical_path NOT LIKE CONCAT(#{prefix}, '%/%')
+          AND logical_path > #{startAfter}
+        ORDER BY logical_path
+        LIMIT #{limit}
+    """)
+    List<String> findPathsByPrefix(@Param("prefix") String prefix, @Param("startAfter") String startAfter,
+                                   @Param("limit") int limit);
+
+    // Các key trong danh sách đã có dòng blob_refs
+    @Select("""
+    <script>
+    SELECT logical_path FROM blob_refs WHERE logical_path IN
+    <foreach collection="logicalPaths" item="logicalPath" open="(" separator="," close=")">#{logicalPath}</foreach>
+    </script>
+    """)
+    List<String> findExistingPaths(@Param("logicalPaths") List<String> logicalPaths);
+
+    @Delete("DELETE FROM blob_refs WHERE logical_path = #{logicalPath} AND sha256 = #{sha256}")
+    int deleteRef(@Param("logicalPath") String logicalPath, @Param("sha256") String sha256);
+
+    // Dung lượng thực trên đĩa so với tổng dung lượng các đường dẫn trỏ tới
+    @Select("""
+        SELECT COUNT(*) AS blobs,
+               COALESCE(SUM(ref_count), 0) AS refs,
+               COALESCE(SUM(size), 0) AS storedBytes,
+               COALESCE(SUM(size * ref_count), 0) AS logicalBytes
+        FROM stored_blobs
+    """)
+    Map<String, Object> getStats();
+}
@@ -2,10 +2,13 @@ package org.example.lmsbackend.repository;
 
 import org.example.lmsbackend.model.ContentProgress;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
@@ -19,4 +22,24 @@ public interface ContentProgressRepository extends JpaRepository<ContentProgress
     
     @Query("SELECT cp FROM ContentProgress cp WHERE cp.user.userId = :userId AND cp.content.module.id = :moduleId")
     java.util.List<ContentProgress> findByUserIdAndModuleId(@Param("userId") Integer userId, @Param("moduleId") Integer moduleId);
+
+    // ✅ Id các content đã hoàn thành của user trong cả khóa học (1 query)
+    @Query("SELECT cp.content.contentId FROM ContentProgress cp " +
+           "WHERE cp.user.userId = :userId AND cp.content.module.courseId = :courseId AND cp.status = 'completed'")
+    java.util.List<Integer> findCompletedContentIdsByUserIdAndCourseId(@Param("userId") Integer userId, @Param("courseId") Integer courseId);
+
+    // ✅ Tạo dòng tiến độ nếu chưa có (khóa uk_content_progress_user_content: 2 lượt xem đồng thời không tạo 2 dòng)
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO content_progress (user_id, content_id, status, accessed_at) " +
+                   "VALUES (:userId, :contentId, 'in_progress', :accessedAt) " +
+                   "ON DUPLICATE KEY UPDATE accessed_at = VALUES(accessed_at)", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Integer userId, @Param("contentId") Integer contentId, @Param("accessedAt") Instant accessedAt);
+
+    // ✅ Chuyển sang completed có điều kiện: trả về 1 nếu đây là lần hoàn thành đầu tiên
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE content_progress SET status = 'completed', completed_at = :completedAt " +
+                   "WHERE user_id = :userId AND content_id = :contentId AND (status IS NULL OR status <> 'completed')", nativeQuery = true)
+    int markCompleted(@Param("userId") Integer userId, @Param("contentId") Integer contentId, @Param("completedAt") Instant completedAt);
 }
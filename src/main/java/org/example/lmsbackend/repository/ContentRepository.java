@@ -1,16 +1,33 @@
 package org.example.lmsbackend.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.example.lmsbackend.model.Content;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface ContentRepository extends JpaRepository<Content, Integer> {
     // ✅ Sắp xếp content theo order_number
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Content> findByModuleIdOrderByOrderNumber(Integer moduleId);
     
     // ✅ Sắp xếp content theo module order_number, rồi content order_number
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Content> findAllByModule_Course_CourseIdOrderByModule_OrderNumberAscOrderNumberAsc(Integer courseId);
     
     // ✅ STUDENT API: Lấy content đã xuất bản theo moduleId và sắp xếp theo order_number
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Content> findByModuleIdAndPublishedTrueOrderByOrderNumber(Integer moduleId);
+
+    // ✅ [moduleId, contentId] của toàn bộ content đã xuất bản trong khóa học
+    @Query("SELECT c.module.id, c.contentId FROM Content c WHERE c.module.courseId = :courseId AND c.published = true")
+    List<Object[]> findPublishedIdsByCourseId(@Param("courseId") Integer courseId);
+
+    long countByModuleIdAndPublishedTrue(Integer moduleId);
+
+    // ✅ File tên theo nội dung có thể được nhiều content trong module dùng chung
+    long countByContentUrl(String contentUrl);
 }
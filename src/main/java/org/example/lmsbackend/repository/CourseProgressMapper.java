@@ -0,0 +1,100 @@
+package org.example.lmsbackend.repository;
+
+import org.example.lmsbackend.model.CourseProgress;
+import org.apache.ibatis.annotations.*;
+import java.util.Optional;
+
+@Mapper
+public interface CourseProgressMapper {
+
+    @Select("SELECT * FROM course_progress WHERE user_id = #{userId} AND course_id = #{courseId}")
+    @Results({
+        @Result(property = "progressId", column = "progress_id"),
+        @Result(property = "user.userId", column = "user_id"),
+        @Result(property = "course.courseId", column = "course_id"),
+        @Result(property = "completedContents", column = "completed_contents"),
+        @Result(property = "completedVideos", column = "completed_videos"),
+        @Result(property = "completedQuizzes", column = "completed_quizzes"),
+        @Result(property = "lastUpdated", column = "last_updated")
+    })
+    Optional<CourseProgress> findByUserAndCourse(@Param("userId") Integer userId, @Param("courseId") Integer courseId);
+
+    // Ghi đè toàn bộ bộ đếm (dùng khi tính lại từ dữ liệu gốc)
+    @Insert("""
+        INSERT INTO course_progress (user_id, course_id, completed_contents, completed_videos, completed_quizzes, last_updated)
+        VALUES (#{userId}, #{courseId}, #{contents}, #{videos}, #{quizzes}, NOW())
+        ON DUPLICATE KEY UPDATE
+            completed_contents = VALUES(completed_contents),
+            completed_videos = VALUES(completed_videos),
+            completed_quizzes = VALUES(completed_quizzes),
+            last_updated = NOW()
+    """)
+    int upsertCounters(@Param("userId") Integer userId, @Param("courseId") Integer courseId,
+                       @Param("contents") int contents, @Param("videos") int videos, @Param("quizzes") int quizzes);
+
+    // Tăng nguyên tử khi user hoàn thành 1 item đang hiển thị; trả về 0 nếu chưa có dòng tiến độ của khóa học
+    @Update("""
+        UPDATE course_progress SET completed_contents = completed_contents + 1, last_updated = NOW()
+        WHERE user_id = #{userId}
+          AND course_id = (SELECT m.course_id FROM contents c JOIN modules m ON m.module_id = c.module_id
+                           WHERE c.content_id = #{contentId} AND c.published = true)
+    """)
+    int incrementCompletedContents(@Param("userId") Integer userId, @Param("contentId") Integer contentId);
+
+    @Update("""
+        UPDATE course_progress SET completed_videos = completed_videos + 1, last_updated = NOW()
+        WHERE user_id = #{userId}
+          AND course_id = (SELECT m.course_id FROM videos v JOIN modules m ON m.module_id = v.module_id
+                           WHERE v.video_id = #{videoId} AND v.published = true)
+    """)
+    int incrementCompletedVideos(@Param("userId") Integer userId, @Param("videoId") Integer videoId);
+
+    @Update("""
+        UPDATE course_progress SET completed_quizzes = completed_quizzes + 1, last_updated = NOW()
+        WHERE user_id = #{userId}
+          AND course_id = (SELECT m.course_id FROM quizzes q JOIN modules m ON m.module_id = q.module_id
+                           WHERE q.quiz_id = #{quizId} AND q.publish = true)
+    """)
+    int incrementCompletedQuizzes(@Param("userId") Integer userId, @Param("quizId") Integer quizId);
+
+    // Item được xuất bản lại (delta = 1) / bị ẩn hoặc xóa (delta = -1): áp cho mọi user đã hoàn thành item.
+    // User chưa có dòng thì bỏ qua, lần đọc đầu tiên sẽ tính lại từ dữ liệu gốc.
+    @Update("""
+        UPDATE course_progress SET completed_contents = GREATEST(completed_contents + #{delta}, 0), last_updated = NOW()
+        WHERE course_id = (SELECT m.course_id FROM contents c JOIN modules m ON m.module_id = c.module_id
+                           WHERE c.content_id = #{contentId})
+          AND user_id IN (SELECT cp.user_id FROM content_progress cp
+                          WHERE cp.content_id = #{contentId} AND cp.status = 'completed')
+    """)
+    int shiftCompletedContents(@Param("contentId") Integer contentId, @Param("delta") int delta);
+
+    @Update("""
+        UPDATE course_progress SET completed_videos = GREATEST(completed_videos + #{delta}, 0), last_updated = NOW()
+        WHERE course_id = (SELECT m.course_id FROM videos v JOIN modules m ON m.module_id = v.module_id
+                           WHERE v.video_id = #{videoId})
+          AND user_id IN (SELECT vp.user_id FROM video_progress vp
+                          WHERE vp.video_id = #{videoId} AND vp.completed = true)
+    """)
+    int shiftCompletedVideos(@Param("videoId") Integer videoId, @Param("delta") int delta);
+
+    @Update("""
+        UPDATE course_progress SET completed_quizzes = GREATEST(completed_quizzes + #{delta}, 0), last_updated = NOW()
+        WHERE course_id = (SELECT m.course_id FROM quizzes q JOIN modules m ON m.module_id = q.module_id
+                           WHERE q.quiz_id = #{quizId})
+          AND user_id IN (SELECT a.user_id FROM user_quiz_attempts a WHERE a.quiz_id = #{quizId})
+    """)
+    int shiftCompletedQuizzes(@Param("quizId") Integer quizId, @Param("delta") int delta);
+
+    // Module sắp bị xóa: trừ phần bộ đếm của module khỏi bộ đếm khóa học
+    @Update("""
+        UPDATE course_progress cp
+        JOIN modules m ON m.course_id = cp.course_id
+        JOIN module_progress mp ON mp.module_id = m.module_id AND mp.user_id = cp.user_id
+        SET cp.completed_contents = GREATEST(cp.completed_contents - COALESCE(mp.completed_contents, 0), 0),
+            cp.completed_videos = GREATEST(cp.completed_videos - COALESCE(mp.completed_videos, 0), 0),
+            cp.completed_quizzes = GREATEST(cp.completed_quizzes - COALESCE(mp.completed_quizzes, 0), 0),
+            cp.last_updated = NOW()
+        WHERE m.module_id = #{moduleId}
+    """)
+    int subtractModuleCounters(@Param("moduleId") Integer moduleId);
+}
@@ -1,5 +1,6 @@
 package org.example.lmsbackend.repository;
 
+import org.example.lmsbackend.dto.DiscussionReplyDTO;
 import org.example.lmsbackend.model.DiscussionReply;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -19,4 +20,10 @@ public interface DiscussionReplyRepository extends JpaRepository<DiscussionReply
     
     @Query("SELECT COUNT(dr) FROM DiscussionReply dr WHERE dr.discussion.discussionId = :discussionId")
     Long countByDiscussionId(@Param("discussionId") Integer discussionId);
+
+    // Danh sách reply của 1 thảo luận kèm tên/vai trò/avatar người trả lời trong 1 query (không lazy-load user từng dòng)
+    @Query("SELECT new org.example.lmsbackend.dto.DiscussionReplyDTO(dr.replyId, dr.discussion.discussionId, u.userId, u.fullName, u.role, u.avatarUrl, " +
+           "dr.content, dr.parentReplyId, dr.attachmentUrl, dr.attachmentName, dr.createdAt) " +
+           "FROM DiscussionReply dr JOIN dr.user u WHERE dr.discussion.discussionId = :discussionId ORDER BY dr.createdAt ASC, dr.replyId ASC")
+    List<DiscussionReplyDTO> findReplyViews(@Param("discussionId") Integer discussionId);
 }
@@ -1,9 +1,12 @@
 package org.example.lmsbackend.repository;
 
+import org.example.lmsbackend.dto.DiscussionDTO;
 import org.example.lmsbackend.model.Discussion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.time.Instant;
 import java.util.List;
 
 public interface DiscussionRepository extends JpaRepository<Discussion, Integer> {
@@ -22,4 +25,30 @@ public interface DiscussionRepository extends JpaRepository<Discussion, Integer>
     
     // Get discussions by user
     List<Discussion> findByUser_UserId(Integer userId);
+
+    // Dòng danh sách thảo luận: người đăng, người nhận và số reply lấy trong cùng 1 câu lệnh (không lazy-load từng dòng)
+    String LISTING_SELECT = "SELECT new org.example.lmsbackend.dto.DiscussionDTO(d.discussionId, d.course.courseId, " +
+            "u.userId, u.fullName, u.username, u.role, d.title, d.content, d.type, " +
+            "tu.userId, tu.fullName, tu.username, d.attachmentUrl, d.attachmentName, d.createdAt, " +
+            "(SELECT COUNT(r) FROM DiscussionReply r WHERE r.discussion = d)) " +
+            "FROM Discussion d JOIN d.user u LEFT JOIN d.targetUser tu ";
+
+    // Keyset theo (createdAt, discussionId) giảm dần: beforeCreatedAt = null → trang đầu
+    String BEFORE_CURSOR = "AND (:beforeCreatedAt IS NULL OR d.createdAt < :beforeCreatedAt " +
+            "OR (d.createdAt = :beforeCreatedAt AND d.discussionId < :beforeId)) " +
+            "ORDER BY d.createdAt DESC, d.discussionId DESC";
+
+    @Query(LISTING_SELECT + "WHERE d.course.courseId = :courseId AND d.type = 'PUBLIC' " + BEFORE_CURSOR)
+    List<DiscussionDTO> findPublicListing(@Param("courseId") Integer courseId,
+                                          @Param("beforeCreatedAt") Instant beforeCreatedAt,
+                                          @Param("beforeId") Integer beforeId,
+                                          Pageable pageable);
+
+    @Query(LISTING_SELECT + "WHERE d.course.courseId = :courseId AND (d.type = 'PUBLIC' OR (d.type = 'PRIVATE' " +
+            "AND (u.userId = :userId OR tu.userId = :userId))) " + BEFORE_CURSOR)
+    List<DiscussionDTO> findListingForUser(@Param("courseId") Integer courseId,
+                                           @Param("userId") Integer userId,
+                                           @Param("beforeCreatedAt") Instant beforeCreatedAt,
+                                           @Param("beforeId") Integer beforeId,
+                                           Pageable pageable);
 }
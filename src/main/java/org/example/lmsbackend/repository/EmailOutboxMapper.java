@@ -0,0 +1,92 @@
+package org.example.lmsbackend.repository;
+
+import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.model.EmailOutbox;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface EmailOutboxMapper {
+
+    @Insert("""
+        INSERT INTO email_outbox (recipient, subject, body, status, attempts, next_attempt_at, created_at)
+        VALUES (#{recipient}, #{subject}, #{body}, 'PENDING', 0, NOW(), NOW())
+    """)
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    int insert(EmailOutbox email);
+
+    /**
+     * Nhận tối đa limit email đến hạn (mới hoặc hết thời gian chờ retry) bằng 1 câu UPDATE nguyên tử:
+     * gắn claim token và đẩy next_attempt_at ra sau leaseSeconds. Node khác chỉ thấy lại email khi lease hết
+     * (node gửi bị tắt giữa chừng) nên mỗi email chỉ do 1 node gửi.
+     */
+    @Update("""
+        UPDATE email_outbox
+        SET claim_token = #{token}, next_attempt_at = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND)
+        WHERE status = 'PENDING' AND next_attempt_at <= NOW()
+        ORDER BY id ASC
+        LIMIT #{limit}
+    """)
+    int claimDue(@Param("token") String token, @Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    @Select("""
+        SELECT id, recipient, subject, body, status, attempts, next_attempt_at, last_error, claim_token, created_at, sent_at
+        FROM email_outbox
+        WHERE claim_token = #{token} AND status = 'PENDING'
+        ORDER BY id ASC
+    """)
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "recipient", column = "recipient"),
+        @Result(property = "subject", column = "subject"),
+        @Result(property = "body", column = "body"),
+        @Result(property = "status", column = "status"),
+        @Result(property = "attempts", column = "attempts"),
+        @Result(property = "nextAttemptAt", column = "next_attempt_at"),
+        @Result(property = "lastError", column = "last_error"),
+        @Result(property = "claimToken", column = "claim_token"),
+        @Result(property = "createdAt", column = "created_at"),
+        @Result(property = "sentAt", column = "sent_at")
+    })
+    List<EmailOutbox> findClaimed(@Param("token") String token);
+
+    // Các câu cập nhật kết quả chỉ áp dụng khi email vẫn thuộc lượt nhận này (lease chưa bị node khác lấy lại)
+
+    // Gửi xong thì xóa nội dung, chỉ giữ lại trạng thái
+    @Update("""
+    <script>
+    UPDATE email_outbox SET status = 'SENT', sent_at = NOW(), body = '', last_error = NULL, claim_token = NULL
+    WHERE claim_token = #{token}
+      AND id IN <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+    </script>
+    """)
+    int markSent(@Param("ids") List<Long> ids, @Param("token") String token);
+
+    @Update("""
+        UPDATE email_outbox
+        SET attempts = #{attempts}, next_attempt_at = #{nextAttemptAt}, last_error = #{lastError}, claim_token = NULL
+        WHERE id = #{id} AND claim_token = #{token}
+    """)
+    int scheduleRetry(@Param("id") Long id, @Param("token") String token, @Param("attempts") int attempts,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("lastError") String lastError);
+
+    // Dead letter giữ người nhận/tiêu đề/lỗi để kiểm tra, nội dung bị xóa
+    @Update("""
+        UPDATE email_outbox
+        SET status = 'DEAD', attempts = #{attempts}, last_error = #{lastError}, body = '', claim_token = NULL
+        WHERE id = #{id} AND claim_token = #{token}
+    """)
+    int markDead(@Param("id") Long id, @Param("token") String token, @Param("attempts") int attempts,
+                 @Param("lastError") String lastError);
+
+    @Delete("DELETE FROM email_outbox WHERE status = 'SENT' AND sent_at < #{before}")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+
+    // Dead letter ghi trước khi markDead xóa nội dung
+    @Update("UPDATE email_outbox SET body = '' WHERE status = 'DEAD' AND body <> ''")
+    int redactDead();
+
+    @Delete("DELETE FROM email_outbox WHERE status = 'DEAD' AND created_at < #{before}")
+    int deleteDeadBefore(@Param("before") LocalDateTime before);
+}
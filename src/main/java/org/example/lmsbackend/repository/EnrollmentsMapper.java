@@ -14,8 +14,35 @@ public interface EnrollmentsMapper {
     @Select("SELECT COUNT(*) FROM enrollments WHERE user_id = #{userId} AND course_id = #{courseId}")
     int countEnrollment(@Param("userId") int userId, @Param("courseId") int courseId);
 
-    @Insert("INSERT INTO enrollments(user_id, course_id) VALUES(#{userId}, #{courseId})")
-    void enrollCourse(@Param("userId") int userId, @Param("courseId") int courseId);
+    // Bỏ qua nếu đã ghi danh (unique user_id + course_id) → không cần COUNT trước, không bị race
+    @Insert("INSERT IGNORE INTO enrollments(user_id, course_id) VALUES(#{userId}, #{courseId})")
+    int enrollCourseIfAbsent(@Param("userId") int userId, @Param("courseId") int courseId);
+
+    // Ghi danh hàng loạt, trả về số dòng thực sự được thêm (dòng trùng bị bỏ qua)
+    @Insert("""
+    <script>
+    INSERT IGNORE INTO enrollments(user_id, course_id) VALUES
+    <foreach collection="userIds" item="userId" separator=",">(#{userId}, #{courseId})</foreach>
+    </script>
+    """)
+    int bulkEnroll(@Param("courseId") int courseId, @Param("userIds") List<Integer> userIds);
+
+    @Delete("""
+    <script>
+    DELETE FROM enrollments
+    WHERE course_id = #{courseId} AND user_id IN
+    <foreach collection="userIds" item="userId" open="(" separator="," close=")">#{userId}</foreach>
+    </script>
+    """)
+    int bulkUnenroll(@Param("courseId") int courseId, @Param("userIds") List<Integer> userIds);
+
+    @Select("""
+    <script>
+    SELECT user_id FROM users WHERE user_id IN
+    <foreach collection="userIds" item="userId" open="(" separator="," close=")">#{userId}</foreach>
+    </script>
+    """)
+    List<Integer> findExistingUserIds(@Param("userIds") List<Integer> userIds);
 
     @Select("""
     SELECT 
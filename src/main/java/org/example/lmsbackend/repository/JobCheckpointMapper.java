@@ -0,0 +1,44 @@
+package org.example.lmsbackend.repository;
+
+import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.model.JobCheckpoint;
+
+@Mapper
+public interface JobCheckpointMapper {
+
+    @Select("""
+        SELECT job_name AS jobName, position, lease_until AS leaseUntil, updated_at AS updatedAt
+        FROM job_checkpoints WHERE job_name = #{jobName}
+    """)
+    JobCheckpoint findByJobName(@Param("jobName") String jobName);
+
+    // Tạo dòng (chưa có vị trí) nếu chưa có; đã có thì giữ nguyên vị trí để chạy tiếp
+    @Insert("INSERT IGNORE INTO job_checkpoints (job_name, updated_at) VALUES (#{jobName}, NOW())")
+    int ensure(@Param("jobName") String jobName);
+
+    /**
+     * Nhận quyền chạy job bằng 1 câu UPDATE nguyên tử; 0 nếu node khác đang giữ lease chưa hết hạn
+     */
+    @Update("""
+        UPDATE job_checkpoints
+        SET lease_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND), updated_at = NOW()
+        WHERE job_name = #{jobName} AND (lease_until IS NULL OR lease_until < NOW())
+    """)
+    int claim(@Param("jobName") String jobName, @Param("leaseSeconds") int leaseSeconds);
+
+    // Lưu vị trí và gia hạn lease
+    @Update("""
+        UPDATE job_checkpoints
+        SET position = #{position}, lease_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND), updated_at = NOW()
+        WHERE job_name = #{jobName}
+    """)
+    int savePosition(@Param("jobName") String jobName, @Param("position") String position,
+                     @Param("leaseSeconds") int leaseSeconds);
+
+    // Bị ngắt giữa chừng: giữ vị trí, nhả lease cho lần chạy sau (node nào cũng được)
+    @Update("UPDATE job_checkpoints SET lease_until = NULL, updated_at = NOW() WHERE job_name = #{jobName}")
+    int release(@Param("jobName") String jobName);
+
+    @Delete("DELETE FROM job_checkpoints WHERE job_name = #{jobName}")
+    int delete(@Param("jobName") String jobName);
+}
@@ -17,6 +17,9 @@ public interface ModuleProgressMapper {
         @Result(property = "testUnlocked", column = "test_unlocked"),
         @Result(property = "moduleCompleted", column = "module_completed"),
         @Result(property = "completedAt", column = "completed_at"),
+        @Result(property = "completedContents", column = "completed_contents"),
+        @Result(property = "completedVideos", column = "completed_videos"),
+        @Result(property = "completedQuizzes", column = "completed_quizzes"),
         @Result(property = "lastUpdated", column = "last_updated"),
         @Result(property = "user", column = "user_id", 
                 one = @One(select = "org.example.lmsbackend.repository.UserMapper.findById")),
@@ -34,6 +37,9 @@ public interface ModuleProgressMapper {
         @Result(property = "testUnlocked", column = "test_unlocked"),
         @Result(property = "moduleCompleted", column = "module_completed"),
         @Result(property = "completedAt", column = "completed_at"),
+        @Result(property = "completedContents", column = "completed_contents"),
+        @Result(property = "completedVideos", column = "completed_videos"),
+        @Result(property = "completedQuizzes", column = "completed_quizzes"),
         @Result(property = "lastUpdated", column = "last_updated"),
         @Result(property = "user", column = "user_id", 
                 one = @One(select = "org.example.lmsbackend.repository.UserMapper.findById")),
@@ -44,9 +50,11 @@ public interface ModuleProgressMapper {
 
     @Insert("""
         INSERT INTO module_progress (user_id, module_id, content_completed, video_completed, 
-                                   test_completed, test_unlocked, module_completed, last_updated)
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
         VALUES (#{user.userId}, #{module.id}, #{contentCompleted}, #{videoCompleted}, 
-                #{testCompleted}, #{testUnlocked}, #{moduleCompleted}, NOW())
+                #{testCompleted}, #{testUnlocked}, #{moduleCompleted},
+                #{completedContents}, #{completedVideos}, #{completedQuizzes}, NOW())
     """)
     @Options(useGeneratedKeys = true, keyProperty = "progressId")
     int insert(ModuleProgress moduleProgress);
@@ -64,6 +72,122 @@ public interface ModuleProgressMapper {
     """)
     int update(ModuleProgress moduleProgress);
 
+    // Tạo dòng tiến độ rỗng nếu chưa có (khóa uk_module_progress_user_module chống trùng khi 2 request cùng tạo)
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        VALUES (#{userId}, #{moduleId}, false, false, false, true, false, 0, 0, 0, NOW())
+        ON DUPLICATE KEY UPDATE progress_id = progress_id
+    """)
+    int insertIfAbsent(@Param("userId") Integer userId, @Param("moduleId") Integer moduleId);
+
+    // Tăng nguyên tử bộ đếm khi user hoàn thành 1 item (tạo dòng nếu chưa có).
+    // Item đang ẩn thì không tính: trả về 0 và không ghi gì.
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        SELECT #{userId}, c.module_id, false, false, false, true, false, 1, 0, 0, NOW()
+        FROM contents c WHERE c.content_id = #{contentId} AND c.published = true
+        ON DUPLICATE KEY UPDATE
+            completed_contents = COALESCE(module_progress.completed_contents, 0) + 1,
+            last_updated = NOW()
+    """)
+    int incrementCompletedContents(@Param("userId") Integer userId, @Param("contentId") Integer contentId);
+
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        SELECT #{userId}, v.module_id, false, false, false, true, false, 0, 1, 0, NOW()
+        FROM videos v WHERE v.video_id = #{videoId} AND v.published = true
+        ON DUPLICATE KEY UPDATE
+            completed_videos = COALESCE(module_progress.completed_videos, 0) + 1,
+            last_updated = NOW()
+    """)
+    int incrementCompletedVideos(@Param("userId") Integer userId, @Param("videoId") Integer videoId);
+
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        SELECT #{userId}, q.module_id, false, false, false, true, false, 0, 0, 1, NOW()
+        FROM quizzes q WHERE q.quiz_id = #{quizId} AND q.publish = true AND q.module_id IS NOT NULL
+        ON DUPLICATE KEY UPDATE
+            completed_quizzes = COALESCE(module_progress.completed_quizzes, 0) + 1,
+            last_updated = NOW()
+    """)
+    int incrementCompletedQuizzes(@Param("userId") Integer userId, @Param("quizId") Integer quizId);
+
+    // Item được xuất bản lại (delta = 1) / bị ẩn hoặc xóa (delta = -1):
+    // cộng/trừ 1 cho mọi user đã hoàn thành item, trong 1 câu lệnh
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        SELECT DISTINCT cp.user_id, c.module_id, false, false, false, true, false, GREATEST(#{delta}, 0), 0, 0, NOW()
+        FROM content_progress cp JOIN contents c ON c.content_id = cp.content_id
+        WHERE cp.content_id = #{contentId} AND cp.status = 'completed'
+        ON DUPLICATE KEY UPDATE
+            completed_contents = GREATEST(COALESCE(module_progress.completed_contents, 0) + #{delta}, 0),
+            last_updated = NOW()
+    """)
+    int shiftCompletedContents(@Param("contentId") Integer contentId, @Param("delta") int delta);
+
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        SELECT DISTINCT vp.user_id, v.module_id, false, false, false, true, false, 0, GREATEST(#{delta}, 0), 0, NOW()
+        FROM video_progress vp JOIN videos v ON v.video_id = vp.video_id
+        WHERE vp.video_id = #{videoId} AND vp.completed = true
+        ON DUPLICATE KEY UPDATE
+            completed_videos = GREATEST(COALESCE(module_progress.completed_videos, 0) + #{delta}, 0),
+            last_updated = NOW()
+    """)
+    int shiftCompletedVideos(@Param("videoId") Integer videoId, @Param("delta") int delta);
+
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        SELECT DISTINCT a.user_id, q.module_id, false, false, false, true, false, 0, 0, GREATEST(#{delta}, 0), NOW()
+        FROM user_quiz_attempts a JOIN quizzes q ON q.quiz_id = a.quiz_id
+        WHERE a.quiz_id = #{quizId} AND q.module_id IS NOT NULL
+        ON DUPLICATE KEY UPDATE
+            completed_quizzes = GREATEST(COALESCE(module_progress.completed_quizzes, 0) + #{delta}, 0),
+            last_updated = NOW()
+    """)
+    int shiftCompletedQuizzes(@Param("quizId") Integer quizId, @Param("delta") int delta);
+
+    // Ghi đè bộ đếm khi tính lại từ dữ liệu gốc (tạo dòng nếu chưa có)
+    @Insert("""
+        INSERT INTO module_progress (user_id, module_id, content_completed, video_completed,
+                                   test_completed, test_unlocked, module_completed,
+                                   completed_contents, completed_videos, completed_quizzes, last_updated)
+        VALUES (#{userId}, #{moduleId}, false, false, false, true, false, #{contents}, #{videos}, #{quizzes}, NOW())
+        ON DUPLICATE KEY UPDATE
+            completed_contents = VALUES(completed_contents),
+            completed_videos = VALUES(completed_videos),
+            completed_quizzes = VALUES(completed_quizzes),
+            last_updated = NOW()
+    """)
+    int upsertCounters(@Param("userId") Integer userId, @Param("moduleId") Integer moduleId,
+                       @Param("contents") int contents, @Param("videos") int videos, @Param("quizzes") int quizzes);
+
+    // Ghi đè bộ đếm của dòng đã có (module không còn item hoàn thành → không cần tạo dòng)
+    @Update("""
+        UPDATE module_progress SET
+            completed_contents = #{contents},
+            completed_videos = #{videos},
+            completed_quizzes = #{quizzes},
+            last_updated = NOW()
+        WHERE user_id = #{userId} AND module_id = #{moduleId}
+    """)
+    int updateCounters(@Param("userId") Integer userId, @Param("moduleId") Integer moduleId,
+                       @Param("contents") int contents, @Param("videos") int videos, @Param("quizzes") int quizzes);
+
     @Select("""
         SELECT COUNT(*) FROM module_progress mp
         JOIN modules m ON mp.module_id = m.module_id
@@ -85,7 +209,11 @@ public interface ModuleProgressMapper {
         @Result(property = "testUnlocked", column = "test_unlocked"),
         @Result(property = "moduleCompleted", column = "module_completed"),
         @Result(property = "completedAt", column = "completed_at"),
-        @Result(property = "lastUpdated", column = "last_updated")
+        @Result(property = "completedContents", column = "completed_contents"),
+        @Result(property = "completedVideos", column = "completed_videos"),
+        @Result(property = "completedQuizzes", column = "completed_quizzes"),
+        @Result(property = "lastUpdated", column = "last_updated"),
+        @Result(property = "module.id", column = "module_id")
     })
     List<ModuleProgress> findByCourseAndUser(@Param("userId") Integer userId, @Param("courseId") Integer courseId);
 }
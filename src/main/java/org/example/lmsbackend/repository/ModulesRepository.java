@@ -1,14 +1,25 @@
 package org.example.lmsbackend.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.example.lmsbackend.model.Modules;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface ModulesRepository extends JpaRepository<Modules, Integer> {
     // ✅ Sắp xếp modules theo order_number
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Modules> findByCourse_CourseIdOrderByOrderNumber(Integer courseId);
     
     // ✅ STUDENT API: Lấy modules đã xuất bản theo courseId và sắp xếp theo order_number
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Modules> findByCourse_CourseIdAndPublishedTrueOrderByOrderNumber(Integer courseId);
+
+    // ✅ Chỉ lấy courseId của module, không load cả entity
+    @Query("SELECT m.courseId FROM Modules m WHERE m.id = :moduleId")
+    Integer findCourseIdById(@Param("moduleId") Integer moduleId);
 }
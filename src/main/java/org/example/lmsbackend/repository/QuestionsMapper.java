@@ -1,11 +1,17 @@
 package org.example.lmsbackend.repository;
 
 import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.config.BoundedMapperCache;
 import org.example.lmsbackend.model.Questions;
 
 import java.util.List;
 
 @Mapper
+// Cache câu hỏi (kèm quiz và đáp án) cho lúc học viên làm bài; ghi trong namespace này hoặc AnswerMapper sẽ xóa cache
+@CacheNamespace(implementation = BoundedMapperCache.class, properties = {
+        @Property(name = "maxEntries", value = "5000"),
+        @Property(name = "ttlSeconds", value = "600")
+})
 public interface QuestionsMapper {
 
     // Thêm câu hỏi
@@ -40,6 +46,22 @@ public interface QuestionsMapper {
     })
     List<Questions> findByQuizId(@Param("quizId") int quizId);
 
+    // Lấy câu hỏi theo quiz_id (không kèm answers/quiz) để dựng bộ đáp án chấm điểm
+    @Select("""
+        SELECT question_id, question_text, type, points
+        FROM questions
+        WHERE quiz_id = #{quizId}
+        ORDER BY question_id ASC
+    """)
+    @Results({
+        @Result(property = "questionId", column = "question_id"),
+        @Result(property = "questionText", column = "question_text"),
+        @Result(property = "type", column = "type"),
+        @Result(property = "points", column = "points")
+    })
+    @Options(useCache = false) // CompiledQuizService đã cache bộ đáp án đã dựng
+    List<Questions> findGradingKeyByQuizId(@Param("quizId") int quizId);
+
     // Lấy câu hỏi theo ID
     @Select("""
         SELECT q.question_id, q.quiz_id, q.question_text, q.type, q.points, q.question_file_url, q.question_file_name,
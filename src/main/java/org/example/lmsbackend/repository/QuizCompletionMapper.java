@@ -0,0 +1,16 @@
+package org.example.lmsbackend.repository;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface QuizCompletionMapper {
+
+    /**
+     * Ghi dấu hoàn thành quiz; 1 nếu đây là lần đầu, 0 nếu đã có (khóa uk_quiz_completions_user_quiz).
+     * 2 lần nộp đồng thời chỉ có 1 câu trả về 1
+     */
+    @Insert("INSERT IGNORE INTO quiz_completions (user_id, quiz_id, completed_at) VALUES (#{userId}, #{quizId}, NOW())")
+    int insertIfAbsent(@Param("userId") Integer userId, @Param("quizId") Integer quizId);
+}
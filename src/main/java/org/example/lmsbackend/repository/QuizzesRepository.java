@@ -2,21 +2,36 @@
 // ------------------------
 package org.example.lmsbackend.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.example.lmsbackend.model.Quizzes;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface QuizzesRepository extends JpaRepository<Quizzes, Integer> {
     List<Quizzes> findByCourseId(Integer courseId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Quizzes> findByCourseIdAndPublishTrue(Integer courseId);
     
     // Methods for quizzes without module (moduleId is null)
     List<Quizzes> findByCourseIdAndModuleIsNull(Integer courseId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Quizzes> findByCourseIdAndPublishTrueAndModuleIsNull(Integer courseId);
     
     // Thêm methods cho module
     List<Quizzes> findByModuleId(Integer moduleId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Quizzes> findByModuleIdAndPublishTrue(Integer moduleId);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Quizzes> findByModuleIdOrderByOrderNumber(Integer moduleId);
+
+    // [moduleId, quizId] của toàn bộ quiz đã xuất bản gắn với module trong khóa học
+    @Query("SELECT q.module.id, q.quizId FROM Quizzes q WHERE q.module.courseId = :courseId AND q.publish = true")
+    List<Object[]> findPublishedModuleQuizIdsByCourseId(@Param("courseId") Integer courseId);
+
+    long countByModuleIdAndPublishTrue(Integer moduleId);
 }
\ No newline at end of file
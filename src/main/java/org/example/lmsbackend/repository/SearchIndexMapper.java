@@ -0,0 +1,99 @@
+package org.example.lmsbackend.repository;
+
+import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.dto.SearchDocumentDTO;
+
+import java.util.List;
+
+/**
+ * Đọc dữ liệu cho chỉ mục tìm kiếm. Các hàm "After" đọc theo keyset (id > afterId, LIMIT)
+ * để dựng lại chỉ mục theo từng lô mà không nạp cả bảng vào bộ nhớ.
+ * Cột published là trạng thái hiển thị thật, tính ngay trong SQL: video/nội dung chỉ hiện khi bản thân nó,
+ * module chứa nó và khóa học đều đã xuất bản (module: bản thân + khóa học).
+ */
+@Mapper
+public interface SearchIndexMapper {
+
+    String COURSE_COLUMNS = """
+        SELECT course_id AS id, title, description AS body, course_id AS courseId,
+               NULL AS moduleId, (status = 'published') AS published
+        FROM courses
+    """;
+
+    String VIDEO_COLUMNS = """
+        SELECT v.video_id AS id, v.title, v.description AS body, v.course_id AS courseId,
+               v.module_id AS moduleId,
+               COALESCE(v.published AND m.published AND co.status = 'published', FALSE) AS published
+        FROM videos v
+        LEFT JOIN modules m ON m.module_id = v.module_id
+        LEFT JOIN courses co ON co.course_id = v.course_id
+    """;
+
+    String MODULE_COLUMNS = """
+        SELECT m.module_id AS id, m.title, m.description AS body, m.course_id AS courseId,
+               m.module_id AS moduleId,
+               COALESCE(m.published AND co.status = 'published', FALSE) AS published
+        FROM modules m
+        LEFT JOIN courses co ON co.course_id = m.course_id
+    """;
+
+    String CONTENT_COLUMNS = """
+        SELECT c.content_id AS id, c.title, c.file_name AS body, m.course_id AS courseId,
+               c.module_id AS moduleId,
+               COALESCE(c.published AND m.published AND co.status = 'published', FALSE) AS published
+        FROM contents c
+        JOIN modules m ON m.module_id = c.module_id
+        LEFT JOIN courses co ON co.course_id = m.course_id
+    """;
+
+    String USER_COLUMNS = """
+        SELECT user_id AS id, full_name AS title, CONCAT_WS(' ', username, email) AS body,
+               NULL AS courseId, NULL AS moduleId, TRUE AS published
+        FROM users
+    """;
+
+    @Select(COURSE_COLUMNS + " WHERE course_id > #{afterId} ORDER BY course_id LIMIT #{limit}")
+    List<SearchDocumentDTO> findCoursesAfter(@Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Select(COURSE_COLUMNS + " WHERE course_id = #{id}")
+    SearchDocumentDTO findCourseById(@Param("id") int id);
+
+    @Select(VIDEO_COLUMNS + " WHERE v.video_id > #{afterId} ORDER BY v.video_id LIMIT #{limit}")
+    List<SearchDocumentDTO> findVideosAfter(@Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Select(VIDEO_COLUMNS + " WHERE v.video_id = #{id}")
+    SearchDocumentDTO findVideoById(@Param("id") int id);
+
+    @Select(VIDEO_COLUMNS + " WHERE v.module_id = #{moduleId}")
+    List<SearchDocumentDTO> findVideosByModuleId(@Param("moduleId") int moduleId);
+
+    @Select(VIDEO_COLUMNS + " WHERE v.course_id = #{courseId}")
+    List<SearchDocumentDTO> findVideosByCourseId(@Param("courseId") int courseId);
+
+    @Select(MODULE_COLUMNS + " WHERE m.module_id > #{afterId} ORDER BY m.module_id LIMIT #{limit}")
+    List<SearchDocumentDTO> findModulesAfter(@Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Select(MODULE_COLUMNS + " WHERE m.module_id = #{id}")
+    SearchDocumentDTO findModuleById(@Param("id") int id);
+
+    @Select(MODULE_COLUMNS + " WHERE m.course_id = #{courseId}")
+    List<SearchDocumentDTO> findModulesByCourseId(@Param("courseId") int courseId);
+
+    @Select(CONTENT_COLUMNS + " WHERE c.content_id > #{afterId} ORDER BY c.content_id LIMIT #{limit}")
+    List<SearchDocumentDTO> findContentsAfter(@Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Select(CONTENT_COLUMNS + " WHERE c.content_id = #{id}")
+    SearchDocumentDTO findContentById(@Param("id") int id);
+
+    @Select(CONTENT_COLUMNS + " WHERE c.module_id = #{moduleId}")
+    List<SearchDocumentDTO> findContentsByModuleId(@Param("moduleId") int moduleId);
+
+    @Select(CONTENT_COLUMNS + " WHERE m.course_id = #{courseId}")
+    List<SearchDocumentDTO> findContentsByCourseId(@Param("courseId") int courseId);
+
+    @Select(USER_COLUMNS + " WHERE user_id > #{afterId} ORDER BY user_id LIMIT #{limit}")
+    List<SearchDocumentDTO> findUsersAfter(@Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Select(USER_COLUMNS + " WHERE user_id = #{id}")
+    SearchDocumentDTO findUserById(@Param("id") int id);
+}
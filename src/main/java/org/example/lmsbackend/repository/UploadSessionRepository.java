@@ -0,0 +1,12 @@
+package org.example.lmsbackend.repository;
+
+import org.example.lmsbackend.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    // Phiên upload bị bỏ dở quá lâu → dọn file tạm
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime cutoff);
+}
@@ -13,6 +13,16 @@ public interface UserAnswerMapper {
     @Options(useGeneratedKeys = true, keyProperty = "user_answerId", keyColumn = "user_answer_id")
     void insertUserAnswer(UserAnswer userAnswer);
 
+    // Ghi nhiều câu trả lời trong 1 câu INSERT nhiều dòng (nộp bài)
+    @Insert("""
+    <script>
+    INSERT INTO user_answers (attempt_id, question_id, answer_id, answer_text, is_correct, link_answer, file_name, file_path) VALUES
+    <foreach collection="answers" item="ua" separator=",">(#{ua.attempt.id}, #{ua.question.questionId}, #{ua.answer.answerId}, #{ua.answerText}, #{ua.isCorrect}, #{ua.linkAnswer}, #{ua.fileName}, #{ua.filePath})</foreach>
+    </script>
+    """)
+    @Options(useGeneratedKeys = true, keyProperty = "answers.user_answerId", keyColumn = "user_answer_id")
+    int batchInsertUserAnswers(@Param("answers") List<UserAnswer> answers);
+
     @Select("SELECT ua.*, " +
             "a.attempt_id, " +
             "q.question_id, q.question_text, q.type, q.points, " +
@@ -150,4 +150,32 @@ public interface UserMapper {
     // ✅ Kiểm tra tồn tại email
     @Select("SELECT COUNT(*) > 0 FROM users WHERE email = #{email}")
     boolean existsByEmail(String email);
+
+    // 📥 Import hàng loạt: username/email đã tồn tại trong 1 lô (1 query cho cả lô)
+    @Select("""
+    <script>
+    SELECT username, email FROM users
+    WHERE username IN <foreach collection="usernames" item="u" open="(" separator="," close=")">#{u}</foreach>
+       OR email IN <foreach collection="emails" item="e" open="(" separator="," close=")">#{e}</foreach>
+    </script>
+    """)
+    @Results({
+        @Result(property = "username", column = "username"),
+        @Result(property = "email", column = "email")
+    })
+    List<User> findExistingByUsernamesOrEmails(@Param("usernames") List<String> usernames,
+                                               @Param("emails") List<String> emails);
+
+    // 📥 Import hàng loạt: INSERT nhiều dòng
+    @Insert("""
+    <script>
+    INSERT INTO users (username, password, email, full_name, role, is_verified, verified_at, cv_url, avatar_url) VALUES
+    <foreach collection="users" item="u" separator=",">
+        (#{u.username}, #{u.password}, #{u.email}, #{u.fullName}, #{u.role}, #{u.isVerified},
+         CASE WHEN #{u.isVerified} = TRUE THEN NOW() ELSE NULL END, #{u.cvUrl}, #{u.avatarUrl})
+    </foreach>
+    </script>
+    """)
+    @Options(useGeneratedKeys = true, keyProperty = "users.userId", keyColumn = "user_id")
+    int batchInsertUsers(@Param("users") List<User> users);
 }
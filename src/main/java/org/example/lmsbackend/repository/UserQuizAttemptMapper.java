@@ -1,7 +1,9 @@
 package org.example.lmsbackend.repository;
 
 import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.dto.GradeDTO;
 import org.example.lmsbackend.model.UserQuizAttempt;
+import java.time.Instant;
 import java.util.List;
 
 @Mapper
@@ -105,6 +107,69 @@ public interface UserQuizAttemptMapper {
     })
     List<UserQuizAttempt> findByCourseId(@Param("courseId") Integer courseId);
 
+    /**
+     * Bảng điểm của khóa học trong 1 query: attempt + điểm tối đa của quiz + số câu đã/chưa chấm.
+     * Phân trang keyset theo (attempted_at, attempt_id) giảm dần, lọc quiz_type trong SQL.
+     */
+    @Select("""
+    <script>
+    SELECT a.attempt_id, a.score, a.attempted_at,
+           u.user_id, u.full_name,
+           q.quiz_id, q.title, COALESCE(q.quiz_type, 'UNKNOWN') AS quiz_type,
+           COALESCE(qs.max_score, 0) AS max_score,
+           COUNT(ua.user_answer_id) - COUNT(ua.manual_score) AS ungraded_count,
+           COUNT(ua.manual_score) AS graded_count,
+           CASE WHEN q.quiz_type = 'ESSAY' THEN MIN(ua.user_answer_id) END AS user_answer_id,
+           CASE WHEN q.quiz_type = 'ESSAY' AND COUNT(ua.user_answer_id) > COUNT(ua.manual_score)
+                THEN 'PENDING_GRADE' ELSE 'COMPLETED' END AS status
+    FROM user_quiz_attempts a
+    JOIN users u ON a.user_id = u.user_id
+    JOIN quizzes q ON a.quiz_id = q.quiz_id
+    LEFT JOIN (
+        SELECT qu.quiz_id, SUM(COALESCE(qu.points, 1)) AS max_score
+        FROM questions qu
+        JOIN quizzes cq ON qu.quiz_id = cq.quiz_id
+        WHERE cq.course_id = #{courseId}
+        GROUP BY qu.quiz_id
+    ) qs ON qs.quiz_id = q.quiz_id
+    LEFT JOIN user_answers ua ON ua.attempt_id = a.attempt_id
+    WHERE q.course_id = #{courseId}
+    <if test="quizType != null">
+      AND q.quiz_type = #{quizType}
+    </if>
+    <if test="beforeAttemptedAt != null">
+      AND (a.attempted_at &lt; #{beforeAttemptedAt}
+           OR (a.attempted_at = #{beforeAttemptedAt} AND a.attempt_id &lt; #{beforeAttemptId}))
+    </if>
+    GROUP BY a.attempt_id, a.score, a.attempted_at, u.user_id, u.full_name,
+             q.quiz_id, q.title, q.quiz_type, qs.max_score
+    ORDER BY a.attempted_at DESC, a.attempt_id DESC
+    <if test="limit != null">
+      LIMIT #{limit}
+    </if>
+    </script>
+    """)
+    @Results({
+        @Result(property = "attemptId", column = "attempt_id"),
+        @Result(property = "score", column = "score"),
+        @Result(property = "submittedAt", column = "attempted_at"),
+        @Result(property = "userId", column = "user_id"),
+        @Result(property = "studentName", column = "full_name"),
+        @Result(property = "quizId", column = "quiz_id"),
+        @Result(property = "quizTitle", column = "title"),
+        @Result(property = "quizType", column = "quiz_type"),
+        @Result(property = "maxScore", column = "max_score"),
+        @Result(property = "gradedCount", column = "graded_count"),
+        @Result(property = "ungradedCount", column = "ungraded_count"),
+        @Result(property = "userAnswerId", column = "user_answer_id"),
+        @Result(property = "status", column = "status")
+    })
+    List<GradeDTO> findGradebookByCourse(@Param("courseId") Integer courseId,
+                                         @Param("quizType") String quizType,
+                                         @Param("beforeAttemptedAt") Instant beforeAttemptedAt,
+                                         @Param("beforeAttemptId") Integer beforeAttemptId,
+                                         @Param("limit") Integer limit);
+
     @Select("SELECT a.*, u.user_id, u.username, u.full_name, u.email, " +
             "q.quiz_id, q.title, q.description, q.quiz_type, q.course_id " +
             "FROM user_quiz_attempts a " +
@@ -127,4 +192,10 @@ public interface UserQuizAttemptMapper {
         @Result(property = "quiz.courseId", column = "course_id")
     })
     List<UserQuizAttempt> findByUserId(@Param("userId") Integer userId);
+
+    // Các quiz trong khóa học mà user đã làm ít nhất 1 lần
+    @Select("SELECT DISTINCT a.quiz_id FROM user_quiz_attempts a " +
+            "JOIN quizzes q ON a.quiz_id = q.quiz_id " +
+            "WHERE a.user_id = #{userId} AND q.course_id = #{courseId}")
+    List<Integer> findAttemptedQuizIdsByUserAndCourse(@Param("userId") Integer userId, @Param("courseId") Integer courseId);
 }
@@ -8,15 +8,15 @@ import java.util.List;
 public interface VideoMapper {
 
     @Insert("""
-        INSERT INTO videos (title, description, file_url, duration, file_size, mime_type, course_id, instructor_id, module_id, order_number, uploaded_at, published)
-        VALUES (#{title}, #{description}, #{fileUrl}, #{duration}, #{fileSize}, #{mimeType}, #{course.courseId}, #{instructor.userId}, #{module.id}, #{orderNumber}, NOW(), #{published})
+        INSERT INTO videos (title, description, file_url, duration, file_size, mime_type, course_id, instructor_id, module_id, order_number, uploaded_at, published, status, thumbnail_url)
+        VALUES (#{title}, #{description}, #{fileUrl}, #{duration}, #{fileSize}, #{mimeType}, #{course.courseId}, #{instructor.userId}, #{module.id}, #{orderNumber}, NOW(), #{published}, #{status}, #{thumbnailUrl})
     """)
     @Options(useGeneratedKeys = true, keyProperty = "videoId")
     int insertVideo(Video video);
 
     @Select("""
     SELECT 
-        video_id, title, description, file_url, duration, file_size, mime_type, module_id, order_number, uploaded_at, published
+        video_id, title, description, file_url, duration, file_size, mime_type, module_id, order_number, uploaded_at, published, status, thumbnail_url, hls_url
     FROM videos
     WHERE module_id IS NOT NULL 
     AND (#{title} IS NULL OR title LIKE CONCAT('%', #{title}, '%'))
@@ -32,6 +32,9 @@ public interface VideoMapper {
             @Result(property = "orderNumber", column = "order_number"),
             @Result(property = "uploadedAt", column = "uploaded_at"),
             @Result(property = "published", column = "published"),
+            @Result(property = "status", column = "status"),
+            @Result(property = "thumbnailUrl", column = "thumbnail_url"),
+            @Result(property = "hlsUrl", column = "hls_url"),
             @Result(property = "module", column = "module_id", 
                     one = @One(select = "org.example.lmsbackend.repository.ModulesMapper.findById"))
     })
@@ -49,6 +52,9 @@ public interface VideoMapper {
             @Result(property = "mimeType", column = "mime_type"),
             @Result(property = "uploadedAt", column = "uploaded_at"),
             @Result(property = "published", column = "published"),
+            @Result(property = "status", column = "status"),
+            @Result(property = "thumbnailUrl", column = "thumbnail_url"),
+            @Result(property = "hlsUrl", column = "hls_url"),
             @Result(property = "course", column = "course_id", 
                     one = @One(select = "org.example.lmsbackend.repository.CourseMapper.findById")),
             @Result(property = "instructor", column = "instructor_id", 
@@ -71,6 +77,69 @@ public interface VideoMapper {
     """)
     int updateVideo(Video video);
 
+    // Dùng cho polling trạng thái xử lý sau upload - không load course/instructor
+    @Select("SELECT video_id, status, duration, thumbnail_url, hls_url FROM videos WHERE video_id = #{videoId}")
+    @Results({
+            @Result(property = "videoId", column = "video_id"),
+            @Result(property = "status", column = "status"),
+            @Result(property = "duration", column = "duration"),
+            @Result(property = "thumbnailUrl", column = "thumbnail_url"),
+            @Result(property = "hlsUrl", column = "hls_url")
+    })
+    Video findStatusById(@Param("videoId") Long videoId);
+
+    @Update("""
+        UPDATE videos
+        SET duration = #{duration}, thumbnail_url = #{thumbnailUrl}, status = #{status}
+        WHERE video_id = #{videoId}
+    """)
+    int updateIngestResult(@Param("videoId") Integer videoId,
+                           @Param("duration") Integer duration,
+                           @Param("thumbnailUrl") String thumbnailUrl,
+                           @Param("status") Video.Status status);
+
+    /**
+     * Video còn dang dở khi node restart: nhận tối đa limit video "processing" chưa có node nào giữ lease
+     * (lease hết hạn = node xử lý trước đó đã tắt). Mỗi video chỉ 1 node nhận được.
+     */
+    @Update("""
+        UPDATE videos
+        SET ingest_claim_token = #{token}, ingest_lease_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND)
+        WHERE status = 'processing' AND (ingest_lease_until IS NULL OR ingest_lease_until < NOW())
+        ORDER BY video_id ASC
+        LIMIT #{limit}
+    """)
+    int claimPendingIngest(@Param("token") String token, @Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    @Select("""
+        SELECT video_id, file_url FROM videos
+        WHERE ingest_claim_token = #{token} AND status = 'processing'
+        ORDER BY video_id ASC
+    """)
+    @Results({
+            @Result(property = "videoId", column = "video_id"),
+            @Result(property = "fileUrl", column = "file_url")
+    })
+    List<Video> findClaimedIngest(@Param("token") String token);
+
+    /**
+     * Nhận (hoặc gia hạn) lease xử lý 1 video ngay trước khi bắt đầu; 0 nếu video không còn "processing"
+     * hoặc node khác đang giữ lease chưa hết hạn
+     */
+    @Update("""
+        UPDATE videos
+        SET ingest_claim_token = #{token}, ingest_lease_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND)
+        WHERE video_id = #{videoId} AND status = 'processing'
+          AND (ingest_claim_token = #{token} OR ingest_lease_until IS NULL OR ingest_lease_until < NOW())
+    """)
+    int claimIngest(@Param("videoId") Integer videoId, @Param("token") String token, @Param("leaseSeconds") long leaseSeconds);
+
+    @Update("UPDATE videos SET status = #{status} WHERE video_id = #{videoId}")
+    int updateStatus(@Param("videoId") Integer videoId, @Param("status") Video.Status status);
+
+    @Update("UPDATE videos SET hls_url = #{hlsUrl} WHERE video_id = #{videoId}")
+    int updateHlsUrl(@Param("videoId") Integer videoId, @Param("hlsUrl") String hlsUrl);
+
     @Delete("DELETE FROM videos WHERE video_id = #{videoId}")
     int deleteVideo(@Param("videoId") Long videoId);
 
@@ -97,6 +166,9 @@ public interface VideoMapper {
             @Result(property = "mimeType", column = "mime_type"),
             @Result(property = "uploadedAt", column = "uploaded_at"),
             @Result(property = "published", column = "published"),
+            @Result(property = "status", column = "status"),
+            @Result(property = "thumbnailUrl", column = "thumbnail_url"),
+            @Result(property = "hlsUrl", column = "hls_url"),
             @Result(property = "course", column = "course_id", 
                     one = @One(select = "org.example.lmsbackend.repository.CourseMapper.findById")),
             @Result(property = "instructor", column = "instructor_id", 
@@ -117,6 +189,9 @@ public interface VideoMapper {
             @Result(property = "orderNumber", column = "order_number"),
             @Result(property = "uploadedAt", column = "uploaded_at"),
             @Result(property = "published", column = "published"),
+            @Result(property = "status", column = "status"),
+            @Result(property = "thumbnailUrl", column = "thumbnail_url"),
+            @Result(property = "hlsUrl", column = "hls_url"),
             @Result(property = "course", column = "course_id", 
                     one = @One(select = "org.example.lmsbackend.repository.CourseMapper.findById")),
             @Result(property = "instructor", column = "instructor_id", 
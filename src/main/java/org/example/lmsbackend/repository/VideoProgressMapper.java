@@ -0,0 +1,55 @@
+package org.example.lmsbackend.repository;
+
+import org.apache.ibatis.annotations.*;
+import org.example.lmsbackend.model.VideoProgress;
+
+import java.util.List;
+
+/**
+ * Ghi tiến độ xem video theo lô (dùng bởi VideoProgressBufferService).
+ * Mỗi phần tử chỉ cần user.userId, video.videoId, watchedDuration, totalDuration, lastWatchedAt.
+ */
+@Mapper
+public interface VideoProgressMapper {
+
+    @Select("""
+    <script>
+    SELECT video_id FROM videos WHERE video_id IN
+    <foreach collection="videoIds" item="id" open="(" separator="," close=")">#{id}</foreach>
+    </script>
+    """)
+    List<Integer> findExistingVideoIds(@Param("videoIds") List<Integer> videoIds);
+
+    // Khóa uk_video_progress_user_video: dòng đã có thì cập nhật vị trí, chưa có thì tạo mới
+    @Insert("""
+    <script>
+    INSERT INTO video_progress (user_id, video_id, watched_duration, total_duration, last_watched_at) VALUES
+    <foreach collection="rows" item="r" separator=",">(#{r.user.userId}, #{r.video.videoId}, #{r.watchedDuration}, #{r.totalDuration}, #{r.lastWatchedAt})</foreach>
+    ON DUPLICATE KEY UPDATE
+        watched_duration = VALUES(watched_duration),
+        total_duration = VALUES(total_duration),
+        last_watched_at = VALUES(last_watched_at)
+    </script>
+    """)
+    int batchUpsert(@Param("rows") List<VideoProgress> rows);
+
+    // Các dòng đã xem >= 90% nhưng chưa được đánh dấu hoàn thành (kèm module để cập nhật bộ đếm)
+    @Select("""
+    <script>
+    SELECT vp.progress_id, vp.user_id, vp.video_id, v.module_id
+    FROM video_progress vp
+    JOIN videos v ON vp.video_id = v.video_id
+    WHERE (vp.user_id, vp.video_id) IN
+    <foreach collection="rows" item="r" open="(" separator="," close=")">(#{r.user.userId}, #{r.video.videoId})</foreach>
+      AND (vp.completed IS NULL OR vp.completed = false)
+      AND vp.total_duration > 0 AND vp.watched_duration * 100 >= vp.total_duration * 90
+    </script>
+    """)
+    @Results({
+        @Result(property = "progressId", column = "progress_id"),
+        @Result(property = "user.userId", column = "user_id"),
+        @Result(property = "video.videoId", column = "video_id"),
+        @Result(property = "video.module.id", column = "module_id")
+    })
+    List<VideoProgress> findNewlyCompleted(@Param("rows") List<VideoProgress> rows);
+}
@@ -2,9 +2,11 @@ package org.example.lmsbackend.repository;
 
 import org.example.lmsbackend.model.VideoProgress;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -19,4 +21,26 @@ public interface VideoProgressRepository extends JpaRepository<VideoProgress, Lo
     
     @Query("SELECT vp FROM VideoProgress vp WHERE vp.user.userId = :userId AND vp.video.module.id = :moduleId")
     java.util.List<VideoProgress> findByUserIdAndModuleId(@Param("userId") Integer userId, @Param("moduleId") Integer moduleId);
+
+    // ✅ [videoId, watchedDuration, totalDuration] của user trong cả khóa học (1 query)
+    @Query("SELECT vp.video.videoId, vp.watchedDuration, vp.totalDuration FROM VideoProgress vp " +
+           "WHERE vp.user.userId = :userId AND vp.video.module.courseId = :courseId")
+    java.util.List<Object[]> findWatchStatsByUserIdAndCourseId(@Param("userId") Integer userId, @Param("courseId") Integer courseId);
+
+    // ✅ Đánh dấu đã xem xong có điều kiện: trả về 1 nếu đây là lần hoàn thành đầu tiên
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE video_progress SET completed = true " +
+                   "WHERE progress_id = :progressId AND (completed IS NULL OR completed = false)", nativeQuery = true)
+    int markCompleted(@Param("progressId") Integer progressId);
+
+    // ✅ Đánh dấu lại toàn bộ video đã xem >= 90% của user trong khóa học (dùng khi tính lại bộ đếm)
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE video_progress vp JOIN videos v ON vp.video_id = v.video_id " +
+                   "JOIN modules m ON v.module_id = m.module_id " +
+                   "SET vp.completed = true " +
+                   "WHERE vp.user_id = :userId AND m.course_id = :courseId " +
+                   "AND vp.total_duration > 0 AND vp.watched_duration * 100 >= vp.total_duration * 90", nativeQuery = true)
+    int markCompletedByUserIdAndCourseId(@Param("userId") Integer userId, @Param("courseId") Integer courseId);
 }
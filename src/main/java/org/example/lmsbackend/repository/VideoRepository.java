@@ -16,4 +16,11 @@ public interface VideoRepository extends JpaRepository<Video, Long> {
     
     @Query("SELECT v FROM Video v WHERE v.module.id = :moduleId AND v.published = true")
     List<Video> findByModuleIdAndPublished(@Param("moduleId") Integer moduleId);
+
+    // [moduleId, videoId] của toàn bộ video đã xuất bản trong khóa học
+    @Query("SELECT v.module.id, v.videoId FROM Video v WHERE v.module.courseId = :courseId AND v.published = true")
+    List<Object[]> findPublishedIdsByCourseId(@Param("courseId") Integer courseId);
+
+    @Query("SELECT COUNT(v) FROM Video v WHERE v.module.id = :moduleId AND v.published = true")
+    long countPublishedByModuleId(@Param("moduleId") Integer moduleId);
 }
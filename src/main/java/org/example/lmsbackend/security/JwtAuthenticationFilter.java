@@ -1,5 +1,7 @@
 package org.example.lmsbackend.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -28,29 +30,31 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String authHeader = request.getHeader("Authorization");
-        System.out.println("🔍 JWT Filter - Auth header: " + authHeader);
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            System.out.println("❌ JWT Filter - No valid auth header");
             filterChain.doFilter(request, response);
             return;
         }
 
+        // Parse + xác thực token đúng 1 lần (claims được cache theo digest của token)
         String token = authHeader.substring(7);
-        String username = jwtTokenUtil.extractUsername(token);
-        String role = jwtTokenUtil.extractRole(token);
-        Integer userId = jwtTokenUtil.extractUserId(token);
-        
-        System.out.println("🔍 JWT Filter - Extracted username: " + username);
-        System.out.println("🔍 JWT Filter - Extracted role: " + role);
-        System.out.println("🔍 JWT Filter - Extracted userId: " + userId);
+        Claims claims;
+        try {
+            claims = jwtTokenUtil.extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            System.out.println("❌ JWT Filter - Invalid token: " + e.getMessage());
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String username = claims.getSubject();
+        String role = claims.get("role", String.class);
+        Integer userId = claims.get("userId", Integer.class);
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             List<SimpleGrantedAuthority> authorities = List.of(
                     new SimpleGrantedAuthority(role)  // ✅ Không thêm "ROLE_" vì đã có trong token
             );
-            
-            System.out.println("🔍 JWT Filter - Created authorities: " + authorities);
 
             CustomUserDetails customUserDetails = new CustomUserDetails(
                     userId,
@@ -64,7 +68,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             );
 
             SecurityContextHolder.getContext().setAuthentication(authToken);
-            System.out.println("✅ JWT Filter - Authentication set successfully");
         }
 
         filterChain.doFilter(request, response);
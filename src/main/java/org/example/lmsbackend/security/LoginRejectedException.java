@@ -0,0 +1,30 @@
+package org.example.lmsbackend.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Đăng nhập bị từ chối trước khi kiểm tra mật khẩu (bị throttle hoặc hàng đợi băm quá tải).
+ * Mang theo số giây client nên chờ để trả về header Retry-After.
+ */
+public class LoginRejectedException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public LoginRejectedException(HttpStatus status, String reason, long retryAfterSeconds) {
+        super(status, reason);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
@@ -1,8 +1,10 @@
 package org.example.lmsbackend.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -38,6 +40,7 @@ public class SecurityConfig {
                         .requestMatchers("/uploads/modules/**").permitAll() // ✅ Cho phép truy cập content files
                         .requestMatchers("/uploads/imagescourse/**").permitAll() // ✅ Cho phép ảnh khóa học
                         .requestMatchers("/cvs/**").permitAll() // ✅ Cho phép truy cập file CV công khai
+                        .requestMatchers(HttpMethod.GET, "/api/images/avatars/**", "/api/images/courses/**").permitAll() // ✅ Ảnh theo kích thước
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -46,6 +49,14 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // Filter chỉ chạy trong SecurityFilterChain, không đăng ký thêm làm servlet filter (tránh chạy 2 lần)
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(JwtAuthenticationFilter filter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
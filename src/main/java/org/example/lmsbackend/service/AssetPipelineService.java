@@ -0,0 +1,178 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lưu file upload (ảnh, tài liệu) dưới tên theo nội dung: sha256(nội dung) + đuôi file.
+ * - Nội dung không bao giờ đổi dưới cùng 1 URL → trình duyệt cache "immutable" 1 năm, không cần hỏi lại.
+ * - ETag mạnh lấy luôn từ hash trong tên file (tính 1 lần khi upload, không băm lại lúc phục vụ).
+ * - File dạng văn bản có thêm bản nén sẵn .gz để EncodedResourceResolver trả về khi client hỗ trợ.
+ * - Upload trùng nội dung vào cùng thư mục dùng lại file đã có; khác thư mục thì dùng chung blob (BlobStoreService).
+ * Thư mục ở đây là prefix key trong ObjectStorage ("avatars", "imagescourse", "modules/5"...).
+ */
+@Service
+public class AssetPipelineService {
+
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final Pattern CONTENT_HASHED_NAME = Pattern.compile("^([0-9a-f]{64})(\\.[a-z0-9]{1,10})?(\\.gz|\\.br)?$");
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("^[a-z0-9]{1,10}$");
+
+    // Định dạng đã nén sẵn (ảnh, pdf, office, zip...) nén thêm không được gì
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "txt", "csv", "md", "html", "htm", "css", "js", "json", "xml", "svg", "rtf", "tex", "srt", "vtt");
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private ObjectStorage objectStorage;
+
+    /**
+     * Ghi luồng dữ liệu vào thư mục, băm SHA-256 trong cùng lượt copy ra file staging.
+     *
+     * @return tên file theo nội dung (không gồm thư mục)
+     */
+    public String store(InputStream in, String folder, String originalFilename) throws IOException {
+        Path temp = blobStoreService.newStagingFile("upload-");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream source = new DigestInputStream(in, digest)) {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return finish(temp, folder, HexFormat.of().formatHex(digest.digest()), originalFilename);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Đưa file cục bộ đã có (ví dụ file ghép từ upload theo chunk) vào thư mục dưới tên theo nội dung.
+     * File nguồn bị chuyển đi hoặc xóa.
+     *
+     * @return tên file mới trong thư mục
+     */
+    public String publish(Path file, String folder, String originalFilename) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream source = new DigestInputStream(Files.newInputStream(file), digest)) {
+            source.transferTo(OutputStream.nullOutputStream());
+        }
+        String name = finish(file, folder, HexFormat.of().formatHex(digest.digest()), originalFilename);
+        Files.deleteIfExists(file);
+        return name;
+    }
+
+    /**
+     * Xóa file theo nội dung cùng bản nén sẵn (nếu có), blob chỉ mất khi không còn key nào dùng
+     */
+    public void delete(String key) throws IOException {
+        blobStoreService.release(key);
+        objectStorage.delete(key + ".gz");
+    }
+
+    public static boolean isContentHashed(String filename) {
+        return filename != null && CONTENT_HASHED_NAME.matcher(filename).matches();
+    }
+
+    /**
+     * ETag mạnh cho file theo nội dung (bản .gz/.br có ETag riêng), null với file tên cũ
+     */
+    public static String etagFor(Resource resource) {
+        Matcher matcher = CONTENT_HASHED_NAME.matcher(resource.getFilename() != null ? resource.getFilename() : "");
+        if (!matcher.matches()) {
+            return null;
+        }
+        String encoding = matcher.group(3) == null ? "" : "-" + matcher.group(3).substring(1);
+        return "\"" + matcher.group(1).substring(0, 32) + encoding + "\"";
+    }
+
+    private String finish(Path source, String folder, String hash, String originalFilename) throws IOException {
+        String extension = extension(originalFilename);
+        String name = extension.isEmpty() ? hash : hash + "." + extension;
+        String key = folder + "/" + name;
+        if (objectStorage.stat(key).isEmpty()) {
+            blobStoreService.put(source, hash, Files.size(source), key, BlobStoreService.contentTypeOf(name));
+            if (COMPRESSIBLE_EXTENSIONS.contains(extension)) {
+                writeGzipVariant(key);
+            }
+        }
+        return name;
+    }
+
+    // Bản .gz chỉ dùng khi app tự phục vụ file (backend local, EncodedResourceResolver);
+    // backend S3 trả file qua URL ký sẵn nên không cần. Chỉ giữ nếu nhỏ hơn đáng kể so với bản gốc
+    private void writeGzipVariant(String key) {
+        Optional<Path> file = objectStorage.localPath(key);
+        if (file.isEmpty()) {
+            return;
+        }
+        Path gzip = null;
+        try {
+            gzip = blobStoreService.newStagingFile("gzip-");
+            try (OutputStream out = new BestCompressionGzipOutputStream(Files.newOutputStream(gzip))) {
+                Files.copy(file.get(), out);
+            }
+            if (Files.size(gzip) <= Files.size(file.get()) * 0.9) {
+                objectStorage.putFile(key + ".gz", gzip, "application/gzip");
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not precompress " + key + ": " + e.getMessage());
+        } finally {
+            try {
+                if (gzip != null) {
+                    Files.deleteIfExists(gzip);
+                }
+            } catch (IOException ignored) {
+                // Bản nén lỗi chỉ làm mất tối ưu, file gốc vẫn dùng được
+            }
+        }
+    }
+
+    private static String extension(String filename) {
+        if (filename == null) {
+            return "";
+        }
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || dot == filename.length() - 1) {
+            return "";
+        }
+        String extension = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return SAFE_EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class BestCompressionGzipOutputStream extends GZIPOutputStream {
+        BestCompressionGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.repository.BlobStoreMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+
+/**
+ * Đếm tham chiếu blob trong DB, an toàn khi chạy nhiều node.
+ * <p>
+ * Mọi thay đổi ref_count của 1 blob diễn ra trong transaction ngắn giữ khóa dòng stored_blobs (SELECT ... FOR UPDATE):
+ * tăng ref_count + ghi blob_refs (hoặc xóa ref + giảm ref_count + kiểm tra về 0) commit hoặc rollback cùng nhau,
+ * nên lỗi giữa chừng không làm lệch bộ đếm. Không tải file lên kho trong lúc giữ khóa (multipart S3 có thể mất
+ * hàng phút, giữ cả connection DB): blob được đặt trước 1 ref ({@link #reserve}) rồi mới tải lên ngoài transaction,
+ * ref đặt trước khiến blob không bị dọn giữa chừng; {@link #link} chuyển nó thành ref của key, lỗi thì {@link #unreserve}.
+ * File blob chỉ bị xóa SAU khi transaction commit, trong transaction mới khóa lại dòng đó và kiểm tra lại ref_count
+ * (node khác có thể vừa trỏ key mới tới cùng nội dung).
+ */
+@Service
+public class BlobRefService {
+
+    @Autowired
+    private BlobStoreMapper blobStoreMapper;
+
+    @Autowired
+    private ObjectStorage objectStorage;
+
+    private final TransactionTemplate purgeTransaction;
+
+    public BlobRefService(PlatformTransactionManager transactionManager) {
+        this.purgeTransaction = new TransactionTemplate(transactionManager);
+        this.purgeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Đặt trước 1 ref cho blob sha256 (tạo dòng nếu chưa có) trước khi tải file blob lên:
+     * ref_count > 0 nên node khác không xóa blob trong lúc đang tải / chưa link.
+     * Sau đó bắt buộc gọi {@link #link} hoặc {@link #unreserve}.
+     */
+    @Transactional
+    public void reserve(String sha256, long size) {
+        blobStoreMapper.ensureBlob(sha256, size);
+        blobStoreMapper.lockRefCount(sha256);
+        blobStoreMapper.acquire(sha256);
+    }
+
+    /**
+     * Trỏ key tới blob sha256 đã đặt trước bằng {@link #reserve}: ref đặt trước thành ref của key.
+     * Key đang trỏ tới blob khác thì nhả blob cũ; đã trỏ sẵn tới blob này thì nhả ref đặt trước.
+     * @return true nếu key trước đó chưa trỏ tới blob này
+     */
+    @Transactional
+    public boolean link(String key, String sha256, String blobKey) {
+        blobStoreMapper.lockRefCount(sha256);
+        if (blobStoreMapper.insertRef(key, sha256) > 0) {
+            return true;
+        }
+
+        String previous = blobStoreMapper.lockShaByPath(key);
+        if (sha256.equals(previous)) {
+            releaseCount(sha256, blobKey);
+            return false;
+        }
+        if (previous == null || blobStoreMapper.repointRef(key, previous, sha256) == 0) {
+            throw new IllegalStateException("Blob ref changed concurrently: " + key);
+        }
+        releaseCount(previous, BlobStoreService.blobKey(previous));
+        return true;
+    }
+
+    /**
+     * Nhả ref đặt trước khi tải lên hoặc link lỗi; blob về 0 ref (vừa tải lên, chưa ai trỏ tới) thì bị dọn sau commit
+     */
+    @Transactional
+    public void unreserve(String sha256, String blobKey) {
+        releaseCount(sha256, blobKey);
+    }
+
+    /**
+     * Bỏ ref của key tới blob sha256; blob về 0 ref thì bị xóa sau khi commit.
+     * @return false nếu key không còn trỏ tới blob đó (đã bị nhả)
+     */
+    @Transactional
+    public boolean unlink(String key, String sha256, String blobKey) {
+        if (blobStoreMapper.deleteRef(key, sha256) == 0) {
+            return false;
+        }
+        releaseCount(sha256, blobKey);
+        return true;
+    }
+
+    /**
+     * Xóa file blob nếu vẫn không còn ai trỏ tới. Transaction riêng, giữ khóa dòng trong lúc xóa file.
+     */
+    public void purgeIfUnreferenced(String sha256, String blobKey) {
+        purgeTransaction.executeWithoutResult(status -> {
+            Integer refCount = blobStoreMapper.lockRefCount(sha256);
+            if (refCount != null && refCount > 0) {
+                return;
+            }
+            try {
+                objectStorage.delete(blobKey);
+            } catch (IOException e) {
+                // Giữ dòng ref_count = 0 để lần nhả/ghi sau xử lý lại
+                System.err.println("❌ Failed to delete blob " + sha256 + ": " + e.getMessage());
+                return;
+            }
+            blobStoreMapper.deleteUnreferenced(sha256);
+            System.out.println("🗑️ Blob " + sha256 + " no longer referenced, deleted");
+        });
+    }
+
+    private void releaseCount(String sha256, String blobKey) {
+        blobStoreMapper.lockRefCount(sha256);
+        blobStoreMapper.release(sha256);
+        Integer refCount = blobStoreMapper.lockRefCount(sha256);
+        if (refCount == null || refCount <= 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    purgeIfUnreferenced(sha256, blobKey);
+                }
+            });
+        }
+    }
+}
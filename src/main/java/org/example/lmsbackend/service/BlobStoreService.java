@@ -0,0 +1,228 @@
+package org.example.lmsbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.lmsbackend.repository.BlobStoreMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.example.lmsbackend.storage.StoredObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Kho file theo nội dung: mỗi nội dung chỉ lưu 1 lần ở key blobs/{2 ký tự}/{2 ký tự}/{sha256}
+ * (chia thư mục con để không có thư mục phẳng hàng trăm nghìn file).
+ * <p>
+ * Key cũ (videos/{uuid}_a.mp4, cvs/..., modules/...) vẫn giữ nguyên:
+ * bảng blob_refs ghi key → sha256. Backend local tạo hard link tại key đó nên resource handler, ffmpeg... đọc như cũ;
+ * backend S3 không có link nên đọc qua {@link #open}/{@link #resolveKey} để đi thẳng tới blob.
+ * Xóa 1 key chỉ giảm ref_count, blob bị xóa khi không còn ai trỏ tới (đếm trong DB, xem {@link BlobRefService}).
+ */
+@Service
+public class BlobStoreService {
+
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final int KEY_CACHE_LIMIT = 50_000;
+
+    // key → key blob (key không qua kho thì là chính nó). Node khác có thể trỏ lại key,
+    // nên mục cache chỉ sống ngắn rồi tra lại DB
+    private final Cache<String, String> resolvedKeys;
+
+    private final Path stagingDir;
+    private final Duration presignTtl;
+
+    @Autowired
+    private BlobStoreMapper blobStoreMapper;
+
+    @Autowired
+    private ObjectStorage objectStorage;
+
+    @Autowired
+    private BlobRefService blobRefService;
+
+    public BlobStoreService(@Value("${app.storage.staging-dir:uploads/tmp}") String stagingDir,
+                            @Value("${app.storage.presign-ttl-seconds:900}") long presignTtlSeconds,
+                            @Value("${app.storage.key-cache-ttl-seconds:30}") long keyCacheTtlSeconds) {
+        this.stagingDir = Paths.get(stagingDir).toAbsolutePath().normalize();
+        this.presignTtl = Duration.ofSeconds(presignTtlSeconds);
+        this.resolvedKeys = Caffeine.newBuilder()
+                .maximumSize(KEY_CACHE_LIMIT)
+                .expireAfterWrite(Duration.ofSeconds(keyCacheTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Thư mục cục bộ cho file tạm (upload đang ghi, chunk, file chờ ffmpeg...), không phải nơi lưu lâu dài
+     */
+    public Path getStagingDir() {
+        return stagingDir;
+    }
+
+    public Path newStagingFile(String prefix) throws IOException {
+        Files.createDirectories(stagingDir);
+        return Files.createTempFile(stagingDir, prefix, ".tmp");
+    }
+
+    /**
+     * Lưu luồng dữ liệu tại key, SHA-256 tính ngay trong lượt copy ra file staging
+     */
+    public void store(InputStream in, String key, String contentType) throws IOException {
+        Path temp = newStagingFile("blob-");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream source = new DigestInputStream(in, digest)) {
+                size = Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            put(temp, HexFormat.of().formatHex(digest.digest()), size, key, contentType);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Đưa file cục bộ đã có sẵn (vd file ghép từ upload theo chunk) vào kho tại key. File bị chuyển đi hoặc xóa.
+     */
+    public void adopt(Path localFile, String key, String contentType) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream source = new DigestInputStream(Files.newInputStream(localFile), digest)) {
+            source.transferTo(OutputStream.nullOutputStream());
+        }
+        put(localFile, HexFormat.of().formatHex(digest.digest()), Files.size(localFile), key, contentType);
+    }
+
+    /**
+     * Đưa file cục bộ đã biết hash vào kho và trỏ key tới blob.
+     * File bị chuyển vào kho (blob mới) hoặc xóa (nội dung đã có).
+     */
+    public void put(Path localFile, String sha256, long size, String key, String contentType) throws IOException {
+        ObjectStorage.checkKey(key);
+        if (key.startsWith(BLOB_PREFIX)) {
+            throw new IllegalArgumentException("Key inside blob store: " + key);
+        }
+        String blobKey = blobKey(sha256);
+
+        // Đặt trước ref (transaction ngắn) rồi mới tải lên, không giữ khóa dòng blob / connection DB trong lúc tải:
+        // ref đặt trước giữ blob không bị node khác xóa. Nội dung đã có trong kho thì không tải lại
+        blobRefService.reserve(sha256, size);
+        boolean linked = false;
+        try {
+            if (objectStorage.stat(blobKey).isEmpty()) {
+                objectStorage.putFile(blobKey, localFile, contentType != null ? contentType : contentTypeOf(key));
+            } else {
+                Files.deleteIfExists(localFile);
+            }
+            blobRefService.link(key, sha256, blobKey);
+            linked = true;
+        } finally {
+            if (!linked) {
+                // Blob vừa tải lên mà không ai trỏ tới → bị dọn sau khi nhả
+                try {
+                    blobRefService.unreserve(sha256, blobKey);
+                } catch (RuntimeException e) {
+                    // Không ném đè lỗi gốc; ref đặt trước còn lại chỉ làm blob không bao giờ bị dọn
+                    System.err.println("❌ Failed to release reserved blob " + sha256 + ": " + e.getMessage());
+                }
+            }
+        }
+        resolvedKeys.put(key, blobKey);
+        objectStorage.alias(blobKey, key);
+    }
+
+    /**
+     * Xóa key; blob chỉ bị xóa khi không còn key nào trỏ tới (sau khi transaction nhả ref commit).
+     * File không qua kho (upload trước khi có blob store) thì xóa trực tiếp.
+     */
+    public void release(String key) throws IOException {
+        String sha256 = blobStoreMapper.findShaByPath(key);
+        resolvedKeys.invalidate(key);
+        objectStorage.delete(key);
+        if (sha256 != null) {
+            blobRefService.unlink(key, sha256, blobKey(sha256));
+        }
+    }
+
+    /**
+     * Key thật chứa nội dung: key blob nếu đã dedup, không thì chính key đó
+     */
+    public String resolveKey(String key) {
+        return resolvedKeys.get(key, k -> {
+            String sha256 = blobStoreMapper.findShaByPath(k);
+            return sha256 != null ? blobKey(sha256) : k;
+        });
+    }
+
+    public InputStream open(String key) throws IOException {
+        return objectStorage.get(resolveKey(key));
+    }
+
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        return objectStorage.getRange(resolveKey(key), offset, length);
+    }
+
+    public Optional<StoredObject> stat(String key) throws IOException {
+        return objectStorage.stat(resolveKey(key));
+    }
+
+    /**
+     * File cục bộ của key (backend local) để phục vụ bằng FileChannel/sendfile
+     */
+    public Optional<Path> localFile(String key) {
+        return objectStorage.localPath(resolveKey(key));
+    }
+
+    /**
+     * URL tải thẳng từ kho (backend S3), empty với backend local
+     */
+    public Optional<URL> presignGet(String key, String downloadName, boolean attachment) {
+        if (!objectStorage.supportsPresignedUrls()) {
+            return Optional.empty();
+        }
+        return objectStorage.presignGet(resolveKey(key), presignTtl, downloadName, attachment);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(blobStoreMapper.getStats());
+        long stored = ((Number) stats.getOrDefault("storedBytes", 0)).longValue();
+        long logical = ((Number) stats.getOrDefault("logicalBytes", 0)).longValue();
+        stats.put("savedBytes", logical - stored);
+        stats.put("backend", objectStorage.getClass().getSimpleName());
+        stats.put("cachedKeys", resolvedKeys.estimatedSize());
+        return stats;
+    }
+
+    public static String contentTypeOf(String name) {
+        return MediaTypeFactory.getMediaType(name).map(MediaType::toString).orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    static String blobKey(String sha256) {
+        return BLOB_PREFIX + sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
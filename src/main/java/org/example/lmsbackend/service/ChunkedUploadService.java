@@ -0,0 +1,199 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.model.UploadSession;
+import org.example.lmsbackend.repository.UploadSessionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Upload file lớn theo từng chunk, có thể tiếp tục khi mất kết nối (giao thức kiểu tus):
+ * init → PATCH chunk kèm offset → complete (move file vào thư mục đích).
+ * Chunk được ghi thẳng từ request stream vào file tạm bằng FileChannel nên bộ nhớ dùng là hằng số.
+ * Offset thực tế luôn lấy theo kích thước file tạm trên đĩa.
+ */
+@Service
+public class ChunkedUploadService {
+
+    // Mỗi lần transferFrom tối đa 1MB
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    // File tạm {uploadId}.part nằm trong thư mục staging chung của kho lưu trữ
+    @Value("${app.storage.staging-dir:uploads/tmp}")
+    private String stagingDir;
+
+    @Value("${app.upload.chunked.max-size:2147483648}")
+    private long maxSize;
+
+    @Value("${app.upload.chunked.chunk-size:8388608}")
+    private long chunkSize;
+
+    @Value("${app.upload.chunked.expire-hours:24}")
+    private long expireHours;
+
+    // Chặn 2 request cùng ghi vào 1 phiên
+    private final Set<String> activeWrites = ConcurrentHashMap.newKeySet();
+
+    public UploadSession createSession(Integer userId, String fileName, Long totalSize, String contentType) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Tên file không được để trống");
+        }
+        if (totalSize == null || totalSize <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Kích thước file không hợp lệ");
+        }
+        if (totalSize > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "File quá lớn. Kích thước tối đa là " + (maxSize / (1024 * 1024)) + "MB");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        // Chỉ giữ tên file, bỏ phần đường dẫn client gửi lên
+        session.setFileName(Paths.get(fileName).getFileName().toString());
+        session.setContentType(contentType);
+        session.setTotalSize(totalSize);
+        session.setUploadedBytes(0L);
+
+        Files.createDirectories(Paths.get(stagingDir));
+        Files.createFile(partFile(session.getUploadId()));
+        return uploadSessionRepository.save(session);
+    }
+
+    public UploadSession getSession(String uploadId, Integer userId) {
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy phiên upload"));
+        if (!session.getUserId().equals(userId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Bạn không có quyền truy cập phiên upload này");
+        }
+        return session;
+    }
+
+    /**
+     * Offset thực tế của phiên = kích thước file tạm trên đĩa (uploaded_bytes trong DB có thể chậm hơn
+     * nếu request trước bị ngắt trước khi kịp lưu)
+     */
+    public long getOffset(String uploadId, Integer userId) throws IOException {
+        getSession(uploadId, userId);
+        Path partFile = partFile(uploadId);
+        return Files.exists(partFile) ? Files.size(partFile) : 0L;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Ghi tiếp 1 chunk vào file tạm
+     * @param offset vị trí client cho là đang ở (header Upload-Offset), phải khớp với server
+     * @return offset mới sau khi ghi
+     */
+    public long appendChunk(String uploadId, Integer userId, long offset, InputStream body) throws IOException {
+        if (!activeWrites.add(uploadId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Phiên upload đang được ghi bởi request khác");
+        }
+        try {
+            UploadSession session = getSession(uploadId, userId);
+            long position;
+            try (FileChannel channel = FileChannel.open(partFile(uploadId), StandardOpenOption.WRITE)) {
+                long current = channel.size();
+                if (offset != current) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            "Upload-Offset không khớp (server đang ở " + current + ")");
+                }
+
+                position = current;
+                ReadableByteChannel source = Channels.newChannel(body);
+                try {
+                    while (position < session.getTotalSize()) {
+                        long written = channel.transferFrom(source, position,
+                                Math.min(TRANSFER_SIZE, session.getTotalSize() - position));
+                        if (written <= 0) {
+                            break;
+                        }
+                        position += written;
+                    }
+                } finally {
+                    // Mất kết nối giữa chừng: phần đã ghi vẫn được giữ lại để client upload tiếp
+                    session.setUploadedBytes(channel.size());
+                    uploadSessionRepository.save(session);
+                }
+            }
+            return position;
+        } finally {
+            activeWrites.remove(uploadId);
+        }
+    }
+
+    /**
+     * Kết thúc phiên: chuyển file tạm vào thư mục đích (cùng ổ đĩa thì chỉ là rename)
+     * @return đường dẫn file cuối cùng
+     */
+    public Path complete(String uploadId, Integer userId, Path targetDir, String targetFileName) throws IOException {
+        UploadSession session = getSession(uploadId, userId);
+        Path partFile = partFile(uploadId);
+        long size = Files.exists(partFile) ? Files.size(partFile) : -1;
+        if (size != session.getTotalSize()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Upload chưa hoàn tất (" + Math.max(size, 0) + "/" + session.getTotalSize() + " bytes)");
+        }
+
+        Files.createDirectories(targetDir);
+        Path target = targetDir.resolve(targetFileName);
+        Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING);
+        uploadSessionRepository.delete(session);
+        return target;
+    }
+
+    public void abort(String uploadId, Integer userId) throws IOException {
+        UploadSession session = getSession(uploadId, userId);
+        Files.deleteIfExists(partFile(uploadId));
+        uploadSessionRepository.delete(session);
+    }
+
+    // Dọn các phiên bỏ dở quá hạn
+    @Scheduled(fixedDelayString = "${app.upload.chunked.cleanup-interval-ms:3600000}")
+    public void cleanupExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByUpdatedAtBefore(LocalDateTime.now().minusHours(expireHours));
+        for (UploadSession session : expired) {
+            if (activeWrites.contains(session.getUploadId())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(partFile(session.getUploadId()));
+                uploadSessionRepository.delete(session);
+            } catch (IOException e) {
+                System.err.println("❌ Could not delete expired upload " + session.getUploadId() + ": " + e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            System.out.println("🧹 Cleaned up " + expired.size() + " expired upload sessions");
+        }
+    }
+
+    private Path partFile(String uploadId) {
+        return Paths.get(stagingDir, uploadId + ".part");
+    }
+}
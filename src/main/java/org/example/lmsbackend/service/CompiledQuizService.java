@@ -0,0 +1,281 @@
+package org.example.lmsbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.lmsbackend.model.Answer;
+import org.example.lmsbackend.model.Questions;
+import org.example.lmsbackend.repository.AnswerMapper;
+import org.example.lmsbackend.repository.QuestionsMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đáp án đã "biên dịch" của từng quiz, dùng để chấm bài hoàn toàn trong bộ nhớ.
+ * Mỗi quiz chỉ nạp 2 query (câu hỏi + toàn bộ answers) rồi giữ trong cache cho tới khi
+ * câu hỏi/đáp án bị sửa (QuestionsService, QuizzesService gọi invalidate).
+ * Cache giới hạn số quiz (LRU); mỗi quiz có số thế hệ tăng khi invalidate, bản biên dịch
+ * bắt đầu trước khi thế hệ đổi (có thể đọc dữ liệu cũ) chỉ trả cho lượt gọi đó, không vào cache.
+ */
+@Service
+public class CompiledQuizService {
+
+    @Autowired
+    private QuestionsMapper questionsMapper;
+
+    @Autowired
+    private AnswerMapper answerMapper;
+
+    private final Cache<Integer, CompiledQuiz> cache;
+
+    // quizId → số lần bị invalidate
+    private final ConcurrentHashMap<Integer, Long> generations = new ConcurrentHashMap<>();
+
+    // Tăng mỗi lần biên dịch, giúp phân biệt bản cache cũ/mới khi debug
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    public CompiledQuizService(@Value("${app.quiz.compiled-cache-size:2000}") long maxQuizzes) {
+        this.cache = Caffeine.newBuilder().maximumSize(maxQuizzes).build();
+    }
+
+    /**
+     * Lấy bộ đáp án của quiz (nạp và biên dịch nếu chưa có trong cache)
+     */
+    public CompiledQuiz getCompiledQuiz(Integer quizId) {
+        CompiledQuiz cached = cache.getIfPresent(quizId);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = generationOf(quizId);
+        CompiledQuiz compiled = compile(quizId);
+        // Ghi vào cache trong compute (cùng khóa với invalidate của key này): quiz bị sửa trong lúc biên dịch → không lưu.
+        // Không ghi đè nếu luồng khác vừa nạp xong trước
+        CompiledQuiz stored = cache.asMap().compute(quizId, (id, existing) ->
+                existing != null ? existing : generationOf(id) == generation ? compiled : null);
+        return stored != null ? stored : compiled;
+    }
+
+    /**
+     * Xóa bộ đáp án khỏi cache. Nếu đang trong transaction thì xóa thêm lần nữa sau khi
+     * commit/rollback, tránh trường hợp luồng khác nạp lại dữ liệu cũ trước khi commit.
+     */
+    public void invalidate(Integer quizId) {
+        if (quizId == null) {
+            return;
+        }
+        evict(quizId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(quizId);
+                }
+            });
+        }
+    }
+
+    // Tăng thế hệ trước rồi mới xóa: lượt biên dịch đang chạy sẽ thấy thế hệ đổi và không ghi vào cache
+    private void evict(Integer quizId) {
+        generations.merge(quizId, 1L, Long::sum);
+        cache.invalidate(quizId);
+    }
+
+    private long generationOf(Integer quizId) {
+        return generations.getOrDefault(quizId, 0L);
+    }
+
+    private CompiledQuiz compile(Integer quizId) {
+        List<Questions> questions = questionsMapper.findGradingKeyByQuizId(quizId);
+
+        Map<Integer, List<Answer>> answersByQuestion = new HashMap<>();
+        for (Answer answer : answerMapper.findByQuizId(quizId)) {
+            answersByQuestion.computeIfAbsent(answer.getQuestion().getQuestionId(), id -> new ArrayList<>()).add(answer);
+        }
+
+        List<CompiledQuestion> compiledQuestions = new ArrayList<>(questions.size());
+        for (Questions question : questions) {
+            List<Answer> answers = answersByQuestion.getOrDefault(question.getQuestionId(), Collections.emptyList());
+            compiledQuestions.add(new CompiledQuestion(question, answers));
+        }
+
+        long version = versionSequence.incrementAndGet();
+        System.out.println("🧩 Compiled answer key for quiz " + quizId + " (" + compiledQuestions.size()
+                + " questions, version " + version + ")");
+        return new CompiledQuiz(quizId, version, compiledQuestions);
+    }
+
+    /**
+     * Bộ đáp án bất biến của 1 quiz: questionId → điểm, loại câu, danh sách lựa chọn theo thứ tự
+     */
+    public static final class CompiledQuiz {
+        private final Integer quizId;
+        private final long version;
+        private final List<CompiledQuestion> questions;
+        private final Map<Integer, CompiledQuestion> questionsById;
+        private final int totalPoints;
+
+        private CompiledQuiz(Integer quizId, long version, List<CompiledQuestion> questions) {
+            this.quizId = quizId;
+            this.version = version;
+            this.questions = Collections.unmodifiableList(questions);
+            Map<Integer, CompiledQuestion> byId = new LinkedHashMap<>();
+            int points = 0;
+            for (CompiledQuestion question : questions) {
+                byId.put(question.getQuestionId(), question);
+                points += question.getPoints();
+            }
+            this.questionsById = Collections.unmodifiableMap(byId);
+            this.totalPoints = points;
+        }
+
+        public Integer getQuizId() {
+            return quizId;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // Theo thứ tự question_id tăng dần
+        public List<CompiledQuestion> getQuestions() {
+            return questions;
+        }
+
+        // null nếu câu hỏi không thuộc quiz này
+        public CompiledQuestion getQuestion(Integer questionId) {
+            return questionId != null ? questionsById.get(questionId) : null;
+        }
+
+        public int getTotalPoints() {
+            return totalPoints;
+        }
+    }
+
+    /**
+     * Một câu hỏi đã biên dịch. Các lựa chọn được sắp theo order_number (giống giao diện),
+     * đáp án đúng lưu trong BitSet theo vị trí lựa chọn.
+     */
+    public static final class CompiledQuestion {
+        private final Integer questionId;
+        private final String questionText;
+        private final Questions.Type type;
+        private final int points;
+        private final int[] answerIds;
+        private final String[] answerTexts;
+        private final BitSet correct = new BitSet();
+        private final Map<Integer, Integer> indexByAnswerId = new HashMap<>();
+        private final Map<String, Integer> indexByText = new HashMap<>();
+        private final String correctAnswerText;
+
+        private CompiledQuestion(Questions question, List<Answer> answers) {
+            this.questionId = question.getQuestionId();
+            this.questionText = question.getQuestionText();
+            this.type = question.getType();
+            this.points = question.getPoints() != null ? question.getPoints() : 0;
+
+            List<Answer> ordered = new ArrayList<>(answers);
+            ordered.sort(Comparator.comparingInt(a -> a.getOrderNumber() != null ? a.getOrderNumber() : 0));
+
+            this.answerIds = new int[ordered.size()];
+            this.answerTexts = new String[ordered.size()];
+            String firstCorrectText = null;
+            for (int i = 0; i < ordered.size(); i++) {
+                Answer answer = ordered.get(i);
+                answerIds[i] = answer.getAnswerId();
+                answerTexts[i] = answer.getAnswerText();
+                indexByAnswerId.put(answer.getAnswerId(), i);
+                if (answer.getAnswerText() != null) {
+                    indexByText.putIfAbsent(answer.getAnswerText(), i);
+                }
+                if (Boolean.TRUE.equals(answer.getIsCorrect())) {
+                    correct.set(i);
+                    if (firstCorrectText == null) {
+                        firstCorrectText = answer.getAnswerText();
+                    }
+                }
+            }
+            this.correctAnswerText = firstCorrectText;
+        }
+
+        public Integer getQuestionId() {
+            return questionId;
+        }
+
+        public String getQuestionText() {
+            return questionText;
+        }
+
+        public Questions.Type getType() {
+            return type;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public int getAnswerCount() {
+            return answerIds.length;
+        }
+
+        public boolean isCorrect(int index) {
+            return correct.get(index);
+        }
+
+        // Vị trí của lựa chọn theo answer_id, -1 nếu không thuộc câu hỏi này
+        public int indexOfAnswerId(Integer answerId) {
+            Integer index = answerId != null ? indexByAnswerId.get(answerId) : null;
+            return index != null ? index : -1;
+        }
+
+        // Vị trí của lựa chọn đầu tiên có nội dung trùng khớp, -1 nếu không có
+        public int indexOfAnswerText(String answerText) {
+            Integer index = answerText != null ? indexByText.get(answerText) : null;
+            return index != null ? index : -1;
+        }
+
+        public String getAnswerText(int index) {
+            return answerTexts[index];
+        }
+
+        // null nếu câu hỏi không có đáp án đúng
+        public String getCorrectAnswerText() {
+            return correctAnswerText;
+        }
+
+        /**
+         * Tạo entity Answer mới cho lựa chọn tại vị trí index (không chia sẻ object trong cache)
+         */
+        public Answer toAnswer(int index) {
+            Answer answer = new Answer();
+            answer.setAnswerId(answerIds[index]);
+            answer.setAnswerText(answerTexts[index]);
+            answer.setIsCorrect(correct.get(index));
+            return answer;
+        }
+
+        /**
+         * Tạo entity Questions rút gọn (đủ để lưu user_answers)
+         */
+        public Questions toQuestion() {
+            Questions question = new Questions();
+            question.setQuestionId(questionId);
+            question.setQuestionText(questionText);
+            question.setType(type);
+            question.setPoints(points);
+            return question;
+        }
+    }
+}
@@ -5,10 +5,11 @@ import org.example.lmsbackend.model.Modules;
 import org.example.lmsbackend.repository.ContentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.file.Path;
 import java.util.List;
 
 @Service
@@ -20,9 +21,54 @@ public class ContentService {
     @Autowired
     private ModulesService modulesService;
 
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private AssetPipelineService assetPipelineService;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private CourseProgressService courseProgressService;
+
     // ✅ Tạo content mới
     public Content createContent(int moduleId, String title, String contentType, String description, 
                                 String contentUrl, int orderNumber, boolean isPublished, MultipartFile file) throws IOException {
+        Content content = prepareNewContent(moduleId, title, contentType, description, contentUrl, orderNumber, isPublished);
+        
+        // Handle file upload if provided
+        if (file != null && !file.isEmpty()) {
+            String key = storeModuleFile(moduleId, file);
+            attachFile(content, key, file.getOriginalFilename(), contentUrl);
+        }
+        
+        return saveAndIndex(content);
+    }
+
+    // ✅ Tạo content từ file đã upload theo từng chunk (ChunkedUploadService)
+    public Content createContentFromUpload(int moduleId, String title, String contentType, String description,
+                                           String contentUrl, int orderNumber, boolean isPublished,
+                                           String uploadId, Integer userId) throws IOException {
+        // Validate trước để upload không bị "tiêu" khi dữ liệu sai
+        Content content = prepareNewContent(moduleId, title, contentType, description, contentUrl, orderNumber, isPublished);
+        
+        String fileName = chunkedUploadService.getSession(uploadId, userId).getFileName();
+        // File ghép xong nằm trong staging cục bộ, sau đó mới đưa lên kho lưu trữ
+        Path path = chunkedUploadService.complete(uploadId, userId, blobStoreService.getStagingDir(), uploadId + ".upload");
+        // Đổi sang tên theo nội dung để phục vụ với URL immutable như file upload thường
+        String folder = "modules/" + moduleId;
+        attachFile(content, folder + "/" + assetPipelineService.publish(path, folder, fileName), fileName, contentUrl);
+        
+        return saveAndIndex(content);
+    }
+
+    private Content prepareNewContent(int moduleId, String title, String contentType, String description,
+                                      String contentUrl, int orderNumber, boolean isPublished) {
         Modules module = modulesService.getModuleById(moduleId);
         
         // Kiểm tra trùng orderNumber khi tạo mới (không loại trừ ai vì đây là tạo mới)
@@ -47,24 +93,22 @@ public class ContentService {
         if (contentUrl != null && !contentUrl.trim().isEmpty()) {
             content.setContentUrl(contentUrl);
         }
-        
-        // Handle file upload if provided
-        if (file != null && !file.isEmpty()) {
-            String uploadDir = "uploads/modules/" + moduleId;
-            Files.createDirectories(Paths.get(uploadDir));
-            
-            String fileName = file.getOriginalFilename();
-            Path path = Paths.get(uploadDir, fileName);
-            file.transferTo(path);
-            
-            content.setFileName(fileName);
-            // Only set contentUrl from file if no URL was provided
-            if (contentUrl == null || contentUrl.trim().isEmpty()) {
-                content.setContentUrl("/" + path.toString().replace("\\", "/"));
-            }
+        return content;
+    }
+
+    // Lưu file của module dưới tên theo nội dung (sha256), giữ tên gốc trong fileName để hiển thị
+    // @return key trong kho lưu trữ (modules/{moduleId}/{sha256}.{ext})
+    private String storeModuleFile(int moduleId, MultipartFile file) throws IOException {
+        String folder = "modules/" + moduleId;
+        return folder + "/" + assetPipelineService.store(file.getInputStream(), folder, file.getOriginalFilename());
+    }
+
+    private void attachFile(Content content, String key, String fileName, String contentUrl) {
+        content.setFileName(fileName);
+        // Only set contentUrl from file if no URL was provided
+        if (contentUrl == null || contentUrl.trim().isEmpty()) {
+            content.setContentUrl("/uploads/" + key);
         }
-        
-        return contentRepository.save(content);
     }
 
     // ✅ Lấy content theo moduleId
@@ -90,26 +134,21 @@ public class ContentService {
             throw new RuntimeException("You are not allowed to upload to this module");
         }
 
-        // Tạo thư mục lưu file
-        String uploadDir = "uploads/modules/" + moduleId;
-        Files.createDirectories(Paths.get(uploadDir));
-
         // Lưu file
-        Path path = Paths.get(uploadDir, file.getOriginalFilename());
-        file.transferTo(path);
+        String key = storeModuleFile(moduleId, file);
 
         // Tạo Content
         Content content = new Content();
         content.setTitle(file.getOriginalFilename());
         content.setType("document");
         content.setFileName(file.getOriginalFilename());
-        content.setContentUrl("/" + path.toString().replace("\\", "/")); // chuẩn hóa URL
+        content.setContentUrl("/uploads/" + key); // chuẩn hóa URL
         content.setModule(module);
         content.setOrderNumber(getNextOrderNumber(moduleId));
         content.setDuration(null);
         content.setPublished(module.isPublished()); // nội dung thừa hưởng trạng thái của module
 
-        contentRepository.save(content);
+        saveAndIndex(content);
     }
 
     // ✅ Cập nhật trạng thái của content
@@ -122,8 +161,9 @@ public class ContentService {
             throw new RuntimeException("You are not allowed to update this content");
         }
 
+        boolean wasPublished = content.isPublished();
         content.setPublished(published);
-        return contentRepository.save(content);
+        return saveAndIndex(content, wasPublished);
     }
 
     // ✅ Hàm hỗ trợ: lấy orderNumber tiếp theo cho content trong module
@@ -168,6 +208,7 @@ public class ContentService {
         content.setTitle(title);
         content.setType(contentType);
         content.setOrderNumber(orderNumber);
+        boolean wasPublished = content.isPublished();
         content.setPublished(isPublished);
         
         // Update description if Content model supports it
@@ -175,7 +216,7 @@ public class ContentService {
         //     content.setDescription(description);
         // }
 
-        return contentRepository.save(content);
+        return saveAndIndex(content, wasPublished);
     }
 
     // ✅ Cập nhật content chỉ thông tin cơ bản (không lưu file mới)
@@ -193,6 +234,7 @@ public class ContentService {
         content.setTitle(title);
         content.setType(contentType);
         content.setOrderNumber(orderNumber);
+        boolean wasPublished = content.isPublished();
         content.setPublished(isPublished);
         
         // Update description if Content model supports it
@@ -201,7 +243,7 @@ public class ContentService {
         // }
 
         // Không thay đổi contentUrl, fileName - giữ nguyên file cũ
-        return contentRepository.save(content);
+        return saveAndIndex(content, wasPublished);
     }
 
     // ✅ Cập nhật content với contentUrl
@@ -218,6 +260,7 @@ public class ContentService {
         content.setTitle(title);
         content.setType(contentType);
         content.setOrderNumber(orderNumber);
+        boolean wasPublished = content.isPublished();
         content.setPublished(isPublished);
         
         // Cập nhật contentUrl: chỉ cập nhật khi có URL mới được truyền vào
@@ -231,7 +274,7 @@ public class ContentService {
         //     content.setDescription(description);
         // }
 
-        return contentRepository.save(content);
+        return saveAndIndex(content, wasPublished);
     }
 
     // ✅ Cập nhật content với file mới
@@ -243,21 +286,17 @@ public class ContentService {
         content.setTitle(title);
         content.setType(contentType);
         content.setOrderNumber(orderNumber);
+        boolean wasPublished = content.isPublished();
         content.setPublished(isPublished);
         
         // Handle file upload
         if (file != null && !file.isEmpty()) {
             try {
-                String uploadDir = "uploads/modules/" + content.getModule().getId();
-                Files.createDirectories(Paths.get(uploadDir));
-                
-                String fileName = file.getOriginalFilename();
-                Path path = Paths.get(uploadDir, fileName);
-                file.transferTo(path);
+                String key = storeModuleFile(content.getModule().getId(), file);
                 
                 // Update content URL và file name
-                content.setContentUrl("/" + uploadDir + "/" + fileName);
-                content.setFileName(fileName);
+                content.setContentUrl("/uploads/" + key);
+                content.setFileName(file.getOriginalFilename());
                 
                 System.out.println("✅ File uploaded successfully: " + content.getContentUrl());
             } catch (IOException e) {
@@ -265,26 +304,35 @@ public class ContentService {
             }
         }
         
-        return contentRepository.save(content);
+        return saveAndIndex(content, wasPublished);
     }
 
     // ✅ Xóa content
+    @Transactional
     public void deleteContent(int contentId) {
         Content content = contentRepository.findById(contentId)
                 .orElseThrow(() -> new RuntimeException("Content not found"));
         
-        // Delete physical file if exists
-        if (content.getContentUrl() != null && !content.getContentUrl().isEmpty()) {
+        // Delete physical file if exists (file trùng nội dung dùng chung → chỉ xóa khi không còn content nào trỏ tới)
+        if (content.getContentUrl() != null && !content.getContentUrl().isEmpty()
+                && contentRepository.countByContentUrl(content.getContentUrl()) <= 1) {
             try {
-                Path filePath = Paths.get(content.getContentUrl().substring(1)); // Remove leading /
-                Files.deleteIfExists(filePath);
+                String url = content.getContentUrl();
+                if (url.startsWith("/uploads/")) {
+                    assetPipelineService.delete(url.substring("/uploads/".length()));
+                }
             } catch (IOException e) {
                 // Log error but don't fail the deletion
                 System.err.println("Could not delete file: " + e.getMessage());
             }
         }
         
+        // content_progress bị xóa theo (ON DELETE CASCADE) → trừ bộ đếm tiến độ trước khi xóa
+        if (content.isPublished()) {
+            courseProgressService.onContentVisibilityChanged(contentId, false);
+        }
         contentRepository.delete(content);
+        searchIndexService.reindex(SearchIndexService.DocType.CONTENT, contentId);
     }
 
     // ✅ Đồng bộ trạng thái của tất cả content trong module (dùng khi cập nhật module)
@@ -292,9 +340,31 @@ public class ContentService {
         List<Content> contents = contentRepository.findByModuleIdOrderByOrderNumber(module.getId());
         boolean isPublished = module.isPublished();
 
+        List<Content> changed = contents.stream().filter(content -> content.isPublished() != isPublished).toList();
         for (Content content : contents) {
             content.setPublished(isPublished);
         }
         contentRepository.saveAll(contents);
+        for (Content content : changed) {
+            courseProgressService.onContentVisibilityChanged(content.getId(), isPublished);
+        }
+        for (Content content : contents) {
+            searchIndexService.reindex(SearchIndexService.DocType.CONTENT, content.getId());
+        }
+    }
+
+    private Content saveAndIndex(Content content) {
+        Content saved = contentRepository.save(content);
+        searchIndexService.reindex(SearchIndexService.DocType.CONTENT, saved.getId());
+        return saved;
+    }
+
+    // Lưu content đã có; published đổi → cập nhật bộ đếm tiến độ của các user đã hoàn thành
+    private Content saveAndIndex(Content content, boolean wasPublished) {
+        Content saved = saveAndIndex(content);
+        if (saved.isPublished() != wasPublished) {
+            courseProgressService.onContentVisibilityChanged(saved.getId(), saved.isPublished());
+        }
+        return saved;
     }
 }
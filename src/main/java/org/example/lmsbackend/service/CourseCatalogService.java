@@ -0,0 +1,217 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.model.Course;
+import org.example.lmsbackend.repository.CourseMapper;
+import org.example.lmsbackend.repository.EnrollmentsMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Danh mục khóa học đã xuất bản cho trang "tất cả khóa học".
+ * Giữ 1 snapshot bất biến trong bộ nhớ (sắp theo courseId), làm mới định kỳ và ngay khi khóa học thay đổi.
+ * Phân trang keyset theo courseId (afterId), trạng thái đã đăng ký tra bằng BitSet theo courseId.
+ */
+@Service
+public class CourseCatalogService {
+
+    @Autowired
+    private CourseMapper courseMapper;
+
+    @Autowired
+    private EnrollmentsMapper enrollmentsMapper;
+
+    @Value("${app.courses.catalog.max-page-size:100}")
+    private int maxPageSize;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean stale = true;
+
+    /**
+     * Lấy 1 trang danh mục kèm trạng thái đăng ký của user.
+     *
+     * @param afterId courseId cuối cùng của trang trước (null = từ đầu)
+     * @param limit   số khóa học tối đa (null = toàn bộ danh mục)
+     */
+    public CatalogPage getPage(int userId, Integer afterId, Integer limit) {
+        Snapshot current = currentSnapshot();
+
+        int from = afterId == null ? 0 : current.indexAfter(afterId);
+        int size = limit == null ? current.size() : Math.max(1, Math.min(limit, maxPageSize));
+        int to = Math.min(current.size(), from + size);
+
+        BitSet enrolled = new BitSet();
+        for (Integer courseId : enrollmentsMapper.getEnrolledCourseIdsByUserId(userId)) {
+            if (courseId != null && courseId >= 0) {
+                enrolled.set(courseId);
+            }
+        }
+
+        List<CatalogEntry> entries = current.entries.subList(from, to);
+        List<Map<String, Object>> items = new ArrayList<>(entries.size());
+        // ETag phụ thuộc nội dung snapshot, vị trí trang và các khóa học đã đăng ký trong trang
+        long hash = current.version * 31 + from;
+        hash = hash * 31 + to;
+        for (CatalogEntry entry : entries) {
+            boolean isEnrolled = enrolled.get(entry.courseId);
+            items.add(entry.toMap(isEnrolled));
+            hash = hash * 31 + (isEnrolled ? entry.courseId : 0);
+        }
+
+        Integer nextCursor = to < current.size() && to > from ? entries.get(entries.size() - 1).courseId : null;
+        String etag = "\"catalog-" + Long.toHexString(current.version) + "-" + Long.toHexString(hash) + "\"";
+        return new CatalogPage(items, nextCursor, etag);
+    }
+
+    // Gọi sau khi tạo/sửa/xóa khóa học: snapshot sẽ được nạp lại ở lần đọc tiếp theo
+    public void invalidate() {
+        stale = true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.courses.catalog.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            System.err.println("❌ Could not refresh course catalog: " + e.getMessage());
+        }
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null || stale) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || stale) {
+                    current = reload();
+                }
+            }
+        }
+        return current;
+    }
+
+    private synchronized Snapshot reload() {
+        stale = false;
+        List<Course> courses = courseMapper.findCourses(null, null, Course.Status.published.name());
+        List<CatalogEntry> entries = new ArrayList<>(courses.size());
+        for (Course course : courses) {
+            entries.add(new CatalogEntry(course));
+        }
+        entries.sort((a, b) -> Integer.compare(a.courseId, b.courseId));
+
+        Snapshot previous = snapshot;
+        Snapshot next = new Snapshot(entries);
+        // Giữ nguyên snapshot cũ nếu nội dung không đổi để ETag ổn định giữa các lần làm mới
+        if (previous != null && previous.version == next.version && previous.entries.equals(next.entries)) {
+            return previous;
+        }
+        snapshot = next;
+        System.out.println("📚 Course catalog reloaded: " + entries.size() + " published courses");
+        return next;
+    }
+
+    public static class CatalogPage {
+        private final List<Map<String, Object>> items;
+        private final Integer nextCursor;
+        private final String etag;
+
+        CatalogPage(List<Map<String, Object>> items, Integer nextCursor, String etag) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.etag = etag;
+        }
+
+        public List<Map<String, Object>> getItems() {
+            return items;
+        }
+
+        public Integer getNextCursor() {
+            return nextCursor;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private static class Snapshot {
+        private final List<CatalogEntry> entries;
+        private final int[] ids;
+        private final long version;
+
+        Snapshot(List<CatalogEntry> entries) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.ids = new int[entries.size()];
+            long hash = 17;
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = entries.get(i).courseId;
+                hash = hash * 31 + entries.get(i).hashCode();
+            }
+            this.version = hash;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        // Vị trí của khóa học đầu tiên có courseId > afterId
+        int indexAfter(int afterId) {
+            int index = Arrays.binarySearch(ids, afterId);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+
+    private static class CatalogEntry {
+        private final int courseId;
+        private final String title;
+        private final String description;
+        private final BigDecimal price;
+        private final String thumbnailUrl;
+
+        CatalogEntry(Course course) {
+            this.courseId = course.getCourseId();
+            this.title = course.getTitle();
+            this.description = course.getDescription();
+            this.price = course.getPrice();
+            this.thumbnailUrl = course.getThumbnailUrl();
+        }
+
+        Map<String, Object> toMap(boolean enrolled) {
+            Map<String, Object> item = new LinkedHashMap<>(8);
+            item.put("courseId", courseId);
+            item.put("title", title);
+            item.put("description", description);
+            item.put("price", price);
+            item.put("thumbnailUrl", thumbnailUrl);
+            item.put("enrolled", enrolled);
+            return item;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CatalogEntry other)) return false;
+            return courseId == other.courseId
+                    && Objects.equals(title, other.title)
+                    && Objects.equals(description, other.description)
+                    && Objects.equals(price, other.price)
+                    && Objects.equals(thumbnailUrl, other.thumbnailUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(courseId, title, description, price, thumbnailUrl);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.dto.ModuleResponseDTO;
+import org.example.lmsbackend.model.CourseProgress;
+import org.example.lmsbackend.model.ModuleProgress;
+import org.example.lmsbackend.model.Modules;
+import org.example.lmsbackend.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tiến độ học của user theo khóa học / module.
+ * - Ghi: mỗi sự kiện hoàn thành (content, video, quiz) chỉ tăng nguyên tử bộ đếm
+ *   trong course_progress và module_progress, không tính lại từ đầu.
+ * - Bộ đếm = số item đã hoàn thành VÀ đang xuất bản: item bị ẩn/xóa thì trừ 1 cho mọi user đã hoàn thành,
+ *   xuất bản lại thì cộng lại (onXxxVisibilityChanged, gọi từ service sửa item).
+ * - Đọc: bộ đếm + số item đang xuất bản, số query cố định không phụ thuộc số module / item.
+ * Bộ đếm của 1 khóa học được tính lại từ dữ liệu gốc đúng 1 lần khi chưa có (dữ liệu cũ).
+ */
+@Service
+public class CourseProgressService {
+
+    // Xem >= 90% thời lượng thì tính là hoàn thành video (giống ModuleProgressService)
+    private static final double VIDEO_COMPLETION_THRESHOLD = 90;
+
+    @Autowired
+    private ModulesRepository modulesRepository;
+
+    @Autowired
+    private ContentRepository contentRepository;
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private QuizzesRepository quizzesRepository;
+
+    @Autowired
+    private ContentProgressRepository contentProgressRepository;
+
+    @Autowired
+    private VideoProgressRepository videoProgressRepository;
+
+    @Autowired
+    private UserQuizAttemptMapper userQuizAttemptMapper;
+
+    @Autowired
+    private ModuleProgressMapper moduleProgressMapper;
+
+    @Autowired
+    private CourseProgressMapper courseProgressMapper;
+
+    /**
+     * Danh sách module đã xuất bản kèm tiến độ của user
+     * @param userId null nếu chưa đăng nhập → tiến độ = 0
+     */
+    public List<ModuleResponseDTO> getPublishedModulesWithProgress(Integer courseId, Integer userId) {
+        CourseItems items = loadCourseItems(courseId);
+        if (items.modules.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        if (userId != null) {
+            if (courseProgressMapper.findByUserAndCourse(userId, courseId).isEmpty()) {
+                rebuildCounters(userId, courseId, items);
+            }
+            for (ModuleProgress progress : moduleProgressMapper.findByCourseAndUser(userId, courseId)) {
+                ModuleTally tally = progress.getModule() != null ? items.tallies.get(progress.getModule().getId()) : null;
+                if (tally != null) {
+                    tally.completedContents = valueOf(progress.getCompletedContents());
+                    tally.completedVideos = valueOf(progress.getCompletedVideos());
+                    tally.completedQuizzes = valueOf(progress.getCompletedQuizzes());
+                }
+            }
+        }
+
+        List<ModuleResponseDTO> result = new ArrayList<>(items.modules.size());
+        for (Modules module : items.modules) {
+            ModuleTally tally = items.tallies.get(module.getId());
+
+            ModuleResponseDTO dto = new ModuleResponseDTO();
+            dto.setModuleId(module.getId());
+            dto.setTitle(module.getTitle());
+            dto.setDescription(module.getDescription());
+            dto.setOrderNumber(module.getOrderNumber());
+            dto.setPublished(module.isPublished());
+            dto.setCourseId(module.getCourse().getCourseId());
+            dto.setCourseTitle(module.getCourse().getTitle());
+
+            dto.setContentCompleted(tally.totalContents > 0 && tally.completedContents == tally.totalContents);
+            dto.setVideoCompleted(tally.totalVideos > 0 && tally.completedVideos == tally.totalVideos);
+            dto.setTestCompleted(tally.totalQuizzes > 0 && tally.completedQuizzes == tally.totalQuizzes);
+            dto.setModuleCompleted(tally.totalItems() > 0 && tally.completedItems() == tally.totalItems());
+            dto.setCompletionPercentage(tally.totalItems() > 0 ? (double) tally.completedItems() * 100.0 / tally.totalItems() : 0.0);
+            result.add(dto);
+        }
+        return result;
+    }
+
+    /**
+     * Tổng hợp tiến độ cả khóa học: từng module + tổng số item đã hoàn thành
+     */
+    public Map<String, Object> getCourseProgressSummary(Integer courseId, Integer userId) {
+        List<ModuleResponseDTO> modules = getPublishedModulesWithProgress(courseId, userId);
+
+        int completedModules = 0;
+        double percentageSum = 0;
+        for (ModuleResponseDTO module : modules) {
+            if (Boolean.TRUE.equals(module.getModuleCompleted())) {
+                completedModules++;
+            }
+            percentageSum += module.getCompletionPercentage();
+        }
+
+        Optional<CourseProgress> courseProgress = courseProgressMapper.findByUserAndCourse(userId, courseId);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("courseId", courseId);
+        summary.put("totalModules", modules.size());
+        summary.put("completedModules", completedModules);
+        summary.put("completedItems", courseProgress.map(CourseProgress::getCompletedItems).orElse(0));
+        summary.put("completionPercentage", modules.isEmpty() ? 0.0 : percentageSum / modules.size());
+        summary.put("modules", modules);
+        return summary;
+    }
+
+    /**
+     * Số item đang xuất bản của từng module trong khóa học: moduleId → [content, video, quiz]
+     */
+    public Map<Integer, int[]> getPublishedItemTotals(Integer courseId) {
+        CourseItems items = loadCourseItems(courseId);
+        Map<Integer, int[]> totals = new HashMap<>();
+        items.tallies.forEach((moduleId, tally) ->
+                totals.put(moduleId, new int[]{tally.totalContents, tally.totalVideos, tally.totalQuizzes}));
+        return totals;
+    }
+
+    // === Sự kiện hoàn thành: gọi đúng 1 lần cho mỗi item (bên gọi tự đảm bảo bằng UPDATE có điều kiện) ===
+
+    public void recordContentCompleted(Integer userId, Integer moduleId, Integer contentId) {
+        recordCompletion(userId, moduleId, ItemType.CONTENT, contentId);
+    }
+
+    public void recordVideoCompleted(Integer userId, Integer moduleId, Integer videoId) {
+        recordCompletion(userId, moduleId, ItemType.VIDEO, videoId);
+    }
+
+    public void recordQuizCompleted(Integer userId, Integer moduleId, Integer quizId) {
+        recordCompletion(userId, moduleId, ItemType.QUIZ, quizId);
+    }
+
+    private void recordCompletion(Integer userId, Integer moduleId, ItemType type, Integer itemId) {
+        try {
+            // Upsert theo khóa (user_id, module_id); item đang ẩn → 0 dòng, không tính
+            int moduleUpdated = switch (type) {
+                case CONTENT -> moduleProgressMapper.incrementCompletedContents(userId, itemId);
+                case VIDEO -> moduleProgressMapper.incrementCompletedVideos(userId, itemId);
+                case QUIZ -> moduleProgressMapper.incrementCompletedQuizzes(userId, itemId);
+            };
+            if (moduleUpdated == 0) {
+                return;
+            }
+
+            int updated = switch (type) {
+                case CONTENT -> courseProgressMapper.incrementCompletedContents(userId, itemId);
+                case VIDEO -> courseProgressMapper.incrementCompletedVideos(userId, itemId);
+                case QUIZ -> courseProgressMapper.incrementCompletedQuizzes(userId, itemId);
+            };
+            if (updated == 0) {
+                // Chưa có bộ đếm cho khóa học → tính lại từ dữ liệu gốc (đã gồm item vừa hoàn thành)
+                Integer courseId = modulesRepository.findCourseIdById(moduleId);
+                if (courseId != null) {
+                    rebuildCounters(userId, courseId, loadCourseItems(courseId));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error recording " + type + " completion for user " + userId + ", module " + moduleId + ": " + e.getMessage());
+        }
+    }
+
+    // === Item đổi trạng thái hiển thị: gọi khi published đổi giá trị, hoặc trước khi xóa item đang xuất bản ===
+
+    public void onContentVisibilityChanged(Integer contentId, boolean visible) {
+        int delta = visible ? 1 : -1;
+        moduleProgressMapper.shiftCompletedContents(contentId, delta);
+        courseProgressMapper.shiftCompletedContents(contentId, delta);
+    }
+
+    public void onVideoVisibilityChanged(Integer videoId, boolean visible) {
+        int delta = visible ? 1 : -1;
+        moduleProgressMapper.shiftCompletedVideos(videoId, delta);
+        courseProgressMapper.shiftCompletedVideos(videoId, delta);
+    }
+
+    public void onQuizVisibilityChanged(Integer quizId, boolean visible) {
+        int delta = visible ? 1 : -1;
+        moduleProgressMapper.shiftCompletedQuizzes(quizId, delta);
+        courseProgressMapper.shiftCompletedQuizzes(quizId, delta);
+    }
+
+    // Gọi trước khi xóa module (trong cùng transaction với lệnh xóa)
+    public void onModuleDeleted(Integer moduleId) {
+        courseProgressMapper.subtractModuleCounters(moduleId);
+    }
+
+    /**
+     * Tính lại bộ đếm của user trong khóa học từ content_progress / video_progress / user_quiz_attempts.
+     * Ghi đè giá trị tuyệt đối nên chạy lại nhiều lần vẫn cho cùng kết quả.
+     */
+    private void rebuildCounters(Integer userId, Integer courseId, CourseItems items) {
+        Map<Integer, ModuleTally> completed = new LinkedHashMap<>();
+        for (Integer moduleId : items.tallies.keySet()) {
+            completed.put(moduleId, new ModuleTally());
+        }
+
+        for (Integer contentId : new HashSet<>(contentProgressRepository.findCompletedContentIdsByUserIdAndCourseId(userId, courseId))) {
+            ModuleTally tally = completed.get(items.contentModules.get(contentId));
+            if (tally != null) {
+                tally.completedContents++;
+            }
+        }
+
+        // Đánh dấu cờ completed cho video cũ để các lần xem sau không bị đếm lặp
+        videoProgressRepository.markCompletedByUserIdAndCourseId(userId, courseId);
+        HashSet<Integer> completedVideos = new HashSet<>();
+        for (Object[] row : videoProgressRepository.findWatchStatsByUserIdAndCourseId(userId, courseId)) {
+            if (isVideoCompleted((Integer) row[1], (Integer) row[2])) {
+                completedVideos.add((Integer) row[0]);
+            }
+        }
+        for (Integer videoId : completedVideos) {
+            ModuleTally tally = completed.get(items.videoModules.get(videoId));
+            if (tally != null) {
+                tally.completedVideos++;
+            }
+        }
+
+        for (Integer quizId : new HashSet<>(userQuizAttemptMapper.findAttemptedQuizIdsByUserAndCourse(userId, courseId))) {
+            ModuleTally tally = completed.get(items.quizModules.get(quizId));
+            if (tally != null) {
+                tally.completedQuizzes++;
+            }
+        }
+
+        int contents = 0;
+        int videos = 0;
+        int quizzes = 0;
+        for (Map.Entry<Integer, ModuleTally> entry : completed.entrySet()) {
+            ModuleTally tally = entry.getValue();
+            contents += tally.completedContents;
+            videos += tally.completedVideos;
+            quizzes += tally.completedQuizzes;
+
+            if (tally.completedItems() > 0) {
+                moduleProgressMapper.upsertCounters(userId, entry.getKey(),
+                        tally.completedContents, tally.completedVideos, tally.completedQuizzes);
+            } else {
+                moduleProgressMapper.updateCounters(userId, entry.getKey(), 0, 0, 0);
+            }
+        }
+        courseProgressMapper.upsertCounters(userId, courseId, contents, videos, quizzes);
+        System.out.println("🔄 Rebuilt progress counters for user " + userId + " in course " + courseId
+                + ": " + contents + "/" + videos + "/" + quizzes);
+    }
+
+    /**
+     * Module đã xuất bản + item đã xuất bản của khóa học (4 query)
+     */
+    private CourseItems loadCourseItems(Integer courseId) {
+        CourseItems items = new CourseItems();
+        items.modules = modulesRepository.findByCourse_CourseIdAndPublishedTrueOrderByOrderNumber(courseId);
+        for (Modules module : items.modules) {
+            items.tallies.put(module.getId(), new ModuleTally());
+        }
+        if (!items.modules.isEmpty()) {
+            items.contentModules = groupByModule(contentRepository.findPublishedIdsByCourseId(courseId), items.tallies, ItemType.CONTENT);
+            items.videoModules = groupByModule(videoRepository.findPublishedIdsByCourseId(courseId), items.tallies, ItemType.VIDEO);
+            items.quizModules = groupByModule(quizzesRepository.findPublishedModuleQuizIdsByCourseId(courseId), items.tallies, ItemType.QUIZ);
+        }
+        return items;
+    }
+
+    private boolean isVideoCompleted(Integer watchedDuration, Integer totalDuration) {
+        if (watchedDuration == null || totalDuration == null || totalDuration <= 0) {
+            return false;
+        }
+        return (double) watchedDuration / totalDuration * 100 >= VIDEO_COMPLETION_THRESHOLD;
+    }
+
+    private int valueOf(Integer counter) {
+        return counter != null ? counter : 0;
+    }
+
+    /**
+     * Đếm item theo module, trả về map itemId → moduleId để ghép với tiến độ
+     */
+    private Map<Integer, Integer> groupByModule(List<Object[]> rows, Map<Integer, ModuleTally> tallies, ItemType type) {
+        Map<Integer, Integer> itemModules = new HashMap<>();
+        for (Object[] row : rows) {
+            Integer moduleId = (Integer) row[0];
+            Integer itemId = (Integer) row[1];
+            ModuleTally tally = tallies.get(moduleId);
+            // Bỏ qua item thuộc module chưa xuất bản
+            if (tally == null) {
+                continue;
+            }
+            itemModules.put(itemId, moduleId);
+            switch (type) {
+                case CONTENT -> tally.totalContents++;
+                case VIDEO -> tally.totalVideos++;
+                case QUIZ -> tally.totalQuizzes++;
+            }
+        }
+        return itemModules;
+    }
+
+    private enum ItemType {
+        CONTENT, VIDEO, QUIZ
+    }
+
+    private static class CourseItems {
+        List<Modules> modules = new ArrayList<>();
+        Map<Integer, ModuleTally> tallies = new LinkedHashMap<>();
+        Map<Integer, Integer> contentModules = new HashMap<>();
+        Map<Integer, Integer> videoModules = new HashMap<>();
+        Map<Integer, Integer> quizModules = new HashMap<>();
+    }
+
+    private static class ModuleTally {
+        int totalContents;
+        int completedContents;
+        int totalVideos;
+        int completedVideos;
+        int totalQuizzes;
+        int completedQuizzes;
+
+        int totalItems() {
+            return totalContents + totalVideos + totalQuizzes;
+        }
+
+        int completedItems() {
+            return completedContents + completedVideos + completedQuizzes;
+        }
+    }
+}
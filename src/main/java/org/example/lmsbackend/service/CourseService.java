@@ -8,12 +8,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.UUID;
 import java.util.Optional;
 
 @Service
@@ -22,6 +17,14 @@ public class CourseService {
     private QuizzesService quizzesService;
     @Autowired
     private CourseMapper courseMapper;
+    @Autowired
+    private CourseCatalogService courseCatalogService;
+    @Autowired
+    private SearchIndexService searchIndexService;
+    @Autowired
+    private AssetPipelineService assetPipelineService;
+    @Autowired
+    private ImageVariantService imageVariantService;
     public boolean createCourse(CourseDTO dto, MultipartFile imageFile) {
         try {
             Course course = new Course();
@@ -40,6 +43,8 @@ public class CourseService {
 
             int result = courseMapper.insertCourse(course);
             System.out.println("🔧 Insert result: " + result);
+            courseCatalogService.invalidate();
+            searchIndexService.reindex(SearchIndexService.DocType.COURSE, course.getCourseId());
             return result > 0;
         } catch (Exception e) {
             System.err.println("❌ Exception khi tạo khóa học:");
@@ -58,18 +63,28 @@ public class CourseService {
     public boolean updateCourse(Course course, MultipartFile imageFile) {
         try {
             if (imageFile != null && !imageFile.isEmpty()) {
-                // 👉 Lưu ảnh vào thư mục uploads/imagescourse/
+                // 👉 Lưu ảnh vào thư mục uploads/imagescourse/ (tên theo nội dung)
                 String originalFilename = imageFile.getOriginalFilename();
-                String filename = UUID.randomUUID() + "_" + originalFilename;
-                Path filePath = Paths.get("uploads", "imagescourse", filename);
-                Files.createDirectories(filePath.getParent());
-                Files.copy(imageFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+                String filename = assetPipelineService.store(imageFile.getInputStream(), "imagescourse",
+                        originalFilename != null ? originalFilename : "image.png");
+                imageVariantService.generateAsync("imagescourse/" + filename);
 
                 // 👉 Gán tên ảnh vào khóa học (chỉ lưu tên file, không lưu đường dẫn đầy đủ)
                 course.setThumbnailUrl(filename);
             }
 
-            return courseMapper.updateCourse(course) > 0;
+            Course.Status previousStatus = courseMapper.findById(course.getCourseId()).map(Course::getStatus).orElse(null);
+            boolean updated = courseMapper.updateCourse(course) > 0;
+            if (updated) {
+                courseCatalogService.invalidate();
+                if (previousStatus != course.getStatus()) {
+                    // Module/nội dung/video chỉ hiển thị khi khóa học đã xuất bản
+                    searchIndexService.reindexCourse(course.getCourseId());
+                } else {
+                    searchIndexService.reindex(SearchIndexService.DocType.COURSE, course.getCourseId());
+                }
+            }
+            return updated;
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -77,7 +92,12 @@ public class CourseService {
     }
     public boolean deleteCourse(Integer courseId) {
         try {
-            return courseMapper.deleteCourse(courseId) > 0;
+            boolean deleted = courseMapper.deleteCourse(courseId) > 0;
+            if (deleted) {
+                courseCatalogService.invalidate();
+                searchIndexService.reindexCourse(courseId);
+            }
+            return deleted;
         } catch (org.springframework.dao.DataIntegrityViolationException e) {
             // 🛑 Constraint violation - không log error, chỉ return false
             System.out.println("ℹ️ Course " + courseId + " has related data, cannot delete - this is normal behavior");
@@ -98,23 +118,12 @@ public class CourseService {
     */
     private String saveImage(MultipartFile file) {
         try {
-            String uploadDir = "uploads/imagescourse";
-            Path uploadPath = Paths.get(uploadDir);
-
-            // Tạo thư mục nếu chưa tồn tại
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Đặt tên file duy nhất (loại bỏ khoảng trắng)
+            // Đặt tên file theo nội dung (sha256) → URL immutable, ảnh trùng dùng lại file cũ
             String originalFilename = file.getOriginalFilename();
-            String cleanedFilename = originalFilename != null ? originalFilename.replaceAll("\\s+", "_") : "image.png";
-            String filename = UUID.randomUUID() + "_" + cleanedFilename;
-
-            Path filePath = uploadPath.resolve(filename);
-
-            // Ghi file
-            Files.copy(file.getInputStream(), filePath);
+            String filename = assetPipelineService.store(file.getInputStream(), "imagescourse",
+                    originalFilename != null ? originalFilename : "image.png");
+            // Sinh bản thu nhỏ ở background cho danh sách khóa học
+            imageVariantService.generateAsync("imagescourse/" + filename);
 
             return filename; // ✅ Trả về chỉ tên file để frontend dùng đúng URL
         } catch (IOException e) {
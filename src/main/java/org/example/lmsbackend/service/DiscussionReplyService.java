@@ -13,7 +13,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -58,10 +57,8 @@ public class DiscussionReplyService {
     }
 
     public List<DiscussionReplyDTO> getRepliesByDiscussionId(Integer discussionId) {
-        List<DiscussionReply> replies = discussionReplyRepository.findByDiscussionIdOrderByCreatedAt(discussionId);
-        return replies.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        // Projection join sẵn người trả lời → 1 query cho cả danh sách
+        return discussionReplyRepository.findReplyViews(discussionId);
     }
 
     public Long getReplyCount(Integer discussionId) {
@@ -9,8 +9,15 @@ import org.example.lmsbackend.repository.CourseRepository;
 import org.example.lmsbackend.repository.DiscussionRepository;
 import org.example.lmsbackend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -24,6 +31,9 @@ public class DiscussionService {
     @Autowired
     private UserRepository userRepository;
 
+    // Số thảo luận tối đa mỗi trang
+    private static final int MAX_PAGE_SIZE = 100;
+
     public List<DiscussionDTO> getAllDiscussions() {
         return discussionRepository.findAll().stream()
                 .map(this::toDTO)
@@ -31,15 +41,46 @@ public class DiscussionService {
     }
 
     public List<DiscussionDTO> getDiscussionsByCourse(Integer courseId) {
-        return discussionRepository.findPublicDiscussionsByCourse(courseId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return discussionRepository.findPublicListing(courseId, null, null, Pageable.unpaged());
     }
 
     public List<DiscussionDTO> getDiscussionsForUser(Integer courseId, Integer userId) {
-        return discussionRepository.findDiscussionsForUser(courseId, userId).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return getDiscussionsForUser(courseId, userId, null, null);
+    }
+
+    /**
+     * Danh sách thảo luận user được xem trong 1 query projection (người đăng, người nhận, số reply join sẵn).
+     * @param cursor giá trị nextCursor của trang trước (null = trang đầu)
+     * @param limit số thảo luận mỗi trang (null = lấy hết)
+     */
+    public List<DiscussionDTO> getDiscussionsForUser(Integer courseId, Integer userId, String cursor, Integer limit) {
+        Instant beforeCreatedAt = null;
+        Integer beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                beforeCreatedAt = Instant.parse(parts[0]);
+                beforeId = Integer.valueOf(parts[1]);
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor không hợp lệ");
+            }
+        }
+        Pageable pageable = limit != null
+                ? PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)))
+                : Pageable.unpaged();
+        return discussionRepository.findListingForUser(courseId, userId, beforeCreatedAt, beforeId, pageable);
+    }
+
+    /**
+     * Cursor cho trang tiếp theo, null nếu đã hết dữ liệu
+     */
+    public String nextDiscussionsCursor(List<DiscussionDTO> page, Integer limit) {
+        if (limit == null || page.isEmpty() || page.size() < Math.max(1, Math.min(limit, MAX_PAGE_SIZE))) {
+            return null;
+        }
+        DiscussionDTO last = page.get(page.size() - 1);
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
     public DiscussionDTO createDiscussion(DiscussionDTO dto) {
@@ -3,10 +3,23 @@ package org.example.lmsbackend.service;
 import org.example.lmsbackend.dto.EnrollmentsDTO;
 import org.example.lmsbackend.repository.EnrollmentsMapper;
 import org.example.lmsbackend.dto.UserDTO;
+import org.example.lmsbackend.utils.CsvReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 @Service
 public class EnrollmentsService {
     public List<Integer> getEnrolledCourseIds(int userId) {
@@ -15,13 +28,109 @@ public class EnrollmentsService {
     @Autowired
     private EnrollmentsMapper enrollmentMapper;
 
+    @Autowired
+    private CourseService courseService;
+
+    @Value("${app.enrollments.bulk.batch-size:1000}")
+    private int bulkBatchSize;
+
+    @Value("${app.enrollments.bulk.max-users:50000}")
+    private int bulkMaxUsers;
+
     public boolean enrollUserInCourse(int userId, int courseId) {
-        int count = enrollmentMapper.countEnrollment(userId, courseId);
-        if (count > 0) {
-            return false;
+        // INSERT IGNORE: 1 round trip, 2 request đồng thời cũng chỉ tạo 1 dòng
+        return enrollmentMapper.enrollCourseIfAbsent(userId, courseId) > 0;
+    }
+
+    /**
+     * Ghi danh hàng loạt: mỗi lô 1 query kiểm tra user + 1 INSERT IGNORE nhiều dòng
+     */
+    public Map<String, Object> bulkEnroll(int courseId, Collection<Integer> userIds, List<String> invalidEntries) {
+        return runBulk(courseId, userIds, invalidEntries, true);
+    }
+
+    /**
+     * Hủy ghi danh hàng loạt: mỗi lô 1 câu DELETE ... IN (...)
+     */
+    public Map<String, Object> bulkUnenroll(int courseId, Collection<Integer> userIds, List<String> invalidEntries) {
+        return runBulk(courseId, userIds, invalidEntries, false);
+    }
+
+    /**
+     * Đọc danh sách user id từ CSV (cột đầu tiên, header tùy chọn).
+     * Dòng không phải số được trả về trong invalidEntries.
+     */
+    public Set<Integer> readUserIdsFromCsv(Reader csv, List<String> invalidEntries) throws IOException {
+        Set<Integer> userIds = new LinkedHashSet<>();
+        try (CsvReader reader = new CsvReader(csv)) {
+            List<String> record;
+            boolean first = true;
+            while ((record = reader.readRecord()) != null) {
+                String value = record.get(0).trim().replace("\uFEFF", "");
+                if (value.isEmpty()) {
+                    continue;
+                }
+                try {
+                    userIds.add(Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    // Dòng đầu không phải số → coi là header
+                    if (!first && invalidEntries.size() < 1000) {
+                        invalidEntries.add("line " + reader.getRecordLineNumber() + ": " + value);
+                    }
+                }
+                first = false;
+                if (userIds.size() > bulkMaxUsers) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many users (max " + bulkMaxUsers + ")");
+                }
+            }
+        }
+        return userIds;
+    }
+
+    private Map<String, Object> runBulk(int courseId, Collection<Integer> userIds, List<String> invalidEntries, boolean enroll) {
+        if (courseService.getCourseById(courseId).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Course not found");
+        }
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(userIds));
+        distinct.removeIf(id -> id == null);
+        if (distinct.size() > bulkMaxUsers) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many users (max " + bulkMaxUsers + ")");
+        }
+
+        int affected = 0;
+        List<Integer> unknownUserIds = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += bulkBatchSize) {
+            List<Integer> batch = distinct.subList(from, Math.min(from + bulkBatchSize, distinct.size()));
+            if (enroll) {
+                Set<Integer> existing = new HashSet<>(enrollmentMapper.findExistingUserIds(batch));
+                List<Integer> known = new ArrayList<>(batch.size());
+                for (Integer userId : batch) {
+                    (existing.contains(userId) ? known : unknownUserIds).add(userId);
+                }
+                if (!known.isEmpty()) {
+                    affected += enrollmentMapper.bulkEnroll(courseId, known);
+                }
+            } else {
+                affected += enrollmentMapper.bulkUnenroll(courseId, batch);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("courseId", courseId);
+        result.put("requested", distinct.size());
+        if (enroll) {
+            result.put("inserted", affected);
+            result.put("skippedDuplicates", distinct.size() - unknownUserIds.size() - affected);
+            result.put("unknownUserIds", unknownUserIds);
+        } else {
+            result.put("deleted", affected);
+            result.put("notEnrolled", distinct.size() - affected);
         }
-        enrollmentMapper.enrollCourse(userId, courseId);
-        return true;
+        result.put("invalidEntries", invalidEntries);
+        System.out.println((enroll ? "👥 Bulk enroll" : "👥 Bulk unenroll") + " course " + courseId + ": "
+                + affected + "/" + distinct.size() + " rows affected");
+        return result;
     }
 
     public List<EnrollmentsDTO> getEnrolledCourses(int userId) {
@@ -0,0 +1,138 @@
+package org.example.lmsbackend.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.lmsbackend.model.Categories;
+import org.example.lmsbackend.model.Content;
+import org.example.lmsbackend.model.Course;
+import org.example.lmsbackend.model.Modules;
+import org.example.lmsbackend.model.Quizzes;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quản lý cache L2 của Hibernate (Course, Categories, Modules, Content, Quizzes).
+ * Ghi qua JPA thì Hibernate tự cập nhật cache; ghi qua MyBatis (bỏ qua Hibernate) thì
+ * MyBatisEntityCacheInterceptor gọi evictTables để xóa các region bị ảnh hưởng.
+ */
+@Service
+public class EntityCacheService {
+
+    // Bảng → entity có cache bị ảnh hưởng (xóa course/module kéo theo dữ liệu con do ON DELETE CASCADE)
+    private static final Map<String, List<Class<?>>> ENTITIES_BY_TABLE = Map.of(
+            "courses", List.of(Course.class, Modules.class, Content.class, Quizzes.class),
+            "categories", List.of(Categories.class),
+            "modules", List.of(Modules.class, Content.class, Quizzes.class),
+            "contents", List.of(Content.class),
+            "quizzes", List.of(Quizzes.class)
+    );
+
+    private static final String MODULE_CONTENTS_ROLE = Modules.class.getName() + ".contents";
+
+    private static final Pattern WRITTEN_TABLE = Pattern.compile(
+            "^\\s*(?:insert\\s+(?:ignore\\s+)?into|replace\\s+into|update|delete\\s+from)\\s+`?(\\w+)`?",
+            Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Bảng bị ghi bởi câu SQL (INSERT/UPDATE/DELETE), null nếu không nhận ra
+     */
+    public static String writtenTable(String sql) {
+        Matcher matcher = WRITTEN_TABLE.matcher(sql);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ROOT) : null;
+    }
+
+    public static boolean isCachedTable(String table) {
+        return table != null && ENTITIES_BY_TABLE.containsKey(table);
+    }
+
+    /**
+     * Xóa cache của các entity map với bảng. Nếu đang trong transaction thì xóa thêm lần nữa
+     * sau khi commit/rollback, tránh luồng khác nạp lại dữ liệu cũ vào cache trước khi commit.
+     */
+    public void evictTables(Collection<String> tables) {
+        Set<Class<?>> entities = new HashSet<>();
+        for (String table : tables) {
+            entities.addAll(ENTITIES_BY_TABLE.getOrDefault(table, List.of()));
+        }
+        if (entities.isEmpty()) {
+            return;
+        }
+
+        evict(entities);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(entities);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> regions = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+            regions.put(region, regionStats(regionStats.getHitCount(), regionStats.getMissCount(),
+                    regionStats.getPutCount(), regionStats.getElementCountInMemory()));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", statistics.isStatisticsEnabled());
+        stats.put("secondLevel", regionStats(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount(), -1));
+        stats.put("queryCache", regionStats(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount(), -1));
+        stats.put("regions", regions);
+        return stats;
+    }
+
+    private void evict(Set<Class<?>> entities) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        for (Class<?> entity : entities) {
+            cache.evictEntityData(entity);
+        }
+        if (entities.contains(Modules.class) || entities.contains(Content.class)) {
+            cache.evictCollectionData(MODULE_CONTENTS_ROLE);
+        }
+        // Query cache chỉ tự hết hạn khi ghi qua Hibernate → xóa hết khi ghi ngoài
+        cache.evictQueryRegions();
+    }
+
+    private static Map<String, Object> regionStats(long hits, long misses, long puts, long size) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("puts", puts);
+        long lookups = hits + misses;
+        stats.put("hitRate", lookups == 0 ? 0.0 : Math.round(hits * 1000.0 / lookups) / 1000.0);
+        if (size >= 0) {
+            stats.put("size", size);
+        }
+        return stats;
+    }
+}
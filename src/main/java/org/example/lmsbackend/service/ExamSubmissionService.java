@@ -3,7 +3,10 @@ package org.example.lmsbackend.service;
 import org.example.lmsbackend.model.*;
 import org.example.lmsbackend.dto.*;
 import org.example.lmsbackend.repository.*;
+import org.example.lmsbackend.service.CompiledQuizService.CompiledQuestion;
+import org.example.lmsbackend.service.CompiledQuizService.CompiledQuiz;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,10 +24,10 @@ public class ExamSubmissionService {
     private UserAnswerMapper userAnswerMapper;
 
     @Autowired
-    private QuestionsMapper questionsMapper;
+    private QuizCompletionMapper quizCompletionMapper;
 
     @Autowired
-    private AnswerMapper answerMapper;
+    private CompiledQuizService compiledQuizService;
 
     @Autowired
     private UserMapper userMapper;
@@ -38,6 +41,12 @@ public class ExamSubmissionService {
     @Autowired
     private ModuleProgressService moduleProgressService;
 
+    @Autowired
+    private CourseProgressService courseProgressService;
+
+    @Value("${app.exam.answer-insert-batch-size:200}")
+    private int insertBatchSize;
+
     /**
      * Submit exam and return result immediately for multiple choice
      */
@@ -60,6 +69,9 @@ public class ExamSubmissionService {
             
             // Insert attempt
             userQuizAttemptMapper.insertAttempt(attempt);
+
+            // Bộ đáp án đã cache → không query câu hỏi/đáp án cho từng câu trả lời
+            CompiledQuiz compiledQuiz = compiledQuizService.getCompiledQuiz(submissionDTO.getQuizId());
             
             // Save user answers
             List<UserAnswer> userAnswers = new ArrayList<>();
@@ -68,7 +80,13 @@ public class ExamSubmissionService {
                 userAnswer.setAttempt(attempt);
                 
                 // Set question
-                Questions question = questionsMapper.findById(answerDTO.getQuestionId());
+                CompiledQuestion compiledQuestion = compiledQuiz.getQuestion(answerDTO.getQuestionId());
+                if (compiledQuestion == null) {
+                    System.out.println("⚠️ Question " + answerDTO.getQuestionId() + " does not belong to quiz "
+                            + submissionDTO.getQuizId() + " - skipped");
+                    continue;
+                }
+                Questions question = compiledQuestion.toQuestion();
                 userAnswer.setQuestion(question);
                 
                 System.out.println("🔍 Processing Answer for Question ID: " + answerDTO.getQuestionId());
@@ -81,57 +99,44 @@ public class ExamSubmissionService {
                 // Handle different answer types
                 if (answerDTO.getAnswerId() != null) {
                     // Multiple choice - find the selected answer by ID
-                    Answer selectedAnswer = answerMapper.findById(answerDTO.getAnswerId());
-                    userAnswer.setAnswer(selectedAnswer);
-                    userAnswer.setIsCorrect(selectedAnswer.getIsCorrect());
+                    int index = compiledQuestion.indexOfAnswerId(answerDTO.getAnswerId());
+                    if (index >= 0) {
+                        Answer selectedAnswer = compiledQuestion.toAnswer(index);
+                        userAnswer.setAnswer(selectedAnswer);
+                        userAnswer.setIsCorrect(selectedAnswer.getIsCorrect());
+                    } else {
+                        // answerId không thuộc câu hỏi này
+                        userAnswer.setAnswerText("Invalid selection");
+                        userAnswer.setIsCorrect(false);
+                        System.out.println("❌ Invalid answerId: " + answerDTO.getAnswerId());
+                    }
                 } else if (answerDTO.getSelectedIndex() != null && question.getType() == Questions.Type.MULTIPLE_CHOICE) {
-                    // Handle selected index for multiple choice (from frontend)
-                    try {
-                        List<Answer> questionAnswers = answerMapper.findByQuestionId(question.getQuestionId());
-                        questionAnswers.sort((a, b) -> (a.getOrderNumber() != null ? a.getOrderNumber() : 0) - 
-                                                     (b.getOrderNumber() != null ? b.getOrderNumber() : 0));
-                        
-                        // Get answer by selected index
-                        if (answerDTO.getSelectedIndex() >= 0 && answerDTO.getSelectedIndex() < questionAnswers.size()) {
-                            Answer selectedAnswer = questionAnswers.get(answerDTO.getSelectedIndex());
-                            userAnswer.setAnswer(selectedAnswer);
-                            userAnswer.setIsCorrect(selectedAnswer.getIsCorrect());
-                            System.out.println("✅ Selected answer by index " + answerDTO.getSelectedIndex() + 
-                                             ": " + selectedAnswer.getAnswerText() + 
-                                             " (Correct: " + selectedAnswer.getIsCorrect() + ")");
-                        } else {
-                            // Invalid index
-                            userAnswer.setAnswerText("Invalid selection");
-                            userAnswer.setIsCorrect(false);
-                            System.out.println("❌ Invalid selectedIndex: " + answerDTO.getSelectedIndex());
-                        }
-                    } catch (Exception e) {
-                        // Fallback: store as incorrect
-                        userAnswer.setAnswerText("Error processing selection");
+                    // Handle selected index for multiple choice (from frontend), theo thứ tự order_number
+                    int index = answerDTO.getSelectedIndex();
+                    if (index >= 0 && index < compiledQuestion.getAnswerCount()) {
+                        Answer selectedAnswer = compiledQuestion.toAnswer(index);
+                        userAnswer.setAnswer(selectedAnswer);
+                        userAnswer.setIsCorrect(selectedAnswer.getIsCorrect());
+                        System.out.println("✅ Selected answer by index " + index + 
+                                         ": " + selectedAnswer.getAnswerText() + 
+                                         " (Correct: " + selectedAnswer.getIsCorrect() + ")");
+                    } else {
+                        // Invalid index
+                        userAnswer.setAnswerText("Invalid selection");
                         userAnswer.setIsCorrect(false);
-                        System.out.println("❌ Error processing selectedIndex: " + e.getMessage());
+                        System.out.println("❌ Invalid selectedIndex: " + index);
                     }
                 } else if (answerDTO.getAnswerText() != null && !answerDTO.getAnswerText().trim().isEmpty()) {
                     // Handle text answer matching for multiple choice or essay answers
                     if (question.getType() == Questions.Type.MULTIPLE_CHOICE) {
                         // Try to find answer by text match
-                        try {
-                            List<Answer> questionAnswers = answerMapper.findByQuestionId(question.getQuestionId());
-                            Answer matchedAnswer = questionAnswers.stream()
-                                .filter(ans -> ans.getAnswerText().equals(answerDTO.getAnswerText()))
-                                .findFirst()
-                                .orElse(null);
-                            
-                            if (matchedAnswer != null) {
-                                userAnswer.setAnswer(matchedAnswer);
-                                userAnswer.setIsCorrect(matchedAnswer.getIsCorrect());
-                            } else {
-                                // Store as text if no match found
-                                userAnswer.setAnswerText(answerDTO.getAnswerText());
-                                userAnswer.setIsCorrect(false);
-                            }
-                        } catch (Exception e) {
-                            // Fallback: store as text
+                        int index = compiledQuestion.indexOfAnswerText(answerDTO.getAnswerText());
+                        if (index >= 0) {
+                            Answer matchedAnswer = compiledQuestion.toAnswer(index);
+                            userAnswer.setAnswer(matchedAnswer);
+                            userAnswer.setIsCorrect(matchedAnswer.getIsCorrect());
+                        } else {
+                            // Store as text if no match found
                             userAnswer.setAnswerText(answerDTO.getAnswerText());
                             userAnswer.setIsCorrect(false);
                         }
@@ -210,19 +215,20 @@ public class ExamSubmissionService {
                     }
                 }
                 
-                System.out.println("💾 About to insert UserAnswer:");
+                System.out.println("💾 Prepared UserAnswer:");
                 System.out.println("   fileName: " + userAnswer.getFileName());
                 System.out.println("   filePath: " + userAnswer.getFilePath());
                 System.out.println("   answerText: " + userAnswer.getAnswerText());
                 System.out.println("   linkAnswer: " + userAnswer.getLinkAnswer());
                 
-                userAnswerMapper.insertUserAnswer(userAnswer);
-                System.out.println("✅ UserAnswer inserted successfully");
                 userAnswers.add(userAnswer);
             }
             
+            // Ghi tất cả câu trả lời theo lô thay vì 1 INSERT cho mỗi câu
+            insertUserAnswers(userAnswers);
+            
             // Grade the quiz and get result
-            QuizResultDTO result = quizResultService.gradeQuiz(attempt, userAnswers);
+            QuizResultDTO result = quizResultService.gradeQuiz(attempt, userAnswers, compiledQuiz);
             
             // Update attempt score with actual points earned (not percentage)
             attempt.setScore((int) Math.round(result.getEarnedPoints()));
@@ -233,6 +239,11 @@ public class ExamSubmissionService {
                 Integer moduleId = quiz.getModule().getId();
                 System.out.println("🎯 Updating test progress for user " + userId + " in module " + moduleId);
                 moduleProgressService.updateTestProgress(userId, moduleId, true);
+
+                // Chỉ lần ghi dấu hoàn thành đầu tiên mới tính thêm 1 quiz (2 lần nộp đồng thời không cộng 2 lần)
+                if (quizCompletionMapper.insertIfAbsent(userId, quiz.getQuizId()) == 1) {
+                    courseProgressService.recordQuizCompleted(userId, moduleId, quiz.getQuizId());
+                }
             }
             
             return result;
@@ -242,6 +253,22 @@ public class ExamSubmissionService {
         }
     }
 
+    /**
+     * Ghi câu trả lời bằng INSERT nhiều dòng, chia lô để câu lệnh không quá lớn
+     */
+    private void insertUserAnswers(List<UserAnswer> userAnswers) {
+        if (userAnswers.isEmpty()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        for (int from = 0; from < userAnswers.size(); from += insertBatchSize) {
+            userAnswerMapper.batchInsertUserAnswers(userAnswers.subList(from, Math.min(from + insertBatchSize, userAnswers.size())));
+        }
+        long elapsedMicros = (System.nanoTime() - startedAt) / 1000;
+        System.out.println("✅ Inserted " + userAnswers.size() + " UserAnswers in "
+                + (userAnswers.size() + insertBatchSize - 1) / insertBatchSize + " batch(es), " + elapsedMicros + " µs");
+    }
+
     /**
      * Check if user has already submitted a quiz
      */
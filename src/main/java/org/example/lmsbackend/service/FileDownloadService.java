@@ -0,0 +1,113 @@
+package org.example.lmsbackend.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Tải file đính kèm (bài tự luận, file câu hỏi, file thảo luận) với bộ nhớ cố định mỗi lượt tải:
+ * - Backend local: FileStreamingService ghi thẳng từ FileChannel (sendfile khi Tomcat hỗ trợ),
+ *   hỗ trợ Range/If-Range (tải tiếp, xem PDF từng trang), ETag + Last-Modified → 304
+ * - Backend S3: chuyển hướng tới URL ký sẵn, kho tự xử lý Range/ETag
+ * Content-Type dò theo đuôi file 1 lần rồi cache (Files.probeContentType phải tra mime.types của OS).
+ */
+@Service
+public class FileDownloadService {
+
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("^[a-z0-9]{1,10}$");
+
+    // Đuôi file → Content-Type; đuôi hợp lệ có giới hạn độ dài nên số phần tử nhỏ
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileStreamingService fileStreamingService;
+
+    /**
+     * Ghi file của key ra response (200/206/304/416 hoặc 302 tới kho)
+     *
+     * @param downloadName tên file hiển thị trong Content-Disposition
+     * @param attachment   true → tải về, false → xem trực tiếp trên trình duyệt
+     * @return false nếu không có file, response chưa được ghi
+     */
+    public boolean download(String key, String downloadName, boolean attachment,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Path> file = blobStoreService.localFile(key);
+        if (file.isEmpty()) {
+            Optional<URL> url = blobStoreService.presignGet(key, downloadName, attachment);
+            if (url.isEmpty() || blobStoreService.stat(key).isEmpty()) {
+                return false;
+            }
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-store");
+            response.sendRedirect(url.get().toString());
+            return true;
+        }
+
+        ContentDisposition disposition = (attachment ? ContentDisposition.attachment() : ContentDisposition.inline())
+                .filename(downloadName, StandardCharsets.UTF_8)
+                .build();
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.toString());
+        // File do người dùng upload: không cho trình duyệt tự đoán kiểu (tránh HTML/JS giả dạng ảnh, txt)
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        // Có kiểm tra quyền → chỉ cache ở trình duyệt, luôn hỏi lại bằng ETag
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        // Tải file: range mở "bytes=N-" trả đến hết file (không cắt như stream video)
+        fileStreamingService.stream(file.get(), contentTypeOf(downloadName), false, request, response);
+        return true;
+    }
+
+    // File trong kho có thể là blob không có đuôi (dedup) → dò theo tên hiển thị
+    private String contentTypeOf(String downloadName) {
+        String extension = extension(downloadName);
+        if (extension.isEmpty()) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        return contentTypes.computeIfAbsent(extension, FileDownloadService::probe);
+    }
+
+    private static String probe(String extension) {
+        String name = "file." + extension;
+        try {
+            String probed = Files.probeContentType(Path.of(name));
+            if (probed != null) {
+                return probed;
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not probe content type of ." + extension + ": " + e.getMessage());
+        }
+        return MediaTypeFactory.getMediaType(name)
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    private static String extension(String filename) {
+        if (filename == null) {
+            return "";
+        }
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || dot == filename.length() - 1) {
+            return "";
+        }
+        String extension = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return SAFE_EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+}
@@ -1,31 +1,25 @@
 package org.example.lmsbackend.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
 @Service
 public class FileStorageService {
+    @Autowired
+    private BlobStoreService blobStoreService;
+
     public String saveFile(MultipartFile file, String subFolder) {
         try {
-            String uploadDir = "uploads/" + subFolder;
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
             String originalFilename = file.getOriginalFilename();
             String cleanedFilename = originalFilename != null ? originalFilename.replaceAll("\\s+", "_") : "file";
             String filename = UUID.randomUUID() + "_" + cleanedFilename;
 
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            // Nội dung trùng với file đã có (cùng CV, cùng ảnh...) chỉ lưu 1 bản, đường dẫn vẫn như cũ
+            blobStoreService.store(file.getInputStream(), subFolder + "/" + filename, file.getContentType());
 
             return subFolder + "/" + filename;
         } catch (IOException e) {
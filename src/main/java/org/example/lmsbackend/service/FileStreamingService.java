@@ -0,0 +1,236 @@
+package org.example.lmsbackend.service;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ghi file ra response theo chuẩn HTTP Range (RFC 7233).
+ * - Hỗ trợ 1 range (206 + Content-Range) và nhiều range (multipart/byteranges)
+ * - Kiểm tra ETag / Last-Modified (304) và If-Range
+ * - Dùng sendfile của Tomcat khi có thể, ngược lại FileChannel.transferTo theo từng chunk
+ */
+@Service
+public class FileStreamingService {
+
+    // Các attribute sendfile của Tomcat (xem org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // File nhỏ hơn ngưỡng này ghi thẳng, không cần sendfile
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    // Kích thước tối đa trả về cho range mở "bytes=N-" (player sẽ tự xin tiếp)
+    @Value("${app.stream.max-chunk-size:8388608}")
+    private long maxChunkSize;
+
+    // Kích thước mỗi lần transferTo khi không dùng được sendfile
+    @Value("${app.stream.transfer-size:262144}")
+    private long transferSize;
+
+    /**
+     * Stream file ra response, tự xử lý Range / If-Range / ETag.
+     * Response đã được ghi hoàn chỉnh khi hàm trả về.
+     */
+    public void stream(Path filePath, String contentType,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(filePath, contentType, true, request, response);
+    }
+
+    /**
+     * @param capOpenRanges true (video) → range mở "bytes=N-" chỉ trả tối đa max-chunk-size;
+     *                      false (tải file) → trả đến hết file để trình duyệt tải tiếp được
+     */
+    public void stream(Path filePath, String contentType, boolean capOpenRanges,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(filePath);
+        long lastModified = Files.getLastModifiedTime(filePath).toMillis();
+        String etag = buildETag(length, lastModified);
+        if (contentType == null || contentType.isBlank()) {
+            contentType = "application/octet-stream";
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // If-None-Match / If-Modified-Since → 304, đồng thời set ETag + Last-Modified
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        List<HttpRange> ranges = resolveRanges(request, etag, lastModified);
+        if (ranges == null || !isSatisfiable(ranges, length)) {
+            // Range không hợp lệ → 416
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        boolean headOnly = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!headOnly) {
+                writeRegion(filePath, 0, length, request, response);
+            }
+            return;
+        }
+
+        if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            if (capOpenRanges && isOpenEnded(ranges.get(0)) && end - start + 1 > maxChunkSize) {
+                end = start + maxChunkSize - 1;
+            }
+            long count = end - start + 1;
+
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(count);
+            if (!headOnly) {
+                writeRegion(filePath, start, count, request, response);
+            }
+            return;
+        }
+
+        writeMultipart(filePath, contentType, length, ranges, headOnly, response);
+    }
+
+    /**
+     * ETag mạnh dựa trên kích thước + thời gian sửa file (không cần đọc nội dung)
+     */
+    public String buildETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * @return danh sách rỗng nếu phải trả nguyên file, null nếu range không thỏa mãn được
+     */
+    private List<HttpRange> resolveRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return List.of();
+        }
+
+        // If-Range không khớp → bỏ qua Range, trả nguyên file mới
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.isBlank()) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(etag)) {
+                    return List.of();
+                }
+            } else {
+                long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+                if (ifRangeDate == -1 || lastModified / 1000 != ifRangeDate / 1000) {
+                    return List.of();
+                }
+            }
+        }
+
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean isSatisfiable(List<HttpRange> ranges, long length) {
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            if (start >= length || start > range.getRangeEnd(length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isOpenEnded(HttpRange range) {
+        // "bytes=N-" (HttpRange.toString() giữ nguyên dạng spec: "N-", "N-M", "-N")
+        return range.toString().endsWith("-");
+    }
+
+    private void writeMultipart(Path filePath, String contentType, long length, List<HttpRange> ranges,
+                                boolean headOnly, HttpServletResponse response) throws IOException {
+        long total = 0;
+        for (HttpRange range : ranges) {
+            total += range.getRangeEnd(length) - range.getRangeStart(length) + 1;
+        }
+        // Chặn yêu cầu nhiều range chồng nhau để khuếch đại băng thông
+        if (total > length) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (headOnly) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                String partHeader = "\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n";
+                out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+                transfer(channel, start, end - start + 1, target);
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private void writeRegion(Path filePath, long start, long count,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (count >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // Tomcat tự gửi file bằng sendfile sau khi request kết thúc, không giữ thread
+            request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(out));
+        }
+        out.flush();
+    }
+
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long written = channel.transferTo(position, Math.min(transferSize, end - position), target);
+            if (written <= 0) {
+                break;
+            }
+            position += written;
+        }
+    }
+}
@@ -4,9 +4,14 @@ import org.example.lmsbackend.dto.GradeDTO;
 import org.example.lmsbackend.model.*;
 import org.example.lmsbackend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
@@ -30,75 +35,41 @@ public class GradesService {
     @Autowired
     private UserMapper userMapper;
 
+    // Số dòng tối đa mỗi trang bảng điểm
+    private static final int MAX_PAGE_SIZE = 500;
+
     /**
      * Get grades for instructor - can filter by type (MULTIPLE_CHOICE, ESSAY, ALL)
      */
     public List<GradeDTO> getInstructorGrades(Integer courseId, String type) {
-        try {
-            System.out.println("=== Getting instructor grades for course: " + courseId + ", type: " + type + " ===");
-            
-            List<GradeDTO> grades = new ArrayList<>();
-            
-            // Get all quiz attempts for the course
-            List<UserQuizAttempt> attempts = userQuizAttemptMapper.findByCourseId(courseId);
-            System.out.println("Found " + attempts.size() + " attempts");
-            
-            for (UserQuizAttempt attempt : attempts) {
-                Quizzes quiz = attempt.getQuiz();
-                User student = attempt.getUser();
-                
-                // Skip if quiz type doesn't match filter
-                if (!type.equals("ALL")) {
-                    if (quiz.getQuizType() == null || !quiz.getQuizType().toString().equals(type)) {
-                        continue;
-                    }
-                }
-                
-                // Reload attempt to get latest score (in case it was just updated)
-                UserQuizAttempt latestAttempt = userQuizAttemptMapper.findById(attempt.getId());
-                if (latestAttempt != null) {
-                    System.out.println("Original score: " + attempt.getScore() + ", Latest score: " + latestAttempt.getScore());
-                    attempt = latestAttempt;
-                }
-                
-                GradeDTO grade = new GradeDTO();
-                grade.setAttemptId(attempt.getId());
-                grade.setUserId(student.getUserId());
-                grade.setStudentName(student.getFullName());
-                grade.setQuizId(quiz.getQuizId());
-                grade.setQuizTitle(quiz.getTitle());
-                grade.setQuizType(quiz.getQuizType() != null ? quiz.getQuizType().toString() : "UNKNOWN");
-                grade.setScore(attempt.getScore());
-                grade.setSubmittedAt(attempt.getAttemptedAt());
-                
-                // Calculate max score properly (sum of all question points)
-                List<Questions> questions = questionsMapper.findByQuizId(quiz.getQuizId());
-                int maxScore = questions.stream()
-                    .mapToInt(q -> q.getPoints() != null ? q.getPoints() : 1)
-                    .sum();
-                grade.setMaxScore(maxScore);
-                
-                // For essay questions, check if all are graded
-                if (quiz.getQuizType() == Quizzes.QuizType.ESSAY) {
-                    List<UserAnswer> answers = userAnswerMapper.findByAttemptId(attempt.getId());
-                    boolean allGraded = answers.stream()
-                        .allMatch(answer -> answer.getManualScore() != null);
-                    grade.setStatus(allGraded ? "COMPLETED" : "PENDING_GRADE");
-                    
-                    // Set userAnswerId for the first essay answer (for loading details)
-                    if (!answers.isEmpty()) {
-                        grade.setUserAnswerId(answers.get(0).getId());
-                    }
-                } else {
-                    grade.setStatus("COMPLETED");
-                }
-                
-                grades.add(grade);
+        return getInstructorGrades(courseId, type, null, null);
+    }
+
+    /**
+     * Bảng điểm của instructor trong 1 query (điểm tối đa, số câu đã/chưa chấm tính bằng GROUP BY).
+     * @param cursor giá trị nextCursor của trang trước (null = trang đầu)
+     * @param limit số dòng mỗi trang (null = lấy hết)
+     */
+    public List<GradeDTO> getInstructorGrades(Integer courseId, String type, String cursor, Integer limit) {
+        String quizType = type == null || type.equals("ALL") ? null : type;
+        Instant beforeAttemptedAt = null;
+        Integer beforeAttemptId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                beforeAttemptedAt = Instant.parse(parts[0]);
+                beforeAttemptId = Integer.valueOf(parts[1]);
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor không hợp lệ");
             }
-            
-            System.out.println("Returning " + grades.size() + " grades");
+        }
+        Integer pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : null;
+
+        try {
+            List<GradeDTO> grades = userQuizAttemptMapper.findGradebookByCourse(
+                    courseId, quizType, beforeAttemptedAt, beforeAttemptId, pageSize);
+            System.out.println("Returning " + grades.size() + " grades for course " + courseId + " (type: " + type + ")");
             return grades;
-            
         } catch (Exception e) {
             System.err.println("Error getting instructor grades: " + e.getMessage());
             e.printStackTrace();
@@ -106,6 +77,18 @@ public class GradesService {
         }
     }
 
+    /**
+     * Cursor cho trang tiếp theo, null nếu đã hết dữ liệu
+     */
+    public String nextGradesCursor(List<GradeDTO> page, Integer limit) {
+        if (limit == null || page.isEmpty() || page.size() < Math.max(1, Math.min(limit, MAX_PAGE_SIZE))) {
+            return null;
+        }
+        GradeDTO last = page.get(page.size() - 1);
+        String raw = last.getSubmittedAt() + "|" + last.getAttemptId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * Get grades for a specific student
      */
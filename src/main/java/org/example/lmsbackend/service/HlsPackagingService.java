@@ -0,0 +1,396 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.lmsbackend.repository.VideoMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import ws.schild.jave.process.ffmpeg.DefaultFFMPEGLocator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Đóng gói video thành HLS nhiều độ phân giải (adaptive bitrate) bằng ffmpeg đi kèm JAVE2.
+ * ffmpeg ghi ra thư mục staging cục bộ, xong thì đưa lên ObjectStorage (local hoặc S3, dùng chung cho mọi node):
+ *   videos/hls/{videoId}/master.m3u8
+ *   videos/hls/{videoId}/{token}/{rendition}/index.m3u8 + seg_xxxxx.ts
+ *   videos/hls/{videoId}/packages (các token còn giữ, mỗi dòng 1 token)
+ * Mỗi lần đóng gói tạo token mới nên URL segment không bao giờ đổi nội dung (cache immutable).
+ * master.m3u8 chỉ được ghi sau khi mọi segment đã lên kho; sau đó chỉ giữ bản mới và bản ngay trước
+ * (cho người đang xem dở), các bản cũ hơn bị xóa.
+ */
+@Service
+public class HlsPackagingService {
+
+    private static final String HLS_PREFIX = "videos/hls/";
+    private static final String MASTER = "master.m3u8";
+    private static final String PACKAGES = "packages";
+    private static final int LIST_PAGE_SIZE = 1000;
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9]+)?");
+
+    // Thang chất lượng: tên, chiều cao, bitrate video (kbps), bitrate audio (kbps)
+    private static final Rendition[] LADDER = {
+            new Rendition("360p", 360, 800, 96),
+            new Rendition("480p", 480, 1400, 128),
+            new Rendition("720p", 720, 2800, 128),
+            new Rendition("1080p", 1080, 5000, 192)
+    };
+
+    private final VideoMapper videoMapper;
+    private final ObjectStorage objectStorage;
+    private final BlobStoreService blobStoreService;
+    private final FileStreamingService fileStreamingService;
+    private final ThreadPoolExecutor executor;
+
+    @Value("${app.video.hls.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.video.hls.segment-seconds:6}")
+    private int segmentSeconds;
+
+    @Value("${app.video.hls.timeout-minutes:120}")
+    private long timeoutMinutes;
+
+    @Value("${app.storage.presign-ttl-seconds:900}")
+    private long presignTtlSeconds;
+
+    @Autowired
+    public HlsPackagingService(VideoMapper videoMapper,
+                               ObjectStorage objectStorage,
+                               BlobStoreService blobStoreService,
+                               FileStreamingService fileStreamingService,
+                               @Value("${app.video.hls.workers:1}") int workers,
+                               @Value("${app.video.hls.queue-capacity:50}") int queueCapacity) {
+        this.videoMapper = videoMapper;
+        this.objectStorage = objectStorage;
+        this.blobStoreService = blobStoreService;
+        this.fileStreamingService = fileStreamingService;
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "video-hls");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Đưa video vào hàng đợi đóng gói HLS. Video gốc vẫn xem được trong lúc chờ.
+     * @param sourceHeight chiều cao video gốc (0 nếu không rõ) - bỏ các mức cao hơn bản gốc
+     * @param deleteSourceAfter sourceFile là bản tải về từ kho lưu trữ (S3) → xóa sau khi đóng gói xong
+     * @return false nếu không nhận (tắt HLS hoặc hàng đợi đầy), khi đó người gọi tự dọn sourceFile
+     */
+    public boolean submit(Integer videoId, Path sourceFile, int sourceHeight, boolean deleteSourceAfter) {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    packageVideo(videoId, sourceFile, sourceHeight);
+                } finally {
+                    if (deleteSourceAfter) {
+                        deleteQuietly(sourceFile);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            System.err.println("❌ HLS queue full, video " + videoId + " will only be served as original file");
+            return false;
+        }
+    }
+
+    /**
+     * Ghi file HLS ra response: backend local stream thẳng từ đĩa (Range/ETag/sendfile);
+     * backend S3 trả playlist qua app (đường dẫn tương đối trong playlist phải trỏ về app),
+     * segment thì chuyển hướng tới URL ký sẵn để byte video không đi qua app.
+     * @return false nếu tên không hợp lệ hoặc không có file, response chưa được ghi
+     */
+    public boolean serve(Long videoId, String cacheControl, HttpServletRequest request,
+                         HttpServletResponse response, String... segments) throws IOException {
+        StringBuilder key = new StringBuilder(HLS_PREFIX).append(videoId);
+        for (String segment : segments) {
+            if (segment == null || !SAFE_NAME.matcher(segment).matches()) {
+                return false;
+            }
+            key.append('/').append(segment);
+        }
+        String contentType = contentTypeOf(key.toString());
+
+        if (!objectStorage.supportsPresignedUrls()) {
+            Optional<Path> file = objectStorage.localPath(key.toString());
+            if (file.isEmpty()) {
+                return false;
+            }
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            fileStreamingService.stream(file.get(), contentType, request, response);
+            return true;
+        }
+
+        if (!key.toString().endsWith(".m3u8")) {
+            Optional<URL> url = objectStorage.presignGet(key.toString(), Duration.ofSeconds(presignTtlSeconds), null, false);
+            if (url.isPresent()) {
+                // URL ký sẵn có hạn → không cache bản chuyển hướng
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-store");
+                response.sendRedirect(url.get().toString());
+                return true;
+            }
+        }
+
+        byte[] playlist;
+        try (InputStream in = objectStorage.get(key.toString())) {
+            playlist = in.readAllBytes();
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setContentType(contentType);
+        response.setContentLength(playlist.length);
+        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+            response.getOutputStream().write(playlist);
+        }
+        return true;
+    }
+
+    /**
+     * Xóa toàn bộ bản đóng gói HLS của video (khi video bị xóa)
+     */
+    public void deletePackages(Integer videoId) {
+        String videoPrefix = HLS_PREFIX + videoId + "/";
+        Optional<Path> localDir = objectStorage.localPath(videoPrefix + MASTER).map(Path::getParent);
+        try {
+            Set<String> tokens = new LinkedHashSet<>(readLines(videoPrefix + PACKAGES));
+            String current = currentToken(videoPrefix);
+            if (current != null) {
+                tokens.add(current);
+            }
+            objectStorage.delete(videoPrefix + MASTER);
+            for (String token : tokens) {
+                deletePackage(videoId, token);
+            }
+            objectStorage.delete(videoPrefix + PACKAGES);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not delete HLS packages of video " + videoId + ": " + e.getMessage());
+        }
+        // Backend local: xóa luôn thư mục (kể cả bản đóng gói cũ từ trước khi có file packages)
+        localDir.ifPresent(this::deleteQuietly);
+    }
+
+    public static String contentTypeOf(String name) {
+        if (name.endsWith(".m3u8")) {
+            return "application/vnd.apple.mpegurl";
+        }
+        if (name.endsWith(".ts")) {
+            return "video/mp2t";
+        }
+        return "application/octet-stream";
+    }
+
+    private void packageVideo(Integer videoId, Path sourceFile, int sourceHeight) {
+        long startedAt = System.currentTimeMillis();
+        String token = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        String videoPrefix = HLS_PREFIX + videoId + "/";
+        Path workDir = blobStoreService.getStagingDir().resolve("hls-" + videoId + "-" + token);
+        boolean uploaded = false;
+
+        try {
+            List<Rendition> renditions = new ArrayList<>();
+            for (Rendition rendition : LADDER) {
+                // Luôn giữ mức thấp nhất, bỏ các mức upscale
+                if (renditions.isEmpty() || sourceHeight <= 0 || rendition.height <= sourceHeight) {
+                    renditions.add(rendition);
+                }
+            }
+
+            for (Rendition rendition : renditions) {
+                Path renditionDir = workDir.resolve(rendition.name);
+                Files.createDirectories(renditionDir);
+                transcode(sourceFile, renditionDir, rendition);
+            }
+
+            // Segment trước, playlist của rendition sau cùng → playlist lên kho thì mọi segment đã có
+            uploaded = true;
+            for (Rendition rendition : renditions) {
+                Path renditionDir = workDir.resolve(rendition.name);
+                String renditionPrefix = videoPrefix + token + "/" + rendition.name + "/";
+                try (var files = Files.list(renditionDir)) {
+                    for (Path file : files.filter(path -> path.toString().endsWith(".ts")).sorted().toList()) {
+                        objectStorage.putFile(renditionPrefix + file.getFileName(), file, contentTypeOf(file.toString()));
+                    }
+                }
+                objectStorage.putFile(renditionPrefix + "index.m3u8", renditionDir.resolve("index.m3u8"),
+                        contentTypeOf("index.m3u8"));
+            }
+
+            StringBuilder master = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+            for (Rendition rendition : renditions) {
+                int width = (int) Math.round(rendition.height * 16 / 9.0 / 2) * 2;
+                master.append("#EXT-X-STREAM-INF:BANDWIDTH=")
+                        .append((rendition.videoKbps + rendition.audioKbps) * 1000L)
+                        .append(",RESOLUTION=").append(width).append("x").append(rendition.height)
+                        .append("\n")
+                        .append(token).append("/").append(rendition.name).append("/index.m3u8\n");
+            }
+
+            // Ghi đè master là thao tác đơn (S3 PUT, local ghi tạm rồi move) → client không đọc bản ghi dở
+            String previousToken = currentToken(videoPrefix);
+            Set<String> stale = new LinkedHashSet<>(readLines(videoPrefix + PACKAGES));
+            putText(videoPrefix + MASTER, master.toString(), contentTypeOf(MASTER));
+            Set<String> kept = new LinkedHashSet<>();
+            kept.add(token);
+            if (previousToken != null) {
+                kept.add(previousToken);
+            }
+            putText(videoPrefix + PACKAGES, String.join("\n", kept) + "\n", "text/plain");
+            stale.removeAll(kept);
+            for (String oldToken : stale) {
+                deletePackage(videoId, oldToken);
+            }
+
+            videoMapper.updateHlsUrl(videoId, "/api/videos/" + videoId + "/hls/master.m3u8");
+            System.out.println("✅ HLS packaged for video " + videoId + " (" + renditions.size() + " renditions, "
+                    + (System.currentTimeMillis() - startedAt) / 1000 + "s)");
+        } catch (Exception e) {
+            System.err.println("❌ HLS packaging failed for video " + videoId + ": " + e.getMessage());
+            if (uploaded) {
+                deletePackage(videoId, token);
+            }
+        } finally {
+            deleteQuietly(workDir);
+        }
+    }
+
+    // Token của bản đang được master.m3u8 trỏ tới (dòng playlist đầu tiên "{token}/{rendition}/index.m3u8")
+    private String currentToken(String videoPrefix) throws IOException {
+        for (String line : readLines(videoPrefix + MASTER)) {
+            int slash = line.indexOf('/');
+            if (!line.startsWith("#") && slash > 0) {
+                return line.substring(0, slash);
+            }
+        }
+        return null;
+    }
+
+    // Xóa mọi file của 1 lần đóng gói; list không đệ quy nên duyệt theo từng rendition trong thang chất lượng
+    private void deletePackage(Integer videoId, String token) {
+        if (!SAFE_NAME.matcher(token).matches()) {
+            return;
+        }
+        for (Rendition rendition : LADDER) {
+            String renditionPrefix = HLS_PREFIX + videoId + "/" + token + "/" + rendition.name;
+            try {
+                List<String> names;
+                do {
+                    names = objectStorage.list(renditionPrefix, null, LIST_PAGE_SIZE);
+                    for (String name : names) {
+                        objectStorage.delete(renditionPrefix + "/" + name);
+                    }
+                } while (names.size() == LIST_PAGE_SIZE);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not delete HLS files in " + renditionPrefix + ": " + e.getMessage());
+            }
+        }
+        // Backend local: dọn thư mục rỗng còn lại
+        objectStorage.localPath(HLS_PREFIX + videoId + "/" + MASTER)
+                .map(master -> master.resolveSibling(token))
+                .ifPresent(this::deleteQuietly);
+    }
+
+    private List<String> readLines(String key) throws IOException {
+        try (InputStream in = objectStorage.get(key)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .toList();
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+    }
+
+    private void putText(String key, String text, String contentType) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        objectStorage.put(key, new ByteArrayInputStream(bytes), bytes.length, contentType);
+    }
+
+    private void transcode(Path sourceFile, Path renditionDir, Rendition rendition) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                new DefaultFFMPEGLocator().getExecutablePath(),
+                "-hide_banner", "-y",
+                "-i", sourceFile.toAbsolutePath().toString(),
+                "-vf", "scale=-2:" + rendition.height,
+                "-c:v", "libx264", "-preset", "veryfast", "-profile:v", "main",
+                "-b:v", rendition.videoKbps + "k",
+                "-maxrate", (int) (rendition.videoKbps * 1.07) + "k",
+                "-bufsize", (rendition.videoKbps * 2) + "k",
+                // keyframe cố định mỗi segment để các rendition cắt cùng vị trí
+                "-force_key_frames", "expr:gte(t,n_forced*" + segmentSeconds + ")",
+                "-c:a", "aac", "-b:a", rendition.audioKbps + "k", "-ac", "2",
+                "-f", "hls",
+                "-hls_time", String.valueOf(segmentSeconds),
+                "-hls_playlist_type", "vod",
+                "-hls_segment_filename", renditionDir.resolve("seg_%05d.ts").toAbsolutePath().toString(),
+                renditionDir.resolve("index.m3u8").toAbsolutePath().toString()
+        ));
+
+        // Bỏ output ở tầng OS: ffmpeg không bị block khi pipe đầy và waitFor bên dưới mới thật sự có timeout
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("ffmpeg timed out for rendition " + rendition.name);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("ffmpeg exited with code " + process.exitValue() + " for rendition " + rendition.name);
+        }
+    }
+
+    private void deleteQuietly(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount())
+                    .forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Rendition(String name, int height, int videoKbps, int audioKbps) {
+    }
+}
@@ -0,0 +1,548 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.lmsbackend.model.JobCheckpoint;
+import org.example.lmsbackend.repository.BlobStoreMapper;
+import org.example.lmsbackend.repository.JobCheckpointMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sinh các bản thu nhỏ (mặc định 64/256/1024 px chiều rộng) cho avatar và ảnh khóa học ngay khi upload.
+ * Ảnh gốc được decode 1 lần, mỗi kích thước resize + encode song song trên pool có giới hạn.
+ * Biến thể nằm trong thư mục con w{width}/ cạnh ảnh gốc, cùng tên (đuôi .jpg, hoặc .png nếu ảnh có nền trong suốt).
+ * Ảnh gốc và biến thể đều đọc/ghi qua ObjectStorage (key "avatars/...", "imagescourse/w256/..."), không phụ thuộc đĩa cục bộ.
+ * Upload không chờ sinh ảnh; pool đầy thì bỏ qua, job backfill sẽ bù lại.
+ */
+@Service
+public class ImageVariantService {
+
+    // Tên thư mục trong URL → prefix key trong kho lưu trữ
+    public static final Map<String, String> FOLDERS = Map.of(
+            "avatars", "avatars",
+            "courses", "imagescourse");
+
+    private static final int LIST_PAGE_SIZE = 500;
+
+    // Checkpoint của backfill nằm trong DB (bảng job_checkpoints) để node nào chạy tiếp cũng được
+    private static final String BACKFILL_JOB = "image-variants-backfill";
+    private static final int BACKFILL_LEASE_SECONDS = 300;
+    private static final String LEGACY_POSITION_PREFIX = "legacy:";
+
+    private final int[] widths;
+    private final float jpegQuality;
+    private final long maxSourcePixels;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor backfillExecutor;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private volatile String backfillPosition;
+    private volatile String lastBackfillAt;
+    private final AtomicLong backfillScanned = new AtomicLong();
+
+    // Metrics
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private ObjectStorage objectStorage;
+
+    @Autowired
+    private BlobStoreMapper blobStoreMapper;
+
+    @Autowired
+    private JobCheckpointMapper jobCheckpointMapper;
+
+    @Autowired
+    public ImageVariantService(@Value("${app.images.variant-widths:64,256,1024}") int[] widths,
+                               @Value("${app.images.jpeg-quality:0.82}") float jpegQuality,
+                               @Value("${app.images.max-source-pixels:50000000}") long maxSourcePixels,
+                               @Value("${app.images.workers:2}") int workers,
+                               @Value("${app.images.queue-capacity:100}") int queueCapacity) {
+        this.widths = Arrays.stream(widths).filter(width -> width > 0).sorted().distinct().toArray();
+        this.jpegQuality = jpegQuality;
+        this.maxSourcePixels = maxSourcePixels;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.backfillExecutor = new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-backfill");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Lần backfill trước bị ngắt giữa chừng (tắt server) → chạy tiếp từ checkpoint
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeBackfillOnStartup() {
+        try {
+            if (jobCheckpointMapper.findByJobName(BACKFILL_JOB) != null) {
+                startBackfill();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Could not read image variant backfill checkpoint: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Xếp ảnh vừa upload vào hàng đợi sinh biến thể, không chặn request upload
+     */
+    public void generateAsync(String source) {
+        try {
+            executor.execute(() -> generate(source));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            System.err.println("⚠️ Image variant queue full, " + source + " left for backfill");
+        }
+    }
+
+    /**
+     * @param key    key sẽ phục vụ
+     * @param stable true nếu các lần hỏi sau vẫn ra đúng key này (đã có biến thể, hoặc không biến thể nào thay được ảnh gốc);
+     *               false khi tạm trả ảnh gốc vì biến thể chưa sinh xong → không được cache lâu
+     */
+    public record ResolvedImage(String key, boolean stable) {
+    }
+
+    /**
+     * Key phục vụ cho yêu cầu rộng w px: biến thể nhỏ nhất có chiều rộng >= w.
+     * Không có biến thể phù hợp (ảnh gốc nhỏ hơn, chưa sinh xong, w quá lớn) → ảnh gốc.
+     */
+    public ResolvedImage resolve(String folder, String filename, Integer requestedWidth) throws IOException {
+        String dir = FOLDERS.get(folder);
+        if (dir == null || filename == null || filename.isBlank()
+                || filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found");
+        }
+        String source = dir + "/" + filename;
+        if (blobStoreService.stat(source).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image not found");
+        }
+        if (requestedWidth == null || requestedWidth <= 0) {
+            return new ResolvedImage(source, true);
+        }
+
+        for (int width : widths) {
+            if (width < requestedWidth) {
+                continue;
+            }
+            for (String format : new String[]{"jpg", "png"}) {
+                String variant = variantKey(source, width, format);
+                if (objectStorage.stat(variant).isPresent()) {
+                    return new ResolvedImage(variant, true);
+                }
+            }
+            // Kích thước này không có biến thể → các kích thước lớn hơn cũng không nhỏ hơn ảnh gốc.
+            // Ảnh gốc không rộng hơn thì sẽ không bao giờ có biến thể (không phóng to), còn lại là chưa sinh xong
+            int sourceWidth = readWidth(source);
+            return new ResolvedImage(source, sourceWidth > 0 && sourceWidth <= width);
+        }
+        // w lớn hơn mọi kích thước biến thể → luôn là ảnh gốc
+        return new ResolvedImage(source, true);
+    }
+
+    /**
+     * Sinh biến thể cho mọi ảnh đã có trong avatars/ và imagescourse/.
+     * Danh sách ảnh lấy từ bảng blob_refs (với S3, ảnh gốc chỉ tồn tại dưới dạng blob, không có object tại key),
+     * rồi với backend local thêm các file cũ chưa có dòng blob_refs (liệt kê thư mục qua ObjectStorage.list);
+     * duyệt theo key và lưu checkpoint vào DB sau mỗi ảnh; bị ngắt thì lần chạy sau (node bất kỳ) tiếp tục từ đó.
+     * Mỗi lúc chỉ 1 node chạy nhờ lease trên dòng checkpoint.
+     *
+     * @return false nếu backfill đang chạy
+     */
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            backfillExecutor.execute(this::backfill);
+        } catch (RejectedExecutionException e) {
+            backfillRunning.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> backfill = new LinkedHashMap<>();
+        backfill.put("running", backfillRunning.get());
+        backfill.put("position", backfillPosition);
+        backfill.put("scanned", backfillScanned.get());
+        backfill.put("lastCompletedAt", lastBackfillAt);
+
+        long generatedCount = generated.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("widths", widths);
+        stats.put("generated", generatedCount);
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgMillis", generatedCount == 0 ? 0 : totalMillis.get() / generatedCount);
+        stats.put("activeWorkers", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("backfill", backfill);
+        return stats;
+    }
+
+    // Decode 1 lần rồi chia các kích thước cho pool; future hoàn tất khi mọi biến thể đã ghi xong
+    private CompletableFuture<Void> generate(String source) {
+        BufferedImage image;
+        try {
+            image = decode(source);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println("❌ Could not decode image " + source + ": " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        if (image == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String format = image.getColorModel().hasAlpha() ? "png" : "jpg";
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int width : widths) {
+            String target = variantKey(source, width, format);
+            // Không phóng to ảnh nhỏ hơn kích thước biến thể
+            if (width >= image.getWidth() || exists(target)) {
+                continue;
+            }
+            tasks.add(runOnPool(() -> writeVariant(image, width, format, target)));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    // Pool đầy thì làm luôn trên thread hiện tại (ảnh đã decode, bỏ thì phí)
+    private CompletableFuture<Void> runOnPool(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Đọc ảnh, null nếu không phải ảnh hoặc quá lớn.
+     * Ảnh rất lớn được subsample ngay khi decode (chỉ cần >= 2 lần biến thể lớn nhất) để tiết kiệm RAM/CPU.
+     */
+    private BufferedImage decode(String source) throws IOException {
+        try (InputStream in = blobStoreService.open(source);
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxSourcePixels) {
+                    System.err.println("⚠️ Image " + source + " too large (" + sourceWidth + "x" + sourceHeight + "), skipped");
+                    return null;
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, sourceWidth / (widths[widths.length - 1] * 2));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Chỉ đọc header để lấy chiều rộng, không decode ảnh; -1 nếu không đọc được
+    private int readWidth(String source) {
+        try (InputStream in = blobStoreService.open(source);
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return -1;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return reader.getWidth(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private void writeVariant(BufferedImage image, int width, String format, String target) {
+        long start = System.currentTimeMillis();
+        try {
+            BufferedImage scaled = scale(image, width, "png".equals(format));
+            Path temp = blobStoreService.newStagingFile("variant-");
+            try {
+                encode(scaled, format, temp);
+                objectStorage.putFile(target, temp, "png".equals(format) ? "image/png" : "image/jpeg");
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            generated.incrementAndGet();
+            totalMillis.addAndGet(System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println("❌ Could not write image variant " + target + ": " + e.getMessage());
+        }
+    }
+
+    // Thu nhỏ từng bước 1/2 rồi bước cuối về đúng kích thước: nét hơn 1 lần bilinear, nhanh hơn bicubic
+    private static BufferedImage scale(BufferedImage source, int targetWidth, boolean keepAlpha) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = currentWidth == targetWidth ? targetHeight : Math.max(targetHeight, currentHeight / 2);
+
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!keepAlpha) {
+                    // JPEG không có alpha → nền trắng thay vì đen
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth);
+        return current;
+    }
+
+    private void encode(BufferedImage image, String format, Path target) throws IOException {
+        if ("png".equals(format)) {
+            ImageIO.write(image, "png", target.toFile());
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String variantKey(String source, int width, String format) {
+        int slash = source.lastIndexOf('/');
+        String name = source.substring(slash + 1);
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return source.substring(0, slash + 1) + "w" + width + "/" + stem + "." + format;
+    }
+
+    private boolean exists(String key) {
+        try {
+            return objectStorage.stat(key).isPresent();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void backfill() {
+        long start = System.currentTimeMillis();
+        backfillScanned.set(0);
+        try {
+            jobCheckpointMapper.ensure(BACKFILL_JOB);
+            if (jobCheckpointMapper.claim(BACKFILL_JOB, BACKFILL_LEASE_SECONDS) == 0) {
+                System.out.println("⏭️ Image variant backfill already running on another node");
+                return;
+            }
+            JobCheckpoint checkpoint = jobCheckpointMapper.findByJobName(BACKFILL_JOB);
+            String resumeAfter = checkpoint != null ? checkpoint.getPosition() : null;
+            if (resumeAfter != null) {
+                System.out.println("🔁 Image variant backfill resuming after " + resumeAfter);
+            }
+
+            // Thứ tự cố định theo key để checkpoint có nghĩa giữa các lần chạy
+            boolean inLegacyPass = resumeAfter != null && resumeAfter.startsWith(LEGACY_POSITION_PREFIX);
+            if (!inLegacyPass && !backfillRefs(resumeAfter)) {
+                return;
+            }
+            // Backend local: ảnh upload trước khi có blob store chỉ là file tại key, không có dòng blob_refs
+            if (!objectStorage.supportsPresignedUrls()
+                    && !backfillLegacyFiles(inLegacyPass ? resumeAfter.substring(LEGACY_POSITION_PREFIX.length()) : null)) {
+                return;
+            }
+
+            jobCheckpointMapper.delete(BACKFILL_JOB);
+            lastBackfillAt = LocalDateTime.now().toString();
+            System.out.println("✅ Image variant backfill finished: " + backfillScanned.get() + " images in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } catch (RuntimeException e) {
+            System.err.println("❌ Image variant backfill failed at " + backfillPosition + ": " + e.getMessage());
+            try {
+                jobCheckpointMapper.release(BACKFILL_JOB);
+            } catch (RuntimeException ignored) {
+                // Lease tự hết hạn sau BACKFILL_LEASE_SECONDS
+            }
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    // Lượt 1: ảnh có dòng blob_refs; false nếu bị ngắt
+    private boolean backfillRefs(String resumeAfter) {
+        for (String dir : FOLDERS.values().stream().sorted().toList()) {
+            String prefix = dir + "/";
+            String startAfter = resumeAfter != null && resumeAfter.compareTo(prefix) > 0 ? resumeAfter : prefix;
+            List<String> keys;
+            do {
+                keys = blobStoreMapper.findPathsByPrefix(prefix, startAfter, LIST_PAGE_SIZE);
+                for (String key : keys) {
+                    if (!backfillOne(key, key)) {
+                        return false;
+                    }
+                }
+                if (!keys.isEmpty()) {
+                    startAfter = keys.get(keys.size() - 1);
+                }
+            } while (keys.size() == LIST_PAGE_SIZE);
+        }
+        return true;
+    }
+
+    /**
+     * Lượt 2: file trong thư mục ảnh mà không có dòng blob_refs (ảnh cũ), duyệt theo tên file của kho.
+     * Checkpoint ghi "legacy:{key}" để lần chạy sau bỏ qua lượt 1 và tiếp tục đúng chỗ.
+     *
+     * @param resumeAfter key đã xử lý cuối cùng của lượt này, null nếu chưa bắt đầu
+     */
+    private boolean backfillLegacyFiles(String resumeAfter) {
+        try {
+            for (String dir : FOLDERS.values().stream().sorted().toList()) {
+                String prefix = dir + "/";
+                String startAfter = null;
+                if (resumeAfter != null && resumeAfter.startsWith(prefix)) {
+                    startAfter = resumeAfter.substring(prefix.length());
+                } else if (resumeAfter != null && resumeAfter.compareTo(prefix) > 0) {
+                    continue;
+                }
+                List<String> names;
+                do {
+                    names = objectStorage.list(prefix, startAfter, LIST_PAGE_SIZE);
+                    if (names.isEmpty()) {
+                        break;
+                    }
+                    List<String> keys = names.stream().map(name -> prefix + name).toList();
+                    // File đã có blob ref thì lượt 1 đã xử lý
+                    Set<String> linked = new HashSet<>(blobStoreMapper.findExistingPaths(keys));
+                    for (String key : keys) {
+                        if (!linked.contains(key) && !backfillOne(key, LEGACY_POSITION_PREFIX + key)) {
+                            return false;
+                        }
+                    }
+                    startAfter = names.get(names.size() - 1);
+                    // Cuối trang là file đã có ref → chưa lưu vị trí, lưu để lần sau không liệt kê lại trang này
+                    if (linked.contains(prefix + startAfter)) {
+                        jobCheckpointMapper.savePosition(BACKFILL_JOB, LEGACY_POSITION_PREFIX + prefix + startAfter,
+                                BACKFILL_LEASE_SECONDS);
+                    }
+                } while (names.size() == LIST_PAGE_SIZE);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Sinh biến thể cho 1 ảnh rồi lưu checkpoint (gia hạn lease luôn); false nếu thread bị ngắt
+    private boolean backfillOne(String key, String position) {
+        if (Thread.currentThread().isInterrupted()) {
+            System.out.println("⏸️ Image variant backfill stopped at " + backfillPosition);
+            jobCheckpointMapper.release(BACKFILL_JOB);
+            return false;
+        }
+        generate(key).join();
+        backfillScanned.incrementAndGet();
+        backfillPosition = position;
+        jobCheckpointMapper.savePosition(BACKFILL_JOB, position, BACKFILL_LEASE_SECONDS);
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.security.LoginRejectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Giới hạn tần suất đăng nhập theo username và theo IP bằng token bucket.
+ * Bucket nằm trong ConcurrentHashMap (khóa phân đoạn), mỗi bucket cập nhật bằng CAS nên không cần lock.
+ * Chặn trước khi băm mật khẩu để brute-force/đăng nhập lặp không tốn CPU cho BCrypt.
+ * <p>
+ * Bucket username chỉ tính lần đăng nhập sai: token giữ trước khi kiểm tra mật khẩu (giới hạn cả các lần đoán song song)
+ * và được trả lại khi đăng nhập đúng. IP lấy từ request.getRemoteAddr(), đã là IP client thật khi chạy sau proxy
+ * (server.forward-headers-strategy); nhiều người dùng chung 1 IP (NAT trường/công ty) nên bucket IP rộng hơn nhiều.
+ */
+@Service
+public class LoginThrottleService {
+
+    @Value("${app.auth.throttle.username.capacity:5}")
+    private int usernameCapacity;
+
+    @Value("${app.auth.throttle.username.refill-per-minute:5}")
+    private double usernameRefillPerMinute;
+
+    @Value("${app.auth.throttle.ip.capacity:200}")
+    private int ipCapacity;
+
+    @Value("${app.auth.throttle.ip.refill-per-minute:300}")
+    private double ipRefillPerMinute;
+
+    @Value("${app.auth.throttle.max-buckets:100000}")
+    private int maxBuckets;
+
+    private final ConcurrentHashMap<String, TokenBucket> usernameBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong throttledByUsername = new AtomicLong();
+    private final AtomicLong throttledByIp = new AtomicLong();
+
+    /**
+     * Lấy 1 token cho IP và giữ 1 token cho username, ném LoginRejectedException (429) nếu hết.
+     * Đăng nhập đúng thì gọi {@link #loginSucceeded} để trả token username.
+     */
+    public void checkLogin(String username, String clientIp) {
+        long now = System.nanoTime();
+
+        if (clientIp != null) {
+            long waitMillis = bucket(ipBuckets, clientIp, ipCapacity, ipRefillPerMinute).tryAcquire(now);
+            if (waitMillis > 0) {
+                throttledByIp.incrementAndGet();
+                System.out.println("⛔ Login throttled for IP " + clientIp);
+                throw tooManyAttempts(waitMillis);
+            }
+        }
+
+        if (username != null) {
+            String key = username.trim().toLowerCase(Locale.ROOT);
+            long waitMillis = bucket(usernameBuckets, key, usernameCapacity, usernameRefillPerMinute).tryAcquire(now);
+            if (waitMillis > 0) {
+                throttledByUsername.incrementAndGet();
+                System.out.println("⛔ Login throttled for username " + key);
+                throw tooManyAttempts(waitMillis);
+            }
+        }
+    }
+
+    /**
+     * Đăng nhập đúng không tính vào giới hạn username: trả lại token đã giữ ở checkLogin
+     */
+    public void loginSucceeded(String username) {
+        if (username == null) {
+            return;
+        }
+        TokenBucket bucket = usernameBuckets.get(username.trim().toLowerCase(Locale.ROOT));
+        if (bucket != null) {
+            bucket.refund(System.nanoTime());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("usernameBuckets", usernameBuckets.size());
+        stats.put("ipBuckets", ipBuckets.size());
+        stats.put("throttledByUsername", throttledByUsername.get());
+        stats.put("throttledByIp", throttledByIp.get());
+        return stats;
+    }
+
+    // Bucket đã đầy lại = không còn tác dụng → xóa để map không phình
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        usernameBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        ipBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private TokenBucket bucket(ConcurrentHashMap<String, TokenBucket> buckets, String key,
+                               int capacity, double refillPerMinute) {
+        if (buckets.size() >= maxBuckets && !buckets.containsKey(key)) {
+            evictIdleBuckets();
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, refillPerMinute / 60_000_000_000.0));
+    }
+
+    private static LoginRejectedException tooManyAttempts(long waitMillis) {
+        return new LoginRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                "Đăng nhập quá nhiều lần, vui lòng thử lại sau", (waitMillis + 999) / 1000);
+    }
+
+    private static final class TokenBucket {
+        private final int capacity;
+        private final double tokensPerNano;
+        private final AtomicReference<State> state;
+
+        private TokenBucket(int capacity, double tokensPerNano) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+        }
+
+        /**
+         * @return 0 nếu lấy được token, ngược lại số ms cần chờ tới khi có token
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                State current = state.get();
+                double tokens = refill(current, now);
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / tokensPerNano / 1_000_000);
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, now))) {
+                    return 0;
+                }
+            }
+        }
+
+        void refund(long now) {
+            while (true) {
+                State current = state.get();
+                double tokens = Math.min(capacity, refill(current, now) + 1);
+                if (state.compareAndSet(current, new State(tokens, now))) {
+                    return;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return refill(state.get(), now) >= capacity;
+        }
+
+        private double refill(State current, long now) {
+            long elapsed = Math.max(0, now - current.updatedAtNanos());
+            return Math.min(capacity, current.tokens() + elapsed * tokensPerNano);
+        }
+    }
+
+    private record State(double tokens, long updatedAtNanos) {
+    }
+}
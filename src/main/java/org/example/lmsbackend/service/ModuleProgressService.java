@@ -5,7 +5,6 @@ import org.example.lmsbackend.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +31,15 @@ public class ModuleProgressService {
     @Autowired
     private UserQuizAttemptMapper userQuizAttemptMapper;
 
+    @Autowired
+    private QuizzesRepository quizzesRepository;
+
+    @Autowired
+    private CourseProgressService courseProgressService;
+
+    @Autowired
+    private VideoProgressBufferService videoProgressBufferService;
+
     public ModuleProgress getOrCreateProgress(Integer userId, Integer moduleId) {
         Optional<ModuleProgress> existingProgress = moduleProgressMapper.findByUserAndModule(userId, moduleId);
         
@@ -39,18 +47,10 @@ public class ModuleProgressService {
             return existingProgress.get();
         }
         
-        // Tạo progress mới
-        ModuleProgress newProgress = new ModuleProgress();
-        User user = new User();
-        user.setUserId(userId);
-        newProgress.setUser(user);
-        
-        Modules module = new Modules();
-        module.setId(moduleId);
-        newProgress.setModule(module);
-        
-        moduleProgressMapper.insert(newProgress);
-        return newProgress;
+        // Tạo progress mới (request khác tạo trước thì giữ dòng đó, không tạo dòng trùng)
+        moduleProgressMapper.insertIfAbsent(userId, moduleId);
+        return moduleProgressMapper.findByUserAndModule(userId, moduleId)
+                .orElseThrow(() -> new IllegalStateException("Module progress not created for user " + userId + ", module " + moduleId));
     }
 
     public void updateContentProgress(Integer userId, Integer moduleId, boolean completed) {
@@ -69,9 +69,6 @@ public class ModuleProgressService {
         ModuleProgress progress = getOrCreateProgress(userId, moduleId);
         progress.setTestCompleted(completed);
         moduleProgressMapper.update(progress);
-        
-        // Update overall module progress
-        updateModuleProgressFromContent(userId, moduleId);
     }
 
     public boolean isTestUnlocked(Integer userId, Integer moduleId) {
@@ -102,43 +99,29 @@ public class ModuleProgressService {
     }
 
     public List<ModuleProgress> getUserProgressInCourse(Integer userId, Integer courseId) {
-        return moduleProgressMapper.findByCourseAndUser(userId, courseId);
+        List<ModuleProgress> progressList = moduleProgressMapper.findByCourseAndUser(userId, courseId);
+        Map<Integer, int[]> totals = courseProgressService.getPublishedItemTotals(courseId);
+        for (ModuleProgress progress : progressList) {
+            int[] moduleTotals = progress.getModule() != null ? totals.get(progress.getModule().getId()) : null;
+            if (moduleTotals != null) {
+                applyCompletionFlags(progress, moduleTotals[0], moduleTotals[1], moduleTotals[2]);
+            }
+        }
+        return progressList;
     }
 
     // Individual Content Progress Methods
     public void markContentAsViewed(Integer userId, Integer contentId) {
-        Optional<ContentProgress> existingProgress = contentProgressRepository.findByUserIdAndContentId(userId, contentId);
-        
-        ContentProgress progress;
-        if (existingProgress.isPresent()) {
-            progress = existingProgress.get();
-            progress.setStatus("completed");
-            progress.setCompletedAt(java.time.Instant.now());
-            contentProgressRepository.save(progress);
-        } else {
-            // Create new progress
-            progress = new ContentProgress();
-            
-            User user = new User();
-            user.setUserId(userId);
-            progress.setUser(user);
-            
-            Content content = contentRepository.findById(contentId).orElse(null);
-            if (content != null) {
-                progress.setContent(content);
-                progress.setStatus("completed");
-                progress.setAccessedAt(java.time.Instant.now());
-                progress.setCompletedAt(java.time.Instant.now());
-                contentProgressRepository.save(progress);
-                
-                // Update module progress after content completion
-                updateModuleProgressFromContent(userId, content.getModule().getId());
-            }
+        Content content = contentRepository.findById(contentId).orElse(null);
+        if (content == null) {
+            return;
         }
-        
-        // If content exists and we have progress, update module progress
-        if (progress != null && progress.getContent() != null) {
-            updateModuleProgressFromContent(userId, progress.getContent().getModule().getId());
+
+        java.time.Instant now = java.time.Instant.now();
+        contentProgressRepository.insertIfAbsent(userId, contentId, now);
+        // Chỉ lần chuyển sang completed đầu tiên mới tăng bộ đếm (kể cả khi 2 lượt xem đầu tiên chạy song song)
+        if (contentProgressRepository.markCompleted(userId, contentId, now) > 0) {
+            courseProgressService.recordContentCompleted(userId, content.getModule().getId(), contentId);
         }
     }
     
@@ -164,48 +147,30 @@ public class ModuleProgressService {
     }
     
     // Individual Video Progress Methods
+    // Heartbeat chỉ ghi vào bộ đệm, VideoProgressBufferService ghi xuống DB theo lô
     public void updateVideoWatchProgress(Integer userId, Integer videoId, Double watchedDuration, 
                                        Double totalDuration, Double watchedPercentage, Boolean completed) {
-        Optional<VideoProgress> existingProgress = videoProgressRepository.findByUserIdAndVideoId(userId, videoId);
-        
-        VideoProgress progress;
-        Video video = null;
-        
-        if (existingProgress.isPresent()) {
-            progress = existingProgress.get();
-            progress.setWatchedDuration(watchedDuration.intValue());
-            progress.setTotalDuration(totalDuration.intValue());
-            progress.setLastWatchedAt(LocalDateTime.now());
-            videoProgressRepository.save(progress);
-            video = progress.getVideo();
-        } else {
-            // Create new progress
-            progress = new VideoProgress();
-            
-            User user = new User();
-            user.setUserId(userId);
-            progress.setUser(user);
-            
-            video = videoRepository.findById(videoId.longValue()).orElse(null);
-            if (video != null) {
-                progress.setVideo(video);
-                progress.setWatchedDuration(watchedDuration.intValue());
-                progress.setTotalDuration(totalDuration.intValue());
-                progress.setLastWatchedAt(LocalDateTime.now());
-                videoProgressRepository.save(progress);
-            }
-        }
-        
-        // Update module progress if video belongs to a module
-        if (video != null && video.getModule() != null) {
-            updateModuleProgressFromContent(userId, video.getModule().getId());
-        }
+        videoProgressBufferService.record(userId, videoId, watchedDuration.intValue(), totalDuration.intValue());
     }
     
     public Map<String, Object> getVideoProgress(Integer userId, Integer videoId) {
-        Optional<VideoProgress> progress = videoProgressRepository.findByUserIdAndVideoId(userId, videoId);
         Map<String, Object> result = new HashMap<>();
         
+        // Vị trí mới nhất có thể còn nằm trong bộ đệm, chưa ghi xuống DB
+        VideoProgressBufferService.PendingProgress pending = videoProgressBufferService.getPending(userId, videoId);
+        if (pending != null) {
+            double percentage = pending.totalDuration() > 0 ?
+                (double) pending.watchedDuration() / pending.totalDuration() * 100 : 0;
+            
+            result.put("watchedDuration", pending.watchedDuration());
+            result.put("totalDuration", pending.totalDuration());
+            result.put("watchedPercentage", percentage);
+            result.put("completed", percentage >= 90); // 90% threshold
+            result.put("lastWatchedAt", pending.lastWatchedAt());
+            return result;
+        }
+        
+        Optional<VideoProgress> progress = videoProgressRepository.findByUserIdAndVideoId(userId, videoId);
         if (progress.isPresent()) {
             VideoProgress vp = progress.get();
             double percentage = vp.getTotalDuration() > 0 ? 
@@ -231,48 +196,36 @@ public class ModuleProgressService {
     public ModuleProgress getModuleProgress(Integer userId, Integer moduleId) {
         Optional<ModuleProgress> progress = moduleProgressMapper.findByUserAndModule(userId, moduleId);
         
-        if (progress.isPresent()) {
-            return progress.get();
-        } else {
-            // Create new empty progress
-            return getOrCreateProgress(userId, moduleId);
-        }
+        // Create new empty progress if missing
+        ModuleProgress result = progress.isPresent() ? progress.get() : getOrCreateProgress(userId, moduleId);
+        applyCompletionFlags(result,
+                contentRepository.countByModuleIdAndPublishedTrue(moduleId),
+                videoRepository.countPublishedByModuleId(moduleId),
+                quizzesRepository.countByModuleIdAndPublishTrue(moduleId));
+        return result;
     }
     
-    // Automatically update module progress based on individual content/video/test completion
-    public void updateModuleProgressFromContent(Integer userId, Integer moduleId) {
-        try {
-            System.out.println("🔄 Updating module progress for userId: " + userId + ", moduleId: " + moduleId);
-            
-            ModuleProgress progress = getOrCreateProgress(userId, moduleId);
-            
-            // Check actual content completion status
-            boolean contentCompleted = hasCompletedContent(userId, moduleId);
-            boolean videoCompleted = hasCompletedVideos(userId, moduleId);
-            boolean testCompleted = hasPassedQuizzes(userId, moduleId);
-            
-            // Update progress flags
-            progress.setContentCompleted(contentCompleted);
-            progress.setVideoCompleted(videoCompleted);
-            progress.setTestCompleted(testCompleted);
-            
-            // Determine overall module completion
-            boolean allCompleted = contentCompleted && videoCompleted && testCompleted;
-            progress.setModuleCompleted(allCompleted);
-            
-            if (allCompleted && progress.getCompletedAt() == null) {
-                progress.setCompletedAt(LocalDateTime.now());
-            }
-            
-            // Save updated progress
-            moduleProgressMapper.update(progress);
-            
-            System.out.println("✅ Module progress updated: " + contentCompleted + "/" + videoCompleted + "/" + testCompleted);
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error updating module progress: " + e.getMessage());
-            e.printStackTrace();
-        }
+    // Cờ hoàn thành suy ra từ bộ đếm + số item đang xuất bản.
+    // Bộ đếm chỉ gồm item đang xuất bản nên so bằng đúng: thêm item mới thì module chưa hoàn thành nữa.
+    void applyCompletionFlags(ModuleProgress progress, long totalContents, long totalVideos, long totalQuizzes) {
+        boolean contentDone = isCounterDone(progress.getCompletedContents(), totalContents);
+        boolean videoDone = isCounterDone(progress.getCompletedVideos(), totalVideos);
+        boolean testDone = isCounterDone(progress.getCompletedQuizzes(), totalQuizzes);
+
+        progress.setContentCompleted(contentDone);
+        progress.setVideoCompleted(videoDone);
+        progress.setTestCompleted(testDone);
+
+        long totalItems = totalContents + totalVideos + totalQuizzes;
+        boolean allDone = totalItems > 0
+                && (totalContents == 0 || contentDone)
+                && (totalVideos == 0 || videoDone)
+                && (totalQuizzes == 0 || testDone);
+        progress.setModuleCompleted(allDone);
+    }
+
+    private boolean isCounterDone(Integer completed, long total) {
+        return total > 0 && completed != null && completed == total;
     }
     
     // Check if user has completed at least one content in the module
@@ -333,17 +286,4 @@ public class ModuleProgressService {
             return false;
         }
     }
-    
-    // Check if user has passed at least one quiz in the module
-    private boolean hasPassedQuizzes(Integer userId, Integer moduleId) {
-        try {
-            // For now, use testCompleted flag from module progress as fallback
-            // TODO: Implement proper quiz completion checking
-            ModuleProgress progress = getOrCreateProgress(userId, moduleId);
-            return progress.getTestCompleted() != null && progress.getTestCompleted();
-        } catch (Exception e) {
-            System.err.println("❌ Error checking quiz completion: " + e.getMessage());
-            return false;
-        }
-    }
 }
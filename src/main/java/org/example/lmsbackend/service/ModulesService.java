@@ -12,6 +12,9 @@ import org.example.lmsbackend.repository.UserMapper;
 import org.example.lmsbackend.repository.VideoMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
 import java.util.List;
 import org.example.lmsbackend.model.Content;
 
@@ -22,6 +25,8 @@ public class ModulesService {
     @Autowired private UserMapper userMapper;
     @Autowired private VideoMapper videoMapper;
     @Autowired private QuizzesService quizzesService;
+    @Autowired private SearchIndexService searchIndexService;
+    @Autowired private CourseProgressService courseProgressService;
 
     public List<Modules> getModulesByCourseId(int courseId) {
         return modulesRepository.findByCourse_CourseIdOrderByOrderNumber(courseId);
@@ -55,7 +60,9 @@ public class ModulesService {
         // ✅ SỬ DỤNG GIÁ TRỊ TỪ DTO, NẾU KHÔNG CÓ THÌ MẶC ĐỊNH LÀ false
         module.setPublished(dto.isPublished() != null ? dto.isPublished() : false);
 
-        return modulesRepository.save(module);
+        Modules savedModule = modulesRepository.save(module);
+        searchIndexService.reindex(SearchIndexService.DocType.MODULE, savedModule.getId());
+        return savedModule;
     }
 
     public Modules getModuleById(int moduleId) {
@@ -77,12 +84,14 @@ public class ModulesService {
 
         // Cập nhật tất cả content trong module theo trạng thái module
         int updatedContentCount = 0;
+        List<Integer> changedContentIds = new ArrayList<>();
         for (Content content : module.getContents()) {
             boolean oldStatus = content.isPublished();
             content.setPublished(published);
             
             if (oldStatus != published) {
                 updatedContentCount++;
+                changedContentIds.add(content.getId());
                 System.out.println("Content '" + content.getTitle() + "' status changed from " + 
                     oldStatus + " to " + published);
             }
@@ -97,6 +106,7 @@ public class ModulesService {
                 if (oldStatus != published) {
                     video.setPublished(published);
                     videoMapper.updateVideo(video);
+                    courseProgressService.onVideoVisibilityChanged(video.getVideoId(), published);
                     updatedVideoCount++;
                     System.out.println("Video '" + video.getTitle() + "' status changed from " + 
                         oldStatus + " to " + published);
@@ -121,6 +131,10 @@ public class ModulesService {
                           updatedVideoCount + " videos, " + updatedQuizCount + " quizzes");
 
         Modules savedModule = modulesRepository.save(module); // cascade sẽ lưu cả content nếu có @OneToMany(cascade = ...)
+        for (Integer contentId : changedContentIds) {
+            courseProgressService.onContentVisibilityChanged(contentId, published);
+        }
+        searchIndexService.reindexModule(moduleId);
         
         System.out.println("✅ Module and all content/video/quiz status updated successfully");
         return savedModule;
@@ -149,12 +163,16 @@ public class ModulesService {
         module.setPublished(dto.isPublished());
         
         // If status changed, update all content in module
+        List<Integer> changedContentIds = new ArrayList<>();
         if (statusChanged) {
             System.out.println("=== Module status changed in update, updating content ===");
             System.out.println("New status: " + (dto.isPublished() ? "Published" : "Not Published"));
             
             int updatedContentCount = 0;
             for (Content content : module.getContents()) {
+                if (content.isPublished() != dto.isPublished()) {
+                    changedContentIds.add(content.getId());
+                }
                 content.setPublished(dto.isPublished());
                 updatedContentCount++;
             }
@@ -162,13 +180,21 @@ public class ModulesService {
             System.out.println("Updated " + updatedContentCount + " content items to match module status");
         }
         
-        return modulesRepository.save(module);
+        Modules savedModule = modulesRepository.save(module);
+        for (Integer contentId : changedContentIds) {
+            courseProgressService.onContentVisibilityChanged(contentId, dto.isPublished());
+        }
+        searchIndexService.reindexModule(moduleId);
+        return savedModule;
     }
 
     // ✅ Xóa module
+    @Transactional
     public void deleteModule(int moduleId) {
         Modules module = getModuleById(moduleId);
+        courseProgressService.onModuleDeleted(moduleId);
         modulesRepository.delete(module);
+        searchIndexService.reindexModule(moduleId);
     }
 
     public void ensureInstructorOwnsCourse(int courseId, String username) {
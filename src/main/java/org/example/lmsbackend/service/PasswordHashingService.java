@@ -0,0 +1,139 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.lmsbackend.security.LoginRejectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kiểm tra mật khẩu BCrypt trên pool riêng có giới hạn thay vì trên thread Tomcat.
+ * Số worker cố định nên BCrypt không chiếm hết CPU của các API khác khi đăng nhập dồn dập;
+ * hàng đợi đầy hoặc chờ quá lâu → từ chối ngay bằng 503 + Retry-After.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    // Metrics
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalHashMicros = new AtomicLong();
+    private final AtomicLong maxHashMicros = new AtomicLong();
+    private final AtomicLong totalQueueWaitMicros = new AtomicLong();
+    private final AtomicLong maxQueueWaitMicros = new AtomicLong();
+
+    @Autowired
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Value("${app.auth.hash.workers:2}") int workers,
+                                  @Value("${app.auth.hash.queue-capacity:200}") int queueCapacity,
+                                  @Value("${app.auth.hash.timeout-ms:5000}") long timeoutMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * passwordEncoder.matches chạy trên pool băm, thread gọi chỉ chờ kết quả
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        long enqueuedAt = System.nanoTime();
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                record(totalQueueWaitMicros, maxQueueWaitMicros, (startedAt - enqueuedAt) / 1000);
+                try {
+                    return passwordEncoder.matches(rawPassword, encodedPassword);
+                } finally {
+                    record(totalHashMicros, maxHashMicros, (System.nanoTime() - startedAt) / 1000);
+                    completed.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            System.err.println("❌ Password hashing queue full (" + executor.getQueue().size() + " waiting)");
+            throw new LoginRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Hệ thống đang quá tải, vui lòng thử lại sau", estimateRetryAfterSeconds());
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.incrementAndGet();
+            throw new LoginRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Hệ thống đang quá tải, vui lòng thử lại sau", estimateRetryAfterSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while verifying password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long done = completed.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", executor.getMaximumPoolSize());
+        stats.put("activeWorkers", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("avgHashMillis", done > 0 ? totalHashMicros.get() / 1000.0 / done : 0.0);
+        stats.put("maxHashMillis", maxHashMicros.get() / 1000.0);
+        stats.put("avgQueueWaitMillis", done > 0 ? totalQueueWaitMicros.get() / 1000.0 / done : 0.0);
+        stats.put("maxQueueWaitMillis", maxQueueWaitMicros.get() / 1000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Thời gian ước tính để xử lý hết hàng đợi hiện tại
+    private long estimateRetryAfterSeconds() {
+        long done = completed.get();
+        double avgHashMillis = done > 0 ? totalHashMicros.get() / 1000.0 / done : 100;
+        double drainMillis = avgHashMillis * executor.getQueue().size() / Math.max(1, executor.getMaximumPoolSize());
+        return (long) Math.ceil(drainMillis / 1000);
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long micros) {
+        total.addAndGet(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+}
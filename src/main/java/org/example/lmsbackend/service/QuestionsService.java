@@ -24,6 +24,9 @@ public class QuestionsService {
     @Autowired
     private AnswerMapper answerMapper;
 
+    @Autowired
+    private CompiledQuizService compiledQuizService;
+
     // Tạo mới câu hỏi với answers và trả về DTO với ID
     @Transactional
     public QuestionsDTO createQuestionWithReturn(QuestionsDTO dto) {
@@ -65,6 +68,9 @@ public class QuestionsService {
                 }
             }
 
+            // Bộ đáp án của quiz đã thay đổi
+            compiledQuizService.invalidate(dto.getQuizId());
+
             // Convert to DTO and return with ID
             return convertToDTO(question);
         } catch (Exception e) {
@@ -125,6 +131,8 @@ public class QuestionsService {
                 answerMapper.deleteByQuestionId(questionId);
             }
 
+            compiledQuizService.invalidate(existingQuestion.getQuiz() != null ? existingQuestion.getQuiz().getQuizId() : null);
+
             return true;
         } catch (Exception e) {
             System.err.println("Error updating question: " + e.getMessage());
@@ -146,6 +154,8 @@ public class QuestionsService {
             
             // Xóa câu hỏi
             questionsMapper.deleteQuestion(questionId);
+
+            compiledQuizService.invalidate(existingQuestion.getQuiz() != null ? existingQuestion.getQuiz().getQuizId() : null);
             
             return true;
         } catch (Exception e) {
@@ -1,28 +1,25 @@
 package org.example.lmsbackend.service;
 
 import org.example.lmsbackend.model.Questions;
-import org.example.lmsbackend.model.Answer;
 import org.example.lmsbackend.model.UserAnswer;
 import org.example.lmsbackend.model.UserQuizAttempt;
 import org.example.lmsbackend.dto.QuizResultDTO;
 import org.example.lmsbackend.dto.QuestionResultDTO;
 import org.example.lmsbackend.dto.QuizResultDetailDTO;
-import org.example.lmsbackend.repository.QuestionsMapper;
-import org.example.lmsbackend.repository.AnswerMapper;
+import org.example.lmsbackend.service.CompiledQuizService.CompiledQuestion;
+import org.example.lmsbackend.service.CompiledQuizService.CompiledQuiz;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class QuizResultService {
 
     @Autowired
-    private QuestionsMapper questionsMapper;
-
-    @Autowired
-    private AnswerMapper answerMapper;
+    private CompiledQuizService compiledQuizService;
 
     /**
      * Chấm điểm một bài thi của sinh viên
@@ -30,13 +27,23 @@ public class QuizResultService {
      * @param userAnswers Danh sách câu trả lời của sinh viên
      * @return Điểm số và chi tiết kết quả
      */
-    @Transactional(readOnly = true)
     public QuizResultDTO gradeQuiz(UserQuizAttempt attempt, List<UserAnswer> userAnswers) {
+        return gradeQuiz(attempt, userAnswers, compiledQuizService.getCompiledQuiz(attempt.getQuiz().getQuizId()));
+    }
+
+    /**
+     * Chấm điểm với bộ đáp án đã biên dịch: 1 lượt duyệt trong bộ nhớ, không query DB
+     */
+    public QuizResultDTO gradeQuiz(UserQuizAttempt attempt, List<UserAnswer> userAnswers, CompiledQuiz compiledQuiz) {
         
-        // Lấy tất cả câu hỏi của quiz với đáp án đúng
-        List<Questions> questions = questionsMapper.findByQuizId(attempt.getQuiz().getQuizId());
+        // Gom câu trả lời theo questionId (giữ câu trả lời đầu tiên nếu trùng)
+        Map<Integer, UserAnswer> answersByQuestion = new HashMap<>();
+        for (UserAnswer userAnswer : userAnswers) {
+            if (userAnswer.getQuestion() != null && userAnswer.getQuestion().getQuestionId() != null) {
+                answersByQuestion.putIfAbsent(userAnswer.getQuestion().getQuestionId(), userAnswer);
+            }
+        }
         
-        double totalPoints = 0;
         double earnedPoints = 0;
         
         QuizResultDTO result = new QuizResultDTO();
@@ -45,14 +52,10 @@ public class QuizResultService {
         result.setUserId(attempt.getUser().getUserId());
         
         // Duyệt qua từng câu hỏi để chấm điểm
-        for (Questions question : questions) {
-            totalPoints += question.getPoints();
+        for (CompiledQuestion question : compiledQuiz.getQuestions()) {
             
             // Tìm câu trả lời của sinh viên cho câu hỏi này
-            UserAnswer userAnswer = userAnswers.stream()
-                .filter(ua -> ua.getQuestion().getQuestionId().equals(question.getQuestionId()))
-                .findFirst()
-                .orElse(null);
+            UserAnswer userAnswer = answersByQuestion.get(question.getQuestionId());
             
             if (userAnswer != null) {
                 // Calculate actual earned points for this question
@@ -89,6 +92,7 @@ public class QuizResultService {
             }
         }
         
+        double totalPoints = compiledQuiz.getTotalPoints();
         result.setTotalPoints(totalPoints);
         result.setEarnedPoints(earnedPoints);
         result.setScore((totalPoints > 0) ? (earnedPoints / totalPoints) * 100 : 0);
@@ -99,12 +103,16 @@ public class QuizResultService {
     /**
      * Kiểm tra câu trả lời của sinh viên có đúng không
      */
-    private boolean checkAnswer(Questions question, UserAnswer userAnswer) {
+    private boolean checkAnswer(CompiledQuestion question, UserAnswer userAnswer) {
         
         if (question.getType() == Questions.Type.MULTIPLE_CHOICE) {
-            // Với trắc nghiệm, kiểm tra answer_id
+            // Với trắc nghiệm, tra answer_id trong bộ đáp án
             if (userAnswer.getAnswer() != null) {
-                return userAnswer.getAnswer().getIsCorrect();
+                int index = question.indexOfAnswerId(userAnswer.getAnswer().getAnswerId());
+                if (index >= 0) {
+                    return question.isCorrect(index);
+                }
+                return Boolean.TRUE.equals(userAnswer.getAnswer().getIsCorrect());
             }
         } else if (question.getType() == Questions.Type.ESSAY) {
             // Với tự luận, cần giảng viên chấm thủ công
@@ -118,11 +126,17 @@ public class QuizResultService {
     /**
      * Lấy text câu trả lời của sinh viên
      */
-    private String getUserAnswerText(Questions question, UserAnswer userAnswer) {
+    private String getUserAnswerText(CompiledQuestion question, UserAnswer userAnswer) {
         
         if (question.getType() == Questions.Type.MULTIPLE_CHOICE) {
             if (userAnswer.getAnswer() != null) {
-                return userAnswer.getAnswer().getAnswerText();
+                if (userAnswer.getAnswer().getAnswerText() != null) {
+                    return userAnswer.getAnswer().getAnswerText();
+                }
+                int index = question.indexOfAnswerId(userAnswer.getAnswer().getAnswerId());
+                if (index >= 0) {
+                    return question.getAnswerText(index);
+                }
             }
         } else if (question.getType() == Questions.Type.ESSAY) {
             return userAnswer.getAnswerText();
@@ -134,15 +148,10 @@ public class QuizResultService {
     /**
      * Lấy text đáp án đúng
      */
-    private String getCorrectAnswerText(Questions question) {
+    private String getCorrectAnswerText(CompiledQuestion question) {
         
         if (question.getType() == Questions.Type.MULTIPLE_CHOICE) {
-            List<Answer> answers = answerMapper.findByQuestionId(question.getQuestionId());
-            return answers.stream()
-                .filter(Answer::getIsCorrect)
-                .map(Answer::getAnswerText)
-                .findFirst()
-                .orElse("Không có đáp án đúng");
+            return question.getCorrectAnswerText() != null ? question.getCorrectAnswerText() : "Không có đáp án đúng";
         } else {
             return "Câu tự luận - cần chấm thủ công";
         }
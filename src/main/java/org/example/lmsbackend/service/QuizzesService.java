@@ -35,6 +35,12 @@ public class QuizzesService {
     @Autowired
     private AnswerMapper answerMapper;
 
+    @Autowired
+    private CompiledQuizService compiledQuizService;
+
+    @Autowired
+    private CourseProgressService courseProgressService;
+
     public Quizzes createQuiz(QuizzesDTO dto) {
         Quizzes quiz = new Quizzes();
         quiz.setTitle(dto.getTitle());
@@ -151,7 +157,18 @@ public class QuizzesService {
             quiz.setCourse(course);
         }
         
+        boolean wasPublished = quizzesRepository.findById(dto.getQuizId())
+                .map(existing -> Boolean.TRUE.equals(existing.getPublish()))
+                .orElse(false);
+        boolean nowPublished = Boolean.TRUE.equals(quiz.getPublish());
+        // Ẩn quiz: trừ bộ đếm trước khi lưu (lúc module_id của quiz vẫn còn trong DB)
+        if (wasPublished && !nowPublished) {
+            courseProgressService.onQuizVisibilityChanged(quiz.getQuizId(), false);
+        }
         quizzesRepository.save(quiz);
+        if (!wasPublished && nowPublished) {
+            courseProgressService.onQuizVisibilityChanged(quiz.getQuizId(), true);
+        }
     }
 
     @Transactional
@@ -176,8 +193,13 @@ public class QuizzesService {
             }
             
             // The UserQuizAttempts should be cascade deleted by database constraint
+            // → trừ bộ đếm tiến độ trước khi xóa
+            if (Boolean.TRUE.equals(quiz.getPublish())) {
+                courseProgressService.onQuizVisibilityChanged(quizId, false);
+            }
             // Finally delete the quiz
             quizzesRepository.deleteById(quizId);
+            compiledQuizService.invalidate(quizId);
         } catch (Exception e) {
             System.err.println("Error deleting quiz: " + e.getMessage());
             e.printStackTrace();
@@ -241,6 +263,9 @@ public class QuizzesService {
         
         quiz.setPublish(publish);
         Quizzes savedQuiz = quizzesRepository.save(quiz);
+        if (oldStatus != publish) {
+            courseProgressService.onQuizVisibilityChanged(quizId, publish);
+        }
         
         System.out.println("✅ Quiz status updated. New status: " + 
             (savedQuiz.getPublish() ? "Published" : "Not Published"));
@@ -283,6 +308,7 @@ public class QuizzesService {
                 if (oldStatus != published) {
                     quiz.setPublish(published);
                     quizzesRepository.save(quiz);
+                    courseProgressService.onQuizVisibilityChanged(quiz.getQuizId(), published);
                     System.out.println("Quiz '" + quiz.getTitle() + "' status changed from " + 
                         oldStatus + " to " + published);
                 }
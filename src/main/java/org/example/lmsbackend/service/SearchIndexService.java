@@ -0,0 +1,588 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.lmsbackend.dto.SearchDocumentDTO;
+import org.example.lmsbackend.repository.SearchIndexMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục đảo ngược (inverted index) trong bộ nhớ cho tìm kiếm khóa học, video, module, nội dung và người dùng,
+ * thay cho LIKE '%...%' (quét toàn bảng).
+ * - Chuẩn hóa: chữ thường, bỏ dấu tiếng Việt, tách theo ký tự không phải chữ/số.
+ * - Xếp hạng BM25, từ trong tiêu đề có trọng số cao hơn mô tả.
+ * - Cập nhật từng tài liệu sau khi transaction ghi commit (đọc lại đúng 1 dòng theo khóa chính).
+ * - Dựng lại toàn bộ khi khởi động hoặc theo yêu cầu: đọc MySQL theo lô keyset rồi thay chỉ mục cũ 1 lần.
+ */
+@Service
+public class SearchIndexService {
+
+    public enum DocType {
+        COURSE, VIDEO, MODULE, CONTENT, USER
+    }
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TITLE_WEIGHT = 3;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final int SNIPPET_LENGTH = 200;
+    // Tham số BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final SearchIndexMapper searchIndexMapper;
+    private final int rebuildChunkSize;
+    private final int maxPrefixExpansions;
+    private final ThreadPoolExecutor rebuildExecutor;
+
+    private volatile Index index = new Index();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // Tài liệu thay đổi trong lúc dựng lại → áp dụng lại vào chỉ mục mới sau khi thay
+    private final Set<String> touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private volatile long lastRebuildMillis = -1;
+    private volatile String lastRebuildAt;
+
+    @Autowired
+    public SearchIndexService(SearchIndexMapper searchIndexMapper,
+                              @Value("${app.search.rebuild-chunk-size:1000}") int rebuildChunkSize,
+                              @Value("${app.search.max-prefix-expansions:50}") int maxPrefixExpansions) {
+        this.searchIndexMapper = searchIndexMapper;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.maxPrefixExpansions = maxPrefixExpansions;
+        this.rebuildExecutor = new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-index-rebuild");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        requestRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục ở background.
+     *
+     * @return false nếu đang có 1 lần dựng lại chạy
+     */
+    public boolean requestRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuildExecutor.execute(this::rebuild);
+            return true;
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+            return false;
+        }
+    }
+
+    /**
+     * Đọc lại 1 tài liệu từ DB và cập nhật chỉ mục (dòng không còn → xóa khỏi chỉ mục).
+     * Trong transaction thì chạy sau khi commit để không đọc dữ liệu chưa commit.
+     */
+    public void reindex(DocType type, Integer id) {
+        if (id == null) {
+            return;
+        }
+        afterCommit(() -> apply(type, id));
+    }
+
+    /**
+     * Module thay đổi trạng thái/bị xóa kéo theo nội dung và video bên trong
+     */
+    public void reindexModule(Integer moduleId) {
+        if (moduleId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            apply(DocType.MODULE, moduleId);
+            Set<String> children = index.keysMatching(doc -> doc.moduleId != null && doc.moduleId.intValue() == moduleId
+                    && (doc.type == DocType.CONTENT || doc.type == DocType.VIDEO));
+            try {
+                putAll(DocType.CONTENT, searchIndexMapper.findContentsByModuleId(moduleId), children);
+                putAll(DocType.VIDEO, searchIndexMapper.findVideosByModuleId(moduleId), children);
+                removeAll(children);
+            } catch (Exception e) {
+                System.err.println("❌ Could not reindex module " + moduleId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Khóa học đổi trạng thái/bị xóa: hiển thị của mọi module, nội dung, video bên trong đổi theo
+     */
+    public void reindexCourse(Integer courseId) {
+        if (courseId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            apply(DocType.COURSE, courseId);
+            Set<String> children = index.keysMatching(doc -> doc.courseId != null && doc.courseId.intValue() == courseId
+                    && (doc.type == DocType.MODULE || doc.type == DocType.CONTENT || doc.type == DocType.VIDEO));
+            try {
+                putAll(DocType.MODULE, searchIndexMapper.findModulesByCourseId(courseId), children);
+                putAll(DocType.CONTENT, searchIndexMapper.findContentsByCourseId(courseId), children);
+                putAll(DocType.VIDEO, searchIndexMapper.findVideosByCourseId(courseId), children);
+                removeAll(children);
+            } catch (Exception e) {
+                System.err.println("❌ Could not reindex course " + courseId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Tìm kiếm có xếp hạng và phân trang.
+     *
+     * @param type               null = mọi loại
+     * @param includeUnpublished true = gồm cả khóa học/video/module chưa xuất bản
+     * @param includeUsers       true = gồm cả người dùng
+     */
+    public Map<String, Object> search(String query, DocType type, boolean includeUnpublished,
+                                      boolean includeUsers, int page, int size) {
+        List<String> terms = tokenize(query);
+        List<ScoredDoc> hits = terms.isEmpty()
+                ? Collections.emptyList()
+                : index.search(terms, false, filter(type, includeUnpublished, includeUsers), maxPrefixExpansions);
+
+        int from = Math.min(hits.size(), page * size);
+        int to = Math.min(hits.size(), from + size);
+        List<Map<String, Object>> items = new ArrayList<>(to - from);
+        for (ScoredDoc hit : hits.subList(from, to)) {
+            Map<String, Object> item = hit.doc.toMap();
+            item.put("score", Math.round(hit.score * 1000) / 1000.0);
+            items.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", items);
+        result.put("total", hits.size());
+        result.put("page", page);
+        result.put("size", size);
+        return result;
+    }
+
+    /**
+     * Gợi ý khi đang gõ: từ cuối cùng khớp theo tiền tố, các từ trước khớp nguyên từ
+     */
+    public List<Map<String, Object>> autocomplete(String prefix, DocType type, boolean includeUnpublished,
+                                                  boolean includeUsers, int limit) {
+        List<String> terms = tokenize(prefix);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ScoredDoc> hits = index.search(terms, true, filter(type, includeUnpublished, includeUsers), maxPrefixExpansions);
+
+        List<Map<String, Object>> suggestions = new ArrayList<>(limit);
+        Set<String> seenTitles = new HashSet<>();
+        for (ScoredDoc hit : hits) {
+            if (suggestions.size() >= limit) {
+                break;
+            }
+            if (hit.doc.title == null || !seenTitles.add(hit.doc.title.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", hit.doc.type.name());
+            item.put("id", hit.doc.id);
+            item.put("title", hit.doc.title);
+            suggestions.add(item);
+        }
+        return suggestions;
+    }
+
+    public Map<String, Object> getStats() {
+        Index current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", current.documentCount());
+        stats.put("terms", current.termCount());
+        stats.put("rebuilding", rebuilding.get());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        stats.put("lastRebuildAt", lastRebuildAt);
+        return stats;
+    }
+
+    // Chuẩn hóa văn bản thành danh sách từ: chữ thường, bỏ dấu (đ → d)
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT).replace('đ', 'd'), Normalizer.Form.NFD);
+        normalized = COMBINING_MARKS.matcher(normalized).replaceAll("");
+
+        List<String> terms = new ArrayList<>();
+        for (String term : NON_WORD.split(normalized)) {
+            if (!term.isEmpty() && term.length() <= MAX_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        touchedDuringRebuild.clear();
+        try {
+            Index fresh = new Index();
+            load(fresh, DocType.COURSE, searchIndexMapper::findCoursesAfter);
+            load(fresh, DocType.MODULE, searchIndexMapper::findModulesAfter);
+            load(fresh, DocType.CONTENT, searchIndexMapper::findContentsAfter);
+            load(fresh, DocType.VIDEO, searchIndexMapper::findVideosAfter);
+            load(fresh, DocType.USER, searchIndexMapper::findUsersAfter);
+            index = fresh;
+
+            // Áp dụng lại các thay đổi xảy ra trong lúc đọc dữ liệu (có thể đã bị bản đọc cũ ghi đè)
+            for (String key : new ArrayList<>(touchedDuringRebuild)) {
+                int separator = key.indexOf(':');
+                apply(DocType.valueOf(key.substring(0, separator)), Integer.valueOf(key.substring(separator + 1)));
+            }
+
+            lastRebuildMillis = System.currentTimeMillis() - start;
+            lastRebuildAt = LocalDateTime.now().toString();
+            System.out.println("🔎 Search index rebuilt: " + fresh.documentCount() + " documents, "
+                    + fresh.termCount() + " terms in " + lastRebuildMillis + " ms");
+        } catch (Exception e) {
+            System.err.println("❌ Search index rebuild failed: " + e.getMessage());
+        } finally {
+            rebuilding.set(false);
+            touchedDuringRebuild.clear();
+        }
+    }
+
+    private void load(Index target, DocType type, BiFunction<Integer, Integer, List<SearchDocumentDTO>> loader) {
+        int afterId = 0;
+        while (true) {
+            List<SearchDocumentDTO> rows = loader.apply(afterId, rebuildChunkSize);
+            for (SearchDocumentDTO row : rows) {
+                target.put(new Doc(type, row));
+            }
+            if (rows.size() < rebuildChunkSize) {
+                return;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+    }
+
+    private void apply(DocType type, Integer id) {
+        String key = key(type, id);
+        markTouched(key);
+        try {
+            SearchDocumentDTO row = switch (type) {
+                case COURSE -> searchIndexMapper.findCourseById(id);
+                case VIDEO -> searchIndexMapper.findVideoById(id);
+                case MODULE -> searchIndexMapper.findModuleById(id);
+                case CONTENT -> searchIndexMapper.findContentById(id);
+                case USER -> searchIndexMapper.findUserById(id);
+            };
+            if (row == null) {
+                index.remove(key);
+            } else {
+                index.put(new Doc(type, row));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Could not reindex " + key + ": " + e.getMessage());
+        }
+    }
+
+    private void put(DocType type, SearchDocumentDTO row) {
+        markTouched(key(type, row.getId()));
+        index.put(new Doc(type, row));
+    }
+
+    // Nạp lại các dòng, bỏ chúng khỏi tập "stale" (tài liệu cũ chưa thấy lại)
+    private void putAll(DocType type, List<SearchDocumentDTO> rows, Set<String> stale) {
+        for (SearchDocumentDTO row : rows) {
+            stale.remove(key(type, row.getId()));
+            put(type, row);
+        }
+    }
+
+    // Tài liệu cũ không còn dòng trong DB → đã bị xóa cùng cha
+    private void removeAll(Set<String> stale) {
+        for (String key : stale) {
+            markTouched(key);
+            index.remove(key);
+        }
+    }
+
+    private void markTouched(String key) {
+        if (rebuilding.get()) {
+            touchedDuringRebuild.add(key);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Predicate<Doc> filter(DocType type, boolean includeUnpublished, boolean includeUsers) {
+        return doc -> (type == null || doc.type == type)
+                && (includeUsers || doc.type != DocType.USER)
+                && (includeUnpublished || doc.published);
+    }
+
+    private static String key(DocType type, Integer id) {
+        return type.name() + ":" + id;
+    }
+
+    private static final class Index {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Doc> docs = new HashMap<>();
+        // term → (docKey → trọng số của term trong tài liệu); TreeMap để tra theo tiền tố
+        private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+        private long totalLength;
+
+        void put(Doc doc) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(doc.key);
+                docs.put(doc.key, doc);
+                doc.termWeights.forEach((term, weight) ->
+                        postings.computeIfAbsent(term, t -> new HashMap<>()).put(doc.key, weight));
+                totalLength += doc.length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(String key) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(key);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Set<String> keysMatching(Predicate<Doc> filter) {
+            Set<String> keys = new HashSet<>();
+            lock.readLock().lock();
+            try {
+                for (Doc doc : docs.values()) {
+                    if (filter.test(doc)) {
+                        keys.add(doc.key);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return keys;
+        }
+
+        /**
+         * Chấm điểm BM25 trên các tài liệu khớp ít nhất 1 từ, nhân với tỉ lệ số từ khớp
+         * để tài liệu khớp đủ các từ đứng trước.
+         */
+        List<ScoredDoc> search(List<String> terms, boolean prefixLast, Predicate<Doc> filter, int maxPrefixExpansions) {
+            lock.readLock().lock();
+            try {
+                int documentCount = docs.size();
+                if (documentCount == 0) {
+                    return Collections.emptyList();
+                }
+                double averageLength = (double) totalLength / documentCount;
+
+                Map<String, ScoredDoc> scores = new HashMap<>();
+                for (int i = 0; i < terms.size(); i++) {
+                    String term = terms.get(i);
+                    boolean prefix = prefixLast && i == terms.size() - 1;
+                    for (String variant : prefix ? expand(term, maxPrefixExpansions) : List.of(term)) {
+                        Map<String, Integer> posting = postings.get(variant);
+                        if (posting == null) {
+                            continue;
+                        }
+                        double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                        // Khớp theo tiền tố thì điểm thấp hơn khớp nguyên từ
+                        double boost = variant.equals(term) ? 1.0 : 0.7;
+                        for (Map.Entry<String, Integer> entry : posting.entrySet()) {
+                            Doc doc = docs.get(entry.getKey());
+                            if (doc == null || !filter.test(doc)) {
+                                continue;
+                            }
+                            int weight = entry.getValue();
+                            double tf = weight * (K1 + 1) / (weight + K1 * (1 - B + B * doc.length / averageLength));
+                            ScoredDoc scored = scores.computeIfAbsent(doc.key, k -> new ScoredDoc(doc));
+                            scored.score += idf * tf * boost;
+                            if (scored.lastMatchedTerm != i) {
+                                scored.lastMatchedTerm = i;
+                                scored.matchedTerms++;
+                            }
+                        }
+                    }
+                }
+
+                List<ScoredDoc> hits = new ArrayList<>(scores.values());
+                for (ScoredDoc hit : hits) {
+                    hit.score *= (double) hit.matchedTerms / terms.size();
+                }
+                hits.sort((a, b) -> {
+                    int byScore = Double.compare(b.score, a.score);
+                    return byScore != 0 ? byScore : a.doc.key.compareTo(b.doc.key);
+                });
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int documentCount() {
+            lock.readLock().lock();
+            try {
+                return docs.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int termCount() {
+            lock.readLock().lock();
+            try {
+                return postings.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Các từ bắt đầu bằng prefix, ưu tiên từ xuất hiện trong nhiều tài liệu
+        private List<String> expand(String prefix, int limit) {
+            List<Map.Entry<String, Map<String, Integer>>> candidates = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Integer>> entry
+                    : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+                candidates.add(entry);
+                if (candidates.size() >= limit * 10) {
+                    break;
+                }
+            }
+            candidates.sort((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()));
+            List<String> terms = new ArrayList<>(Math.min(limit, candidates.size()));
+            for (int i = 0; i < candidates.size() && i < limit; i++) {
+                terms.add(candidates.get(i).getKey());
+            }
+            return terms;
+        }
+
+        private void removeLocked(String key) {
+            Doc old = docs.remove(key);
+            if (old == null) {
+                return;
+            }
+            for (String term : old.termWeights.keySet()) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(key);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= old.length;
+        }
+    }
+
+    private static final class Doc {
+        private final DocType type;
+        private final int id;
+        private final String key;
+        private final String title;
+        private final String snippet;
+        private final Integer courseId;
+        private final Integer moduleId;
+        private final boolean published;
+        private final Map<String, Integer> termWeights = new HashMap<>();
+        private final int length;
+
+        Doc(DocType type, SearchDocumentDTO row) {
+            this.type = type;
+            this.id = row.getId();
+            this.key = key(type, row.getId());
+            this.title = row.getTitle();
+            String body = row.getBody();
+            this.snippet = body == null || body.length() <= SNIPPET_LENGTH ? body : body.substring(0, SNIPPET_LENGTH) + "…";
+            this.courseId = row.getCourseId();
+            this.moduleId = row.getModuleId();
+            this.published = Boolean.TRUE.equals(row.getPublished());
+
+            int total = 0;
+            for (String term : tokenize(row.getTitle())) {
+                termWeights.merge(term, TITLE_WEIGHT, Integer::sum);
+                total += TITLE_WEIGHT;
+            }
+            for (String term : tokenize(body)) {
+                termWeights.merge(term, 1, Integer::sum);
+                total++;
+            }
+            this.length = Math.max(1, total);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", type.name());
+            item.put("id", id);
+            item.put("title", title);
+            item.put("snippet", snippet);
+            item.put("courseId", courseId);
+            item.put("moduleId", moduleId);
+            return item;
+        }
+    }
+
+    private static final class ScoredDoc {
+        private final Doc doc;
+        private double score;
+        private int matchedTerms;
+        private int lastMatchedTerm = -1;
+
+        ScoredDoc(Doc doc) {
+            this.doc = doc;
+        }
+    }
+}
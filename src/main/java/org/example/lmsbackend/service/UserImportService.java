@@ -0,0 +1,448 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.lmsbackend.model.User;
+import org.example.lmsbackend.repository.UserMapper;
+import org.example.lmsbackend.utils.CsvReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import hàng loạt tài khoản từ CSV (đầu học kỳ) chạy ở background.
+ * File được đọc từng dòng và xử lý theo lô: kiểm tra trùng bằng 1 query/lô, băm mật khẩu song song
+ * trên pool có giới hạn, INSERT nhiều dòng. Lỗi từng dòng ghi ra file báo cáo nên bộ nhớ không tăng theo kích thước file.
+ * CSV cần header: username,password,email,fullName[,role] (role mặc định student).
+ */
+@Service
+public class UserImportService {
+
+    private static final String IMPORT_DIR = "uploads/tmp/imports";
+    private static final int ERROR_SAMPLE_SIZE = 100;
+
+    private final UserMapper userMapper;
+    private final PasswordEncoder passwordEncoder;
+    private final SearchIndexService searchIndexService;
+    private final int chunkSize;
+    private final ThreadPoolExecutor jobExecutor;
+    private final ThreadPoolExecutor hashExecutor;
+
+    private final ConcurrentHashMap<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserImportService(UserMapper userMapper,
+                             PasswordEncoder passwordEncoder,
+                             SearchIndexService searchIndexService,
+                             @Value("${app.users.import.chunk-size:500}") int chunkSize,
+                             @Value("${app.users.import.hash-workers:2}") int hashWorkers,
+                             @Value("${app.users.import.max-queued-jobs:2}") int maxQueuedJobs) {
+        this.userMapper = userMapper;
+        this.passwordEncoder = passwordEncoder;
+        this.searchIndexService = searchIndexService;
+        this.chunkSize = chunkSize;
+
+        // Mỗi lần chỉ chạy 1 job import, các job khác xếp hàng (có giới hạn)
+        this.jobExecutor = new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedJobs),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-import");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // Hàng đợi vừa đủ 1 lô; nếu đầy thì thread import tự băm (không tích tụ)
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashExecutor = new ThreadPoolExecutor(
+                hashWorkers, hashWorkers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(chunkSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-import-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Lưu file tạm và đưa vào hàng đợi import
+     */
+    public ImportJob startImport(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV file is required");
+        }
+
+        String jobId = UUID.randomUUID().toString();
+        Path dir = Paths.get(IMPORT_DIR);
+        Files.createDirectories(dir);
+        Path csvFile = dir.resolve(jobId + ".csv");
+        // File multipart bị xóa khi request kết thúc → chép ra file tạm riêng
+        file.transferTo(csvFile.toAbsolutePath());
+
+        ImportJob job = new ImportJob(jobId, file.getOriginalFilename(), csvFile, dir.resolve(jobId + "-errors.csv"));
+        jobs.put(jobId, job);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            Files.deleteIfExists(csvFile);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many imports in progress, try again later");
+        }
+        System.out.println("📥 User import " + jobId + " queued (" + file.getOriginalFilename() + ", " + file.getSize() + " bytes)");
+        return job;
+    }
+
+    public ImportJob getJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found");
+        }
+        return job;
+    }
+
+    /**
+     * File báo cáo lỗi (line,username,email,error), null nếu chưa có
+     */
+    public Path getErrorReport(String jobId) {
+        Path report = getJob(jobId).errorReport;
+        return Files.exists(report) ? report : null;
+    }
+
+    // Xóa job đã xong quá 1 ngày cùng file báo cáo
+    @Scheduled(fixedDelay = 3600000)
+    public void cleanupFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(1);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(cutoff)) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(job.errorReport);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not delete import report " + job.errorReport + ": " + e.getMessage());
+            }
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        hashExecutor.shutdownNow();
+    }
+
+    private void run(ImportJob job) {
+        job.status = ImportStatus.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        System.out.println("🚀 User import " + job.id + " started");
+
+        try (CsvReader reader = new CsvReader(new BufferedReader(
+                     new InputStreamReader(Files.newInputStream(job.csvFile), StandardCharsets.UTF_8)));
+             BufferedWriter errors = Files.newBufferedWriter(job.errorReport, StandardCharsets.UTF_8)) {
+
+            errors.write("line,username,email,error\n");
+
+            List<String> header = reader.readRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV file is empty");
+            }
+            Map<String, Integer> columns = mapColumns(header);
+
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                chunk.add(new ImportRow(reader.getRecordLineNumber(), record, columns));
+                if (chunk.size() >= chunkSize) {
+                    processChunk(job, chunk, errors);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                processChunk(job, chunk, errors);
+            }
+
+            job.status = ImportStatus.COMPLETED;
+        } catch (Exception e) {
+            job.status = ImportStatus.FAILED;
+            job.message = e.getMessage();
+            System.err.println("❌ User import " + job.id + " failed: " + e.getMessage());
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(job.csvFile);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not delete import file " + job.csvFile + ": " + e.getMessage());
+            }
+            System.out.println("✅ User import " + job.id + " " + job.status + ": " + job.imported.get() + " imported, "
+                    + job.failed.get() + " failed, " + job.processed.get() + " rows");
+        }
+    }
+
+    private void processChunk(ImportJob job, List<ImportRow> rows, BufferedWriter errors) throws IOException {
+        // 1. Kiểm tra dữ liệu + trùng lặp ngay trong lô
+        Set<String> chunkUsernames = new HashSet<>();
+        Set<String> chunkEmails = new HashSet<>();
+        List<ImportRow> valid = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            if (row.error == null) {
+                if (!chunkUsernames.add(row.username.toLowerCase(Locale.ROOT))) {
+                    row.error = "Duplicate username in file";
+                } else if (!chunkEmails.add(row.email.toLowerCase(Locale.ROOT))) {
+                    row.error = "Duplicate email in file";
+                }
+            }
+            if (row.error == null) {
+                valid.add(row);
+            }
+        }
+
+        // 2. Trùng với DB: 1 query cho cả lô
+        if (!valid.isEmpty()) {
+            Set<String> existingUsernames = new HashSet<>();
+            Set<String> existingEmails = new HashSet<>();
+            for (User existing : userMapper.findExistingByUsernamesOrEmails(
+                    valid.stream().map(row -> row.username).toList(),
+                    valid.stream().map(row -> row.email).toList())) {
+                existingUsernames.add(existing.getUsername().toLowerCase(Locale.ROOT));
+                existingEmails.add(existing.getEmail().toLowerCase(Locale.ROOT));
+            }
+            valid.removeIf(row -> {
+                if (existingUsernames.contains(row.username.toLowerCase(Locale.ROOT))) {
+                    row.error = "Username already exists";
+                } else if (existingEmails.contains(row.email.toLowerCase(Locale.ROOT))) {
+                    row.error = "Email already exists";
+                }
+                return row.error != null;
+            });
+        }
+
+        // 3. Băm mật khẩu song song rồi INSERT nhiều dòng
+        if (!valid.isEmpty()) {
+            List<User> users = hashAndBuildUsers(valid);
+            try {
+                userMapper.batchInsertUsers(users);
+            } catch (DuplicateKeyException e) {
+                // Có tài khoản vừa được tạo song song → chèn từng dòng để biết dòng nào lỗi
+                for (int i = 0; i < users.size(); i++) {
+                    try {
+                        userMapper.insertUser(users.get(i));
+                    } catch (DuplicateKeyException duplicate) {
+                        valid.get(i).error = "Username or email already exists";
+                    }
+                }
+            }
+            for (User user : users) {
+                searchIndexService.reindex(SearchIndexService.DocType.USER, user.getUserId());
+            }
+        }
+
+        // 4. Ghi báo cáo + cập nhật tiến độ
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                job.recordError(row);
+                errors.write(row.lineNumber + "," + csv(row.username) + "," + csv(row.email) + "," + csv(row.error) + "\n");
+            } else {
+                job.imported.incrementAndGet();
+            }
+        }
+        errors.flush();
+        job.processed.addAndGet(rows.size());
+    }
+
+    private List<User> hashAndBuildUsers(List<ImportRow> rows) {
+        List<Future<String>> hashes = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            String rawPassword = row.password;
+            hashes.add(hashExecutor.submit(() -> passwordEncoder.encode(rawPassword)));
+        }
+
+        List<User> users = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            User user = new User();
+            user.setUsername(row.username);
+            user.setEmail(row.email);
+            user.setFullName(row.fullName);
+            user.setRole(row.role);
+            // Tài khoản do admin tạo → đã xác minh
+            user.setVerified(true);
+            user.setAvatarUrl("/uploads/avatars/default.png");
+            try {
+                user.setPassword(hashes.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Import interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Password hashing failed", e.getCause());
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static Map<String, Integer> mapColumns(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().replace("\uFEFF", "").replace("_", "").toLowerCase(Locale.ROOT);
+            columns.put(name, i);
+        }
+        for (String required : List.of("username", "password", "email", "fullname")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("Missing required column: " + required);
+            }
+        }
+        return columns;
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    public enum ImportStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * Trạng thái/tiến độ của 1 lần import (chỉ giữ tối đa ERROR_SAMPLE_SIZE lỗi trong bộ nhớ)
+     */
+    public static class ImportJob {
+        private final String id;
+        private final String fileName;
+        private final Path csvFile;
+        private final Path errorReport;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<Map<String, Object>> errorSample = Collections.synchronizedList(new ArrayList<>());
+        private volatile ImportStatus status = ImportStatus.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String message;
+
+        private ImportJob(String id, String fileName, Path csvFile, Path errorReport) {
+            this.id = id;
+            this.fileName = fileName;
+            this.csvFile = csvFile;
+            this.errorReport = errorReport;
+        }
+
+        private void recordError(ImportRow row) {
+            if (failed.incrementAndGet() <= ERROR_SAMPLE_SIZE) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("line", row.lineNumber);
+                error.put("username", row.username);
+                error.put("email", row.email);
+                error.put("error", row.error);
+                errorSample.add(error);
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("jobId", id);
+            result.put("fileName", fileName);
+            result.put("status", status);
+            result.put("processedRows", processed.get());
+            result.put("importedRows", imported.get());
+            result.put("failedRows", failed.get());
+            result.put("createdAt", createdAt);
+            result.put("startedAt", startedAt);
+            result.put("finishedAt", finishedAt);
+            result.put("message", message);
+            synchronized (errorSample) {
+                result.put("errors", new ArrayList<>(errorSample));
+            }
+            result.put("errorsTruncated", failed.get() > ERROR_SAMPLE_SIZE);
+            return result;
+        }
+    }
+
+    private static class ImportRow {
+        private final long lineNumber;
+        private final String username;
+        private final String password;
+        private final String email;
+        private final String fullName;
+        private User.Role role;
+        private String error;
+
+        private ImportRow(long lineNumber, List<String> record, Map<String, Integer> columns) {
+            this.lineNumber = lineNumber;
+            this.username = value(record, columns.get("username"));
+            this.password = value(record, columns.get("password"));
+            this.email = value(record, columns.get("email"));
+            this.fullName = value(record, columns.get("fullname"));
+            String roleValue = value(record, columns.get("role"));
+
+            if (username.isEmpty() || password.isEmpty() || email.isEmpty() || fullName.isEmpty()) {
+                error = "Missing required value";
+            } else if (username.length() > 50) {
+                error = "Username is too long (max 50)";
+            } else if (email.length() > 100 || !email.contains("@")) {
+                error = "Invalid email";
+            } else if (fullName.length() > 100) {
+                error = "Full name is too long (max 100)";
+            } else {
+                try {
+                    role = roleValue.isEmpty() ? User.Role.student : User.Role.valueOf(roleValue.toLowerCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    error = "Invalid role: " + roleValue;
+                }
+            }
+        }
+
+        private static String value(List<String> record, Integer index) {
+            return index != null && index < record.size() ? record.get(index).trim() : "";
+        }
+    }
+}
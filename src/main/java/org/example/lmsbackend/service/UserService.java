@@ -10,13 +10,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 @Service
 public class UserService {
@@ -30,6 +31,21 @@ public class UserService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private LoginThrottleService loginThrottleService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private AssetPipelineService assetPipelineService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
     public UserService(UserMapper userMapper, PasswordEncoder passwordEncoder, EmailService emailService) {
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
@@ -38,6 +54,13 @@ public class UserService {
 
     // ✅ Đăng nhập
     public boolean login(UserDTO userDTO) {
+        return login(userDTO, null);
+    }
+
+    // ✅ Đăng nhập có giới hạn tần suất theo IP/username, BCrypt chạy trên pool băm riêng
+    public boolean login(UserDTO userDTO, String clientIp) {
+        loginThrottleService.checkLogin(userDTO.getUsername(), clientIp);
+
         User user = userMapper.findByUsername(userDTO.getUsername());
         if (user == null) return false;
 
@@ -45,10 +68,22 @@ public class UserService {
             throw new RuntimeException("Tài khoản chưa được xác minh");
         }
 
-        return passwordEncoder.matches(userDTO.getPassword(), user.getPassword());
+        boolean matches = passwordHashingService.matches(userDTO.getPassword(), user.getPassword());
+        if (matches) {
+            loginThrottleService.loginSucceeded(userDTO.getUsername());
+        }
+        return matches;
     }
 
-    // ✅ Đăng ký (có avatar)
+    public Map<String, Object> getLoginStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hashing", passwordHashingService.getStats());
+        stats.put("throttle", loginThrottleService.getStats());
+        return stats;
+    }
+
+    // ✅ Đăng ký (có avatar) - user và email xác nhận (outbox) ghi trong cùng 1 transaction
+    @Transactional
     public boolean register(UserDTO userDTO, MultipartFile avatarFile) {
         if (userMapper.existsByUsername(userDTO.getUsername())) {
             throw new IllegalArgumentException("Username already exists");
@@ -90,7 +125,13 @@ public class UserService {
         }
 
         try {
-            return userMapper.insertUser(user) > 0;
+            boolean created = userMapper.insertUser(user) > 0;
+            searchIndexService.reindex(SearchIndexService.DocType.USER, user.getUserId());
+            if (created && StringUtils.hasText(user.getEmail())) {
+                // Chỉ ghi vào outbox, SMTP chậm/treo không ảnh hưởng thời gian đăng ký
+                emailService.sendRegistrationConfirmation(user.getEmail(), user.getUsername(), user.getFullName());
+            }
+            return created;
         } catch (DuplicateKeyException e) {
             throw new RuntimeException("Username or Email already exists (DB constraint)");
         }
@@ -140,22 +181,19 @@ public class UserService {
             existingUser.setCvUrl(userDTO.getCvUrl());
         }
 
-        return userMapper.updateUser(existingUser) > 0;
+        boolean updated = userMapper.updateUser(existingUser) > 0;
+        searchIndexService.reindex(SearchIndexService.DocType.USER, existingUser.getUserId());
+        return updated;
     }
 
     // ✅ Lưu file avatar
     private String saveAvatar(MultipartFile file) {
         try {
-            String uploadDir = "uploads/avatars";
-            Path uploadPath = Paths.get(uploadDir);
-            Files.createDirectories(uploadPath);
-
-            String originalFilename = file.getOriginalFilename();
-            String cleanedFilename = originalFilename != null ? originalFilename.replaceAll("\\s+", "_") : "avatar.png";
-            String filename = UUID.randomUUID() + "_" + cleanedFilename;
-
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            // Tên file theo nội dung (sha256) → URL immutable, trình duyệt cache lâu dài
+            String filename = assetPipelineService.store(file.getInputStream(), "avatars",
+                    file.getOriginalFilename() != null ? file.getOriginalFilename() : "avatar.png");
+            // Sinh bản 64/256/1024 px ở background cho danh sách, thảo luận...
+            imageVariantService.generateAsync("avatars/" + filename);
 
             return "/uploads/avatars/" + filename;
         } catch (IOException e) {
@@ -183,6 +221,8 @@ public class UserService {
 
     // ✅ Xóa người dùng
     public boolean deleteUser(int id) {
-        return userMapper.deleteUserById(id) > 0;
+        boolean deleted = userMapper.deleteUserById(id) > 0;
+        searchIndexService.reindex(SearchIndexService.DocType.USER, id);
+        return deleted;
     }
 }
@@ -0,0 +1,249 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.lmsbackend.model.Video;
+import org.example.lmsbackend.repository.VideoMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.example.lmsbackend.utils.VideoMetadataExtractor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ws.schild.jave.info.MultimediaInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Xử lý video sau khi upload ở background (không giữ request thread):
+ * probe metadata → tạo thumbnail → đánh dấu ready → (chậm, pool riêng) đóng gói HLS.
+ * Số worker cố định nên số process ffmpeg chạy đồng thời trên 1 node bị giới hạn,
+ * hàng đợi có giới hạn để không tích tụ vô hạn khi upload dồn dập.
+ * ffmpeg cần file cục bộ: backend local đọc thẳng file trong kho, backend S3 tải về thư mục staging trước.
+ */
+@Service
+public class VideoIngestService {
+
+    private static final String THUMBNAIL_PREFIX = "videos/thumbnails/";
+
+    private final VideoMapper videoMapper;
+    private final HlsPackagingService hlsPackagingService;
+    private final BlobStoreService blobStoreService;
+    private final ObjectStorage objectStorage;
+    private final ThreadPoolExecutor executor;
+    private final long leaseSeconds;
+
+    // Định danh node này khi giữ lease các video đang xử lý (đổi mỗi lần khởi động)
+    private final String nodeToken = UUID.randomUUID().toString();
+
+    @Autowired
+    public VideoIngestService(VideoMapper videoMapper,
+                              HlsPackagingService hlsPackagingService,
+                              BlobStoreService blobStoreService,
+                              ObjectStorage objectStorage,
+                              @Value("${app.video.ingest.workers:2}") int workers,
+                              @Value("${app.video.ingest.queue-capacity:100}") int queueCapacity,
+                              @Value("${app.video.ingest.lease-seconds:1800}") long leaseSeconds) {
+        this.videoMapper = videoMapper;
+        this.leaseSeconds = leaseSeconds;
+        this.hlsPackagingService = hlsPackagingService;
+        this.blobStoreService = blobStoreService;
+        this.objectStorage = objectStorage;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "video-ingest-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Đưa video vào hàng đợi xử lý
+     * @param key key của file video trong kho lưu trữ (videos/{uuid}_a.mp4)
+     * @return false nếu hàng đợi đã đầy
+     */
+    public boolean submit(Integer videoId, String key) {
+        try {
+            executor.execute(() -> process(videoId, key));
+            System.out.println("📥 Video " + videoId + " queued for ingest (queue depth: " + executor.getQueue().size() + ")");
+            return true;
+        } catch (RejectedExecutionException e) {
+            System.err.println("❌ Ingest queue full, skipping processing for video " + videoId);
+            return false;
+        }
+    }
+
+    /**
+     * Video đang "processing" khi app tắt (hàng đợi nằm trong bộ nhớ) → đưa lại vào hàng đợi.
+     * Chỉ lấy video đã nhận được lease (như EmailOutboxDispatcher): nhiều node cùng khởi động không xử lý trùng,
+     * và không đụng tới video node khác vẫn đang xử lý.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        try {
+            int capacity = executor.getQueue().remainingCapacity();
+            if (capacity == 0 || videoMapper.claimPendingIngest(nodeToken, capacity, leaseSeconds) == 0) {
+                return;
+            }
+            for (Video video : videoMapper.findClaimedIngest(nodeToken)) {
+                String fileName = video.getFileUrl().substring(video.getFileUrl().lastIndexOf("/") + 1);
+                // Hàng đợi đầy → lease của các video còn lại hết hạn, lần khởi động sau (node bất kỳ) nhận lại
+                if (!submit(video.getVideoId(), "videos/" + fileName)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Could not resume pending video ingest: " + e.getMessage());
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveWorkers() {
+        return executor.getActiveCount();
+    }
+
+    private void process(Integer videoId, String key) {
+        // Gia hạn lease cho thời gian xử lý; node khác đã nhận video (lease của node này hết khi chờ trong hàng đợi) thì bỏ qua
+        if (videoMapper.claimIngest(videoId, nodeToken, leaseSeconds) == 0) {
+            System.out.println("⏭️ Video " + videoId + " is no longer pending or is being ingested by another node");
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        Path filePath = null;
+        boolean downloaded = false;
+        try {
+            Optional<Path> localFile = blobStoreService.localFile(key);
+            if (localFile.isPresent()) {
+                filePath = localFile.get();
+            } else {
+                filePath = download(key);
+                downloaded = true;
+            }
+            File videoFile = filePath.toFile();
+
+            // Stage 1: probe metadata
+            MultimediaInfo info = VideoMetadataExtractor.extractMetadata(videoFile);
+            long durationMillis = info != null ? info.getDuration() : 0;
+            int durationInSeconds = (int) Math.max(0, durationMillis / 1000);
+
+            // Stage 2: thumbnail (lỗi thumbnail không làm hỏng video)
+            String thumbnailUrl = generateThumbnail(key, videoFile, durationMillis);
+
+            // Stage 3: mark ready
+            videoMapper.updateIngestResult(videoId, durationInSeconds, thumbnailUrl, Video.Status.ready);
+
+            System.out.println("✅ Video " + videoId + " ingested: duration=" + durationInSeconds + "s, thumbnail="
+                    + thumbnailUrl + " (" + (System.currentTimeMillis() - startedAt) + " ms)");
+
+            // Stage 4: HLS - video gốc đã xem được, transcode chạy sau ở pool ưu tiên thấp
+            int sourceHeight = info != null && info.getVideo() != null && info.getVideo().getSize() != null
+                    ? info.getVideo().getSize().getHeight() : 0;
+            // Bản tải về được giao cho HLS xóa sau khi đóng gói
+            if (hlsPackagingService.submit(videoId, filePath, sourceHeight, downloaded)) {
+                downloaded = false;
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Video ingest failed for " + videoId + ": " + e.getMessage());
+            e.printStackTrace();
+            videoMapper.updateStatus(videoId, Video.Status.failed);
+        } finally {
+            if (downloaded) {
+                deleteQuietly(filePath);
+            }
+        }
+    }
+
+    private Path download(String key) throws IOException {
+        Path target = blobStoreService.newStagingFile("ingest-");
+        try (InputStream in = blobStoreService.open(key)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        }
+        return target;
+    }
+
+    /**
+     * Xóa file sinh ra từ video (bản đóng gói HLS, thumbnail) khi video bị xóa
+     */
+    public void deleteDerivedFiles(Integer videoId, String thumbnailUrl) {
+        hlsPackagingService.deletePackages(videoId);
+        if (thumbnailUrl != null && thumbnailUrl.startsWith("/" + THUMBNAIL_PREFIX)) {
+            String thumbnailName = thumbnailUrl.substring(thumbnailUrl.lastIndexOf('/') + 1);
+            try {
+                objectStorage.delete(THUMBNAIL_PREFIX + thumbnailName);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Could not delete thumbnail " + thumbnailName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private String generateThumbnail(String key, File videoFile, long durationMillis) {
+        Path thumbnailFile = null;
+        try {
+            String baseName = key.substring(key.lastIndexOf('/') + 1);
+            int dot = baseName.lastIndexOf('.');
+            String thumbnailName = (dot > 0 ? baseName.substring(0, dot) : baseName) + ".jpg";
+
+            // ffmpeg chọn định dạng theo đuôi file → file tạm phải là .jpg
+            Files.createDirectories(blobStoreService.getStagingDir());
+            thumbnailFile = blobStoreService.getStagingDir().resolve("thumb-" + UUID.randomUUID() + ".jpg");
+            if (VideoMetadataExtractor.extractThumbnail(videoFile, durationMillis, thumbnailFile.toFile())) {
+                objectStorage.putFile(THUMBNAIL_PREFIX + thumbnailName, thumbnailFile, "image/jpeg");
+                return "/videos/thumbnails/" + thumbnailName;
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to generate thumbnail: " + e.getMessage());
+        } finally {
+            deleteQuietly(thumbnailFile);
+        }
+        return null;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
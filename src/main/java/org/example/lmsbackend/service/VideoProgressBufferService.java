@@ -0,0 +1,296 @@
+package org.example.lmsbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.lmsbackend.model.User;
+import org.example.lmsbackend.model.Video;
+import org.example.lmsbackend.model.VideoProgress;
+import org.example.lmsbackend.repository.VideoProgressMapper;
+import org.example.lmsbackend.repository.VideoProgressRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bộ đệm ghi sau (write-behind) cho heartbeat tiến độ xem video.
+ * Mỗi (userId, videoId) chỉ giữ vị trí mới nhất trong bộ nhớ, định kỳ ghi xuống DB theo lô
+ * (1 INSERT ... ON DUPLICATE KEY UPDATE cho cả lô, khóa uk_video_progress_user_video) thay vì find + save mỗi heartbeat.
+ * Khi video vừa vượt ngưỡng hoàn thành hoặc bộ đệm đầy thì báo luồng ghi riêng chạy sớm, request không bao giờ tự ghi DB;
+ * bộ đệm vượt gấp đôi giới hạn thì bỏ heartbeat của cặp (user, video) mới.
+ * Lô ghi lỗi thì ghi lại từng dòng: dòng lỗi (vd dữ liệu sai) bị loại sau vài lần, không làm kẹt cả lô.
+ * Dữ liệu chỉ bị xóa khỏi bộ đệm sau khi ghi thành công; khi tắt app sẽ ghi nốt phần còn lại.
+ */
+@Service
+public class VideoProgressBufferService {
+
+    private static final double COMPLETION_THRESHOLD = 90;
+
+    // Số lần 1 dòng ghi lỗi riêng lẻ (trong khi các dòng khác ghi được) trước khi bị loại khỏi bộ đệm
+    private static final int MAX_ROW_FAILURES = 3;
+
+    @Autowired
+    private VideoProgressMapper videoProgressMapper;
+
+    @Autowired
+    private VideoProgressRepository videoProgressRepository;
+
+    @Autowired
+    private CourseProgressService courseProgressService;
+
+    @Value("${app.video.progress.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.video.progress.max-buffer-size:20000}")
+    private int maxBufferSize;
+
+    private final ConcurrentHashMap<ProgressKey, PendingProgress> buffer = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ProgressKey, Integer> rowFailures = new ConcurrentHashMap<>();
+
+    // 1 luồng ghi + tối đa 1 yêu cầu chờ: nhiều lần báo liên tiếp gộp thành 1 lần ghi
+    private final ThreadPoolExecutor flushExecutor = new ThreadPoolExecutor(
+            1, 1,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1),
+            runnable -> {
+                Thread thread = new Thread(runnable, "video-progress-flush");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    // Chỉ 1 luồng ghi tại 1 thời điểm → vị trí cũ không bao giờ ghi đè vị trí mới
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Metrics
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong droppedRows = new AtomicLong();
+    private final AtomicLong shedHeartbeats = new AtomicLong();
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+    private final AtomicLong maxFlushMillis = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private volatile LocalDateTime lastFlushAt;
+
+    /**
+     * Ghi nhận 1 heartbeat, chỉ cập nhật bộ nhớ; việc ghi DB luôn chạy ở luồng khác
+     */
+    public void record(Integer userId, Integer videoId, int watchedDuration, int totalDuration) {
+        heartbeats.incrementAndGet();
+        ProgressKey key = new ProgressKey(userId, videoId);
+        if (buffer.size() >= maxBufferSize * 2 && !buffer.containsKey(key)) {
+            // DB không theo kịp → bỏ heartbeat mới thay vì để bộ nhớ phình; heartbeat sau sẽ gửi lại vị trí
+            shedHeartbeats.incrementAndGet();
+            requestFlush();
+            return;
+        }
+        PendingProgress next = new PendingProgress(watchedDuration, totalDuration, LocalDateTime.now());
+        PendingProgress previous = buffer.put(key, next);
+
+        if ((next.isCompleted() && (previous == null || !previous.isCompleted())) || buffer.size() >= maxBufferSize) {
+            // Vừa hoàn thành (cập nhật bộ đếm tiến độ kịp thời) hoặc bộ đệm lớn → ghi sớm hơn lịch
+            requestFlush();
+        }
+    }
+
+    /**
+     * Tiến độ chưa ghi xuống DB (để API đọc trả về vị trí mới nhất), null nếu không có
+     */
+    public PendingProgress getPending(Integer userId, Integer videoId) {
+        return buffer.get(new ProgressKey(userId, videoId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.video.progress.flush-interval-ms:5000}")
+    public void flush() {
+        if (!buffer.isEmpty()) {
+            flushKeys(new ArrayList<>(buffer.keySet()));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushExecutor.shutdown();
+        int pending = buffer.size();
+        flush();
+        System.out.println("💾 Flushed video progress buffer on shutdown (" + pending + " entries, "
+                + buffer.size() + " left)");
+    }
+
+    public Map<String, Object> getStats() {
+        long flushes = flushCount.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bufferDepth", buffer.size());
+        stats.put("heartbeats", heartbeats.get());
+        stats.put("flushCount", flushes);
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("droppedRows", droppedRows.get());
+        stats.put("shedHeartbeats", shedHeartbeats.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("avgFlushMillis", flushes > 0 ? (double) totalFlushMillis.get() / flushes : 0.0);
+        stats.put("maxFlushMillis", maxFlushMillis.get());
+        stats.put("lastFlushAt", lastFlushAt);
+        return stats;
+    }
+
+    private void requestFlush() {
+        try {
+            flushExecutor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Đang tắt app, flushOnShutdown sẽ ghi nốt
+        }
+    }
+
+    private void flushKeys(List<ProgressKey> keys) {
+        flushLock.lock();
+        try {
+            for (int from = 0; from < keys.size(); from += batchSize) {
+                flushBatch(keys.subList(from, Math.min(from + batchSize, keys.size())));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushBatch(List<ProgressKey> keys) {
+        long startedAt = System.currentTimeMillis();
+
+        // Chụp giá trị hiện tại; heartbeat mới đến trong lúc ghi sẽ nằm lại cho lần sau
+        Map<ProgressKey, PendingProgress> snapshot = new HashMap<>();
+        List<VideoProgress> rows = new ArrayList<>();
+        for (ProgressKey key : keys) {
+            PendingProgress pending = buffer.get(key);
+            if (pending != null) {
+                snapshot.put(key, pending);
+                rows.add(toRow(key, pending));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(rows);
+
+            // Chỉ xóa khỏi bộ đệm nếu chưa có heartbeat mới hơn
+            snapshot.forEach(buffer::remove);
+            rowFailures.keySet().removeAll(snapshot.keySet());
+
+            long elapsed = System.currentTimeMillis() - startedAt;
+            flushCount.incrementAndGet();
+            flushedRows.addAndGet(rows.size());
+            totalFlushMillis.addAndGet(elapsed);
+            maxFlushMillis.accumulateAndGet(elapsed, Math::max);
+            lastFlushMillis = elapsed;
+            lastFlushAt = LocalDateTime.now();
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            System.err.println("❌ Error flushing video progress buffer (" + rows.size() + " rows): " + e.getMessage());
+            isolateFailures(snapshot);
+        }
+    }
+
+    private void write(List<VideoProgress> rows) {
+        // Bỏ heartbeat của video không tồn tại (đã bị xóa) để không hỏng cả lô vì khóa ngoại
+        List<Integer> videoIds = rows.stream().map(row -> row.getVideo().getVideoId()).distinct().toList();
+        Set<Integer> knownVideos = new HashSet<>(videoProgressMapper.findExistingVideoIds(videoIds));
+        List<VideoProgress> validRows = rows.stream()
+                .filter(row -> knownVideos.contains(row.getVideo().getVideoId()))
+                .toList();
+        if (!validRows.isEmpty()) {
+            videoProgressMapper.batchUpsert(validRows);
+            recordCompletions(validRows);
+        }
+    }
+
+    /**
+     * Lô ghi lỗi → ghi lại từng dòng. Dòng ghi được thì xóa khỏi bộ đệm; dòng lỗi trong khi dòng khác ghi được
+     * là dòng hỏng, bị loại sau MAX_ROW_FAILURES lần. Không dòng nào ghi được (DB lỗi) thì giữ nguyên để thử lại.
+     */
+    private void isolateFailures(Map<ProgressKey, PendingProgress> snapshot) {
+        Map<ProgressKey, PendingProgress> failed = new HashMap<>();
+        boolean anyWritten = false;
+        for (Map.Entry<ProgressKey, PendingProgress> entry : snapshot.entrySet()) {
+            try {
+                write(List.of(toRow(entry.getKey(), entry.getValue())));
+                buffer.remove(entry.getKey(), entry.getValue());
+                rowFailures.remove(entry.getKey());
+                flushedRows.incrementAndGet();
+                anyWritten = true;
+            } catch (Exception e) {
+                failed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!anyWritten) {
+            return;
+        }
+        failed.forEach((key, pending) -> {
+            if (rowFailures.merge(key, 1, Integer::sum) >= MAX_ROW_FAILURES) {
+                buffer.remove(key, pending);
+                rowFailures.remove(key);
+                droppedRows.incrementAndGet();
+                System.err.println("❌ Dropped video progress for user " + key.userId() + ", video " + key.videoId()
+                        + " after " + MAX_ROW_FAILURES + " failed writes");
+            }
+        });
+    }
+
+    // Video vừa vượt 90% → đánh dấu completed có điều kiện và tăng bộ đếm tiến độ đúng 1 lần
+    private void recordCompletions(List<VideoProgress> rows) {
+        List<VideoProgress> completedRows = rows.stream().filter(row -> isCompleted(row.getWatchedDuration(), row.getTotalDuration())).toList();
+        if (completedRows.isEmpty()) {
+            return;
+        }
+        for (VideoProgress row : videoProgressMapper.findNewlyCompleted(completedRows)) {
+            if (videoProgressRepository.markCompleted(row.getProgressId()) > 0 && row.getVideo().getModule() != null) {
+                courseProgressService.recordVideoCompleted(row.getUser().getUserId(), row.getVideo().getModule().getId(), row.getVideo().getVideoId());
+            }
+        }
+    }
+
+    private VideoProgress toRow(ProgressKey key, PendingProgress pending) {
+        VideoProgress row = new VideoProgress();
+        User user = new User();
+        user.setUserId(key.userId());
+        row.setUser(user);
+
+        Video video = new Video();
+        video.setVideoId(key.videoId());
+        row.setVideo(video);
+
+        row.setWatchedDuration(pending.watchedDuration());
+        row.setTotalDuration(pending.totalDuration());
+        row.setLastWatchedAt(pending.lastWatchedAt());
+        return row;
+    }
+
+    private static boolean isCompleted(Integer watchedDuration, Integer totalDuration) {
+        return watchedDuration != null && totalDuration != null && totalDuration > 0
+                && (double) watchedDuration / totalDuration * 100 >= COMPLETION_THRESHOLD;
+    }
+
+    private record ProgressKey(Integer userId, Integer videoId) {
+    }
+
+    public record PendingProgress(int watchedDuration, int totalDuration, LocalDateTime lastWatchedAt) {
+        public boolean isCompleted() {
+            return VideoProgressBufferService.isCompleted(watchedDuration, totalDuration);
+        }
+    }
+}
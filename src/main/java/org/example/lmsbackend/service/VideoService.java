@@ -2,24 +2,32 @@ package org.example.lmsbackend.service;
 
 import org.example.lmsbackend.dto.VideoDTO;
 import org.example.lmsbackend.utils.VideoMapperUtil;
-import org.example.lmsbackend.utils.VideoMetadataExtractor;
 import org.example.lmsbackend.model.Video;
 import org.example.lmsbackend.model.Course;
 import org.example.lmsbackend.model.User;
 import org.example.lmsbackend.model.Modules;
+import org.example.lmsbackend.model.UploadSession;
 import org.example.lmsbackend.repository.VideoMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 
 import java.io.IOException;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -27,14 +35,31 @@ import java.util.stream.Collectors;
 public class VideoService {
 
     private VideoMapper videoMapper;
+    private FileStreamingService fileStreamingService;
+    private VideoIngestService videoIngestService;
+    private ChunkedUploadService chunkedUploadService;
+    private SearchIndexService searchIndexService;
+    private BlobStoreService blobStoreService;
+    private CourseProgressService courseProgressService;
 
     @Autowired
-    public VideoService(VideoMapper videoMapper) {
+    public VideoService(VideoMapper videoMapper, FileStreamingService fileStreamingService,
+                        VideoIngestService videoIngestService, ChunkedUploadService chunkedUploadService,
+                        SearchIndexService searchIndexService, BlobStoreService blobStoreService,
+                        CourseProgressService courseProgressService) {
         this.videoMapper = videoMapper;
+        this.fileStreamingService = fileStreamingService;
+        this.videoIngestService = videoIngestService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.searchIndexService = searchIndexService;
+        this.blobStoreService = blobStoreService;
+        this.courseProgressService = courseProgressService;
     }
 
     public int createVideo(Video video) {
-        return videoMapper.insertVideo(video);
+        int result = videoMapper.insertVideo(video);
+        searchIndexService.reindex(SearchIndexService.DocType.VIDEO, video.getVideoId());
+        return result;
     }
 
     public List<VideoDTO> getAllVideos(String title) {
@@ -49,8 +74,49 @@ public class VideoService {
         return VideoMapperUtil.toDTO(video);
     }
 
+    // Trạng thái xử lý video sau upload (dùng cho polling)
+    public Map<String, Object> getVideoStatus(Long videoId) {
+        Video video = videoMapper.findStatusById(videoId);
+        if (video == null) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("videoId", video.getVideoId());
+        result.put("status", video.getStatus() != null ? video.getStatus().name() : Video.Status.ready.name());
+        result.put("duration", video.getDuration());
+        result.put("thumbnailUrl", video.getThumbnailUrl());
+        result.put("hlsUrl", video.getHlsUrl());
+        result.put("queueDepth", videoIngestService.getQueueDepth());
+        return result;
+    }
+
+    @Transactional
     public int deleteVideo(Long videoId) {
-        return videoMapper.deleteVideo(videoId);
+        Video video = videoMapper.findById(videoId);
+        // Trừ bộ đếm tiến độ của user đã xem xong trước khi video_progress bị xóa theo video
+        if (video != null && Boolean.TRUE.equals(video.getPublished())) {
+            courseProgressService.onVideoVisibilityChanged(video.getVideoId(), false);
+        }
+        int result = videoMapper.deleteVideo(videoId);
+        searchIndexService.reindex(SearchIndexService.DocType.VIDEO, videoId.intValue());
+        
+        if (result > 0 && video != null) {
+            // Xóa HLS + thumbnail sau khi commit (rollback thì video vẫn còn và vẫn cần các file này)
+            Integer id = video.getVideoId();
+            String thumbnailUrl = video.getThumbnailUrl();
+            afterCommit(() -> videoIngestService.deleteDerivedFiles(id, thumbnailUrl));
+        }
+
+        // File video dùng chung blob với video khác (cùng nội dung) → chỉ giảm tham chiếu
+        if (result > 0 && video != null && video.getFileUrl() != null) {
+            String fileName = video.getFileUrl().substring(video.getFileUrl().lastIndexOf("/") + 1);
+            try {
+                blobStoreService.release("videos/" + fileName);
+            } catch (IOException e) {
+                System.err.println("Could not release video file " + fileName + ": " + e.getMessage());
+            }
+        }
+        return result;
     }
 
     public List<VideoDTO> getVideosByCourse(Integer courseId) {
@@ -89,54 +155,75 @@ public class VideoService {
             String fileUrl = saveFile(file);
             if (fileUrl == null) return null;
             
-            Video video = new Video();
-            video.setTitle(title);
-            video.setDescription(description);
-            video.setFileUrl(fileUrl);
-            video.setFileSize(file.getSize());
-            video.setMimeType(file.getContentType());
-            video.setPublished(published != null ? published : false); // Set published status
-            
-            // Extract video duration using JAVE2
-            try {
-                // Construct the full file path for duration extraction
-                String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
-                String fullFilePath = "uploads/videos/" + fileName;
-                
-                long durationInSeconds = VideoMetadataExtractor.extractDuration(fullFilePath);
-                video.setDuration((int) durationInSeconds); // Cast to Integer
-                
-                System.out.println("📹 Video uploaded with duration: " + durationInSeconds + " seconds");
-            } catch (Exception e) {
-                System.err.println("❌ Failed to extract video duration: " + e.getMessage());
-                // Continue with upload even if duration extraction fails
-                video.setDuration(0);
-            }
-            
-            // Set course và instructor
-            Course course = new Course();
-            course.setCourseId(courseId);
-            video.setCourse(course);
-            
-            User instructor = new User();
-            instructor.setUserId(instructorId);
-            video.setInstructor(instructor);
-            
-            // Set module (now required)
-            Modules module = new Modules();
-            module.setId(moduleId);
-            video.setModule(module);
-            
-            videoMapper.insertVideo(video);
-            return VideoMapperUtil.toDTO(video);
+            return registerVideo(fileUrl, file.getSize(), file.getContentType(),
+                    title, description, courseId, moduleId, published, instructorId);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    // Hoàn tất video được upload theo từng chunk (ChunkedUploadService) - file đã nằm sẵn trên đĩa
+    public VideoDTO uploadVideoFromChunks(String uploadId, String title, String description, Integer courseId, Integer moduleId, Boolean published, Integer instructorId) throws IOException {
+        if (moduleId == null) {
+            throw new IllegalArgumentException("Module ID is required for video upload");
+        }
+        
+        UploadSession session = chunkedUploadService.getSession(uploadId, instructorId);
+        String fileName = UUID.randomUUID().toString() + "_" + session.getFileName();
+        // Ghép xong trong staging cục bộ rồi mới đưa lên kho lưu trữ
+        Path filePath = chunkedUploadService.complete(uploadId, instructorId, blobStoreService.getStagingDir(), uploadId + ".upload");
+        long fileSize = Files.size(filePath);
+        blobStoreService.adopt(filePath, "videos/" + fileName, session.getContentType());
+        
+        return registerVideo("/videos/" + fileName, fileSize, session.getContentType(),
+                title, description, courseId, moduleId, published, instructorId);
+    }
+
+    private VideoDTO registerVideo(String fileUrl, long fileSize, String mimeType, String title, String description,
+                                   Integer courseId, Integer moduleId, Boolean published, Integer instructorId) {
+        Video video = new Video();
+        video.setTitle(title);
+        video.setDescription(description);
+        video.setFileUrl(fileUrl);
+        video.setFileSize(fileSize);
+        video.setMimeType(mimeType);
+        video.setPublished(published != null ? published : false); // Set published status
+        
+        // Duration + thumbnail được xử lý ở background (VideoIngestService)
+        video.setDuration(0);
+        video.setStatus(Video.Status.processing);
+        
+        // Set course và instructor
+        Course course = new Course();
+        course.setCourseId(courseId);
+        video.setCourse(course);
+        
+        User instructor = new User();
+        instructor.setUserId(instructorId);
+        video.setInstructor(instructor);
+        
+        // Set module (now required)
+        Modules module = new Modules();
+        module.setId(moduleId);
+        video.setModule(module);
+        
+        videoMapper.insertVideo(video);
+        searchIndexService.reindex(SearchIndexService.DocType.VIDEO, video.getVideoId());
+        
+        String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+        if (!videoIngestService.submit(video.getVideoId(), "videos/" + fileName)) {
+            // Hàng đợi đầy: vẫn cho dùng video, chỉ bỏ qua duration/thumbnail
+            video.setStatus(Video.Status.ready);
+            videoMapper.updateStatus(video.getVideoId(), Video.Status.ready);
+        }
+        return VideoMapperUtil.toDTO(video);
+    }
+
     public int updateVideo(Video video) {
-        return videoMapper.updateVideo(video);
+        int result = videoMapper.updateVideo(video);
+        searchIndexService.reindex(SearchIndexService.DocType.VIDEO, video.getVideoId());
+        return result;
     }
 
     public boolean isInstructorOfVideo(Long videoId, Integer instructorId) {
@@ -152,29 +239,9 @@ public class VideoService {
 
     public Resource getVideoResource(Long videoId) {
         try {
-            Video video = videoMapper.findById(videoId);
-            if (video == null) {
-                System.out.println("❌ Video not found in DB: " + videoId);
-                return null;
-            }
-            
-            System.out.println("🎬 Video from DB: id=" + video.getVideoId() + ", fileUrl=" + video.getFileUrl());
-            
-            if (video.getFileUrl() == null) {
-                System.out.println("❌ FileUrl is null for video: " + videoId);
-                return null;
-            }
-            
-            // video.getFileUrl() = "/videos/filename.mp4"
-            // Extract just the filename from the fileUrl
-            String fileName = video.getFileUrl().substring(video.getFileUrl().lastIndexOf("/") + 1);
-            
-            // Construct correct path: uploads/videos/filename.mp4
-            Path filePath = Paths.get("uploads/videos/" + fileName);
-            System.out.println("🎯 Looking for file at: " + filePath.toAbsolutePath());
-            
-            if (!Files.exists(filePath)) {
-                System.out.println("❌ File does not exist at: " + filePath.toAbsolutePath());
+            String key = getVideoKey(videoMapper.findById(videoId));
+            Path filePath = key != null ? blobStoreService.localFile(key).orElse(null) : null;
+            if (filePath == null) {
                 return null;
             }
             
@@ -195,17 +262,60 @@ public class VideoService {
         }
     }
 
+    /**
+     * Stream video theo HTTP Range (seek không phải tải lại từ byte 0).
+     * Backend S3: chuyển hướng tới URL ký sẵn, player đọc Range thẳng từ kho.
+     * @return false nếu không tìm thấy video hoặc file
+     */
+    public boolean streamVideo(Long videoId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Video video = videoMapper.findById(videoId);
+        String key = getVideoKey(video);
+        if (key == null) {
+            return false;
+        }
+        
+        Optional<Path> filePath = blobStoreService.localFile(key);
+        if (filePath.isPresent()) {
+            fileStreamingService.stream(filePath.get(), video.getMimeType(), request, response);
+            return true;
+        }
+        Optional<URL> url = blobStoreService.presignGet(key, null, false);
+        if (url.isEmpty()) {
+            System.out.println("❌ File does not exist in storage: " + key);
+            return false;
+        }
+        response.setHeader("Cache-Control", "private, no-store");
+        response.sendRedirect(url.get().toString());
+        return true;
+    }
+
+    private String getVideoKey(Video video) {
+        if (video == null) {
+            System.out.println("❌ Video not found in DB");
+            return null;
+        }
+        
+        System.out.println("🎬 Video from DB: id=" + video.getVideoId() + ", fileUrl=" + video.getFileUrl());
+        
+        if (video.getFileUrl() == null) {
+            System.out.println("❌ FileUrl is null for video: " + video.getVideoId());
+            return null;
+        }
+        
+        // video.getFileUrl() = "/videos/filename.mp4"
+        // Extract just the filename from the fileUrl
+        String fileName = video.getFileUrl().substring(video.getFileUrl().lastIndexOf("/") + 1);
+        
+        // Key trong kho lưu trữ: videos/filename.mp4
+        return "videos/" + fileName;
+    }
+
     public String saveFile(MultipartFile file) {
         try {
             String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-            Path uploadPath = Paths.get("uploads/videos");
             
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-            
-            Path filePath = uploadPath.resolve(fileName);
-            Files.copy(file.getInputStream(), filePath);
+            // SHA-256 tính trong lúc copy; cùng video upload cho nhiều khóa học chỉ tốn 1 bản trong kho
+            blobStoreService.store(file.getInputStream(), "videos/" + fileName, file.getContentType());
             
             return "/videos/" + fileName;
         } catch (IOException e) {
@@ -219,8 +329,13 @@ public class VideoService {
         try {
             Video video = videoMapper.findById(videoId);
             if (video != null) {
+                boolean wasPublished = Boolean.TRUE.equals(video.getPublished());
                 video.setPublished(published);
                 int updated = videoMapper.updateVideo(video);
+                if (updated > 0 && wasPublished != Boolean.TRUE.equals(published)) {
+                    courseProgressService.onVideoVisibilityChanged(video.getVideoId(), Boolean.TRUE.equals(published));
+                }
+                searchIndexService.reindex(SearchIndexService.DocType.VIDEO, video.getVideoId());
                 return updated > 0;
             }
             return false;
@@ -238,12 +353,17 @@ public class VideoService {
                 existingVideo.setTitle(videoDTO.getTitle());
                 existingVideo.setDescription(videoDTO.getDescription());
                 existingVideo.setOrderNumber(videoDTO.getOrderNumber());
+                boolean wasPublished = Boolean.TRUE.equals(existingVideo.getPublished());
                 if (videoDTO.getPublished() != null) {
                     existingVideo.setPublished(videoDTO.getPublished());
                 }
                 
                 int updated = videoMapper.updateVideo(existingVideo);
+                if (updated > 0 && wasPublished != Boolean.TRUE.equals(existingVideo.getPublished())) {
+                    courseProgressService.onVideoVisibilityChanged(existingVideo.getVideoId(), Boolean.TRUE.equals(existingVideo.getPublished()));
+                }
                 if (updated > 0) {
+                    searchIndexService.reindex(SearchIndexService.DocType.VIDEO, existingVideo.getVideoId());
                     return VideoMapperUtil.toDTO(existingVideo);
                 }
             }
@@ -253,4 +373,17 @@ public class VideoService {
             return null;
         }
     }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
@@ -0,0 +1,281 @@
+package org.example.lmsbackend.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Lưu trên đĩa cục bộ: key "videos/a.mp4" → {root}/videos/a.mp4 (mặc định root = uploads, như trước đây).
+ * Ghi qua file tạm trong cùng thư mục rồi đổi tên, người đọc không bao giờ thấy file dở dang.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalObjectStorage implements ObjectStorage {
+
+    private static final String MULTIPART_DIR = ".multipart";
+
+    private final Path root;
+
+    public LocalObjectStorage(@Value("${app.storage.local.root:${app.upload.dir:uploads}}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".put-", ".tmp");
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void putFile(String key, Path file, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            // Cùng ổ đĩa → chỉ đổi tên, không copy byte nào
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            try (InputStream in = Files.newInputStream(file)) {
+                put(key, in, Files.size(file), contentType);
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+            return new LimitedInputStream(Channels.newInputStream(channel), length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        Path file = resolve(key);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(new StoredObject(key, Files.size(file), Files.getLastModifiedTime(file).toInstant(),
+                MediaTypeFactory.getMediaType(file.getFileName().toString()).map(MediaType::toString).orElse(null)));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public List<String> list(String prefix, String startAfter, int limit) throws IOException {
+        Path dir = prefix == null || prefix.isEmpty() ? root : resolve(prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> listing = Files.list(dir)) {
+            return listing.filter(Files::isRegularFile)
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> !name.startsWith("."))
+                    .filter(name -> startAfter == null || name.compareTo(startAfter) > 0)
+                    .sorted(Comparator.naturalOrder())
+                    .limit(limit)
+                    .toList();
+        }
+    }
+
+    // Multipart: mỗi phần là 1 file trong {root}/.multipart/{uploadId}/, complete thì nối lại bằng transferTo
+    @Override
+    public String createMultipartUpload(String key, String contentType) throws IOException {
+        ObjectStorage.checkKey(key);
+        String uploadId = UUID.randomUUID().toString();
+        Files.createDirectories(multipartDir(uploadId));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length) throws IOException {
+        Path part = multipartDir(uploadId).resolve(String.format("%05d.part", partNumber));
+        long written = Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+        if (written != length) {
+            Files.deleteIfExists(part);
+            throw new IOException("Part " + partNumber + " incomplete (" + written + "/" + length + " bytes)");
+        }
+        return partNumber + "-" + written;
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        Path dir = multipartDir(uploadId);
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".multipart-", ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int partNumber = 1; partNumber <= partETags.size(); partNumber++) {
+                Path part = dir.resolve(String.format("%05d.part", partNumber));
+                if (!partETags.get(partNumber - 1).equals(partNumber + "-" + Files.size(part))) {
+                    throw new IOException("Part " + partNumber + " does not match its ETag");
+                }
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+            out.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        abortMultipartUpload(key, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        Path dir = multipartDir(uploadId);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> parts = Files.list(dir)) {
+            for (Path part : parts.toList()) {
+                Files.deleteIfExists(part);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // Đĩa cục bộ không có URL ký sẵn → file được phục vụ qua app
+    @Override
+    public Optional<URL> presignGet(String key, Duration ttl, String downloadName, boolean attachment) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<URL> presignPut(String key, Duration ttl, String contentType) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path file = resolve(key);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    // Hard link: cùng inode nên không tốn thêm đĩa/page cache. File system không hỗ trợ → copy
+    @Override
+    public boolean alias(String sourceKey, String targetKey) throws IOException {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(ObjectStorage.checkKey(key)).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+
+    private Path multipartDir(String uploadId) {
+        if (!uploadId.matches("[0-9a-f-]{36}")) {
+            throw new IllegalArgumentException("Invalid upload id: " + uploadId);
+        }
+        return root.resolve(MULTIPART_DIR).resolve(uploadId);
+    }
+
+    // Chỉ đọc tối đa length byte rồi báo hết luồng
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
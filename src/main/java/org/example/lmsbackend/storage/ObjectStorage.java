@@ -0,0 +1,109 @@
+package org.example.lmsbackend.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * SPI lưu trữ file upload, chọn bằng app.storage.type (local | s3).
+ * Key là đường dẫn tương đối như trước đây dưới uploads/ (vd "videos/{uuid}_a.mp4", "modules/5/{sha256}.pdf"),
+ * nên URL công khai không đổi khi đổi backend. Mọi thao tác đều stream, không nạp cả file vào bộ nhớ.
+ */
+public interface ObjectStorage {
+
+    /**
+     * Ghi luồng dữ liệu có độ dài biết trước vào key (ghi đè nếu đã có)
+     */
+    void put(String key, InputStream in, long length, String contentType) throws IOException;
+
+    /**
+     * Đưa file cục bộ (thường nằm trong thư mục staging) vào key. File nguồn được chuyển đi hoặc xóa khi thành công.
+     * Backend S3 dùng multipart upload cho file lớn.
+     */
+    void putFile(String key, Path file, String contentType) throws IOException;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException nếu không có object
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Đọc đoạn [offset, offset + length) của object
+     */
+    InputStream getRange(String key, long offset, long length) throws IOException;
+
+    Optional<StoredObject> stat(String key) throws IOException;
+
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Tên các object nằm trực tiếp dưới prefix (không đệ quy), theo thứ tự tên, sau startAfter (null = từ đầu)
+     */
+    List<String> list(String prefix, String startAfter, int limit) throws IOException;
+
+    // === Multipart upload: gửi file lớn thành nhiều phần, phần lỗi gửi lại được ===
+
+    String createMultipartUpload(String key, String contentType) throws IOException;
+
+    /**
+     * @param partNumber bắt đầu từ 1
+     * @return ETag của phần, truyền lại khi complete
+     */
+    String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length) throws IOException;
+
+    void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException;
+
+    void abortMultipartUpload(String key, String uploadId) throws IOException;
+
+    // === Truy cập trực tiếp ===
+
+    /**
+     * URL tải trực tiếp từ kho có hạn dùng (client không đi qua app), empty nếu backend không hỗ trợ
+     */
+    Optional<URL> presignGet(String key, Duration ttl, String downloadName, boolean attachment);
+
+    /**
+     * URL để client PUT thẳng lên kho, empty nếu backend không hỗ trợ
+     */
+    Optional<URL> presignPut(String key, Duration ttl, String contentType);
+
+    default boolean supportsPresignedUrls() {
+        return false;
+    }
+
+    /**
+     * File cục bộ của key (chỉ backend local) → dùng được sendfile/FileChannel và ffmpeg
+     */
+    Optional<Path> localPath(String key);
+
+    /**
+     * Cho targetKey cùng nội dung với sourceKey mà không tốn thêm chỗ (local: hard link).
+     *
+     * @return false nếu backend không có khái niệm này (đọc targetKey phải qua bảng blob_refs)
+     */
+    boolean alias(String sourceKey, String targetKey) throws IOException;
+
+    /**
+     * Key hợp lệ: tương đối, dùng "/", không có ".." hay ký tự điều khiển
+     */
+    static String checkKey(String key) {
+        if (key == null || key.isBlank() || key.startsWith("/") || key.contains("\\") || key.contains("//")) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        for (String segment : key.split("/")) {
+            if (segment.equals("..") || segment.equals(".")) {
+                throw new IllegalArgumentException("Invalid storage key: " + key);
+            }
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.isISOControl(key.charAt(i))) {
+                throw new IllegalArgumentException("Invalid storage key: " + key);
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,387 @@
+package org.example.lmsbackend.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lưu trên kho tương thích S3 (AWS S3, MinIO, Ceph RGW...). Với MinIO đặt endpoint + path-style=true.
+ * Nhiều node dùng chung 1 bucket nên app không còn phụ thuộc đĩa của 1 máy.
+ * File lớn hơn part-size được gửi bằng multipart upload, mỗi phần đọc lại từ file nên retry an toàn.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+public class S3ObjectStorage implements ObjectStorage {
+
+    // S3 yêu cầu mỗi phần (trừ phần cuối) >= 5MB
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private final S3Client s3;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final long partSize;
+
+    public S3ObjectStorage(@Value("${app.storage.s3.endpoint:}") String endpoint,
+                           @Value("${app.storage.s3.region:us-east-1}") String region,
+                           @Value("${app.storage.s3.bucket}") String bucket,
+                           @Value("${app.storage.s3.access-key:}") String accessKey,
+                           @Value("${app.storage.s3.secret-key:}") String secretKey,
+                           @Value("${app.storage.s3.path-style:true}") boolean pathStyle,
+                           @Value("${app.storage.s3.part-size:16777216}") long partSize) {
+        this.bucket = bucket;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3Configuration configuration = S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build();
+
+        var clientBuilder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(configuration);
+        var presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(configuration);
+        if (!endpoint.isBlank()) {
+            clientBuilder.endpointOverride(URI.create(endpoint));
+            presignerBuilder.endpointOverride(URI.create(endpoint));
+        }
+        this.s3 = clientBuilder.build();
+        this.presigner = presignerBuilder.build();
+        System.out.println("🪣 Object storage: S3 bucket " + bucket + (endpoint.isBlank() ? "" : " at " + endpoint));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        presigner.close();
+        s3.close();
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length, String contentType) throws IOException {
+        try {
+            s3.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(ObjectStorage.checkKey(key))
+                            .contentType(contentType)
+                            .contentLength(length)
+                            .build(),
+                    RequestBody.fromInputStream(in, length));
+        } catch (SdkException e) {
+            throw new IOException("S3 put failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void putFile(String key, Path file, String contentType) throws IOException {
+        long size = Files.size(file);
+        try {
+            if (size <= partSize) {
+                s3.putObject(PutObjectRequest.builder()
+                                .bucket(bucket)
+                                .key(ObjectStorage.checkKey(key))
+                                .contentType(contentType)
+                                .build(),
+                        RequestBody.fromFile(file));
+            } else {
+                putMultipart(key, file, size, contentType);
+            }
+        } catch (SdkException e) {
+            throw new IOException("S3 upload failed for " + key + ": " + e.getMessage(), e);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private void putMultipart(String key, Path file, long size, String contentType) throws IOException {
+        String uploadId = createMultipartUpload(key, contentType);
+        try {
+            List<String> etags = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSize, partNumber++) {
+                long offsetOfPart = offset;
+                long length = Math.min(partSize, size - offset);
+                UploadPartRequest request = UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength(length)
+                        .build();
+                // Mỗi lần SDK cần (kể cả retry) mở lại đúng đoạn của file, không giữ cả phần trong RAM
+                RequestBody body = RequestBody.fromContentProvider(
+                        () -> openFileRange(file, offsetOfPart, length), length, contentType);
+                etags.add(s3.uploadPart(request, body).eTag());
+            }
+            completeMultipartUpload(key, uploadId, etags);
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(key, uploadId);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(ObjectStorage.checkKey(key)).build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("S3 get failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(ObjectStorage.checkKey(key))
+                    .range("bytes=" + offset + "-" + (offset + length - 1))
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("S3 ranged get failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(ObjectStorage.checkKey(key))
+                    .build());
+            return Optional.of(new StoredObject(key, head.contentLength(), head.lastModified(), head.contentType()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            // HEAD không có body nên lỗi 404 có thể không được map thành NoSuchKeyException
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("S3 head failed for " + key + ": " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("S3 head failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(ObjectStorage.checkKey(key)).build());
+            return true;
+        } catch (SdkException e) {
+            throw new IOException("S3 delete failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<String> list(String prefix, String startAfter, int limit) throws IOException {
+        String normalizedPrefix = prefix == null || prefix.isEmpty() ? "" : (prefix.endsWith("/") ? prefix : prefix + "/");
+        ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(normalizedPrefix)
+                .delimiter("/")
+                .maxKeys(limit);
+        if (startAfter != null) {
+            request.startAfter(normalizedPrefix + startAfter);
+        }
+        try {
+            List<String> names = new ArrayList<>();
+            for (S3Object object : s3.listObjectsV2(request.build()).contents()) {
+                String name = object.key().substring(normalizedPrefix.length());
+                if (!name.isEmpty() && !name.startsWith(".")) {
+                    names.add(name);
+                }
+            }
+            return names;
+        } catch (SdkException e) {
+            throw new IOException("S3 list failed for " + prefix + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String createMultipartUpload(String key, String contentType) throws IOException {
+        try {
+            return s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(ObjectStorage.checkKey(key))
+                    .contentType(contentType)
+                    .build()).uploadId();
+        } catch (SdkException e) {
+            throw new IOException("S3 multipart init failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream in, long length) throws IOException {
+        try {
+            return s3.uploadPart(UploadPartRequest.builder()
+                            .bucket(bucket)
+                            .key(ObjectStorage.checkKey(key))
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength(length)
+                            .build(),
+                    RequestBody.fromInputStream(in, length)).eTag();
+        } catch (SdkException e) {
+            throw new IOException("S3 upload part " + partNumber + " failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        List<CompletedPart> parts = new ArrayList<>();
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(CompletedPart.builder().partNumber(i + 1).eTag(partETags.get(i)).build());
+        }
+        try {
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(ObjectStorage.checkKey(key))
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (SdkException e) {
+            throw new IOException("S3 multipart complete failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        try {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(ObjectStorage.checkKey(key))
+                    .uploadId(uploadId)
+                    .build());
+        } catch (SdkException e) {
+            throw new IOException("S3 multipart abort failed for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<URL> presignGet(String key, Duration ttl, String downloadName, boolean attachment) {
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(ObjectStorage.checkKey(key));
+        if (downloadName != null && !downloadName.isBlank()) {
+            request.responseContentDisposition((attachment ? "attachment" : "inline")
+                    + "; filename*=UTF-8''" + URLEncoder.encode(downloadName, StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+        return Optional.of(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .getObjectRequest(request.build())
+                .build()).url());
+    }
+
+    @Override
+    public Optional<URL> presignPut(String key, Duration ttl, String contentType) {
+        return Optional.of(presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(ObjectStorage.checkKey(key))
+                        .contentType(contentType)
+                        .build())
+                .build()).url());
+    }
+
+    @Override
+    public boolean supportsPresignedUrls() {
+        return true;
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    // Không có hard link trên S3; đọc key phụ sẽ đi qua bảng blob_refs
+    @Override
+    public boolean alias(String sourceKey, String targetKey) {
+        return false;
+    }
+
+    private static InputStream openFileRange(Path file, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(offset);
+            return new java.io.BufferedInputStream(Channels.newInputStream(channel), 64 * 1024) {
+                private long remaining = length;
+
+                @Override
+                public synchronized int read() throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int b = super.read();
+                    if (b >= 0) {
+                        remaining--;
+                    }
+                    return b;
+                }
+
+                @Override
+                public synchronized int read(byte[] buffer, int off, int len) throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int read = super.read(buffer, off, (int) Math.min(len, remaining));
+                    if (read > 0) {
+                        remaining -= read;
+                    }
+                    return read;
+                }
+            };
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+}
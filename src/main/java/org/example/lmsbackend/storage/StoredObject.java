@@ -0,0 +1,9 @@
+package org.example.lmsbackend.storage;
+
+import java.time.Instant;
+
+/**
+ * Thông tin 1 object trong kho (không gồm nội dung)
+ */
+public record StoredObject(String key, long size, Instant lastModified, String contentType) {
+}
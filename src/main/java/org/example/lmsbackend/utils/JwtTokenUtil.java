@@ -1,16 +1,29 @@
 package org.example.lmsbackend.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.example.lmsbackend.model.User;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 @Component
@@ -19,6 +32,43 @@ public class JwtTokenUtil {
     private static final String RAW_SECRET = "this_is_a_very_secure_secret_key_12345";
     private static final SecretKey SECRET_KEY = Keys.hmacShaKeyFor(RAW_SECRET.getBytes());
 
+    // JwtParser là immutable/thread-safe → dựng 1 lần dùng cho mọi request
+    private static final JwtParser PARSER = Jwts.parserBuilder()
+            .setSigningKey(SECRET_KEY)
+            .build();
+
+    private final int claimsCacheSize;
+
+    // Claims đã xác thực chữ ký, key là SHA-256 của token (không giữ token gốc trong bộ nhớ).
+    // Caffeine giới hạn số phần tử và tự hết hạn từng phần tử đúng lúc token hết hạn, không cần quét cả map
+    private final Cache<String, CachedClaims> claimsCache;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    public JwtTokenUtil(@Value("${app.jwt.claims-cache-size:10000}") int claimsCacheSize) {
+        this.claimsCacheSize = claimsCacheSize;
+        this.claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new Expiry<String, CachedClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedClaims value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAtMillis() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedClaims value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedClaims value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("role", "ROLE_" + user.getRole());     // ✅ Thêm prefix "ROLE_"
@@ -65,15 +115,52 @@ public class JwtTokenUtil {
         return extractUsername(token).equals(username) && !isTokenExpired(token);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Xác thực token và trả về claims, chỉ parse + kiểm tra HMAC ở lần gặp đầu tiên.
+     * Token hết hạn bị loại khỏi cache và parse lại (parser ném ExpiredJwtException như trước).
+     * Mỗi lần gọi nhận 1 bản sao claims riêng, code gọi sửa claims không làm hỏng cache.
+     */
+    public Claims extractAllClaims(String token) {
+        String key = digest(token);
+
+        CachedClaims cached = claimsCache.getIfPresent(key);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            cacheHits.incrementAndGet();
+            return Jwts.claims(new LinkedHashMap<>(cached.claims()));
+        }
+
+        cacheMisses.incrementAndGet();
+        Claims claims = PARSER.parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        if (expiration != null && expiration.getTime() > System.currentTimeMillis()) {
+            claimsCache.put(key, new CachedClaims(Collections.unmodifiableMap(new LinkedHashMap<>(claims)), expiration.getTime()));
+        }
+        return claims;
+    }
+
+    public Map<String, Object> getClaimsCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", claimsCache.estimatedSize());
+        stats.put("maxSize", claimsCacheSize);
+        stats.put("hits", cacheHits.get());
+        stats.put("misses", cacheMisses.get());
+        return stats;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         return claimsResolver.apply(extractAllClaims(token));
     }
+
+    private record CachedClaims(Map<String, Object> claims, long expiresAtMillis) {
+    }
 }
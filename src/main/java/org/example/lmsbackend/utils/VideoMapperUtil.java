@@ -33,6 +33,9 @@ public class VideoMapperUtil {
         
         dto.setOrderNumber(video.getOrderNumber());
         dto.setPublished(video.getPublished());
+        dto.setStatus(video.getStatus() != null ? video.getStatus().name() : Video.Status.ready.name());
+        dto.setThumbnailUrl(video.getThumbnailUrl());
+        dto.setHlsUrl(video.getHlsUrl());
         
         return dto;
     }    
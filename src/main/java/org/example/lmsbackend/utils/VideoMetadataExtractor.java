@@ -1,6 +1,7 @@
 package org.example.lmsbackend.utils;
 
 import ws.schild.jave.MultimediaObject;
+import ws.schild.jave.ScreenExtractor;
 import ws.schild.jave.info.MultimediaInfo;
 import java.io.File;
 
@@ -51,4 +52,23 @@ public class VideoMetadataExtractor {
     public static long extractDuration(String videoFilePath) {
         return extractDuration(new File(videoFilePath));
     }
+
+    /**
+     * Render one frame of the video to a JPEG thumbnail
+     * @param videoFile The video file
+     * @param durationMillis Video duration in milliseconds (frame is taken at 10%, max 5s)
+     * @param outputFile Target image file
+     * @return true if the thumbnail was written
+     */
+    public static boolean extractThumbnail(File videoFile, long durationMillis, File outputFile) {
+        try {
+            long millis = Math.min(5000, Math.max(0, durationMillis / 10));
+            // -1 x -1 giữ nguyên kích thước gốc, quality 1 (tốt nhất) - 31
+            new ScreenExtractor().renderOneImage(new MultimediaObject(videoFile), -1, -1, millis, outputFile, 3);
+            return outputFile.exists();
+        } catch (Exception e) {
+            System.err.println("Error extracting video thumbnail: " + e.getMessage());
+            return false;
+        }
+    }
 }
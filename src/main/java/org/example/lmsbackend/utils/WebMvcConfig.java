@@ -1,45 +1,176 @@
 package org.example.lmsbackend.utils;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.lmsbackend.service.AssetPipelineService;
+import org.example.lmsbackend.service.BlobStoreService;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.util.UriUtils;
 
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
+
+    // Các đường dẫn phục vụ file upload (ảnh, tài liệu) qua asset pipeline
+    private static final String[] ASSET_PATTERNS = {
+            "/images/**", "/cvs/**", "/uploads/avatars/**", "/uploads/imagescourse/**", "/uploads/modules/**"
+    };
+
+    // Tiền tố URL công khai → tiền tố key trong kho lưu trữ (tiền tố dài hơn đứng trước)
+    private static final Map<String, String> URL_PREFIX_TO_KEY = new LinkedHashMap<>();
+
+    static {
+        URL_PREFIX_TO_KEY.put("/images/courses/", "imagescourse/");
+        URL_PREFIX_TO_KEY.put("/images/avatars/", "avatars/");
+        URL_PREFIX_TO_KEY.put("/images/", "");
+        URL_PREFIX_TO_KEY.put("/cvs/", "cvs/");
+        URL_PREFIX_TO_KEY.put("/uploads/", "");
+        URL_PREFIX_TO_KEY.put("/videos/", "videos/");
+    }
+
+    @Value("${app.storage.local.root:${app.upload.dir:uploads}}")
+    private String storageRoot;
+
+    @Value("${app.storage.presign-ttl-seconds:900}")
+    private long presignTtlSeconds;
+
+    @Autowired
+    private ObjectStorage objectStorage;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Map cho thư mục uploads tổng quát
-        String uploadPath = Paths.get("uploads").toAbsolutePath().toUri().toString();
-        registry.addResourceHandler("/images/**")
-                .addResourceLocations(uploadPath);
-        registry.addResourceHandler("/cvs/**")
-                .addResourceLocations(uploadPath + "cvs/");
+        // Map cho thư mục uploads tổng quát (backend local; backend S3 được chuyển hướng ở interceptor)
+        String uploadPath = Paths.get(storageRoot).toAbsolutePath().toUri().toString();
+        if (!uploadPath.endsWith("/")) {
+            uploadPath += "/";
+        }
+        addAssetHandler(registry, "/images/**", uploadPath);
+        addAssetHandler(registry, "/cvs/**", uploadPath + "cvs/");
         // Map riêng cho ảnh khóa học
-        String courseImagesPath = Paths.get("uploads", "imagescourse").toAbsolutePath().toUri().toString();
-        registry.addResourceHandler("/images/courses/**")
-                .addResourceLocations(courseImagesPath);
-        registry.addResourceHandler("/images/avatars/**")
-                .addResourceLocations(uploadPath + "avatars/");
+        String courseImagesPath = uploadPath + "imagescourse/";
+        addAssetHandler(registry, "/images/courses/**", courseImagesPath);
+        addAssetHandler(registry, "/uploads/imagescourse/**", courseImagesPath);
+        addAssetHandler(registry, "/images/avatars/**", uploadPath + "avatars/");
+        addAssetHandler(registry, "/uploads/avatars/**", uploadPath + "avatars/");
 
         // Map cho video
-        String videosPath = Paths.get("uploads", "videos").toAbsolutePath().toUri().toString();
+        String videosPath = uploadPath + "videos/";
         registry.addResourceHandler("/videos/**")
                 .addResourceLocations(videosPath);
 
         // Map cho module content files  
-        String modulesPath = Paths.get("uploads", "modules").toAbsolutePath().toUri().toString();
-        registry.addResourceHandler("/uploads/modules/**")
-                .addResourceLocations(modulesPath);
+        String modulesPath = uploadPath + "modules/";
+        addAssetHandler(registry, "/uploads/modules/**", modulesPath);
 
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Kho S3: file không nằm trên đĩa của node → chuyển hướng tới URL ký sẵn, chạy trước mọi interceptor khác
+        if (objectStorage.supportsPresignedUrls()) {
+            registry.addInterceptor(new PresignedRedirectInterceptor(blobStoreService, Duration.ofSeconds(presignTtlSeconds)))
+                    .addPathPatterns(ASSET_PATTERNS)
+                    .addPathPatterns("/videos/**");
+        }
+        registry.addInterceptor(new AssetCacheControlInterceptor()).addPathPatterns(ASSET_PATTERNS);
+    }
+
+    /**
+     * Resolver chain: EncodedResourceResolver trả bản .br/.gz nén sẵn nếu client chấp nhận,
+     * kết quả resolve được cache (resourceChain(true)) nên không dò lại đĩa mỗi request.
+     * ETag lấy từ hash trong tên file, không băm nội dung lúc phục vụ.
+     */
+    private void addAssetHandler(ResourceHandlerRegistry registry, String pattern, String location) {
+        registry.addResourceHandler(pattern)
+                .addResourceLocations(location)
+                .setEtagGenerator(AssetPipelineService::etagFor)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new PathResourceResolver());
+    }
+
+    /**
+     * File tên theo nội dung (sha256) không bao giờ đổi → cache immutable 1 năm.
+     * File tên cũ (UUID_tên gốc, có thể bị ghi đè) → no-cache, trình duyệt hỏi lại bằng Last-Modified.
+     */
+    private static class AssetCacheControlInterceptor implements HandlerInterceptor {
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            String uri = request.getRequestURI();
+            String filename = uri.substring(uri.lastIndexOf('/') + 1);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, AssetPipelineService.isContentHashed(filename)
+                    ? AssetPipelineService.IMMUTABLE_CACHE_CONTROL
+                    : CacheControl.noCache().getHeaderValue());
+            return true;
+        }
+    }
+
+    /**
+     * Đổi URL công khai cũ (/images/..., /uploads/..., /videos/...) sang key rồi trả 302 tới URL ký sẵn.
+     * Trình duyệt được phép nhớ lượt chuyển hướng trong nửa thời hạn của URL ký.
+     */
+    private static class PresignedRedirectInterceptor implements HandlerInterceptor {
+        private final BlobStoreService blobStoreService;
+        private final String cacheControl;
+
+        PresignedRedirectInterceptor(BlobStoreService blobStoreService, Duration presignTtl) {
+            this.blobStoreService = blobStoreService;
+            this.cacheControl = CacheControl.maxAge(presignTtl.dividedBy(2)).cachePrivate().getHeaderValue();
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+            String path = UriUtils.decode(request.getRequestURI().substring(request.getContextPath().length()),
+                    StandardCharsets.UTF_8);
+            for (Map.Entry<String, String> entry : URL_PREFIX_TO_KEY.entrySet()) {
+                if (!path.startsWith(entry.getKey())) {
+                    continue;
+                }
+                String key = entry.getValue() + path.substring(entry.getKey().length());
+                Optional<URL> url;
+                try {
+                    url = blobStoreService.presignGet(key, null, false);
+                } catch (IllegalArgumentException e) {
+                    // Key không hợp lệ (.., //...) → để resource handler trả 404
+                    return true;
+                }
+                if (url.isEmpty()) {
+                    return true;
+                }
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+                response.sendRedirect(url.get().toString());
+                return false;
+            }
+            return true;
+        }
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -48,11 +179,14 @@ public class WebMvcConfig implements WebMvcConfigurer {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:4200", "http://192.168.1.9:4200"));
         
         // Cho phép tất cả methods
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         
         // Cho phép tất cả headers
         configuration.setAllowedHeaders(Arrays.asList("*"));
         
+        // Header của upload theo chunk mà frontend cần đọc được
+        configuration.setExposedHeaders(Arrays.asList("Location", "Upload-Offset", "Upload-Length"));
+        
         // Cho phép credentials (cookies, authorization headers)
         configuration.setAllowCredentials(true);
         
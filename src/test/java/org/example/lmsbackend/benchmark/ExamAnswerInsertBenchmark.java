@@ -0,0 +1,165 @@
+package org.example.lmsbackend.benchmark;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.example.lmsbackend.model.Answer;
+import org.example.lmsbackend.model.Questions;
+import org.example.lmsbackend.model.UserAnswer;
+import org.example.lmsbackend.model.UserQuizAttempt;
+import org.example.lmsbackend.repository.UserAnswerMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testcontainers.containers.MySQLContainer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian ghi câu trả lời khi nộp bài 10 / 100 / 500 câu:
+ * insertUserAnswer từng dòng (cách cũ) so với batchInsertUserAnswers theo lô 200 dòng (app.exam.answer-insert-batch-size).
+ * Mỗi lần đo là 1 transaction như submitExam, chạy trên MySQL trong Docker (Testcontainers) với đúng mapper của app.
+ * Chạy: mvn test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=org.example.lmsbackend.benchmark.ExamAnswerInsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExamAnswerInsertBenchmark {
+
+    private static final int INSERT_BATCH_SIZE = 200;
+
+    @Param({"10", "100", "500"})
+    private int answers;
+
+    private MySQLContainer<?> mysql;
+    private PooledDataSource dataSource;
+    private SqlSessionFactory sqlSessionFactory;
+    private int attemptSequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        mysql = new MySQLContainer<>("mysql:8.0");
+        mysql.start();
+        dataSource = new PooledDataSource("com.mysql.cj.jdbc.Driver",
+                mysql.getJdbcUrl(), mysql.getUsername(), mysql.getPassword());
+        // Cùng cột với bảng do Hibernate tạo, bỏ khóa ngoại để không phải dựng attempt/question
+        execute("""
+            CREATE TABLE user_answers (
+                user_answer_id INT AUTO_INCREMENT PRIMARY KEY,
+                attempt_id INT NOT NULL,
+                question_id INT NOT NULL,
+                answer_id INT NULL,
+                answer_text VARCHAR(255) NULL,
+                is_correct BIT NULL,
+                link_answer VARCHAR(255) NULL,
+                file_name VARCHAR(255) NULL,
+                file_path VARCHAR(255) NULL,
+                instructor_feedback VARCHAR(255) NULL,
+                manual_score INT NULL,
+                INDEX idx_user_answers_attempt (attempt_id)
+            ) ENGINE = InnoDB
+        """);
+
+        Configuration configuration = new Configuration(
+                new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserAnswerMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws SQLException {
+        execute("TRUNCATE TABLE user_answers");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.forceCloseAll();
+        mysql.stop();
+    }
+
+    @Benchmark
+    public int insertOneByOne() {
+        List<UserAnswer> userAnswers = buildAnswers();
+        try (SqlSession session = sqlSessionFactory.openSession(false)) {
+            UserAnswerMapper mapper = session.getMapper(UserAnswerMapper.class);
+            for (UserAnswer userAnswer : userAnswers) {
+                mapper.insertUserAnswer(userAnswer);
+            }
+            session.commit();
+        }
+        return userAnswers.size();
+    }
+
+    @Benchmark
+    public int insertBatched() {
+        List<UserAnswer> userAnswers = buildAnswers();
+        int inserted = 0;
+        try (SqlSession session = sqlSessionFactory.openSession(false)) {
+            UserAnswerMapper mapper = session.getMapper(UserAnswerMapper.class);
+            for (int from = 0; from < userAnswers.size(); from += INSERT_BATCH_SIZE) {
+                inserted += mapper.batchInsertUserAnswers(
+                        userAnswers.subList(from, Math.min(from + INSERT_BATCH_SIZE, userAnswers.size())));
+            }
+            session.commit();
+        }
+        return inserted;
+    }
+
+    private List<UserAnswer> buildAnswers() {
+        UserQuizAttempt attempt = new UserQuizAttempt();
+        attempt.setId(++attemptSequence);
+        List<UserAnswer> userAnswers = new ArrayList<>(answers);
+        for (int i = 0; i < answers; i++) {
+            Questions question = new Questions();
+            question.setQuestionId(i + 1);
+            Answer answer = new Answer();
+            answer.setAnswerId(i * 4 + 1);
+
+            UserAnswer userAnswer = new UserAnswer();
+            userAnswer.setAttempt(attempt);
+            userAnswer.setQuestion(question);
+            userAnswer.setAnswer(answer);
+            userAnswer.setAnswerText("Answer " + i);
+            userAnswer.setIsCorrect(i % 3 != 0);
+            userAnswers.add(userAnswer);
+        }
+        return userAnswers;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExamAnswerInsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
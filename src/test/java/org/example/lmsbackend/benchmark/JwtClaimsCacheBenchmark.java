@@ -0,0 +1,71 @@
+package org.example.lmsbackend.benchmark;
+
+import io.jsonwebtoken.Claims;
+import org.example.lmsbackend.model.User;
+import org.example.lmsbackend.utils.JwtTokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng JwtTokenUtil.extractAllClaims khi số token đang dùng nhỏ hơn / lớn hơn kích thước cache.
+ * activeTokens > cacheSize là trường hợp cache cũ quét toàn bộ map ở mỗi lần thêm.
+ * Chạy: mvn test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=org.example.lmsbackend.benchmark.JwtClaimsCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtClaimsCacheBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    private int activeTokens;
+
+    @Param({"10000"})
+    private int cacheSize;
+
+    private JwtTokenUtil jwtTokenUtil;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        jwtTokenUtil = new JwtTokenUtil(cacheSize);
+        tokens = new String[activeTokens];
+        for (int i = 0; i < activeTokens; i++) {
+            User user = new User();
+            user.setUserId(i + 1);
+            user.setUsername("user" + i);
+            user.setFullName("User " + i);
+            user.setRole(User.Role.student);
+            tokens[i] = jwtTokenUtil.generateToken(user);
+        }
+    }
+
+    @Benchmark
+    public Claims extractAllClaims() {
+        return jwtTokenUtil.extractAllClaims(tokens[ThreadLocalRandom.current().nextInt(tokens.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtClaimsCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.lmsbackend.email;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.example.lmsbackend.model.EmailOutbox;
+import org.example.lmsbackend.repository.EmailOutboxMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension smtp = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final EmailOutboxMapper emailOutboxMapper = mock(EmailOutboxMapper.class);
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new EmailOutboxDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "emailOutboxMapper", emailOutboxMapper);
+        ReflectionTestUtils.setField(dispatcher, "mailSender", mailSender(smtp.getSmtp().getPort()));
+        ReflectionTestUtils.setField(dispatcher, "from", "lms@example.org");
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "backoffBaseSeconds", 30L);
+        ReflectionTestUtils.setField(dispatcher, "backoffMaxSeconds", 3600L);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 300L);
+        ReflectionTestUtils.setField(dispatcher, "retentionDays", 7);
+        ReflectionTestUtils.setField(dispatcher, "deadRetentionDays", 30);
+    }
+
+    @Test
+    void claimedBatchIsDeliveredOverSmtpAndMarkedSent() throws Exception {
+        claim(email(1L, "a@example.org", 0), email(2L, "b@example.org", 0));
+
+        dispatcher.dispatch();
+
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertEquals(2, received.length);
+        assertEquals("Subject 1", received[0].getSubject());
+        verify(emailOutboxMapper).markSent(eq(List.of(1L, 2L)), anyString());
+        verify(emailOutboxMapper, never()).scheduleRetry(anyLong(), anyString(), anyInt(), any(), any());
+    }
+
+    @Test
+    void nothingClaimedMeansNoRead() {
+        when(emailOutboxMapper.claimDue(anyString(), anyInt(), anyLong())).thenReturn(0);
+
+        dispatcher.dispatch();
+
+        verify(emailOutboxMapper, never()).findClaimed(anyString());
+    }
+
+    @Test
+    void smtpFailureSchedulesRetryWithBackoff() {
+        ReflectionTestUtils.setField(dispatcher, "mailSender", mailSender(closedPort()));
+        claim(email(1L, "a@example.org", 1));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.dispatch();
+
+        // Lần lỗi thứ 2 → chờ 60s
+        verify(emailOutboxMapper).scheduleRetry(eq(1L), anyString(), eq(2),
+                argThat(next -> !next.isBefore(before.plusSeconds(59))), anyString());
+        verify(emailOutboxMapper, never()).markSent(anyList(), anyString());
+    }
+
+    @Test
+    void lastFailedAttemptMovesEmailToDeadLetter() {
+        ReflectionTestUtils.setField(dispatcher, "mailSender", mailSender(closedPort()));
+        claim(email(1L, "a@example.org", 2));
+
+        dispatcher.dispatch();
+
+        verify(emailOutboxMapper).markDead(eq(1L), anyString(), eq(3), anyString());
+        verify(emailOutboxMapper, never()).scheduleRetry(anyLong(), anyString(), anyInt(), any(), any());
+    }
+
+    @Test
+    void resultsAreWrittenWithTheClaimToken() {
+        claim(email(1L, "a@example.org", 0));
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<String> claimToken = ArgumentCaptor.forClass(String.class);
+        verify(emailOutboxMapper).claimDue(claimToken.capture(), eq(50), eq(300L));
+        verify(emailOutboxMapper).findClaimed(claimToken.getValue());
+        verify(emailOutboxMapper).markSent(List.of(1L), claimToken.getValue());
+    }
+
+    @Test
+    void purgeRedactsAndDeletesDeadLetters() {
+        dispatcher.purgeSent();
+
+        verify(emailOutboxMapper).redactDead();
+        verify(emailOutboxMapper).deleteDeadBefore(argThat(before -> before.isBefore(LocalDateTime.now().minusDays(29))));
+    }
+
+    private void claim(EmailOutbox... emails) {
+        when(emailOutboxMapper.claimDue(anyString(), anyInt(), anyLong())).thenReturn(emails.length);
+        when(emailOutboxMapper.findClaimed(anyString())).thenReturn(List.of(emails));
+    }
+
+    private static EmailOutbox email(Long id, String recipient, int attempts) {
+        EmailOutbox email = new EmailOutbox();
+        email.setId(id);
+        email.setRecipient(recipient);
+        email.setSubject("Subject " + id);
+        email.setBody("Body " + id);
+        email.setAttempts(attempts);
+        return email;
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(port);
+        sender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        return sender;
+    }
+
+    private static int closedPort() {
+        try (java.net.ServerSocket socket = new java.net.ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
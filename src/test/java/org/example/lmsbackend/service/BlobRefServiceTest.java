@@ -0,0 +1,151 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.repository.BlobStoreMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BlobRefServiceTest {
+
+    private static final String SHA = "ab".repeat(32);
+    private static final String OTHER_SHA = "cd".repeat(32);
+
+    private final BlobStoreMapper blobStoreMapper = mock(BlobStoreMapper.class);
+    private final ObjectStorage objectStorage = mock(ObjectStorage.class);
+    private BlobRefService blobRefService;
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        blobRefService = new BlobRefService(transactionManager);
+        ReflectionTestUtils.setField(blobRefService, "blobStoreMapper", blobStoreMapper);
+        ReflectionTestUtils.setField(blobRefService, "objectStorage", objectStorage);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void reserveLocksBlobRowAndAcquires() {
+        blobRefService.reserve(SHA, 10);
+
+        var order = inOrder(blobStoreMapper);
+        order.verify(blobStoreMapper).ensureBlob(SHA, 10);
+        order.verify(blobStoreMapper).lockRefCount(SHA);
+        order.verify(blobStoreMapper).acquire(SHA);
+    }
+
+    @Test
+    void linkTurnsReservationIntoRef() {
+        when(blobStoreMapper.insertRef("videos/a.mp4", SHA)).thenReturn(1);
+
+        assertTrue(blobRefService.link("videos/a.mp4", SHA, "blobs/" + SHA));
+
+        var order = inOrder(blobStoreMapper);
+        order.verify(blobStoreMapper).lockRefCount(SHA);
+        order.verify(blobStoreMapper).insertRef("videos/a.mp4", SHA);
+        verify(blobStoreMapper, never()).acquire(anyString());
+        verify(blobStoreMapper, never()).release(anyString());
+    }
+
+    @Test
+    void relinkSameContentReleasesReservation() throws IOException {
+        when(blobStoreMapper.insertRef("cvs/a.pdf", SHA)).thenReturn(0);
+        when(blobStoreMapper.lockShaByPath("cvs/a.pdf")).thenReturn(SHA);
+        when(blobStoreMapper.lockRefCount(SHA)).thenReturn(2, 2, 1);
+
+        assertFalse(blobRefService.link("cvs/a.pdf", SHA, "blobs/" + SHA));
+
+        verify(blobStoreMapper).release(SHA);
+        // Key vẫn trỏ tới blob → không dọn
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+        verify(objectStorage, never()).delete(anyString());
+    }
+
+    @Test
+    void overwriteRepointsAndReleasesPreviousBlob() {
+        when(blobStoreMapper.insertRef("cvs/a.pdf", SHA)).thenReturn(0);
+        when(blobStoreMapper.lockShaByPath("cvs/a.pdf")).thenReturn(OTHER_SHA);
+        when(blobStoreMapper.repointRef("cvs/a.pdf", OTHER_SHA, SHA)).thenReturn(1);
+        when(blobStoreMapper.lockRefCount(OTHER_SHA)).thenReturn(1, 0);
+
+        assertTrue(blobRefService.link("cvs/a.pdf", SHA, "blobs/" + SHA));
+
+        verify(blobStoreMapper, never()).release(SHA);
+        verify(blobStoreMapper).release(OTHER_SHA);
+    }
+
+    @Test
+    void unreserveOfUnlinkedUploadDeletesBlobAfterCommit() throws IOException {
+        when(blobStoreMapper.lockRefCount(SHA)).thenReturn(1, 0, 0);
+
+        blobRefService.unreserve(SHA, "blobs/" + SHA);
+        verify(objectStorage, never()).delete(anyString());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(objectStorage).delete("blobs/" + SHA);
+    }
+
+    @Test
+    void lastReleaseDeletesBlobOnlyAfterCommit() throws IOException {
+        when(blobStoreMapper.deleteRef("videos/a.mp4", SHA)).thenReturn(1);
+        when(blobStoreMapper.lockRefCount(SHA)).thenReturn(1, 0, 0);
+
+        assertTrue(blobRefService.unlink("videos/a.mp4", SHA, "blobs/" + SHA));
+        verify(objectStorage, never()).delete(anyString());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(objectStorage).delete("blobs/" + SHA);
+        verify(blobStoreMapper).deleteUnreferenced(SHA);
+    }
+
+    @Test
+    void purgeSkipsBlobReacquiredBeforeCommit() throws IOException {
+        when(blobStoreMapper.deleteRef("videos/a.mp4", SHA)).thenReturn(1);
+        // Node khác trỏ key mới tới cùng nội dung giữa lúc commit và lúc dọn
+        when(blobStoreMapper.lockRefCount(SHA)).thenReturn(1, 0, 1);
+
+        blobRefService.unlink("videos/a.mp4", SHA, "blobs/" + SHA);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        verify(objectStorage, never()).delete(anyString());
+        verify(blobStoreMapper, never()).deleteUnreferenced(anyString());
+    }
+
+    @Test
+    void releaseOfAlreadyReleasedKeyIsNoop() {
+        when(blobStoreMapper.deleteRef("videos/a.mp4", SHA)).thenReturn(0);
+
+        assertFalse(blobRefService.unlink("videos/a.mp4", SHA, "blobs/" + SHA));
+
+        verify(blobStoreMapper, never()).release(anyString());
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.repository.BlobStoreMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.example.lmsbackend.storage.StoredObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BlobStoreServiceTest {
+
+    private static final String SHA = "ab".repeat(32);
+    private static final String BLOB_KEY = "blobs/ab/ab/" + SHA;
+
+    private final BlobStoreMapper blobStoreMapper = mock(BlobStoreMapper.class);
+    private final ObjectStorage objectStorage = mock(ObjectStorage.class);
+    private final BlobRefService blobRefService = mock(BlobRefService.class);
+    private BlobStoreService blobStoreService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        blobStoreService = new BlobStoreService(tempDir.resolve("tmp").toString(), 900, 30);
+        ReflectionTestUtils.setField(blobStoreService, "blobStoreMapper", blobStoreMapper);
+        ReflectionTestUtils.setField(blobStoreService, "objectStorage", objectStorage);
+        ReflectionTestUtils.setField(blobStoreService, "blobRefService", blobRefService);
+    }
+
+    @Test
+    void putUploadsBetweenReserveAndLinkOutsideTheLock() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("a.mp4"), "video");
+        when(objectStorage.stat(BLOB_KEY)).thenReturn(Optional.empty());
+
+        blobStoreService.put(file, SHA, 5, "videos/a.mp4", "video/mp4");
+
+        var order = inOrder(blobRefService, objectStorage);
+        order.verify(blobRefService).reserve(SHA, 5);
+        order.verify(objectStorage).putFile(BLOB_KEY, file, "video/mp4");
+        order.verify(blobRefService).link("videos/a.mp4", SHA, BLOB_KEY);
+        order.verify(objectStorage).alias(BLOB_KEY, "videos/a.mp4");
+        verify(blobRefService, never()).unreserve(anyString(), anyString());
+    }
+
+    @Test
+    void putOfExistingContentSkipsUploadAndDropsLocalFile() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("a.pdf"), "cv");
+        when(objectStorage.stat(BLOB_KEY)).thenReturn(Optional.of(new StoredObject(BLOB_KEY, 2, Instant.now(), "application/pdf")));
+
+        blobStoreService.put(file, SHA, 2, "cvs/a.pdf", "application/pdf");
+
+        verify(objectStorage, never()).putFile(anyString(), any(), anyString());
+        assertFalse(Files.exists(file));
+        verify(blobRefService).link("cvs/a.pdf", SHA, BLOB_KEY);
+    }
+
+    @Test
+    void failedUploadReleasesReservation() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("a.mp4"), "video");
+        when(objectStorage.stat(BLOB_KEY)).thenReturn(Optional.empty());
+        doThrow(new IOException("network")).when(objectStorage).putFile(BLOB_KEY, file, "video/mp4");
+
+        assertThrows(IOException.class, () -> blobStoreService.put(file, SHA, 5, "videos/a.mp4", "video/mp4"));
+
+        verify(blobRefService).unreserve(SHA, BLOB_KEY);
+        verify(blobRefService, never()).link(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void failedLinkReleasesReservation() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("a.mp4"), "video");
+        when(objectStorage.stat(BLOB_KEY)).thenReturn(Optional.empty());
+        when(blobRefService.link("videos/a.mp4", SHA, BLOB_KEY)).thenThrow(new IllegalStateException("conflict"));
+
+        assertThrows(IllegalStateException.class, () -> blobStoreService.put(file, SHA, 5, "videos/a.mp4", "video/mp4"));
+
+        verify(blobRefService).unreserve(SHA, BLOB_KEY);
+    }
+}
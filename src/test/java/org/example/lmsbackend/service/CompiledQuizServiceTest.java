@@ -0,0 +1,59 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.repository.AnswerMapper;
+import org.example.lmsbackend.repository.QuestionsMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompiledQuizServiceTest {
+
+    private final QuestionsMapper questionsMapper = mock(QuestionsMapper.class);
+    private final AnswerMapper answerMapper = mock(AnswerMapper.class);
+    private CompiledQuizService compiledQuizService;
+
+    @BeforeEach
+    void setUp() {
+        compiledQuizService = new CompiledQuizService(100);
+        ReflectionTestUtils.setField(compiledQuizService, "questionsMapper", questionsMapper);
+        ReflectionTestUtils.setField(compiledQuizService, "answerMapper", answerMapper);
+        when(answerMapper.findByQuizId(1)).thenReturn(List.of());
+    }
+
+    @Test
+    void compiledQuizIsCachedUntilInvalidated() {
+        when(questionsMapper.findGradingKeyByQuizId(1)).thenReturn(List.of());
+
+        CompiledQuizService.CompiledQuiz first = compiledQuizService.getCompiledQuiz(1);
+        assertSame(first, compiledQuizService.getCompiledQuiz(1));
+
+        compiledQuizService.invalidate(1);
+        assertNotSame(first, compiledQuizService.getCompiledQuiz(1));
+        verify(questionsMapper, times(2)).findGradingKeyByQuizId(1);
+    }
+
+    @Test
+    void resultCompiledAcrossInvalidateIsNotCached() {
+        // Câu hỏi bị sửa trong lúc đang nạp bộ đáp án cũ
+        when(questionsMapper.findGradingKeyByQuizId(1)).thenAnswer(invocation -> {
+            compiledQuizService.invalidate(1);
+            return List.of();
+        }).thenReturn(List.of());
+
+        CompiledQuizService.CompiledQuiz stale = compiledQuizService.getCompiledQuiz(1);
+        CompiledQuizService.CompiledQuiz fresh = compiledQuizService.getCompiledQuiz(1);
+
+        assertNotSame(stale, fresh);
+        assertSame(fresh, compiledQuizService.getCompiledQuiz(1));
+        verify(questionsMapper, times(2)).findGradingKeyByQuizId(1);
+    }
+}
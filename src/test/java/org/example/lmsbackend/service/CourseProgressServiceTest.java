@@ -0,0 +1,85 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.model.ModuleProgress;
+import org.example.lmsbackend.repository.CourseProgressMapper;
+import org.example.lmsbackend.repository.ModuleProgressMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CourseProgressServiceTest {
+
+    @Mock
+    private ModuleProgressMapper moduleProgressMapper;
+
+    @Mock
+    private CourseProgressMapper courseProgressMapper;
+
+    @InjectMocks
+    private CourseProgressService courseProgressService;
+
+    @Test
+    void unpublishShiftsCountersDownForCompleters() {
+        courseProgressService.onContentVisibilityChanged(7, false);
+
+        verify(moduleProgressMapper).shiftCompletedContents(7, -1);
+        verify(courseProgressMapper).shiftCompletedContents(7, -1);
+    }
+
+    @Test
+    void republishShiftsCountersBackUp() {
+        courseProgressService.onVideoVisibilityChanged(3, true);
+
+        verify(moduleProgressMapper).shiftCompletedVideos(3, 1);
+        verify(courseProgressMapper).shiftCompletedVideos(3, 1);
+    }
+
+    @Test
+    void completingHiddenItemDoesNotTouchCourseCounter() {
+        // INSERT ... SELECT lọc published=true → item đang ẩn trả về 0 dòng
+        when(moduleProgressMapper.incrementCompletedContents(1, 7)).thenReturn(0);
+
+        courseProgressService.recordContentCompleted(1, 2, 7);
+
+        verify(courseProgressMapper, never()).incrementCompletedContents(anyInt(), anyInt());
+    }
+
+    @Test
+    void completingPublishedItemIncrementsBothCounters() {
+        when(moduleProgressMapper.incrementCompletedQuizzes(1, 9)).thenReturn(1);
+        when(courseProgressMapper.incrementCompletedQuizzes(1, 9)).thenReturn(1);
+
+        courseProgressService.recordQuizCompleted(1, 2, 9);
+
+        verify(courseProgressMapper).incrementCompletedQuizzes(1, 9);
+    }
+
+    @Test
+    void moduleIsNotCompleteAfterUnpublishThenNewItem() {
+        ModuleProgressService moduleProgressService = new ModuleProgressService();
+        ModuleProgress progress = new ModuleProgress();
+        progress.setCompletedContents(3);
+
+        moduleProgressService.applyCompletionFlags(progress, 3, 0, 0);
+        assertTrue(progress.getModuleCompleted());
+
+        // Ẩn 1 content đã hoàn thành → bộ đếm 2/2, rồi thêm content mới → 2/3
+        progress.setCompletedContents(2);
+        moduleProgressService.applyCompletionFlags(progress, 2, 0, 0);
+        assertTrue(progress.getModuleCompleted());
+
+        moduleProgressService.applyCompletionFlags(progress, 3, 0, 0);
+        assertFalse(progress.getContentCompleted());
+        assertFalse(progress.getModuleCompleted());
+    }
+}
@@ -0,0 +1,194 @@
+package org.example.lmsbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileStreamingServiceTest {
+
+    private static final int FILE_SIZE = 100;
+    private static final long MAX_CHUNK_SIZE = 30;
+
+    private final FileStreamingService fileStreamingService = new FileStreamingService();
+    private final byte[] content = new byte[FILE_SIZE];
+    private Path file;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(fileStreamingService, "maxChunkSize", MAX_CHUNK_SIZE);
+        ReflectionTestUtils.setField(fileStreamingService, "transferSize", 16L);
+        for (int i = 0; i < FILE_SIZE; i++) {
+            content[i] = (byte) i;
+        }
+        file = Files.write(tempDir.resolve("video.mp4"), content);
+    }
+
+    @Test
+    void withoutRangeReturnsWholeFile() throws IOException {
+        MockHttpServletResponse response = stream(get(null), true);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(FILE_SIZE, response.getContentLengthLong());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void closedRangeReturnsPartialContent() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=10-19"), true);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(10, response.getContentLengthLong());
+        assertArrayEquals(slice(10, 20), response.getContentAsByteArray());
+    }
+
+    @Test
+    void suffixRangeReturnsLastBytes() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=-5"), true);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 95-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(95, 100), response.getContentAsByteArray());
+    }
+
+    @Test
+    void openRangeIsCappedForVideoButNotForDownloads() throws IOException {
+        MockHttpServletResponse video = stream(get("bytes=50-"), true);
+        assertEquals(206, video.getStatus());
+        assertEquals("bytes 50-79/100", video.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(50, 80), video.getContentAsByteArray());
+
+        MockHttpServletResponse download = stream(get("bytes=50-"), false);
+        assertEquals("bytes 50-99/100", download.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(50, 100), download.getContentAsByteArray());
+    }
+
+    @Test
+    void closedRangeLargerThanChunkIsNotCapped() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=0-59"), true);
+
+        assertEquals("bytes 0-59/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(60, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void rangeEndBeyondFileIsClamped() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=90-500"), true);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 90-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void rangeStartingAfterEndOfFileIsNotSatisfiable() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=100-"), true);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void malformedRangeIsNotSatisfiable() throws IOException {
+        assertEquals(416, stream(get("bytes=abc"), true).getStatus());
+        assertEquals(416, stream(get("items=0-1"), true).getStatus());
+        assertEquals(416, stream(get("bytes=20-10"), true).getStatus());
+    }
+
+    @Test
+    void multipleRangesReturnMultipartByteranges() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=0-1,5-6"), true);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-1/100"));
+        assertTrue(body.contains("Content-Range: bytes 5-6/100"));
+    }
+
+    @Test
+    void overlappingRangesLargerThanFileAreRejected() throws IOException {
+        MockHttpServletResponse response = stream(get("bytes=0-99,0-99"), true);
+
+        assertEquals(416, response.getStatus());
+    }
+
+    @Test
+    void ifRangeWithCurrentEtagHonoursRange() throws IOException {
+        MockHttpServletRequest request = get("bytes=10-19");
+        request.addHeader(HttpHeaders.IF_RANGE, currentETag());
+
+        assertEquals(206, stream(request, true).getStatus());
+    }
+
+    @Test
+    void ifRangeWithStaleEtagReturnsWholeFile() throws IOException {
+        MockHttpServletRequest request = get("bytes=10-19");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+
+        MockHttpServletResponse response = stream(request, true);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void matchingIfNoneMatchReturnsNotModified() throws IOException {
+        MockHttpServletRequest request = get(null);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, currentETag());
+
+        MockHttpServletResponse response = stream(request, true);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void headRequestSendsHeadersOnly() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/api/videos/1/stream");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+
+        MockHttpServletResponse response = stream(request, true);
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    private MockHttpServletRequest get(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/videos/1/stream");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse stream(MockHttpServletRequest request, boolean capOpenRanges) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileStreamingService.stream(file, "video/mp4", capOpenRanges, request, response);
+        return response;
+    }
+
+    private String currentETag() throws IOException {
+        return fileStreamingService.buildETag(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private byte[] slice(int from, int to) {
+        return Arrays.copyOfRange(content, from, to);
+    }
+}
@@ -0,0 +1,180 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.model.JobCheckpoint;
+import org.example.lmsbackend.repository.BlobStoreMapper;
+import org.example.lmsbackend.repository.JobCheckpointMapper;
+import org.example.lmsbackend.storage.LocalObjectStorage;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageVariantServiceTest {
+
+    private static final String JOB = "image-variants-backfill";
+
+    private final BlobStoreService blobStoreService = mock(BlobStoreService.class);
+    private final ObjectStorage objectStorage = mock(ObjectStorage.class);
+    private final BlobStoreMapper blobStoreMapper = mock(BlobStoreMapper.class);
+    private final JobCheckpointMapper jobCheckpointMapper = mock(JobCheckpointMapper.class);
+    private ImageVariantService imageVariantService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imageVariantService = new ImageVariantService(new int[]{64, 256}, 0.8f, 50_000_000L, 1, 10);
+        ReflectionTestUtils.setField(imageVariantService, "blobStoreService", blobStoreService);
+        ReflectionTestUtils.setField(imageVariantService, "objectStorage", objectStorage);
+        ReflectionTestUtils.setField(imageVariantService, "blobStoreMapper", blobStoreMapper);
+        ReflectionTestUtils.setField(imageVariantService, "jobCheckpointMapper", jobCheckpointMapper);
+        // Nội dung ảnh không quan trọng ở đây: decode lỗi vẫn được tính là đã duyệt
+        when(blobStoreService.open(anyString())).thenThrow(new NoSuchFileException("blob"));
+        when(blobStoreMapper.findPathsByPrefix(anyString(), anyString(), anyInt())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageVariantService.shutdown();
+    }
+
+    @Test
+    void backfillWalksBlobRefsAndCheckpointsEachImageInDb() throws IOException {
+        when(objectStorage.supportsPresignedUrls()).thenReturn(true);
+        when(jobCheckpointMapper.claim(JOB, 300)).thenReturn(1);
+        when(blobStoreMapper.findPathsByPrefix("avatars/", "avatars/", 500)).thenReturn(List.of("avatars/a.png", "avatars/b.png"));
+
+        runBackfill();
+
+        var order = inOrder(jobCheckpointMapper);
+        order.verify(jobCheckpointMapper).ensure(JOB);
+        order.verify(jobCheckpointMapper).claim(JOB, 300);
+        order.verify(jobCheckpointMapper).savePosition(JOB, "avatars/a.png", 300);
+        order.verify(jobCheckpointMapper).savePosition(JOB, "avatars/b.png", 300);
+        order.verify(jobCheckpointMapper).delete(JOB);
+        verify(blobStoreMapper).findPathsByPrefix("imagescourse/", "imagescourse/", 500);
+        // Không dựa vào list của kho (S3 không có object tại key ảnh gốc)
+        verify(objectStorage, never()).list(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void backfillResumesAfterCheckpointFromDb() {
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(JOB);
+        checkpoint.setPosition("imagescourse/m.jpg");
+        when(jobCheckpointMapper.claim(JOB, 300)).thenReturn(1);
+        when(jobCheckpointMapper.findByJobName(JOB)).thenReturn(checkpoint);
+
+        runBackfill();
+
+        // avatars/ đã xong trong lần chạy trước: truy vấn bắt đầu sau checkpoint nên không trả dòng nào
+        verify(blobStoreMapper).findPathsByPrefix("avatars/", "imagescourse/m.jpg", 500);
+        verify(blobStoreMapper).findPathsByPrefix("imagescourse/", "imagescourse/m.jpg", 500);
+    }
+
+    @Test
+    void backfillGeneratesVariantsForLegacyFileWithoutBlobRef() throws IOException {
+        LocalObjectStorage localStorage = useLocalStorage();
+        // Ảnh upload trước khi có blob store: chỉ có file tại key, không có dòng blob_refs
+        putPng(localStorage, "avatars/old.png", 400);
+        putPng(localStorage, "avatars/linked.png", 400);
+
+        when(jobCheckpointMapper.claim(JOB, 300)).thenReturn(1);
+        when(blobStoreMapper.findExistingPaths(List.of("avatars/linked.png", "avatars/old.png")))
+                .thenReturn(List.of("avatars/linked.png"));
+        doAnswer(invocation -> localStorage.get("avatars/old.png")).when(blobStoreService).open("avatars/old.png");
+        when(blobStoreService.newStagingFile(anyString()))
+                .thenAnswer(invocation -> Files.createTempFile(tempDir, "variant-", ".tmp"));
+
+        runBackfill();
+
+        assertTrue(localStorage.stat("avatars/w64/old.jpg").isPresent());
+        assertTrue(localStorage.stat("avatars/w256/old.jpg").isPresent());
+        // Ảnh đã có blob ref được lượt blob_refs xử lý, lượt file cũ bỏ qua
+        verify(blobStoreService, never()).open("avatars/linked.png");
+        var order = inOrder(jobCheckpointMapper);
+        order.verify(jobCheckpointMapper).savePosition(JOB, "legacy:avatars/old.png", 300);
+        order.verify(jobCheckpointMapper).delete(JOB);
+    }
+
+    @Test
+    void resolveFallbackToSourceIsNotStableUntilVariantExists() throws IOException {
+        LocalObjectStorage localStorage = useLocalStorage();
+        putPng(localStorage, "avatars/big.png", 400);
+        when(blobStoreService.stat("avatars/big.png")).thenReturn(localStorage.stat("avatars/big.png"));
+        doAnswer(invocation -> localStorage.get("avatars/big.png")).when(blobStoreService).open("avatars/big.png");
+
+        // Biến thể 64px chưa sinh → tạm trả ảnh gốc
+        assertEquals(new ImageVariantService.ResolvedImage("avatars/big.png", false),
+                imageVariantService.resolve("avatars", "big.png", 40));
+
+        putPng(localStorage, "avatars/w64/big.jpg", 64);
+        assertEquals(new ImageVariantService.ResolvedImage("avatars/w64/big.jpg", true),
+                imageVariantService.resolve("avatars", "big.png", 40));
+    }
+
+    @Test
+    void resolveSourceNarrowerThanVariantIsStable() throws IOException {
+        LocalObjectStorage localStorage = useLocalStorage();
+        putPng(localStorage, "avatars/small.png", 50);
+        when(blobStoreService.stat("avatars/small.png")).thenReturn(localStorage.stat("avatars/small.png"));
+        doAnswer(invocation -> localStorage.get("avatars/small.png")).when(blobStoreService).open("avatars/small.png");
+
+        // Ảnh 50px không bao giờ có biến thể 64px → ảnh gốc là kết quả cuối cùng
+        assertEquals(new ImageVariantService.ResolvedImage("avatars/small.png", true),
+                imageVariantService.resolve("avatars", "small.png", 40));
+        // Rộng hơn mọi biến thể, hoặc không hỏi kích thước
+        assertTrue(imageVariantService.resolve("avatars", "small.png", 2000).stable());
+        assertTrue(imageVariantService.resolve("avatars", "small.png", null).stable());
+    }
+
+    @Test
+    void backfillSkipsWhenAnotherNodeHoldsTheLease() {
+        when(jobCheckpointMapper.claim(JOB, 300)).thenReturn(0);
+
+        runBackfill();
+
+        verify(blobStoreMapper, never()).findPathsByPrefix(anyString(), anyString(), anyInt());
+        verify(jobCheckpointMapper, never()).delete(JOB);
+    }
+
+    private LocalObjectStorage useLocalStorage() {
+        LocalObjectStorage localStorage = new LocalObjectStorage(tempDir.resolve("uploads").toString());
+        ReflectionTestUtils.setField(imageVariantService, "objectStorage", localStorage);
+        return localStorage;
+    }
+
+    private static void putPng(LocalObjectStorage storage, String key, int width) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, width * 3 / 4, BufferedImage.TYPE_INT_RGB), "png", png);
+        storage.put(key, new ByteArrayInputStream(png.toByteArray()), png.size(), "image/png");
+    }
+
+    private void runBackfill() {
+        ReflectionTestUtils.invokeMethod(imageVariantService, "backfill");
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.security.LoginRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoginThrottleServiceTest {
+
+    private LoginThrottleService loginThrottleService;
+
+    @BeforeEach
+    void setUp() {
+        loginThrottleService = new LoginThrottleService();
+        ReflectionTestUtils.setField(loginThrottleService, "usernameCapacity", 3);
+        ReflectionTestUtils.setField(loginThrottleService, "usernameRefillPerMinute", 0.001);
+        ReflectionTestUtils.setField(loginThrottleService, "ipCapacity", 10);
+        ReflectionTestUtils.setField(loginThrottleService, "ipRefillPerMinute", 0.001);
+        ReflectionTestUtils.setField(loginThrottleService, "maxBuckets", 1000);
+    }
+
+    @Test
+    void failedAttemptsExhaustUsernameBucket() {
+        for (int i = 0; i < 3; i++) {
+            loginThrottleService.checkLogin("alice", "10.0.0." + i);
+        }
+        assertThrows(LoginRejectedException.class, () -> loginThrottleService.checkLogin("Alice ", "10.0.0.9"));
+    }
+
+    @Test
+    void successfulLoginsAreNotCharged() {
+        for (int i = 0; i < 20; i++) {
+            loginThrottleService.checkLogin("alice", "10.0.0." + i);
+            loginThrottleService.loginSucceeded("alice");
+        }
+        assertDoesNotThrow(() -> loginThrottleService.checkLogin("alice", "10.0.1.1"));
+    }
+
+    @Test
+    void refundNeverExceedsCapacity() {
+        loginThrottleService.checkLogin("alice", null);
+        for (int i = 0; i < 5; i++) {
+            loginThrottleService.loginSucceeded("alice");
+        }
+        for (int i = 0; i < 3; i++) {
+            loginThrottleService.checkLogin("alice", null);
+        }
+        assertThrows(LoginRejectedException.class, () -> loginThrottleService.checkLogin("alice", null));
+    }
+
+    @Test
+    void ipBucketLimitsAcrossUsernames() {
+        for (int i = 0; i < 10; i++) {
+            loginThrottleService.checkLogin("user" + i, "203.0.113.7");
+        }
+        assertThrows(LoginRejectedException.class, () -> loginThrottleService.checkLogin("other", "203.0.113.7"));
+        assertDoesNotThrow(() -> loginThrottleService.checkLogin("other", "203.0.113.8"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.model.Video;
+import org.example.lmsbackend.repository.VideoMapper;
+import org.example.lmsbackend.storage.ObjectStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class VideoIngestServiceTest {
+
+    private final VideoMapper videoMapper = mock(VideoMapper.class);
+    private final BlobStoreService blobStoreService = mock(BlobStoreService.class);
+    private VideoIngestService videoIngestService;
+
+    @BeforeEach
+    void setUp() {
+        videoIngestService = new VideoIngestService(videoMapper, mock(HlsPackagingService.class), blobStoreService,
+                mock(ObjectStorage.class), 1, 10, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        videoIngestService.shutdown();
+    }
+
+    @Test
+    void resumeQueuesOnlyVideosClaimedByThisNode() {
+        when(videoMapper.claimPendingIngest(anyString(), eq(10), eq(600L))).thenReturn(1);
+        when(videoMapper.findClaimedIngest(anyString())).thenReturn(List.of(video(7, "/videos/abc_a.mp4")));
+
+        videoIngestService.resumePending();
+
+        ArgumentCaptor<String> claimToken = ArgumentCaptor.forClass(String.class);
+        verify(videoMapper).claimPendingIngest(claimToken.capture(), eq(10), eq(600L));
+        verify(videoMapper).findClaimedIngest(claimToken.getValue());
+        // Worker gia hạn lease bằng cùng token trước khi xử lý
+        verify(videoMapper, timeout(2000)).claimIngest(7, claimToken.getValue(), 600L);
+    }
+
+    @Test
+    void resumeSkipsWhenOtherNodesHoldAllLeases() {
+        when(videoMapper.claimPendingIngest(anyString(), anyInt(), anyLong())).thenReturn(0);
+
+        videoIngestService.resumePending();
+
+        verify(videoMapper, never()).findClaimedIngest(anyString());
+    }
+
+    @Test
+    void processSkipsVideoClaimedByAnotherNode() {
+        when(videoMapper.claimIngest(eq(7), anyString(), eq(600L))).thenReturn(0);
+
+        ReflectionTestUtils.invokeMethod(videoIngestService, "process", 7, "videos/abc_a.mp4");
+
+        verifyNoInteractions(blobStoreService);
+        verify(videoMapper, never()).updateStatus(any(), any());
+        verify(videoMapper, never()).updateIngestResult(any(), anyInt(), any(), any());
+    }
+
+    private static Video video(Integer id, String fileUrl) {
+        Video video = new Video();
+        video.setVideoId(id);
+        video.setFileUrl(fileUrl);
+        return video;
+    }
+}
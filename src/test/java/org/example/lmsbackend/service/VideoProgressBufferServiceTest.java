@@ -0,0 +1,98 @@
+package org.example.lmsbackend.service;
+
+import org.example.lmsbackend.model.VideoProgress;
+import org.example.lmsbackend.repository.VideoProgressMapper;
+import org.example.lmsbackend.repository.VideoProgressRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class VideoProgressBufferServiceTest {
+
+    private static final int BAD_VIDEO = 13;
+
+    private final VideoProgressMapper videoProgressMapper = mock(VideoProgressMapper.class);
+    private VideoProgressBufferService bufferService;
+
+    @BeforeEach
+    void setUp() {
+        bufferService = new VideoProgressBufferService();
+        ReflectionTestUtils.setField(bufferService, "videoProgressMapper", videoProgressMapper);
+        ReflectionTestUtils.setField(bufferService, "videoProgressRepository", mock(VideoProgressRepository.class));
+        ReflectionTestUtils.setField(bufferService, "courseProgressService", mock(CourseProgressService.class));
+        ReflectionTestUtils.setField(bufferService, "batchSize", 500);
+        ReflectionTestUtils.setField(bufferService, "maxBufferSize", 1000);
+
+        when(videoProgressMapper.findExistingVideoIds(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(videoProgressMapper.findNewlyCompleted(anyList())).thenReturn(List.of());
+        when(videoProgressMapper.batchUpsert(anyList())).thenAnswer(invocation -> {
+            List<VideoProgress> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(row -> row.getVideo().getVideoId() == BAD_VIDEO)) {
+                throw new IllegalStateException("Data truncation");
+            }
+            return rows.size();
+        });
+    }
+
+    @Test
+    void heartbeatDoesNotWriteOnCallerThread() {
+        VideoProgressBufferService isolated = new VideoProgressBufferService();
+        VideoProgressMapper untouched = mock(VideoProgressMapper.class);
+        ReflectionTestUtils.setField(isolated, "videoProgressMapper", untouched);
+        ReflectionTestUtils.setField(isolated, "maxBufferSize", 1000);
+
+        isolated.record(1, 2, 30, 100);
+
+        verifyNoInteractions(untouched);
+        assertNotNull(isolated.getPending(1, 2));
+    }
+
+    @Test
+    void badRowDoesNotBlockTheRestOfTheBatch() {
+        bufferService.record(1, 1, 10, 100);
+        bufferService.record(1, BAD_VIDEO, 10, 100);
+        bufferService.record(2, 1, 10, 100);
+
+        bufferService.flush();
+
+        assertNull(bufferService.getPending(1, 1));
+        assertNull(bufferService.getPending(2, 1));
+        assertNotNull(bufferService.getPending(1, BAD_VIDEO));
+    }
+
+    @Test
+    void badRowIsDroppedAfterRepeatedFailures() {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            bufferService.record(1, BAD_VIDEO, 10, 100);
+            bufferService.record(attempt + 10, 1, 10, 100);
+            bufferService.flush();
+        }
+
+        assertNull(bufferService.getPending(1, BAD_VIDEO));
+        assertEquals(1L, bufferService.getStats().get("droppedRows"));
+    }
+
+    @Test
+    void outageKeepsEverythingBuffered() {
+        when(videoProgressMapper.batchUpsert(anyList())).thenThrow(new IllegalStateException("Connection refused"));
+        bufferService.record(1, 1, 10, 100);
+        bufferService.record(2, 1, 10, 100);
+
+        for (int attempt = 0; attempt < 5; attempt++) {
+            bufferService.flush();
+        }
+
+        assertNotNull(bufferService.getPending(1, 1));
+        assertNotNull(bufferService.getPending(2, 1));
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.lmsbackend.storage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy S3ObjectStorage với MinIO thật (Testcontainers), giống cấu hình app.storage.type=s3 + endpoint MinIO
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3ObjectStorageTest {
+
+    private static final String BUCKET = "lms-test";
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+
+    @Container
+    private static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2023-09-04T19-57-37Z");
+
+    private static S3ObjectStorage storage;
+
+    // Mỗi test dùng prefix riêng để không thấy object của test khác
+    private final String prefix = "t-" + UUID.randomUUID();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void createBucket() {
+        try (S3Client admin = S3Client.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword())))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build()) {
+            admin.createBucket(request -> request.bucket(BUCKET));
+        }
+        storage = new S3ObjectStorage(MINIO.getS3URL(), "us-east-1", BUCKET,
+                MINIO.getUserName(), MINIO.getPassword(), true, PART_SIZE);
+    }
+
+    @AfterAll
+    static void closeStorage() {
+        if (storage != null) {
+            storage.shutdown();
+        }
+    }
+
+    @Test
+    void putGetStatDeleteRoundTrip() throws IOException {
+        String key = prefix + "/avatars/a.png";
+        byte[] content = "hello minio".getBytes(StandardCharsets.UTF_8);
+
+        storage.put(key, new ByteArrayInputStream(content), content.length, "image/png");
+
+        try (InputStream in = storage.get(key)) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        StoredObject stat = storage.stat(key).orElseThrow();
+        assertEquals(content.length, stat.size());
+        assertEquals("image/png", stat.contentType());
+
+        assertTrue(storage.delete(key));
+        assertTrue(storage.stat(key).isEmpty());
+        assertThrows(NoSuchFileException.class, () -> storage.get(key));
+    }
+
+    @Test
+    void getRangeReturnsOnlyRequestedBytes() throws IOException {
+        String key = prefix + "/videos/v.mp4";
+        byte[] content = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        storage.put(key, new ByteArrayInputStream(content), content.length, "video/mp4");
+
+        try (InputStream in = storage.getRange(key, 4, 6)) {
+            assertEquals("456789", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void listReturnsDirectChildrenInOrderAndPages() throws IOException {
+        for (String name : List.of("c.jpg", "a.jpg", "b.jpg", "w256/a.jpg")) {
+            byte[] content = name.getBytes(StandardCharsets.UTF_8);
+            storage.put(prefix + "/imagescourse/" + name, new ByteArrayInputStream(content), content.length, "image/jpeg");
+        }
+
+        assertEquals(List.of("a.jpg", "b.jpg"), storage.list(prefix + "/imagescourse", null, 2));
+        assertEquals(List.of("c.jpg"), storage.list(prefix + "/imagescourse", "b.jpg", 2));
+        assertEquals(List.of("a.jpg"), storage.list(prefix + "/imagescourse/w256", null, 10));
+    }
+
+    @Test
+    void putFileAboveLimitUsesMultipartAndConsumesSource() throws IOException {
+        String key = prefix + "/videos/big.mp4";
+        byte[] content = new byte[(int) (PART_SIZE * 2 + 1024)];
+        new Random(42).nextBytes(content);
+        Path source = tempDir.resolve("big.mp4");
+        Files.write(source, content);
+
+        storage.putFile(key, source, "video/mp4");
+
+        assertFalse(Files.exists(source));
+        assertEquals(content.length, storage.stat(key).orElseThrow().size());
+        try (InputStream in = storage.getRange(key, PART_SIZE - 10, 20)) {
+            byte[] expected = new byte[20];
+            System.arraycopy(content, (int) PART_SIZE - 10, expected, 0, 20);
+            assertArrayEquals(expected, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void presignedGetIsReadableWithoutCredentials() throws IOException {
+        String key = prefix + "/videos/hls/1/master.m3u8";
+        byte[] content = "#EXTM3U\n".getBytes(StandardCharsets.UTF_8);
+        storage.put(key, new ByteArrayInputStream(content), content.length, "application/vnd.apple.mpegurl");
+
+        URL url = storage.presignGet(key, Duration.ofMinutes(5), null, false).orElseThrow();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                assertArrayEquals(content, in.readAllBytes());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
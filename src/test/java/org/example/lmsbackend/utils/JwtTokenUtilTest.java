@@ -0,0 +1,45 @@
+package org.example.lmsbackend.utils;
+
+import io.jsonwebtoken.Claims;
+import org.example.lmsbackend.model.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class JwtTokenUtilTest {
+
+    private final JwtTokenUtil jwtTokenUtil = new JwtTokenUtil(2);
+
+    @Test
+    void callersGetTheirOwnCopyOfCachedClaims() {
+        String token = jwtTokenUtil.generateToken(user(1, "alice"));
+        jwtTokenUtil.extractAllClaims(token);
+
+        Claims first = jwtTokenUtil.extractAllClaims(token);
+        first.put("role", "ROLE_admin");
+        Claims second = jwtTokenUtil.extractAllClaims(token);
+
+        assertNotSame(first, second);
+        assertEquals("ROLE_student", second.get("role", String.class));
+        assertEquals("alice", second.getSubject());
+    }
+
+    @Test
+    void tokensBeyondCacheSizeStillValidate() {
+        for (int i = 0; i < 20; i++) {
+            String token = jwtTokenUtil.generateToken(user(i, "user" + i));
+            assertEquals(i, jwtTokenUtil.extractUserId(token));
+            assertEquals("user" + i, jwtTokenUtil.extractUsername(token));
+        }
+    }
+
+    private static User user(int id, String username) {
+        User user = new User();
+        user.setUserId(id);
+        user.setUsername(username);
+        user.setFullName(username);
+        user.setRole(User.Role.student);
+        return user;
+    }
+}